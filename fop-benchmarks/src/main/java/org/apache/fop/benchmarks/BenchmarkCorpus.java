@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+/**
+ * The fixed corpus of XSL-FO documents used by the benchmarks. The documents are generated
+ * from a seeded random source so that every run (and every JVM fork) measures exactly the
+ * same input without having to ship megabytes of FO files.
+ */
+public enum BenchmarkCorpus {
+
+    /** Table-heavy invoices: one page-sequence per customer, many rows each. */
+    INVOICES {
+        void appendBody(StringBuilder sb, Random rnd) {
+            for (int customer = 0; customer < 20; customer++) {
+                startPageSequence(sb);
+                sb.append("<fo:block font-size=\"14pt\" font-weight=\"bold\" space-after=\"6pt\">")
+                        .append("Invoice ").append(10000 + customer).append("</fo:block>");
+                sb.append("<fo:table table-layout=\"fixed\" width=\"100%\" border-collapse=\"separate\">");
+                sb.append("<fo:table-column column-width=\"15%\"/><fo:table-column column-width=\"55%\"/>");
+                sb.append("<fo:table-column column-width=\"15%\"/><fo:table-column column-width=\"15%\"/>");
+                sb.append("<fo:table-header><fo:table-row font-weight=\"bold\">");
+                appendCell(sb, "Item");
+                appendCell(sb, "Description");
+                appendCell(sb, "Quantity");
+                appendCell(sb, "Amount EUR");
+                sb.append("</fo:table-row></fo:table-header><fo:table-body>");
+                for (int row = 0; row < 120; row++) {
+                    sb.append("<fo:table-row>");
+                    appendCell(sb, Integer.toString(row + 1));
+                    appendCell(sb, words(rnd, 3 + rnd.nextInt(8)));
+                    appendCell(sb, Integer.toString(1 + rnd.nextInt(50)));
+                    appendCell(sb, rnd.nextInt(10000) + "." + (10 + rnd.nextInt(90)));
+                    sb.append("</fo:table-row>");
+                }
+                sb.append("</fo:table-body></fo:table>");
+                endPageSequence(sb);
+            }
+        }
+    },
+
+    /** A long novel: a single flow of justified, hyphenation-free paragraphs. */
+    NOVEL {
+        void appendBody(StringBuilder sb, Random rnd) {
+            startPageSequence(sb);
+            for (int chapter = 1; chapter <= 10; chapter++) {
+                sb.append("<fo:block font-size=\"16pt\" break-before=\"page\" space-after=\"12pt\">")
+                        .append("Chapter ").append(chapter).append("</fo:block>");
+                for (int para = 0; para < 60; para++) {
+                    sb.append("<fo:block text-align=\"justify\" text-indent=\"1em\" space-after=\"3pt\">")
+                            .append(words(rnd, 80 + rnd.nextInt(120))).append("</fo:block>");
+                }
+            }
+            endPageSequence(sb);
+        }
+    },
+
+    /** CJK text: long runs without spaces that are broken at ideographs. */
+    CJK {
+        void appendBody(StringBuilder sb, Random rnd) {
+            startPageSequence(sb);
+            for (int para = 0; para < 300; para++) {
+                sb.append("<fo:block language=\"ja\" space-after=\"3pt\">");
+                int len = 100 + rnd.nextInt(300);
+                for (int i = 0; i < len; i++) {
+                    sb.append((char) (0x4E00 + rnd.nextInt(0x5000)));
+                    if (rnd.nextInt(20) == 0) {
+                        sb.append('。');
+                    }
+                }
+                sb.append("</fo:block>");
+            }
+            endPageSequence(sb);
+        }
+    },
+
+    /** Arabic text: right-to-left paragraphs with embedded left-to-right numbers. */
+    ARABIC {
+        void appendBody(StringBuilder sb, Random rnd) {
+            startPageSequence(sb);
+            for (int para = 0; para < 300; para++) {
+                sb.append("<fo:block language=\"ar\" script=\"arab\" writing-mode=\"rl-tb\"")
+                        .append(" text-align=\"justify\" space-after=\"3pt\">");
+                int wordCount = 40 + rnd.nextInt(80);
+                for (int w = 0; w < wordCount; w++) {
+                    if (w > 0) {
+                        sb.append(' ');
+                    }
+                    if (rnd.nextInt(15) == 0) {
+                        sb.append(rnd.nextInt(100000));
+                    } else {
+                        int len = 2 + rnd.nextInt(7);
+                        for (int i = 0; i < len; i++) {
+                            sb.append((char) (0x0627 + rnd.nextInt(0x064A - 0x0627)));
+                        }
+                    }
+                }
+                sb.append("</fo:block>");
+            }
+            endPageSequence(sb);
+        }
+    },
+
+    /** Reports with many inline SVG charts between text blocks. */
+    SVG_REPORT {
+        void appendBody(StringBuilder sb, Random rnd) {
+            startPageSequence(sb);
+            for (int chart = 0; chart < 60; chart++) {
+                sb.append("<fo:block space-after=\"6pt\">").append(words(rnd, 60)).append("</fo:block>");
+                sb.append("<fo:block><fo:instream-foreign-object>");
+                sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"400\" height=\"200\">");
+                for (int bar = 0; bar < 20; bar++) {
+                    int height = 10 + rnd.nextInt(180);
+                    sb.append("<rect x=\"").append(bar * 20).append("\" y=\"").append(200 - height)
+                            .append("\" width=\"16\" height=\"").append(height)
+                            .append("\" fill=\"rgb(").append(rnd.nextInt(256)).append(',')
+                            .append(rnd.nextInt(256)).append(',').append(rnd.nextInt(256))
+                            .append(")\"/>");
+                }
+                sb.append("<path d=\"M0,100");
+                for (int x = 10; x <= 400; x += 10) {
+                    sb.append(" L").append(x).append(',').append(rnd.nextInt(200));
+                }
+                sb.append("\" stroke=\"black\" fill=\"none\"/>");
+                sb.append("<text x=\"10\" y=\"20\" font-size=\"12\">Chart ").append(chart).append("</text>");
+                sb.append("</svg></fo:instream-foreign-object></fo:block>");
+            }
+            endPageSequence(sb);
+        }
+    };
+
+    private static final String[] VOCABULARY = {
+        "the", "of", "and", "a", "to", "in", "is", "was", "that", "for", "it", "with", "as",
+        "his", "on", "be", "at", "by", "had", "are", "but", "from", "or", "have", "an", "they",
+        "which", "one", "were", "all", "we", "when", "there", "can", "been", "has", "more",
+        "statement", "account", "balance", "transaction", "processing", "formatting", "objects",
+        "typesetting", "paragraph", "extraordinary", "nevertheless", "consideration", "Total",
+        "Page", "EUR", "customer", "delivery", "reference", "documentation", "international"
+    };
+
+    private static final long SEED = 20190101L;
+
+    private byte[] document;
+
+    abstract void appendBody(StringBuilder sb, Random rnd);
+
+    /**
+     * Returns the XSL-FO document for this corpus entry, encoded as UTF-8.
+     * @return the document bytes (generated once and then reused)
+     */
+    public synchronized byte[] getDocument() {
+        if (document == null) {
+            StringBuilder sb = new StringBuilder(1 << 20);
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+            sb.append("<fo:layout-master-set>");
+            sb.append("<fo:simple-page-master master-name=\"A4\" page-height=\"29.7cm\"")
+                    .append(" page-width=\"21cm\" margin=\"2cm\">");
+            sb.append("<fo:region-body margin-top=\"1cm\"/><fo:region-before extent=\"1cm\"/>");
+            sb.append("</fo:simple-page-master></fo:layout-master-set>");
+            appendBody(sb, new Random(SEED + ordinal()));
+            sb.append("</fo:root>");
+            try {
+                document = sb.toString().getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return document;
+    }
+
+    private static void startPageSequence(StringBuilder sb) {
+        sb.append("<fo:page-sequence master-reference=\"A4\">");
+        sb.append("<fo:static-content flow-name=\"xsl-region-before\">");
+        sb.append("<fo:block text-align=\"end\">Page <fo:page-number/></fo:block>");
+        sb.append("</fo:static-content>");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+    }
+
+    private static void endPageSequence(StringBuilder sb) {
+        sb.append("</fo:flow></fo:page-sequence>");
+    }
+
+    private static void appendCell(StringBuilder sb, String text) {
+        sb.append("<fo:table-cell border=\"0.5pt solid black\" padding=\"1pt\"><fo:block>")
+                .append(text).append("</fo:block></fo:table-cell>");
+    }
+
+    private static String words(Random rnd, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(VOCABULARY[rnd.nextInt(VOCABULARY.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.SAXException;
+
+import org.apache.fop.apps.FopFactory;
+
+/**
+ * Shared plumbing for the benchmarks.
+ * <p>
+ * By default, the benchmarks run against a plain {@link FopFactory} with the base 14 fonts only.
+ * Set the system property {@value #CONFIG_PROPERTY} to a fop.xconf to register the fonts needed
+ * to render the CJK and Arabic documents with real glyphs (pass it to the forked JVMs with
+ * {@code -jvmArgsAppend -Dfop.benchmarks.config=...}).
+ */
+final class BenchmarkSupport {
+
+    /** System property pointing to an optional FOP configuration file. */
+    static final String CONFIG_PROPERTY = "fop.benchmarks.config";
+
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates the FopFactory used by a benchmark.
+     * @return a new FopFactory
+     * @throws IOException if the configuration cannot be read
+     * @throws SAXException if the configuration cannot be parsed
+     */
+    static FopFactory createFopFactory() throws IOException, SAXException {
+        String config = System.getProperty(CONFIG_PROPERTY);
+        if (config != null) {
+            return FopFactory.newInstance(new File(config));
+        }
+        return FopFactory.newInstance(new File(".").toURI());
+    }
+
+    /**
+     * Creates a fresh Source for a corpus document.
+     * @param document the corpus document
+     * @return the Source
+     */
+    static Source createSource(BenchmarkCorpus document) {
+        return new StreamSource(new ByteArrayInputStream(document.getDocument()));
+    }
+
+    /**
+     * Pipes a Source into a Result using an identity transformation.
+     * @param src the source
+     * @param res the result
+     * @throws TransformerException if the transformation fails
+     */
+    static void transform(Source src, Result res) throws TransformerException {
+        Transformer transformer;
+        synchronized (TRANSFORMER_FACTORY) {
+            transformer = TRANSFORMER_FACTORY.newTransformer();
+        }
+        transformer.transform(src, res);
+    }
+}
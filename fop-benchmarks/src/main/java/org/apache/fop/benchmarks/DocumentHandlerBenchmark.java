@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFParser;
+import org.apache.fop.render.intermediate.IFSerializer;
+import org.apache.fop.render.intermediate.IFUtil;
+
+/**
+ * Measures the output side: the laid-out document is prepared once as intermediate format
+ * (mimicking the target format's fonts) and every invocation replays it into a fresh
+ * {@link IFDocumentHandler} for the target format. The output is counted and discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentHandlerBenchmark {
+
+    /** The output formats covered by this benchmark. */
+    public enum OutputFormat {
+        /** PDF */
+        PDF(MimeConstants.MIME_PDF),
+        /** PostScript */
+        PS(MimeConstants.MIME_POSTSCRIPT),
+        /** AFP */
+        AFP(MimeConstants.MIME_AFP),
+        /** PCL */
+        PCL(MimeConstants.MIME_PCL),
+        /** PNG */
+        PNG(MimeConstants.MIME_PNG);
+
+        private final String mimeType;
+
+        private OutputFormat(String mimeType) {
+            this.mimeType = mimeType;
+        }
+    }
+
+    @Param
+    private BenchmarkCorpus document;
+
+    @Param
+    private OutputFormat format;
+
+    private FopFactory fopFactory;
+
+    private byte[] intermediate;
+
+    private File outputFile;
+
+    /**
+     * Lays out the document to the intermediate format outside of the measurement.
+     * @throws Exception if the document cannot be laid out
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fopFactory = BenchmarkSupport.createFopFactory();
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        IFDocumentHandler targetHandler = userAgent.getRendererFactory().createDocumentHandler(
+                userAgent, format.mimeType);
+        IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+        serializer.mimicDocumentHandler(targetHandler);
+        userAgent.setDocumentHandlerOverride(serializer);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(null, userAgent, out);
+        BenchmarkSupport.transform(BenchmarkSupport.createSource(document),
+                new SAXResult(fop.getDefaultHandler()));
+        intermediate = out.toByteArray();
+        //Bitmap formats without multi-image support write one file per page
+        outputFile = File.createTempFile("fop-benchmark", ".png");
+    }
+
+    /** Removes the files written by the bitmap output formats. */
+    @TearDown
+    public void tearDown() {
+        File dir = outputFile.getParentFile();
+        final String prefix = outputFile.getName().substring(0,
+                outputFile.getName().length() - ".png".length());
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().startsWith(prefix)) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the prepared intermediate format to the target format.
+     * @return the number of bytes written, so the work cannot be eliminated
+     * @throws Exception if rendering fails
+     */
+    @Benchmark
+    public long render() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setOutputFile(outputFile);
+        IFDocumentHandler targetHandler = userAgent.getRendererFactory().createDocumentHandler(
+                userAgent, format.mimeType);
+        IFUtil.setupFonts(targetHandler);
+        CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        targetHandler.setResult(new StreamResult(out));
+        new IFParser().parse(new StreamSource(new ByteArrayInputStream(intermediate)),
+                targetHandler, userAgent);
+        return out.getByteCount();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.CMapSegment;
+import org.apache.fop.fonts.EmbeddingMode;
+import org.apache.fop.fonts.EncodingMode;
+import org.apache.fop.fonts.FontLoader;
+import org.apache.fop.fonts.FontUris;
+import org.apache.fop.fonts.GlyphIndexTable;
+import org.apache.fop.fonts.KerningTable;
+import org.apache.fop.fonts.MultiByteFont;
+
+/**
+ * Compares the per-character font metrics lookups done during layout and rendering: kerning
+ * through the nested kerning maps against {@link KerningTable}, and glyph index lookups
+ * through a scan of the character map segments against {@link GlyphIndexTable}. Each
+ * invocation processes every character pair of a sample text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FontMetricsBenchmark {
+
+    private static final String SAMPLE = "AVATAR To Wave, Yoyo: LT Ty Pa Vo. Kerning pairs are looked up for "
+            + "every character in a word; \u00c5ngstr\u00f6m \u0152uvre \u0391\u03b8\u03ae\u03bd\u03b1 "
+            + "\u041c\u043e\u0441\u043a\u0432\u0430 \u2013 \u201cquoted\u201d \u20ac 1,234.56 \ufb01\ufb02";
+
+    /** The TrueType font to take the metrics from. */
+    @Param("../fop/test/resources/fonts/ttf/DejaVuLGCSerif.ttf")
+    private String fontFile;
+
+    private int[] text;
+
+    private Map<Integer, Map<Integer, Integer>> kerningMap;
+
+    private KerningTable kerningTable;
+
+    private CMapSegment[] cmap;
+
+    private int[] mostLikelyGlyphs;
+
+    private GlyphIndexTable glyphIndexTable;
+
+    /**
+     * Loads the font and builds both representations of its metrics.
+     * @throws Exception if the font cannot be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        FontUris fontUris = new FontUris(new File(fontFile).toURI(), null);
+        MultiByteFont font = (MultiByteFont) FontLoader.loadFont(fontUris, "", true, EmbeddingMode.AUTO,
+                EncodingMode.CID, true, false, ResourceResolverFactory.createDefaultInternalResourceResolver(
+                        new File(".").toURI()), false, false);
+        text = new int[SAMPLE.length()];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = SAMPLE.charAt(i);
+        }
+        kerningMap = font.getKerningInfo();
+        kerningTable = KerningTable.build(kerningMap);
+        cmap = font.getCMap();
+        mostLikelyGlyphs = new int[256];
+        glyphIndexTable = GlyphIndexTable.build(Arrays.asList(cmap));
+    }
+
+    /**
+     * Looks up the kerning of every character pair in the nested kerning maps.
+     * @return the sum of the kerning values
+     */
+    @Benchmark
+    public int kerningMap() {
+        int sum = 0;
+        for (int i = 1; i < text.length; i++) {
+            Map<Integer, Integer> kernPair = kerningMap.get(text[i - 1]);
+            if (kernPair != null) {
+                Integer width = kernPair.get(text[i]);
+                if (width != null) {
+                    sum += width;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Looks up the kerning of every character pair in the kerning table.
+     * @return the sum of the kerning values
+     */
+    @Benchmark
+    public int kerningTable() {
+        int sum = 0;
+        for (int i = 1; i < text.length; i++) {
+            sum += kerningTable.getKerning(text[i - 1], text[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * Looks up the glyph index of every character by scanning the character map segments,
+     * with a cache for the first 256 code points.
+     * @return the sum of the glyph indices
+     */
+    @Benchmark
+    public int glyphIndexScan() {
+        int sum = 0;
+        for (int c : text) {
+            int gi = 0;
+            if (c < mostLikelyGlyphs.length && mostLikelyGlyphs[c] != 0) {
+                gi = mostLikelyGlyphs[c];
+            } else {
+                for (CMapSegment segment : cmap) {
+                    if (segment.getUnicodeStart() <= c && segment.getUnicodeEnd() >= c) {
+                        gi = segment.getGlyphStartIndex() + c - segment.getUnicodeStart();
+                        if (gi != 0) {
+                            break;
+                        }
+                    }
+                }
+                if (c < mostLikelyGlyphs.length) {
+                    mostLikelyGlyphs[c] = gi;
+                }
+            }
+            sum += gi;
+        }
+        return sum;
+    }
+
+    /**
+     * Looks up the glyph index of every character in the glyph index table.
+     * @return the sum of the glyph indices
+     */
+    @Benchmark
+    public int glyphIndexTable() {
+        int sum = 0;
+        for (int c : text) {
+            sum += glyphIndexTable.getGlyphIndex(c);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.sax.SAXResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+
+/**
+ * Measures FO tree building plus layout (the PageBreakingAlgorithm and the line layout through
+ * LineLayoutManager and TextLayoutManager). Finished pages are dropped by
+ * {@link LayoutOnlyRenderer}, so no output format is involved. Subtract the
+ * {@link FOTreeBuilderBenchmark} score for the same document to get the layout share.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param
+    private BenchmarkCorpus document;
+
+    private FopFactory fopFactory;
+
+    /**
+     * Creates the FopFactory and generates the corpus document outside of the measurement.
+     * @throws Exception if the factory cannot be created
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fopFactory = BenchmarkSupport.createFopFactory();
+        document.getDocument();
+    }
+
+    /**
+     * Lays out the document.
+     * @return the number of pages, so the work cannot be eliminated
+     * @throws Exception if layout fails
+     */
+    @Benchmark
+    public int layout() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        LayoutOnlyRenderer renderer = new LayoutOnlyRenderer(userAgent);
+        userAgent.setRendererOverride(renderer);
+        Fop fop = fopFactory.newFop(userAgent);
+        BenchmarkSupport.transform(BenchmarkSupport.createSource(document),
+                new SAXResult(fop.getDefaultHandler()));
+        return renderer.getPageCount();
+    }
+}
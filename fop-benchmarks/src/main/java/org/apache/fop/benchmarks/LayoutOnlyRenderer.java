@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.benchmarks;
+
+import java.awt.Rectangle;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.area.Block;
+import org.apache.fop.area.CTM;
+import org.apache.fop.area.PageViewport;
+import org.apache.fop.area.inline.InlineArea;
+import org.apache.fop.render.PrintRenderer;
+
+/**
+ * A renderer that sets up the standard fonts and then discards every finished page. Installed
+ * as renderer override, it isolates the cost of layout (page and line breaking, area tree
+ * construction) from the cost of producing any output format.
+ */
+class LayoutOnlyRenderer extends PrintRenderer {
+
+    private int pageCount;
+
+    /**
+     * Main constructor.
+     * @param userAgent the user agent that contains configuration details
+     */
+    LayoutOnlyRenderer(FOUserAgent userAgent) {
+        super(userAgent);
+    }
+
+    /** @return the number of pages laid out */
+    int getPageCount() {
+        return pageCount;
+    }
+
+    /** {@inheritDoc} */
+    public String getMimeType() {
+        return "application/X-fop-benchmark-layout";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderPage(PageViewport page) {
+        pageCount++;
+    }
+
+    /** {@inheritDoc} */
+    protected void startVParea(CTM ctm, Rectangle clippingRect) {
+    }
+
+    /** {@inheritDoc} */
+    protected void endVParea() {
+    }
+
+    /** {@inheritDoc} */
+    protected void renderReferenceArea(Block block) {
+    }
+
+    /** {@inheritDoc} */
+    protected void startLayer(String layer) {
+    }
+
+    /** {@inheritDoc} */
+    protected void endLayer() {
+    }
+
+    /** {@inheritDoc} */
+    protected void renderInlineAreaBackAndBorders(InlineArea area) {
+    }
+}
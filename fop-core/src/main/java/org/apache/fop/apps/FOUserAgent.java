@@ -58,6 +58,7 @@ import org.apache.fop.fo.FOEventHandler;
 import org.apache.fop.fonts.FontManager;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
+import org.apache.fop.pdf.EncodedStreamCache;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.Renderer;
 import org.apache.fop.render.RendererConfig;
@@ -105,6 +106,16 @@ public class FOUserAgent {
     private FOEventHandler foEventHandlerOverride;
     private boolean locatorEnabled = true; // true by default (for error messages).
     private boolean conserveMemoryPolicy;
+    private long conserveMemoryCacheSize;
+    private int pageSequenceLayoutThreads;
+    private int pageBreakingLookahead;
+    private int lineBreakingThreads;
+
+    private int streamCompressionLevel = -1;
+
+    private int streamCompressionThreads;
+    private int rasterizationThreads;
+    private int rasterizationBandHeight;
     private EventBroadcaster eventBroadcaster = new FOPEventBroadcaster();
     private StructureTreeEventHandler structureTreeEventHandler
             = DummyStructureTreeEventHandler.INSTANCE;
@@ -163,6 +174,16 @@ public class FOUserAgent {
             public Source resolveURI(String uri) {
                 return FOUserAgent.this.resolveURI(uri);
             }
+
+            //the reusable sources of the session are kept in an unsynchronized map, which
+            //page-sequences laid out concurrently and rasterization threads share
+            public synchronized Source getSource(String uri) {
+                return super.getSource(uri);
+            }
+
+            public synchronized void returnSource(String uri, Source src) {
+                super.returnSource(uri, src);
+            }
         };
     }
 
@@ -478,7 +499,8 @@ public class FOUserAgent {
     }
 
     /**
-     * Returns the image session context for the image package.
+     * Returns the image session context for the image package. The context may be used
+     * by several threads; code that needs exclusive use of it synchronizes on it.
      * @return the ImageSessionContext instance for this rendering run
      */
     public ImageSessionContext getImageSessionContext() {
@@ -616,8 +638,12 @@ public class FOUserAgent {
             };
         }
 
-        /** {@inheritDoc} */
-        public void broadcastEvent(Event event) {
+        /**
+         * {@inheritDoc}
+         * Events may be raised on several threads, e.g. by concurrent layout, so the listeners
+         * are called one event at a time.
+         */
+        public synchronized void broadcastEvent(Event event) {
             rootListener.processEvent(event);
         }
 
@@ -641,6 +667,197 @@ public class FOUserAgent {
         this.conserveMemoryPolicy = conserveMemoryPolicy;
     }
 
+    /**
+     * Returns the number of bytes of saved pages that are kept in memory under the
+     * memory-conservation policy.
+     *
+     * @return the size of the in-memory page cache in bytes, or 0 if saved pages are always
+     *          written to temporary files (the default)
+     */
+    public long getConserveMemoryCacheSize() {
+        return this.conserveMemoryCacheSize;
+    }
+
+    /**
+     * Controls how many bytes of pages saved under the memory-conservation policy are kept in
+     * memory, in their encoded form. Pages which don't fit anymore are written to temporary
+     * files.
+     *
+     * @param size the size of the in-memory page cache in bytes, 0 to write all saved pages
+     *          to temporary files
+     */
+    public void setConserveMemoryCacheSize(long size) {
+        this.conserveMemoryCacheSize = size;
+    }
+
+    /**
+     * Returns the number of threads used to lay out independent page-sequences concurrently.
+     *
+     * @return the number of layout threads, or 0 if page-sequences are laid out serially
+     *          on the calling thread (the default)
+     */
+    public int getPageSequenceLayoutThreads() {
+        return this.pageSequenceLayoutThreads;
+    }
+
+    /**
+     * Controls concurrent layout of page-sequences. If set to a value larger than 1, every
+     * fo:page-sequence that has an explicit initial-page-number, uses a simple-page-master
+     * and has no fo:retrieve-marker with a retrieve-boundary of "document" is laid out on
+     * a pool with the given number of threads. The resulting pages are handed to the
+     * area tree model in document order; references between page-sequences are resolved
+     * when a page-sequence is merged, like forward references in serial layout.
+     * <p>
+     * Events raised while laying out such a page-sequence are passed to the event listeners
+     * on the layout thread, as soon as they are raised. The listeners are called one at a
+     * time, but the events of page-sequences laid out at the same time may be interleaved.
+     *
+     * @param threads the number of layout threads, 0 or 1 for serial layout
+     */
+    public void setPageSequenceLayoutThreads(int threads) {
+        this.pageSequenceLayoutThreads = threads;
+    }
+
+    /**
+     * Returns the number of pages the page breaker may still revise before it commits them
+     * when laying out the main flow of a page-sequence.
+     *
+     * @return the page-breaking lookahead in pages, or 0 if the whole flow is broken into
+     *          pages at once (the default)
+     */
+    public int getPageBreakingLookahead() {
+        return this.pageBreakingLookahead;
+    }
+
+    /**
+     * Enables streaming page breaking. If set to a positive value, the element list of a long
+     * fo:flow is broken into pages in chunks: once a chunk has been broken, all but the last
+     * <code>pages</code> pages are committed, their areas are added and the pages are handed
+     * to the area tree, and only the remaining content is carried over and broken again together
+     * with the next chunk. Memory use no longer grows with the length of the flow, at the cost
+     * of page breaks that are only optimal within the lookahead window.
+     *
+     * @param pages the number of pages kept open for revision, 0 to break the whole flow at once
+     */
+    public void setPageBreakingLookahead(int pages) {
+        this.pageBreakingLookahead = pages;
+    }
+
+    /**
+     * Returns the number of threads used to break paragraphs into lines ahead of layout.
+     *
+     * @return the number of line-breaking threads, or 0 if paragraphs are broken into lines
+     *          when they are laid out (the default)
+     */
+    public int getLineBreakingThreads() {
+        return this.lineBreakingThreads;
+    }
+
+    /**
+     * Controls line breaking ahead of layout. If set to a value larger than 1, the line breaks
+     * of the fo:blocks following the one being laid out are computed on a fork-join pool with
+     * the given number of threads, as long as their available width is known. Only blocks
+     * holding nothing but text are broken in advance; if a block ends up being laid out with
+     * another width, it is broken again, so the result is the same as with serial layout.
+     *
+     * @param threads the number of line-breaking threads, 0 or 1 for serial line breaking
+     */
+    public void setLineBreakingThreads(int threads) {
+        this.lineBreakingThreads = threads;
+    }
+
+    /**
+     * Returns the compression level used for flate-compressed output streams.
+     *
+     * @return the compression level (0-9), or -1 for the default level
+     */
+    public int getStreamCompressionLevel() {
+        return this.streamCompressionLevel;
+    }
+
+    /**
+     * Sets the compression level used for flate-compressed output streams, for example
+     * the page contents, images and fonts of a PDF file.
+     *
+     * @param level the compression level (0-9), or -1 for the default level
+     */
+    public void setStreamCompressionLevel(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.streamCompressionLevel = level;
+    }
+
+    /**
+     * Returns the number of threads used to compress output streams.
+     *
+     * @return the number of compression threads, or 0 if streams are compressed on the
+     *          writing thread (the default)
+     */
+    public int getStreamCompressionThreads() {
+        return this.streamCompressionThreads;
+    }
+
+    /**
+     * Controls concurrent compression of output streams. If set to a value larger than 1,
+     * the streams that are ready to be written are compressed on a pool with the given
+     * number of threads and then written in their usual order, so the output is identical
+     * to that of serial compression. The PDF output also subsets its embedded fonts on a pool
+     * of that size.
+     *
+     * @param threads the number of compression threads, 0 or 1 for serial compression
+     */
+    public void setStreamCompressionThreads(int threads) {
+        this.streamCompressionThreads = threads;
+    }
+
+    /**
+     * Returns the number of threads used to rasterize pages for bitmap output.
+     *
+     * @return the number of rasterization threads, or 0 if pages are painted and encoded on
+     *          the rendering thread (the default)
+     */
+    public int getRasterizationThreads() {
+        return this.rasterizationThreads;
+    }
+
+    /**
+     * Controls concurrent rasterization for bitmap output (PNG, TIFF). If set to a value larger
+     * than 1, the painting operations of each page are recorded and the page is painted on a
+     * pool with the given number of threads. The finished page bitmaps are encoded and written
+     * in page order on a separate thread. At most twice as many pages as threads are held in
+     * memory at any time.
+     *
+     * @param threads the number of rasterization threads, 0 or 1 for serial rasterization
+     */
+    public void setRasterizationThreads(int threads) {
+        this.rasterizationThreads = threads;
+    }
+
+    /**
+     * Returns the height of the bands pages are rasterized in for bitmap output.
+     *
+     * @return the band height in pixels, or 0 if pages are rasterized as a whole (the default)
+     */
+    public int getRasterizationBandHeight() {
+        return this.rasterizationBandHeight;
+    }
+
+    /**
+     * Enables banded rasterization for bitmap output (PNG, TIFF). If set to a positive value,
+     * pages that are higher than the given number of pixels aren't painted into a bitmap of
+     * the whole page: their painting operations are recorded and painted again for each
+     * horizontal band of the given height when the image encoder requests its pixels. Peak
+     * memory is then bounded by the band size instead of the page size, at the cost of
+     * painting the page once per band. With concurrent rasterization, the bands of a page are
+     * painted on the thread that writes the pages.
+     *
+     * @param pixels the band height in pixels, 0 to rasterize whole pages
+     */
+    public void setRasterizationBandHeight(int pixels) {
+        this.rasterizationBandHeight = pixels;
+    }
+
     /**
      * Check whether complex script features are enabled.
      *
@@ -650,6 +867,28 @@ public class FOUserAgent {
         return factory.isComplexScriptFeaturesEnabled();
     }
 
+    /**
+     * Returns the number of bytes a single output stream may buffer in memory before it is
+     * moved to a temporary file.
+     *
+     * @return the per-stream memory limit in bytes, -1 for no limit
+     * @see FopFactoryBuilder#setStreamCacheMemoryLimits(int, long)
+     */
+    public int getMaxStreamCacheMemory() {
+        return factory.getMaxStreamCacheMemory();
+    }
+
+    /**
+     * Returns the number of bytes all output streams of a document may buffer in memory
+     * together before further stream data is moved to temporary files.
+     *
+     * @return the per-document memory limit in bytes, -1 for no limit
+     * @see FopFactoryBuilder#setStreamCacheMemoryLimits(int, long)
+     */
+    public long getMaxDocumentStreamCacheMemory() {
+        return factory.getMaxDocumentStreamCacheMemory();
+    }
+
     /**
      * Returns the renderer configuration object for a particular MIME type.
      *
@@ -819,6 +1058,11 @@ public class FOUserAgent {
         return factory.getHyphenationTreeCache();
     }
 
+    /** @see FopFactory#getEncodedStreamCache() */
+    public EncodedStreamCache getEncodedStreamCache() {
+        return factory.getEncodedStreamCache();
+    }
+
     public void setKeepEmptyTags(boolean b) {
         getRendererOptions().put(Accessibility.KEEP_EMPTY_TAGS, b);
     }
@@ -265,6 +265,8 @@ public class FopConfParser {
             }
         }
 
+        configureStreamCache(cfg.getChild("stream-cache", false), strict);
+
         // configure font manager
         new FontManagerConfigurator(cfg, baseURI, fopFactoryBuilder.getBaseURI(), resourceResolver)
                 .configure(fopFactoryBuilder.getFontManager(), strict);
@@ -274,6 +276,21 @@ public class FopConfParser {
     }
 
 
+    private void configureStreamCache(Configuration streamCacheConfig, boolean strict)
+            throws FOPException {
+        if (streamCacheConfig == null) {
+            return;
+        }
+        try {
+            String maxStreamMemory = streamCacheConfig.getAttribute("max-stream-memory", "-1");
+            String maxDocumentMemory = streamCacheConfig.getAttribute("max-document-memory", "-1");
+            fopFactoryBuilder.setStreamCacheMemoryLimits(Integer.parseInt(maxStreamMemory.trim()),
+                    Long.parseLong(maxDocumentMemory.trim()));
+        } catch (NumberFormatException e) {
+            LogUtil.handleException(log, e, strict);
+        }
+    }
+
     private void setHyphenationBase(Configuration cfg, ResourceResolver resourceResolver, URI baseURI,
                                     FopFactoryBuilder fopFactoryBuilder) throws FOPException {
         if (cfg.getChild("hyphenation-base", false) != null) {
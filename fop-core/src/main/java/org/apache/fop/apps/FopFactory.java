@@ -46,6 +46,7 @@ import org.apache.fop.fo.ElementMappingRegistry;
 import org.apache.fop.fonts.FontManager;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
+import org.apache.fop.pdf.EncodedStreamCache;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.RendererConfig;
 import org.apache.fop.render.RendererConfig.RendererConfigParser;
@@ -89,7 +90,9 @@ public final class FopFactory implements ImageContext {
 
     private final Map<String, RendererConfig> rendererConfig;
 
-    private HyphenationTreeCache hyphenationTreeCache;
+    private final HyphenationTreeCache hyphenationTreeCache = new HyphenationTreeCache();
+
+    private final EncodedStreamCache encodedStreamCache = new EncodedStreamCache();
 
     private FopFactory(FopFactoryConfig config) {
         this.config = config;
@@ -176,6 +179,14 @@ public final class FopFactory implements ImageContext {
         return config.isComplexScriptFeaturesEnabled();
     }
 
+    int getMaxStreamCacheMemory() {
+        return config.getMaxStreamCacheMemory();
+    }
+
+    long getMaxDocumentStreamCacheMemory() {
+        return config.getMaxDocumentStreamCacheMemory();
+    }
+
     /**
      * Returns a new {@link Fop} instance. FOP will be configured with a default user agent
      * instance.
@@ -445,9 +456,16 @@ public final class FopFactory implements ImageContext {
     }
 
     public HyphenationTreeCache getHyphenationTreeCache() {
-        if (hyphenationTreeCache == null) {
-            hyphenationTreeCache = new HyphenationTreeCache();
-        }
         return hyphenationTreeCache;
     }
+
+    /**
+     * Returns the cache of encoded PDF stream data (images and ICC profiles) that documents
+     * produced by this factory share. It is disabled until a maximum size is set with
+     * {@link EncodedStreamCache#setMaxSize(long)}.
+     * @return the encoded stream cache
+     */
+    public EncodedStreamCache getEncodedStreamCache() {
+        return encodedStreamCache;
+    }
 }
@@ -327,6 +327,21 @@ public final class FopFactoryBuilder {
         return this;
     }
 
+    /**
+     * Sets the memory limits for the buffers of PDF streams. Stream data is kept on the heap
+     * until a stream grows beyond <code>maxStreamMemory</code> bytes or all streams of the
+     * document together hold more than <code>maxDocumentMemory</code> bytes; after that it is
+     * written to temporary files. By default there is no limit and everything stays in memory.
+     *
+     * @param maxStreamMemory the per-stream limit in bytes, -1 for no limit
+     * @param maxDocumentMemory the per-document limit in bytes, -1 for no limit
+     * @return <code>this</code>
+     */
+    public FopFactoryBuilder setStreamCacheMemoryLimits(int maxStreamMemory, long maxDocumentMemory) {
+        fopFactoryConfigBuilder.setStreamCacheMemoryLimits(maxStreamMemory, maxDocumentMemory);
+        return this;
+    }
+
     public static class FopFactoryConfigImpl implements FopFactoryConfig {
 
         private final EnvironmentProfile enviro;
@@ -368,6 +383,10 @@ public final class FopFactoryBuilder {
 
         private Map<String, String> hyphPatNames;
 
+        private int maxStreamCacheMemory = -1;
+
+        private long maxDocumentStreamCacheMemory = -1;
+
         private static final class ImageContextImpl implements ImageContext {
 
             private final FopFactoryConfig config;
@@ -491,6 +510,16 @@ public final class FopFactoryBuilder {
         public FallbackResolver getFallbackResolver() {
             return enviro.getFallbackResolver();
         }
+
+        /** {@inheritDoc} */
+        public int getMaxStreamCacheMemory() {
+            return maxStreamCacheMemory;
+        }
+
+        /** {@inheritDoc} */
+        public long getMaxDocumentStreamCacheMemory() {
+            return maxDocumentStreamCacheMemory;
+        }
     }
 
     private interface FopFactoryConfigBuilder {
@@ -529,6 +558,8 @@ public final class FopFactoryBuilder {
         void setComplexScriptFeaturesEnabled(boolean csf);
 
         void setHyphPatNames(Map<String, String> hyphPatNames);
+
+        void setStreamCacheMemoryLimits(int maxStreamMemory, long maxDocumentMemory);
     }
 
     private static final class CompletedFopFactoryConfigBuilder implements FopFactoryConfigBuilder {
@@ -613,6 +644,10 @@ public final class FopFactoryBuilder {
             throwIllegalStateException();
         }
 
+        public void setStreamCacheMemoryLimits(int maxStreamMemory, long maxDocumentMemory) {
+            throwIllegalStateException();
+        }
+
     }
 
     private static final class ActiveFopFactoryConfigBuilder implements FopFactoryConfigBuilder {
@@ -697,6 +732,11 @@ public final class FopFactoryBuilder {
         public void setHyphPatNames(Map<String, String> hyphPatNames) {
             config.hyphPatNames = hyphPatNames;
         }
+
+        public void setStreamCacheMemoryLimits(int maxStreamMemory, long maxDocumentMemory) {
+            config.maxStreamCacheMemory = maxStreamMemory;
+            config.maxDocumentStreamCacheMemory = maxDocumentMemory;
+        }
     }
 
 }
@@ -163,6 +163,20 @@ public interface FopFactoryConfig {
 
     boolean isComplexScriptFeaturesEnabled();
 
+    /**
+     * Returns the number of bytes a single PDF stream may keep in memory before its data is
+     * moved to a temporary file.
+     * @return the per-stream memory limit in bytes, -1 for no limit
+     */
+    int getMaxStreamCacheMemory();
+
+    /**
+     * Returns the number of bytes the PDF streams of a document may keep in memory together
+     * before further stream data is moved to temporary files.
+     * @return the per-document memory limit in bytes, -1 for no limit
+     */
+    long getMaxDocumentStreamCacheMemory();
+
     /** @return the hyphenation pattern names */
     Map<String, String> getHyphenationPatternNames();
 
@@ -19,6 +19,7 @@
 
 package org.apache.fop.apps.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -113,6 +114,42 @@ public class InternalResourceResolver {
         return baseUri.resolve(uri);
     }
 
+    /**
+     * Indicates whether resources are obtained through the default resource resolver. Only then
+     * may callers keep data in local files of their own instead of going through the resolver.
+     *
+     * @return true if the default resource resolver is used
+     */
+    public boolean isDefaultResourceResolver() {
+        return ResourceResolverFactory.isDefaultResourceResolver(resourceResolver);
+    }
+
+    /**
+     * Returns the local file a URI resolves to, provided the resource would be read straight
+     * from that file. This allows callers to access the file directly (for example to
+     * memory-map it) without bypassing a custom {@link ResourceResolver}.
+     *
+     * @param uri the URI of the resource
+     * @return the local file or null if the URI doesn't denote an existing local file or
+     *          resources are obtained through a custom resource resolver
+     */
+    public File getLocalFile(URI uri) {
+        if (!isDefaultResourceResolver()) {
+            return null;
+        }
+        URI resolved = resolveFromBase(uri);
+        if (!"file".equals(resolved.getScheme())) {
+            return null;
+        }
+        try {
+            File file = new File(resolved);
+            return file.isFile() ? file : null;
+        } catch (IllegalArgumentException iae) {
+            //e.g. a URI with an authority or a query component
+            return null;
+        }
+    }
+
     /**
      * Performs some sanitation for some of the most common URI syntax mistakes.
      *
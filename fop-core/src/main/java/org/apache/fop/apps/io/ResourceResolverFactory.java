@@ -54,6 +54,17 @@ public final class ResourceResolverFactory {
         return DefaultResourceResolver.INSTANCE;
     }
 
+    /**
+     * Indicates whether the given resolver is the default resource resolver, which reads
+     * resources straight from their URLs.
+     *
+     * @param resolver the resource resolver
+     * @return true if it is the default resolver
+     */
+    static boolean isDefaultResourceResolver(ResourceResolver resolver) {
+        return resolver == DefaultResourceResolver.INSTANCE;
+    }
+
     /**
      * A helper merthod that creates an internal resource resolver using the default resover:
      * {@link ResourceResolverFactory#createDefaultResourceResolver()}.
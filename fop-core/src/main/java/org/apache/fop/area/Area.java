@@ -19,6 +19,9 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
@@ -105,6 +108,11 @@ public class Area extends AreaTreeObject implements Serializable {
      */
     public static final int CLASS_MAX = CLASS_SIDE_FLOAT + 1;
 
+    /* the type tags of serialized trait values */
+    private static final byte TRAIT_OBJECT = 0;
+    private static final byte TRAIT_INTEGER = 1;
+    private static final byte TRAIT_BOOLEAN = 2;
+
     private int areaClass = CLASS_NORMAL;
 
     /** the area's inline-progression-dimension */
@@ -121,9 +129,10 @@ public class Area extends AreaTreeObject implements Serializable {
     protected int bidiLevel = -1;
 
     /**
-     * Traits for this area.
+     * Traits for this area. They are serialized by {@link #writeObject(ObjectOutputStream)},
+     * with the common value types written as primitives.
      */
-    protected TreeMap<Integer, Object> traits;
+    protected transient TreeMap<Integer, Object> traits;
 
     /**
      * logging instance
@@ -162,6 +171,93 @@ public class Area extends AreaTreeObject implements Serializable {
         return this.areaClass;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (traits == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(traits.size());
+        for (Map.Entry<Integer, Object> trait : traits.entrySet()) {
+            out.writeInt(trait.getKey());
+            Object value = trait.getValue();
+            if (value instanceof Integer) {
+                out.writeByte(TRAIT_INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(TRAIT_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else {
+                out.writeByte(TRAIT_OBJECT);
+                out.writeObject(value);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        if (count < 0) {
+            return;
+        }
+        traits = new TreeMap<Integer, Object>();
+        for (int i = 0; i < count; i++) {
+            Integer key = in.readInt();
+            byte type = in.readByte();
+            switch (type) {
+            case TRAIT_INTEGER:
+                traits.put(key, in.readInt());
+                break;
+            case TRAIT_BOOLEAN:
+                traits.put(key, in.readBoolean());
+                break;
+            case TRAIT_OBJECT:
+                traits.put(key, in.readObject());
+                break;
+            default:
+                throw new IOException("Invalid trait type: " + type);
+            }
+        }
+    }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(areaClass);
+        out.writeInt(ipd);
+        out.writeInt(bpd);
+        out.writeInt(effectiveIPD);
+        out.writeInt(bidiLevel);
+        if (traits == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(traits.size());
+            for (Map.Entry<Integer, Object> trait : traits.entrySet()) {
+                out.writeInt(trait.getKey());
+                out.writeValue(trait.getValue());
+            }
+        }
+        out.writeReference(changeBarList);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        areaClass = in.readInt();
+        ipd = in.readInt();
+        bpd = in.readInt();
+        effectiveIPD = in.readInt();
+        bidiLevel = in.readInt();
+        int count = in.readInt();
+        if (count >= 0) {
+            traits = new TreeMap<Integer, Object>();
+            for (int i = 0; i < count; i++) {
+                traits.put(in.readInt(), in.readValue());
+            }
+        }
+        changeBarList = in.readReference();
+    }
+
     /** {@inheritDoc} */
     public Object clone() throws CloneNotSupportedException {
         Area area = (Area) super.clone();
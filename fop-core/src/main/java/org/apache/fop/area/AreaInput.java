@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.expr.PropertyException;
+import org.apache.fop.fonts.FontTriplet;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.Direction;
+import org.apache.fop.traits.Visibility;
+import org.apache.fop.traits.WritingMode;
+import org.apache.fop.util.ColorUtil;
+
+/**
+ * Reads the contents of a page written by {@link AreaOutput}.
+ */
+public final class AreaInput {
+
+    private final DataInputStream in;
+    private final FOUserAgent userAgent;
+    private final List<Object> references;
+
+    private final List<Object> objects = new ArrayList<Object>();
+    private final List<Object> values = new ArrayList<Object>();
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Creates an input for one page.
+     * @param in the stream to read from
+     * @param userAgent the user agent, used to read colors, borders and documents
+     * @param references the objects kept by reference by the {@link AreaOutput}
+     */
+    AreaInput(InputStream in, FOUserAgent userAgent, List<Object> references) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.userAgent = userAgent;
+        this.references = references;
+    }
+
+    /**
+     * Reads a boolean.
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    /**
+     * Reads a character.
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public char readChar() throws IOException {
+        return (char) readInt();
+    }
+
+    /**
+     * Reads an integer.
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        int value = readUnsignedInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readUnsignedInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed integer");
+    }
+
+    /**
+     * Reads a double.
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+
+    /**
+     * Reads a string.
+     * @return the value, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    public String readString() throws IOException {
+        int index = readUnsignedInt();
+        if (index == 0) {
+            return null;
+        } else if (index > 1) {
+            return strings.get(index - 2);
+        }
+        int length = readUnsignedInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int b = in.readUnsignedByte();
+            if ((b & 0x80) == 0) {
+                chars[i] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[i] = (char) (((b & 0x1F) << 6) | (in.readUnsignedByte() & 0x3F));
+            } else {
+                int b2 = in.readUnsignedByte();
+                chars[i] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6)
+                        | (in.readUnsignedByte() & 0x3F));
+            }
+        }
+        String value = new String(chars);
+        strings.add(value);
+        return value;
+    }
+
+    /**
+     * Reads an integer array.
+     * @return the value, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    public int[] readIntArray() throws IOException {
+        int length = readUnsignedInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        int[] value = new int[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = readInt();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a two-dimensional integer array.
+     * @return the value, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    public int[][] readIntArrays() throws IOException {
+        int length = readUnsignedInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        int[][] value = new int[length][];
+        for (int i = 0; i < length; i++) {
+            value[i] = readIntArray();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a rectangle.
+     * @return the value, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    public Rectangle2D readRectangle() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        return new Rectangle2D.Double(readDouble(), readDouble(), readDouble(), readDouble());
+    }
+
+    /**
+     * Reads a DOM document.
+     * @param namespace the namespace of the document element
+     * @return the document, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    public Document readDocument(String namespace) throws IOException {
+        String xml = readString();
+        if (xml == null) {
+            return null;
+        }
+        String qName = readString();
+        try {
+            DOMImplementation domImplementation = userAgent.getElementMappingRegistry()
+                    .getDOMImplementationForNamespace(namespace);
+            if (domImplementation == null) {
+                domImplementation = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .getDOMImplementation();
+            }
+            Document document = domImplementation.createDocument(namespace, qName, null);
+            //the document element is replaced by the parsed one
+            document.removeChild(document.getDocumentElement());
+            TransformerFactory.newInstance().newTransformer().transform(
+                    new StreamSource(new StringReader(xml)), new DOMResult(document));
+            return document;
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        } catch (TransformerException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads a list of values.
+     * @param <T> the type of the values
+     * @return the list, which may be null
+     * @throws IOException if an I/O error occurs
+     * @see #readValue()
+     */
+    public <T> List<T> readList() throws IOException {
+        int size = readUnsignedInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<T> list = new ArrayList<T>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(this.<T>readValue());
+        }
+        return list;
+    }
+
+    /**
+     * Reads an object kept by reference.
+     * @param <T> the type of the object
+     * @return the object, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readReference() throws IOException {
+        int index = readUnsignedInt();
+        return index == 0 ? null : (T) references.get(index - 1);
+    }
+
+    /**
+     * Reads a value written by {@link AreaOutput#writeValue(Object)}.
+     * @param <T> the type of the value
+     * @return the value, which may be null
+     * @throws IOException if an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case PageCodec.NULL:
+            return null;
+        case PageCodec.OBJECT_REFERENCE:
+            return (T) objects.get(readUnsignedInt());
+        case PageCodec.VALUE_REFERENCE:
+            return (T) values.get(readUnsignedInt());
+        case PageCodec.REFERENCE:
+            return (T) readReference();
+        case PageCodec.INTEGER:
+            return (T) Integer.valueOf(readInt());
+        case PageCodec.TRUE:
+            return (T) Boolean.TRUE;
+        case PageCodec.FALSE:
+            return (T) Boolean.FALSE;
+        case PageCodec.STRING:
+            return (T) readString();
+        case PageCodec.COLOR:
+            return (T) addValue(readColor());
+        case PageCodec.FONT_TRIPLET:
+            return (T) addValue(new FontTriplet(readString(), readString(), readInt(), readInt()));
+        case PageCodec.BORDER_PROPS:
+            try {
+                return (T) addValue(BorderProps.valueOf(userAgent, readString()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+        case PageCodec.BACKGROUND:
+            Trait.Background background = new Trait.Background();
+            background.setColor(this.<Color>readValue());
+            background.setURL(readString());
+            background.setImageInfo(this.<ImageInfo>readReference());
+            background.setRepeat(readInt());
+            background.setHoriz(readInt());
+            background.setVertical(readInt());
+            background.setImageTargetWidth(readInt());
+            background.setImageTargetHeight(readInt());
+            return (T) background;
+        case PageCodec.INTERNAL_LINK:
+            return (T) new Trait.InternalLink(readString(), readString());
+        case PageCodec.EXTERNAL_LINK:
+            return (T) new Trait.ExternalLink(readString(), readBoolean());
+        case PageCodec.DIRECTION:
+            return (T) Direction.valueOf(readInt());
+        case PageCodec.WRITING_MODE:
+            return (T) WritingMode.valueOf(readInt());
+        case PageCodec.VISIBILITY:
+            return (T) Visibility.valueOf(readString());
+        case PageCodec.CTM:
+            return (T) new CTM(readDouble(), readDouble(), readDouble(), readDouble(),
+                    readDouble(), readDouble());
+        default:
+            Object obj = PageCodec.newObject(tag);
+            objects.add(obj);
+            if (obj instanceof LinkResolver) {
+                ((LinkResolver) obj).readFields(this);
+            } else {
+                ((AreaTreeObject) obj).readFields(this);
+            }
+            return (T) obj;
+        }
+    }
+
+    private Color readColor() throws IOException {
+        try {
+            return ColorUtil.parseColorString(userAgent, readString());
+        } catch (PropertyException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Object addValue(Object value) {
+        values.add(value);
+        return value;
+    }
+}
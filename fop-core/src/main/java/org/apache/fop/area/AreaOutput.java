@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+
+import org.apache.fop.fonts.FontTriplet;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.Direction;
+import org.apache.fop.traits.Visibility;
+import org.apache.fop.traits.WritingMode;
+import org.apache.fop.util.ColorUtil;
+
+/**
+ * Writes the contents of a page in the tagged format of {@link PageCodec}. Integers are
+ * written as variable-length numbers, so small values take a single byte.
+ */
+public final class AreaOutput {
+
+    private final DataOutputStream out;
+
+    /* the areas and other objects written before, by identity */
+    private final Map<Object, Integer> objects = new IdentityHashMap<Object, Integer>();
+    /* the fonts, colors and border properties written before, by equality */
+    private final Map<Object, Integer> values = new HashMap<Object, Integer>();
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Object, Integer> referenceIndices = new IdentityHashMap<Object, Integer>();
+    private final List<Object> references = new ArrayList<Object>();
+
+    /**
+     * Creates an output for one page.
+     * @param out the stream to write to
+     */
+    AreaOutput(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * Writes a boolean.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    /**
+     * Writes a character.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeChar(char value) throws IOException {
+        writeInt(value);
+    }
+
+    /**
+     * Writes an integer.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeInt(int value) throws IOException {
+        //zigzag encoding, so that small negative values are short too
+        writeUnsignedInt((value << 1) ^ (value >> 31));
+    }
+
+    private void writeUnsignedInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes a double.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeDouble(double value) throws IOException {
+        out.writeDouble(value);
+    }
+
+    /**
+     * Writes a string, which may be null. A string equal to one written before in the page
+     * is written as its index.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeUnsignedInt(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeUnsignedInt(index + 2);
+            return;
+        }
+        strings.put(value, strings.size());
+        writeUnsignedInt(1);
+        int length = value.length();
+        writeUnsignedInt(length);
+        for (int i = 0; i < length; i++) {
+            //the UTF-8 variant of DataOutput, without its limit on the length
+            char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                out.writeByte(c);
+            } else if (c <= 0x07FF) {
+                out.writeByte(0xC0 | (c >> 6));
+                out.writeByte(0x80 | (c & 0x3F));
+            } else {
+                out.writeByte(0xE0 | (c >> 12));
+                out.writeByte(0x80 | ((c >> 6) & 0x3F));
+                out.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes an integer array, which may be null.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeIntArray(int[] value) throws IOException {
+        if (value == null) {
+            writeUnsignedInt(0);
+            return;
+        }
+        writeUnsignedInt(value.length + 1);
+        for (int i : value) {
+            writeInt(i);
+        }
+    }
+
+    /**
+     * Writes a two-dimensional integer array, which may be null, as may be its rows.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeIntArrays(int[][] value) throws IOException {
+        if (value == null) {
+            writeUnsignedInt(0);
+            return;
+        }
+        writeUnsignedInt(value.length + 1);
+        for (int[] row : value) {
+            writeIntArray(row);
+        }
+    }
+
+    /**
+     * Writes a rectangle, which may be null.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeRectangle(Rectangle2D value) throws IOException {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeDouble(value.getX());
+            writeDouble(value.getY());
+            writeDouble(value.getWidth());
+            writeDouble(value.getHeight());
+        }
+    }
+
+    /**
+     * Writes a DOM document as XML, which may be null.
+     * @param document the document
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeDocument(Document document) throws IOException {
+        if (document == null) {
+            writeString(null);
+            return;
+        }
+        StringWriter xml = new StringWriter();
+        try {
+            TransformerFactory.newInstance().newTransformer().transform(
+                    new DOMSource(document), new StreamResult(xml));
+        } catch (TransformerException e) {
+            throw new IOException(e);
+        }
+        writeString(xml.toString());
+        writeString(document.getDocumentElement().getNodeName());
+    }
+
+    /**
+     * Writes a list of values, which may be null.
+     * @param list the list
+     * @throws IOException if an I/O error occurs
+     * @see #writeValue(Object)
+     */
+    public void writeList(List<?> list) throws IOException {
+        if (list == null) {
+            writeUnsignedInt(0);
+            return;
+        }
+        writeUnsignedInt(list.size() + 1);
+        for (Object value : list) {
+            writeValue(value);
+        }
+    }
+
+    /**
+     * Keeps an object by reference instead of writing it, for objects that cannot be
+     * written. The object may be null.
+     * @param obj the object
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeReference(Object obj) throws IOException {
+        if (obj == null) {
+            writeUnsignedInt(0);
+            return;
+        }
+        Integer index = referenceIndices.get(obj);
+        if (index == null) {
+            index = references.size();
+            references.add(obj);
+            referenceIndices.put(obj, index);
+        }
+        writeUnsignedInt(index + 1);
+    }
+
+    /**
+     * Writes a value, which may be null: an area tree object, a link resolver or a trait
+     * value. An area tree object that has been written before in the page is written as its
+     * index, so objects referred to from several places are read back as one object. Values
+     * of any other type are kept by reference.
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(PageCodec.NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(PageCodec.INTEGER);
+            writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? PageCodec.TRUE : PageCodec.FALSE);
+        } else if (value instanceof String) {
+            out.writeByte(PageCodec.STRING);
+            writeString((String) value);
+        } else if (value instanceof Color) {
+            //Color.equals() only compares the sRGB values
+            String color = ColorUtil.colorToString((Color) value);
+            if (!writeValueReference(color)) {
+                out.writeByte(PageCodec.COLOR);
+                writeString(color);
+            }
+        } else if (value instanceof FontTriplet) {
+            if (!writeValueReference(value)) {
+                FontTriplet triplet = (FontTriplet) value;
+                out.writeByte(PageCodec.FONT_TRIPLET);
+                writeString(triplet.getName());
+                writeString(triplet.getStyle());
+                writeInt(triplet.getWeight());
+                writeInt(triplet.getPriority());
+            }
+        } else if (value instanceof BorderProps) {
+            //BorderProps.equals() doesn't tell apart colors with the same sRGB values either
+            String border = value.toString();
+            if (!writeValueReference(border)) {
+                out.writeByte(PageCodec.BORDER_PROPS);
+                writeString(border);
+            }
+        } else if (value instanceof Trait.Background) {
+            Trait.Background background = (Trait.Background) value;
+            out.writeByte(PageCodec.BACKGROUND);
+            writeValue(background.getColor());
+            writeString(background.getURL());
+            writeReference(background.getImageInfo());
+            writeInt(background.getRepeat());
+            writeInt(background.getHoriz());
+            writeInt(background.getVertical());
+            writeInt(background.getImageTargetWidth());
+            writeInt(background.getImageTargetHeight());
+        } else if (value instanceof Trait.InternalLink) {
+            Trait.InternalLink link = (Trait.InternalLink) value;
+            out.writeByte(PageCodec.INTERNAL_LINK);
+            writeString(link.getPVKey());
+            writeString(link.getIDRef());
+        } else if (value instanceof Trait.ExternalLink) {
+            Trait.ExternalLink link = (Trait.ExternalLink) value;
+            out.writeByte(PageCodec.EXTERNAL_LINK);
+            writeString(link.getDestination());
+            writeBoolean(link.newWindow());
+        } else if (value instanceof Direction) {
+            out.writeByte(PageCodec.DIRECTION);
+            writeInt(((Direction) value).getEnumValue());
+        } else if (value instanceof WritingMode) {
+            out.writeByte(PageCodec.WRITING_MODE);
+            writeInt(((WritingMode) value).getEnumValue());
+        } else if (value instanceof Visibility) {
+            out.writeByte(PageCodec.VISIBILITY);
+            writeString(((Visibility) value).getName());
+        } else if (value instanceof CTM) {
+            out.writeByte(PageCodec.CTM);
+            for (double d : ((CTM) value).toArray()) {
+                writeDouble(d);
+            }
+        } else {
+            writeObject(value);
+        }
+    }
+
+    private boolean writeValueReference(Object key) throws IOException {
+        Integer index = values.get(key);
+        if (index != null) {
+            out.writeByte(PageCodec.VALUE_REFERENCE);
+            writeUnsignedInt(index);
+            return true;
+        }
+        values.put(key, values.size());
+        return false;
+    }
+
+    private void writeObject(Object obj) throws IOException {
+        Integer index = objects.get(obj);
+        if (index != null) {
+            out.writeByte(PageCodec.OBJECT_REFERENCE);
+            writeUnsignedInt(index);
+            return;
+        }
+        byte tag = PageCodec.getObjectTag(obj);
+        if (tag < 0) {
+            out.writeByte(PageCodec.REFERENCE);
+            writeReference(obj);
+            return;
+        }
+        objects.put(obj, objects.size());
+        out.writeByte(tag);
+        if (obj instanceof LinkResolver) {
+            ((LinkResolver) obj).writeFields(this);
+        } else {
+            ((AreaTreeObject) obj).writeFields(this);
+        }
+    }
+
+    /**
+     * Flushes the written page to the underlying stream.
+     * @throws IOException if an I/O error occurs
+     */
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Returns the objects kept by reference.
+     * @return the objects, in the order of their indices
+     */
+    List<Object> getReferences() {
+        return references;
+    }
+}
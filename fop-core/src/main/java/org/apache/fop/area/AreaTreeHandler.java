@@ -23,6 +23,9 @@ package org.apache.fop.area;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xml.sax.SAXException;
 
@@ -41,6 +44,8 @@ import org.apache.fop.fo.pagination.AbstractPageSequence;
 import org.apache.fop.fo.pagination.PageSequence;
 import org.apache.fop.fo.pagination.Root;
 import org.apache.fop.fo.pagination.bookmarks.BookmarkTree;
+import org.apache.fop.fonts.Font;
+import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.ExternalDocumentLayoutManager;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
 import org.apache.fop.layoutmgr.LayoutManagerMapping;
@@ -64,6 +69,8 @@ public class AreaTreeHandler extends FOEventHandler {
 
     private static Log log = LogFactory.getLog(AreaTreeHandler.class);
 
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
     // Recorder of debug statistics
     private Statistics statistics;
 
@@ -87,8 +94,16 @@ public class AreaTreeHandler extends FOEventHandler {
 
     private TopLevelLayoutManager prevPageSeqLM;
 
+    // Lays out independent page-sequences concurrently, null for serial layout
+    private ParallelPageSequenceLayout parallelLayout;
+
+    // Breaks paragraphs into lines ahead of layout, null for serial line breaking
+    private ForkJoinPool lineBreakingPool;
+
     private int idGen;
 
+    private final AtomicInteger reusableContentCounter = new AtomicInteger();
+
     /**
      * Constructor.
      *
@@ -195,6 +210,37 @@ public class AreaTreeHandler extends FOEventHandler {
         if (statistics != null) {
             statistics.start();
         }
+        int layoutThreads = getUserAgent().getPageSequenceLayoutThreads();
+        if (layoutThreads > 1) {
+            parallelLayout = new ParallelPageSequenceLayout(this, layoutThreads);
+        }
+        int lineBreakingThreads = getUserAgent().getLineBreakingThreads();
+        if (lineBreakingThreads > 1) {
+            lineBreakingPool = createLineBreakingPool(lineBreakingThreads);
+        }
+    }
+
+    private static ForkJoinPool createLineBreakingPool(int threads) {
+        final String prefix = "FOP line breaking " + POOL_COUNTER.incrementAndGet() + "-";
+        return new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) { };
+                thread.setName(prefix + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, null, false);
+    }
+
+    /**
+     * Returns the pool on which the layout managers break paragraphs into lines ahead of
+     * layout.
+     * @return the line-breaking pool, or null if paragraphs are broken into lines serially
+     */
+    public ForkJoinPool getLineBreakingPool() {
+        return lineBreakingPool;
     }
 
     @Override
@@ -236,6 +282,13 @@ public class AreaTreeHandler extends FOEventHandler {
             }
         }
 
+        if (parallelLayout != null) {
+            parallelLayout.startNextPageSequence(pageSequence.getInitialPageNumber());
+            if (!ParallelPageSequenceLayout.hasIndependentPageNumbers(pageSequence)) {
+                // the starting page number depends on all preceding page-sequences
+                parallelLayout.mergeAll();
+            }
+        }
         finishPrevPageSequence(pageSequence.getInitialPageNumber());
         pageSequence.initPageNumber();
     }
@@ -261,6 +314,13 @@ public class AreaTreeHandler extends FOEventHandler {
 
         // If no main flow, nothing to layout!
         if (pageSequence.getMainFlow() != null) {
+            if (parallelLayout != null) {
+                if (ParallelPageSequenceLayout.isIndependent(pageSequence)) {
+                    parallelLayout.submit(pageSequence);
+                    return;
+                }
+                parallelLayout.mergeAll();
+            }
             PageSequenceLayoutManager pageSLM;
             pageSLM = getLayoutManagerMaker().makePageSequenceLayoutManager(
                     this, pageSequence);
@@ -316,6 +376,9 @@ public class AreaTreeHandler extends FOEventHandler {
     @Override
     public void endDocument() throws SAXException {
 
+        if (parallelLayout != null) {
+            parallelLayout.finish();
+        }
         finishPrevPageSequence(null);
         // process fox:destination elements
         if (rootFObj != null) {
@@ -339,13 +402,34 @@ public class AreaTreeHandler extends FOEventHandler {
             }
             idTracker.signalIDProcessed(rootFObj.getId());
         }
-        model.endDocument();
+        try {
+            model.endDocument();
+        } finally {
+            if (lineBreakingPool != null) {
+                lineBreakingPool.shutdown();
+            }
+        }
 
         if (statistics != null) {
             statistics.logResults();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * Stops the threads laying out page-sequences concurrently and breaking paragraphs into
+     * lines.
+     */
+    @Override
+    public void abortDocument() {
+        if (parallelLayout != null) {
+            parallelLayout.abort();
+        }
+        if (lineBreakingPool != null) {
+            lineBreakingPool.shutdownNow();
+        }
+    }
+
     /**
      * Add a OffDocumentItem to the area tree model. This checks if the
      * OffDocumentItem is resolvable and attempts to resolve or add the
@@ -387,6 +471,16 @@ public class AreaTreeHandler extends FOEventHandler {
         return "P" + this.idGen;
     }
 
+    /**
+     * Generates and returns a unique key for content that is repeated on several pages.
+     * Page-sequences may be laid out concurrently, so this method is thread-safe.
+     *
+     * @return the generated key
+     */
+    public String generateReusableContentKey() {
+        return "C" + reusableContentCounter.incrementAndGet();
+    }
+
     /**
      * Tie a PageViewport with an ID found on a child area of the PV. Note that
      * an area with a given ID may be on more than one PV, hence an ID may have
@@ -526,6 +620,17 @@ public class AreaTreeHandler extends FOEventHandler {
                         / (double) timeUsed) : -1);
                 log.debug("Avg render time: " + perPage + "ms/page (" + ppm + "pages/min)");
             }
+            HyphenationTreeCache hyphenationCache = foUserAgent.getHyphenationTreeCache();
+            if (hyphenationCache != null) {
+                log.debug("Hyphenations: " + hyphenationCache.getHitCount() + " cached, "
+                        + hyphenationCache.getMissCount() + " computed");
+            }
+            if (fontInfo != null) {
+                for (Font font : fontInfo.getFontInstances()) {
+                    log.debug("Word widths " + font.getFontName() + " " + font.getFontSize() + ": "
+                            + font.getWordWidthCache());
+                }
+            }
         }
     }
 }
@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -146,4 +147,42 @@ public abstract class AreaTreeObject implements Cloneable {
         return this.extensionAttachments != null && !this.extensionAttachments.isEmpty();
     }
 
+    /**
+     * Writes the fields of this object when its page is saved. Subclasses that add fields
+     * write them after calling this method.
+     * @param out the output to write to
+     * @throws IOException if an I/O error occurs
+     * @see PageViewport#savePage(AreaOutput)
+     */
+    protected void writeFields(AreaOutput out) throws IOException {
+        if (foreignAttributes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(foreignAttributes.size());
+            for (Map.Entry<QName, String> attribute : foreignAttributes.entrySet()) {
+                out.writeString(attribute.getKey().getNamespaceURI());
+                out.writeString(attribute.getKey().getQName());
+                out.writeString(attribute.getValue());
+            }
+        }
+        out.writeReference(extensionAttachments);
+    }
+
+    /**
+     * Reads the fields written by {@link #writeFields(AreaOutput)} when the page of this
+     * object is loaded.
+     * @param in the input to read from
+     * @throws IOException if an I/O error occurs
+     */
+    protected void readFields(AreaInput in) throws IOException {
+        int count = in.readInt();
+        if (count >= 0) {
+            foreignAttributes = new HashMap<QName, String>();
+            for (int i = 0; i < count; i++) {
+                foreignAttributes.put(new QName(in.readString(), in.readString()), in.readString());
+            }
+        }
+        extensionAttachments = in.readReference();
+    }
+
 }
@@ -19,6 +19,8 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
+
 /**
  * The before-float-reference-area optionally generated by an fo:region-body.
  * It has an optional separator and before float block children.
@@ -71,5 +73,17 @@ public class BeforeFloat extends BlockParent {
     public boolean isEmpty() {
         return true; // before floats are not yet implemented
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(separator);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        separator = in.readValue();
+    }
 }
 
@@ -200,5 +200,21 @@ public class Block extends BlockParent {
             ipd = effectiveIPD;
         }
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(positioning);
+        out.writeReference(locale);
+        out.writeString(location);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        positioning = in.readInt();
+        locale = in.readReference();
+        location = in.readString();
+    }
 }
 
@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -144,4 +145,20 @@ public class BlockParent extends Area {
             }
         }
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(xOffset);
+        out.writeInt(yOffset);
+        out.writeList(children);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        xOffset = in.readInt();
+        yOffset = in.readInt();
+        children = in.readList();
+    }
 }
@@ -20,6 +20,7 @@
 package org.apache.fop.area;
 
 import java.awt.Rectangle;
+import java.io.IOException;
 
 /**
  * A BlockViewport.
@@ -97,5 +98,19 @@ public class BlockViewport extends Block implements Viewport  {
     public int getEffectiveIPD() {
         return getIPD();
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeBoolean(clip);
+        out.writeValue(viewportCTM);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        clip = in.readBoolean();
+        viewportCTM = in.readValue();
+    }
 }
 
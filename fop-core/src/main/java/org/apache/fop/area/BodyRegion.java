@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.fop.fo.pagination.RegionBody;
@@ -160,6 +161,26 @@ public class BodyRegion extends RegionReference {
         }
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(beforeFloat);
+        out.writeValue(mainReference);
+        out.writeValue(footnote);
+        out.writeInt(columnGap);
+        out.writeInt(columnCount);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        beforeFloat = in.readValue();
+        mainReference = in.readValue();
+        footnote = in.readValue();
+        columnGap = in.readInt();
+        columnCount = in.readInt();
+    }
+
     /** {@inheritDoc} */
     public Object clone() throws CloneNotSupportedException {
         BodyRegion br = (BodyRegion) super.clone();
@@ -20,15 +20,15 @@
 package org.apache.fop.area;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.xml.sax.SAXException;
@@ -46,10 +46,19 @@ import org.apache.fop.fonts.FontInfo;
  * If the page is prepared for later rendering then this saves
  * the page contents to a file and once the page is resolved
  * the contents are reloaded.
+ * <p>
+ * The page contents are encoded by a {@link PageCodec}. Encoded pages are kept in memory as
+ * long as they fit in the size given by {@link FOUserAgent#getConserveMemoryCacheSize()}, the
+ * other ones are streamed to temporary files.
  */
 public class CachedRenderPagesModel extends RenderPagesModel {
 
-    private Map<PageViewport, URI> pageMap = new HashMap<PageViewport, URI>();
+    private Map<PageViewport, SavedPage> pageMap = new HashMap<PageViewport, SavedPage>();
+
+    private final PageCodec codec;
+
+    private final long memoryCacheSize;
+    private long memoryCacheUsed;
 
     /** Base directory to save temporary file in, typically points to the user's temp dir. */
     private final URI tempBaseURI;
@@ -68,6 +77,8 @@ public class CachedRenderPagesModel extends RenderPagesModel {
             FontInfo fontInfo, OutputStream stream) throws FOPException {
         super(userAgent, outputFormat, fontInfo, stream);
         tempBaseURI = TEMP_URI_GENERATOR.generate();
+        memoryCacheSize = userAgent.getConserveMemoryCacheSize();
+        codec = new PageCodec(userAgent);
     }
 
     /** {@inheritDoc} */
@@ -79,16 +90,7 @@ public class CachedRenderPagesModel extends RenderPagesModel {
                 if (pageViewport != newpage) {
                     try {
                         // load page from cache
-                        URI tempURI = pageMap.get(pageViewport);
-                        log.debug("Loading page from: " + tempURI);
-                        InputStream inStream = renderer.getUserAgent().getResourceResolver().getResource(tempURI);
-                        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(inStream));
-                        try {
-                            pageViewport.loadPage(in);
-                        } finally {
-                            IOUtils.closeQuietly(inStream);
-                            IOUtils.closeQuietly(in);
-                        }
+                        loadPage(pageViewport, pageMap.get(pageViewport));
                         pageMap.remove(pageViewport);
                     } catch (Exception e) {
                         AreaEventProducer eventProducer = AreaEventProducer.Provider.get(
@@ -115,27 +117,34 @@ public class CachedRenderPagesModel extends RenderPagesModel {
 
     /**
      * Save a page.
-     * It saves the contents of the page to a file.
+     * It saves the contents of the page to memory or to a file.
      *
      * @param page the page to prepare
      */
     protected void savePage(PageViewport page) {
         try {
             // save page to cache
-            ObjectOutputStream tempstream;
             String fname = "/fop-page-" + page.getPageIndex() + ".ser";
             URI tempURI = URI.create(tempBaseURI + fname);
-            OutputStream outStream = renderer.getUserAgent().getResourceResolver().getOutputStream(tempURI);
-            tempstream = new ObjectOutputStream(new BufferedOutputStream(outStream));
+            PageCacheOutputStream out = new PageCacheOutputStream(
+                    memoryCacheSize - memoryCacheUsed, tempURI);
+            List<Object> references;
             try {
-                page.savePage(tempstream);
+                references = codec.encode(page, out);
             } finally {
-                IOUtils.closeQuietly(tempstream);
+                IOUtils.closeQuietly(out);
             }
-            pageMap.put(page, tempURI);
-            if (log.isDebugEnabled()) {
-                log.debug("Page saved to temporary file: " + tempURI);
+            SavedPage savedPage;
+            if (out.memory != null) {
+                savedPage = new SavedPage(out.memory.toByteArray(), null, references);
+                memoryCacheUsed += savedPage.data.length;
+            } else {
+                savedPage = new SavedPage(null, tempURI, references);
+                if (log.isDebugEnabled()) {
+                    log.debug("Page saved to temporary file: " + tempURI);
+                }
             }
+            pageMap.put(page, savedPage);
         } catch (IOException ioe) {
             AreaEventProducer eventProducer
                 = AreaEventProducer.Provider.get(
@@ -144,6 +153,92 @@ public class CachedRenderPagesModel extends RenderPagesModel {
         }
     }
 
+    private void loadPage(PageViewport page, SavedPage savedPage) throws IOException {
+        InputStream inStream;
+        if (savedPage.data != null) {
+            memoryCacheUsed -= savedPage.data.length;
+            inStream = new ByteArrayInputStream(savedPage.data);
+        } else {
+            log.debug("Loading page from: " + savedPage.tempURI);
+            inStream = new BufferedInputStream(
+                    renderer.getUserAgent().getResourceResolver().getResource(savedPage.tempURI));
+        }
+        try {
+            codec.decode(page, inStream, savedPage.references);
+        } finally {
+            IOUtils.closeQuietly(inStream);
+        }
+    }
+
+    /** An encoded page, kept in memory or written to a temporary file. */
+    private static final class SavedPage {
+
+        private final byte[] data;
+        private final URI tempURI;
+        private final List<Object> references;
+
+        SavedPage(byte[] data, URI tempURI, List<Object> references) {
+            this.data = data;
+            this.tempURI = tempURI;
+            this.references = references;
+        }
+    }
+
+    /**
+     * Keeps an encoded page in memory until it outgrows the space left in the memory cache,
+     * then moves it to a temporary file and streams the rest of it there.
+     */
+    private final class PageCacheOutputStream extends OutputStream {
+
+        private final long memoryLimit;
+        private final URI tempURI;
+        private ByteArrayOutputStream memory;
+        private OutputStream file;
+
+        PageCacheOutputStream(long memoryLimit, URI tempURI) {
+            this.memoryLimit = memoryLimit;
+            this.tempURI = tempURI;
+            if (memoryLimit > 0) {
+                memory = new ByteArrayOutputStream();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (file == null) {
+                if (memory != null && memory.size() + len <= memoryLimit) {
+                    memory.write(b, off, len);
+                    return;
+                }
+                file = renderer.getUserAgent().getResourceResolver().getOutputStream(tempURI);
+                if (memory != null) {
+                    memory.writeTo(file);
+                    memory = null;
+                }
+            }
+            file.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (file != null) {
+                file.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void endDocument() throws SAXException {
@@ -19,6 +19,8 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
+
 // may combine with before float into a conditional area
 
 /**
@@ -86,5 +88,18 @@ public class Footnote extends BlockParent {
         setBPD(getBPD() + child.getAllocBPD());
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(separator);
+        out.writeInt(top);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        separator = in.readValue();
+        top = in.readInt();
+    }
 }
 
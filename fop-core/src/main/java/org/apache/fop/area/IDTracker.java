@@ -239,6 +239,47 @@ public class IDTracker {
         todo.add(res);
     }
 
+    /**
+     * Takes over the state of an IDTracker that was used to lay out a single page-sequence
+     * on its own (see {@link org.apache.fop.apps.FOUserAgent#setPageSequenceLayoutThreads(int)}).
+     * ID locations are added in the order of the other tracker's page viewports so that
+     * references from earlier page-sequences resolve exactly as in serial layout, and idrefs
+     * that could not be resolved within the page-sequence are resolved or queued here.
+     * Must be called in document order, before the page-sequence's pages are added to the
+     * area tree model.
+     *
+     * @param other the IDTracker of a page-sequence that has been laid out
+     */
+    public void merge(IDTracker other) {
+        for (Map.Entry<String, List<PageViewport>> entry : other.idLocations.entrySet()) {
+            String id = entry.getKey();
+            boolean wasPending = unfinishedIDs.contains(id);
+            //hold back resolution until all page viewports for the id are known
+            unfinishedIDs.add(id);
+            for (PageViewport pv : entry.getValue()) {
+                associateIDWithPageViewport(id, pv);
+            }
+            if (!wasPending && !other.unfinishedIDs.contains(id)) {
+                signalIDProcessed(id);
+            }
+        }
+        unfinishedIDs.addAll(other.unfinishedIDs);
+        alreadyResolvedIDs.addAll(other.alreadyResolvedIDs);
+        for (Map.Entry<String, Set<Resolvable>> entry : other.unresolvedIDRefs.entrySet()) {
+            String idref = entry.getKey();
+            List<PageViewport> pvList = idLocations.get(idref);
+            boolean resolvable = pvList != null && !pvList.isEmpty()
+                    && !unfinishedIDs.contains(idref);
+            for (Resolvable res : entry.getValue()) {
+                if (resolvable) {
+                    res.resolveIDRef(idref, pvList);
+                } else {
+                    addUnresolvedIDRef(idref, res);
+                }
+            }
+        }
+    }
+
     /**
      * Replace all id locations pointing to the old page view port with a new one. This is
      * necessary when a layouted page is replaced with a new one (e.g. last page handling).
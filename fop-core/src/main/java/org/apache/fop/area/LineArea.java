@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -295,5 +296,30 @@ public class LineArea extends Area {
         return maxIPD;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeBoolean(adjustingInfo != null);
+        if (adjustingInfo != null) {
+            out.writeInt(adjustingInfo.lineAlignment);
+            out.writeInt(adjustingInfo.difference);
+            out.writeInt(adjustingInfo.availableStretch);
+            out.writeInt(adjustingInfo.availableShrink);
+            out.writeDouble(adjustingInfo.variationFactor);
+            out.writeBoolean(adjustingInfo.bAddedToAreaTree);
+        }
+        out.writeList(inlineAreas);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        if (in.readBoolean()) {
+            adjustingInfo = new LineAdjustingInfo(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            adjustingInfo.variationFactor = in.readDouble();
+            adjustingInfo.bAddedToAreaTree = in.readBoolean();
+        }
+        inlineAreas = in.readList();
+    }
 }
 
@@ -121,4 +121,27 @@ public class LinkResolver implements Resolvable, Serializable {
         }
     }
 
+    /**
+     * Writes the fields of this resolver when the page of its area is saved.
+     * @param out the output to write to
+     * @throws IOException if an I/O error occurs
+     */
+    void writeFields(AreaOutput out) throws IOException {
+        out.writeBoolean(resolved);
+        out.writeString(idRef);
+        out.writeValue(area);
+        out.writeList(dependents);
+    }
+
+    /**
+     * Reads the fields written by {@link #writeFields(AreaOutput)}.
+     * @param in the input to read from
+     * @throws IOException if an I/O error occurs
+     */
+    void readFields(AreaInput in) throws IOException {
+        resolved = in.readBoolean();
+        idRef = in.readString();
+        area = in.readValue();
+        dependents = in.readList();
+    }
 }
@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -137,5 +138,20 @@ public class MainReference extends Area {
         }
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(parent);
+        out.writeList(spanAreas);
+        out.writeBoolean(isEmpty);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        parent = in.readValue();
+        spanAreas = in.readList();
+        isEmpty = in.readBoolean();
+    }
 }
 
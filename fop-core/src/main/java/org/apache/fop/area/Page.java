@@ -21,7 +21,9 @@ package org.apache.fop.area;
 
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -278,6 +280,44 @@ public class Page extends AreaTreeObject implements Serializable {
         return p;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(regionBefore);
+        out.writeValue(regionStart);
+        out.writeValue(regionBody);
+        out.writeValue(regionEnd);
+        out.writeValue(regionAfter);
+        if (unresolved == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(unresolved.size());
+            for (Map.Entry<String, List<Resolvable>> e : unresolved.entrySet()) {
+                out.writeString(e.getKey());
+                out.writeList(e.getValue());
+            }
+        }
+        out.writeBoolean(fakeNonEmpty);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        regionBefore = in.readValue();
+        regionStart = in.readValue();
+        regionBody = in.readValue();
+        regionEnd = in.readValue();
+        regionAfter = in.readValue();
+        int count = in.readInt();
+        if (count >= 0) {
+            unresolved = new HashMap<String, List<Resolvable>>();
+            for (int i = 0; i < count; i++) {
+                unresolved.put(in.readString(), in.<Resolvable>readList());
+            }
+        }
+        fakeNonEmpty = in.readBoolean();
+    }
+
     /**
      * Set the unresolved references on this page for serializing.
      *
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.area.inline.Anchor;
+import org.apache.fop.area.inline.BasicLinkArea;
+import org.apache.fop.area.inline.Container;
+import org.apache.fop.area.inline.FilledArea;
+import org.apache.fop.area.inline.ForeignObject;
+import org.apache.fop.area.inline.Image;
+import org.apache.fop.area.inline.InlineArea;
+import org.apache.fop.area.inline.InlineBlock;
+import org.apache.fop.area.inline.InlineBlockParent;
+import org.apache.fop.area.inline.InlineParent;
+import org.apache.fop.area.inline.InlineViewport;
+import org.apache.fop.area.inline.Leader;
+import org.apache.fop.area.inline.ResolvedPageNumber;
+import org.apache.fop.area.inline.Space;
+import org.apache.fop.area.inline.SpaceArea;
+import org.apache.fop.area.inline.TextArea;
+import org.apache.fop.area.inline.UnresolvedPageNumber;
+import org.apache.fop.area.inline.WordArea;
+
+/**
+ * Encodes the contents of pages into a compact tagged format and decodes them again. Every
+ * value is written as a type tag followed by its content. The area tree objects write their
+ * own fields, see {@link AreaTreeObject#writeFields(AreaOutput)}. Strings, fonts, colors and
+ * border properties that occur more than once in a page are written once and referred to
+ * by index afterwards, and so are the areas referred to from several places. These tables
+ * only live for the page being encoded or decoded.
+ * <p>
+ * Objects that cannot be encoded, such as extension attachments, change bars and image
+ * information, are kept by reference in a list that has to be passed to
+ * {@link #decode(PageViewport, InputStream, List)} together with the encoded page.
+ */
+final class PageCodec {
+
+    /* the type tags of values */
+    static final byte NULL = 0;
+    /** An object written before in the same page, followed by its index */
+    static final byte OBJECT_REFERENCE = 1;
+    /** A value equal to one written before in the same page, followed by its index */
+    static final byte VALUE_REFERENCE = 2;
+    /** An object kept by reference, followed by its index in the list of references */
+    static final byte REFERENCE = 3;
+    static final byte INTEGER = 4;
+    static final byte TRUE = 5;
+    static final byte FALSE = 6;
+    static final byte STRING = 7;
+    static final byte COLOR = 8;
+    static final byte FONT_TRIPLET = 9;
+    static final byte BORDER_PROPS = 10;
+    static final byte BACKGROUND = 11;
+    static final byte INTERNAL_LINK = 12;
+    static final byte EXTERNAL_LINK = 13;
+    static final byte DIRECTION = 14;
+    static final byte WRITING_MODE = 15;
+    static final byte VISIBILITY = 16;
+    static final byte CTM = 17;
+
+    /* the type tags of the objects that write their own fields */
+    static final byte LINK_RESOLVER = 32;
+    static final byte PAGE = 33;
+    static final byte REGION_VIEWPORT = 34;
+    static final byte REGION_REFERENCE = 35;
+    static final byte BODY_REGION = 36;
+    static final byte MAIN_REFERENCE = 37;
+    static final byte SPAN = 38;
+    static final byte NORMAL_FLOW = 39;
+    static final byte BEFORE_FLOAT = 40;
+    static final byte FOOTNOTE = 41;
+    static final byte BLOCK = 42;
+    static final byte BLOCK_VIEWPORT = 43;
+    static final byte SIDE_FLOAT = 44;
+    static final byte LINE_AREA = 45;
+    static final byte INLINE_AREA = 46;
+    static final byte INLINE_PARENT = 47;
+    static final byte INLINE_BLOCK = 48;
+    static final byte INLINE_BLOCK_PARENT = 49;
+    static final byte INLINE_VIEWPORT = 50;
+    static final byte TEXT_AREA = 51;
+    static final byte WORD_AREA = 52;
+    static final byte SPACE_AREA = 53;
+    static final byte SPACE = 54;
+    static final byte ANCHOR = 55;
+    static final byte LEADER = 56;
+    static final byte FILLED_AREA = 57;
+    static final byte BASIC_LINK_AREA = 58;
+    static final byte UNRESOLVED_PAGE_NUMBER = 59;
+    static final byte RESOLVED_PAGE_NUMBER = 60;
+    static final byte CONTAINER = 61;
+    static final byte IMAGE = 62;
+    static final byte FOREIGN_OBJECT = 63;
+
+    private static final Map<Class<?>, Byte> OBJECT_TAGS = new HashMap<Class<?>, Byte>();
+
+    static {
+        OBJECT_TAGS.put(LinkResolver.class, LINK_RESOLVER);
+        OBJECT_TAGS.put(Page.class, PAGE);
+        OBJECT_TAGS.put(RegionViewport.class, REGION_VIEWPORT);
+        OBJECT_TAGS.put(RegionReference.class, REGION_REFERENCE);
+        OBJECT_TAGS.put(BodyRegion.class, BODY_REGION);
+        OBJECT_TAGS.put(MainReference.class, MAIN_REFERENCE);
+        OBJECT_TAGS.put(Span.class, SPAN);
+        OBJECT_TAGS.put(NormalFlow.class, NORMAL_FLOW);
+        OBJECT_TAGS.put(BeforeFloat.class, BEFORE_FLOAT);
+        OBJECT_TAGS.put(Footnote.class, FOOTNOTE);
+        OBJECT_TAGS.put(Block.class, BLOCK);
+        OBJECT_TAGS.put(BlockViewport.class, BLOCK_VIEWPORT);
+        OBJECT_TAGS.put(SideFloat.class, SIDE_FLOAT);
+        OBJECT_TAGS.put(LineArea.class, LINE_AREA);
+        OBJECT_TAGS.put(InlineArea.class, INLINE_AREA);
+        OBJECT_TAGS.put(InlineParent.class, INLINE_PARENT);
+        OBJECT_TAGS.put(InlineBlock.class, INLINE_BLOCK);
+        OBJECT_TAGS.put(InlineBlockParent.class, INLINE_BLOCK_PARENT);
+        OBJECT_TAGS.put(InlineViewport.class, INLINE_VIEWPORT);
+        OBJECT_TAGS.put(TextArea.class, TEXT_AREA);
+        OBJECT_TAGS.put(WordArea.class, WORD_AREA);
+        OBJECT_TAGS.put(SpaceArea.class, SPACE_AREA);
+        OBJECT_TAGS.put(Space.class, SPACE);
+        OBJECT_TAGS.put(Anchor.class, ANCHOR);
+        OBJECT_TAGS.put(Leader.class, LEADER);
+        OBJECT_TAGS.put(FilledArea.class, FILLED_AREA);
+        OBJECT_TAGS.put(BasicLinkArea.class, BASIC_LINK_AREA);
+        OBJECT_TAGS.put(UnresolvedPageNumber.class, UNRESOLVED_PAGE_NUMBER);
+        OBJECT_TAGS.put(ResolvedPageNumber.class, RESOLVED_PAGE_NUMBER);
+        OBJECT_TAGS.put(Container.class, CONTAINER);
+        OBJECT_TAGS.put(Image.class, IMAGE);
+        OBJECT_TAGS.put(ForeignObject.class, FOREIGN_OBJECT);
+    }
+
+    private final FOUserAgent userAgent;
+
+    /**
+     * Creates a page codec.
+     * @param userAgent the user agent, used to decode colors, borders and foreign objects
+     */
+    PageCodec(FOUserAgent userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Encodes the contents of a page and removes them from the page viewport.
+     * @param pageViewport the page viewport
+     * @param out the stream to write the encoded page to, which is not closed
+     * @return the objects the encoded page refers to
+     * @throws IOException if the page cannot be encoded
+     */
+    List<Object> encode(PageViewport pageViewport, OutputStream out) throws IOException {
+        AreaOutput areaOut = new AreaOutput(out);
+        pageViewport.savePage(areaOut);
+        areaOut.flush();
+        return areaOut.getReferences();
+    }
+
+    /**
+     * Decodes the contents of a page encoded by {@link #encode(PageViewport, OutputStream)}
+     * and sets them on the page viewport.
+     * @param pageViewport the page viewport
+     * @param in the stream to read the encoded page from, which is not closed
+     * @param references the objects returned by the encoder
+     * @throws IOException if the page cannot be decoded
+     */
+    void decode(PageViewport pageViewport, InputStream in, List<Object> references)
+            throws IOException {
+        pageViewport.loadPage(new AreaInput(in, userAgent, references));
+    }
+
+    /**
+     * Returns the tag of an object that writes its own fields.
+     * @param obj the object
+     * @return the tag, or -1 if the object's class doesn't have one
+     */
+    static byte getObjectTag(Object obj) {
+        Byte tag = OBJECT_TAGS.get(obj.getClass());
+        return tag != null ? tag : -1;
+    }
+
+    /**
+     * Creates an empty object for a tag returned by {@link #getObjectTag(Object)}. Its fields
+     * are set when it reads them.
+     * @param tag the tag
+     * @return the new object
+     * @throws IOException if the tag is not the tag of an object
+     */
+    static Object newObject(byte tag) throws IOException {
+        switch (tag) {
+        case LINK_RESOLVER:
+            return new LinkResolver();
+        case PAGE:
+            return new Page();
+        case REGION_VIEWPORT:
+            return new RegionViewport(null);
+        case REGION_REFERENCE:
+            return new RegionReference(0, null, null);
+        case BODY_REGION:
+            return new BodyRegion(0, null, null, 1, 0);
+        case MAIN_REFERENCE:
+            return new MainReference(null);
+        case SPAN:
+            return new Span(1, 0, 0);
+        case NORMAL_FLOW:
+            return new NormalFlow(0);
+        case BEFORE_FLOAT:
+            return new BeforeFloat();
+        case FOOTNOTE:
+            return new Footnote();
+        case BLOCK:
+            return new Block();
+        case BLOCK_VIEWPORT:
+            return new BlockViewport();
+        case SIDE_FLOAT:
+            return new SideFloat();
+        case LINE_AREA:
+            return new LineArea();
+        case INLINE_AREA:
+            return new InlineArea();
+        case INLINE_PARENT:
+            return new InlineParent();
+        case INLINE_BLOCK:
+            return new InlineBlock(null);
+        case INLINE_BLOCK_PARENT:
+            return new InlineBlockParent();
+        case INLINE_VIEWPORT:
+            return new InlineViewport(null);
+        case TEXT_AREA:
+            return new TextArea();
+        case WORD_AREA:
+            return new WordArea(0, -1, null, null, null, null);
+        case SPACE_AREA:
+            return new SpaceArea(0, -1, ' ', false);
+        case SPACE:
+            return new Space();
+        case ANCHOR:
+            return new Anchor();
+        case LEADER:
+            return new Leader();
+        case FILLED_AREA:
+            return new FilledArea();
+        case BASIC_LINK_AREA:
+            return new BasicLinkArea();
+        case UNRESOLVED_PAGE_NUMBER:
+            return new UnresolvedPageNumber();
+        case RESOLVED_PAGE_NUMBER:
+            return new ResolvedPageNumber();
+        case CONTAINER:
+            return new Container();
+        case IMAGE:
+            return new Image(null);
+        case FOREIGN_OBJECT:
+            return new ForeignObject((String) null);
+        default:
+            throw new IOException("Invalid object tag: " + tag);
+        }
+    }
+}
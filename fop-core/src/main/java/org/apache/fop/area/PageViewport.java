@@ -428,6 +428,33 @@ public class PageViewport extends AreaTreeObject implements Resolvable {
         }
     }
 
+    /**
+     * Saves the page contents to an area output, like {@link #savePage(ObjectOutputStream)}.
+     * @param out the area output to write the contents to
+     * @throws IOException in case of an I/O error while writing the page
+     */
+    void savePage(AreaOutput out) throws IOException {
+        page.setUnresolvedReferences(unresolvedIDRefs);
+        out.writeValue(page);
+        page = null;
+    }
+
+    /**
+     * Loads the page contents from an area input, like {@link #loadPage(ObjectInputStream)}.
+     * @param in the area input to read the page from
+     * @throws IOException if an I/O error occurred while loading the page
+     */
+    void loadPage(AreaInput in) throws IOException {
+        page = in.readValue();
+        unresolvedIDRefs = page.getUnresolvedReferences();
+        if (unresolvedIDRefs != null && pendingResolved != null) {
+            for (Map.Entry<String, List<PageViewport>> e : pendingResolved.entrySet()) {
+                resolveIDRef(e.getKey(), e.getValue());
+            }
+            pendingResolved = null;
+        }
+    }
+
     /** {@inheritDoc} */
     public Object clone() throws CloneNotSupportedException {
         PageViewport pvp = (PageViewport) super.clone();
@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.datatypes.Numeric;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.FONode.FONodeIterator;
+import org.apache.fop.fo.flow.RetrieveMarker;
+import org.apache.fop.fo.pagination.AbstractPageSequence;
+import org.apache.fop.fo.pagination.PageSequence;
+import org.apache.fop.fo.pagination.StaticContent;
+import org.apache.fop.layoutmgr.LayoutManagerMaker;
+import org.apache.fop.layoutmgr.PageSequenceLayoutManager;
+
+/**
+ * Lays out independent page-sequences on a pool of worker threads for an
+ * {@link AreaTreeHandler}.
+ * <p>
+ * Each page-sequence handed to {@link #submit(PageSequence)} is laid out against its own
+ * {@link AreaTreeModel} and {@link IDTracker}. Finished page-sequences are merged into the
+ * real area tree model strictly in document order: force-page-count is applied, the
+ * page-sequence is finished, its IDs and unresolved idrefs are merged into the document's
+ * IDTracker and only then are its pages added to the model. A page-sequence whose layout
+ * depends on the page-sequences before it (automatic initial-page-number, a
+ * page-sequence-master, document-wide marker retrieval) must be laid out serially after
+ * calling {@link #mergeAll()}.
+ * <p>
+ * The worker threads are released by {@link #finish()} at the end of the document, or by
+ * {@link #abort()} when the document run fails. Idle worker threads also end after a while,
+ * so a document that is abandoned without either doesn't keep them alive.
+ */
+class ParallelPageSequenceLayout {
+
+    private static Log log = LogFactory.getLog(ParallelPageSequenceLayout.class);
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final AreaTreeHandler areaTreeHandler;
+
+    private final ExecutorService executor;
+
+    /** Submitted page-sequences in document order, not yet merged */
+    private final LinkedList<Job> pending = new LinkedList<Job>();
+
+    private final int maxPending;
+
+    private int submitted;
+
+    /**
+     * Creates a new instance.
+     * @param areaTreeHandler the area tree handler the page-sequences belong to
+     * @param threads the number of layout threads
+     */
+    ParallelPageSequenceLayout(AreaTreeHandler areaTreeHandler, int threads) {
+        this.areaTreeHandler = areaTreeHandler;
+        //Bound the number of laid out but unmerged page-sequences held in memory
+        this.maxPending = threads * 2;
+        final String prefix = "FOP page-sequence layout " + POOL_COUNTER.incrementAndGet() + "-";
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCounter = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, prefix + threadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Indicates whether a page-sequence's starting page number is known before the
+     * page-sequences preceding it have been laid out.
+     * @param pageSequence the page-sequence
+     * @return true if the page-sequence can be laid out concurrently as far as its
+     *          page numbers are concerned
+     */
+    static boolean hasIndependentPageNumbers(AbstractPageSequence pageSequence) {
+        return pageSequence instanceof PageSequence
+                && pageSequence.getInitialPageNumber().getEnum() == 0;
+    }
+
+    /**
+     * Indicates whether a fully parsed page-sequence can be laid out concurrently.
+     * @param pageSequence the page-sequence
+     * @return true if the page-sequence doesn't depend on the layout of other page-sequences
+     */
+    static boolean isIndependent(PageSequence pageSequence) {
+        if (!hasIndependentPageNumbers(pageSequence)) {
+            return false;
+        }
+        //A page-sequence-master keeps state across the page-sequences using it
+        if (pageSequence.getRoot().getLayoutMasterSet().getSimplePageMaster(
+                pageSequence.getMasterReference()) == null) {
+            return false;
+        }
+        for (FONode node : pageSequence.getFlowMap().values()) {
+            if (node instanceof StaticContent && retrievesDocumentMarkers(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean retrievesDocumentMarkers(FONode node) {
+        if (node instanceof RetrieveMarker) {
+            return ((RetrieveMarker) node).getRetrieveBoundary() == Constants.EN_DOCUMENT;
+        }
+        FONodeIterator iter = node.getChildNodes();
+        if (iter != null) {
+            while (iter.hasNext()) {
+                if (retrievesDocumentMarkers(iter.next())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts laying out a page-sequence on the pool. Page-sequences that have finished in
+     * the meantime are merged into the area tree.
+     * @param pageSequence the page-sequence to lay out
+     */
+    void submit(PageSequence pageSequence) {
+        DetachedAreaTreeHandler handler;
+        try {
+            handler = new DetachedAreaTreeHandler(areaTreeHandler, ++submitted);
+        } catch (FOPException fe) {
+            //The detached handler doesn't create a renderer, so this cannot happen
+            throw new IllegalStateException(fe);
+        }
+        Job job = new Job(handler, pageSequence);
+        job.future = executor.submit(job);
+        pending.add(job);
+
+        //Merge what's done, but never the last one: its force-page-count is still unknown
+        while (pending.size() > 1 && (pending.getFirst().future.isDone()
+                || pending.size() > maxPending)) {
+            merge(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Notifies the start of the next page-sequence. The force-page-count of the last
+     * submitted page-sequence depends on the initial-page-number of the next one.
+     * @param nextInitialPageNumber the initial-page-number of the next page-sequence, or
+     *          null at the end of the document
+     */
+    void startNextPageSequence(Numeric nextInitialPageNumber) {
+        if (!pending.isEmpty()) {
+            Job last = pending.getLast();
+            if (!last.finishable) {
+                last.nextInitialPageNumber = nextInitialPageNumber;
+                last.finishable = true;
+            }
+        }
+    }
+
+    /**
+     * Waits for all submitted page-sequences and merges them into the area tree.
+     */
+    void mergeAll() {
+        while (!pending.isEmpty()) {
+            merge(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Waits for all submitted page-sequences, merges them and releases the worker threads.
+     */
+    void finish() {
+        try {
+            startNextPageSequence(null);
+            mergeAll();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Discards the submitted page-sequences and stops the worker threads. Called when the
+     * document run is aborted.
+     */
+    void abort() {
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private void merge(Job job) {
+        if (!job.finishable) {
+            throw new IllegalStateException("Page-sequence cannot be finished yet");
+        }
+        PageSequenceLayoutManager pageSLM;
+        try {
+            pageSLM = job.future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new RuntimeException("Interrupted while waiting for page-sequence layout", ie);
+        } catch (ExecutionException ee) {
+            executor.shutdownNow();
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        //These still work on the page-sequence's own model and ID tracker
+        pageSLM.doForcePageCount(job.nextInitialPageNumber);
+        pageSLM.finishPageSequence();
+
+        DetachedAreaTreeModel detachedModel = job.handler.getDetachedModel();
+        IDTracker idTracker = areaTreeHandler.getIDTracker();
+        idTracker.merge(job.handler.getIDTracker());
+        AreaTreeModel model = areaTreeHandler.getAreaTreeModel();
+        model.startPageSequence(detachedModel.getCurrentPageSequence());
+        for (PageViewport pv : detachedModel.getPages()) {
+            idTracker.tryIDResolution(pv);
+            model.addPage(pv);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Merged page-sequence with " + detachedModel.getPages().size() + " pages");
+        }
+    }
+
+    /** A page-sequence being laid out on the pool. */
+    private static final class Job implements Callable<PageSequenceLayoutManager> {
+
+        private final DetachedAreaTreeHandler handler;
+        private final PageSequence pageSequence;
+        private Future<PageSequenceLayoutManager> future;
+        private boolean finishable;
+        private Numeric nextInitialPageNumber;
+
+        Job(DetachedAreaTreeHandler handler, PageSequence pageSequence) {
+            this.handler = handler;
+            this.pageSequence = pageSequence;
+        }
+
+        public PageSequenceLayoutManager call() {
+            PageSequenceLayoutManager pageSLM = handler.getLayoutManagerMaker()
+                    .makePageSequenceLayoutManager(handler, pageSequence);
+            pageSLM.activateLayout();
+            return pageSLM;
+        }
+    }
+
+    /**
+     * The AreaTreeHandler a single page-sequence is laid out against. It shares fonts,
+     * layout manager maker and formatting results with the document's AreaTreeHandler,
+     * but has its own IDTracker and area tree model.
+     */
+    private static final class DetachedAreaTreeHandler extends AreaTreeHandler {
+
+        private final AreaTreeHandler parent;
+
+        private final String keyPrefix;
+
+        private int keyCounter;
+
+        DetachedAreaTreeHandler(AreaTreeHandler parent, int index) throws FOPException {
+            super(parent.getUserAgent(), null, null);
+            this.parent = parent;
+            this.fontInfo = parent.getFontInfo();
+            this.keyPrefix = "S" + index + "P";
+        }
+
+        /**
+         * {@inheritDoc}
+         * Keys are resolved into links during layout, so they cannot be renumbered when
+         * merging. They are made unique by prefixing them with the page-sequence's index.
+         */
+        @Override
+        public String generatePageViewportKey() {
+            return keyPrefix + (++keyCounter);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void setupModel(FOUserAgent userAgent, String outputFormat,
+                java.io.OutputStream stream) {
+            this.model = new DetachedAreaTreeModel();
+        }
+
+        DetachedAreaTreeModel getDetachedModel() {
+            return (DetachedAreaTreeModel) this.model;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public LayoutManagerMaker getLayoutManagerMaker() {
+            return parent.getLayoutManagerMaker();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ForkJoinPool getLineBreakingPool() {
+            return parent.getLineBreakingPool();
+        }
+
+        /**
+         * Reusable content is painted once per document, so its keys have to be unique
+         * across all page-sequences and not just within this one.
+         * {@inheritDoc}
+         */
+        @Override
+        public String generateReusableContentKey() {
+            return parent.generateReusableContentKey();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void notifyPageSequenceFinished(AbstractPageSequence pageSequence,
+                int pageCount) {
+            parent.notifyPageSequenceFinished(pageSequence, pageCount);
+        }
+    }
+
+    /**
+     * Collects the pages of a single page-sequence without adding them to the page-sequence
+     * area, which happens when they are merged into the real model.
+     */
+    private static final class DetachedAreaTreeModel extends AreaTreeModel {
+
+        private final List<PageViewport> pages = new java.util.ArrayList<PageViewport>();
+
+        /** {@inheritDoc} */
+        @Override
+        public void startPageSequence(org.apache.fop.area.PageSequence pageSequence) {
+            this.currentPageSequence = pageSequence;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void addPage(PageViewport page) {
+            pages.add(page);
+            page.setPageIndex(pages.size() - 1);
+            page.setPageSequence(currentPageSequence);
+        }
+
+        List<PageViewport> getPages() {
+            return pages;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getPageSequenceCount() {
+            return 1;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getPageCount(int seq) {
+            return pages.size();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public PageViewport getPage(int seq, int count) {
+            return pages.get(count);
+        }
+    }
+}
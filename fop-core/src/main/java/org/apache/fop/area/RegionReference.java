@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -143,6 +144,26 @@ public class RegionReference extends Area {
         return true;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(regionClass);
+        out.writeString(regionName);
+        out.writeValue(ctm);
+        out.writeList(blocks);
+        out.writeValue(regionViewport);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        regionClass = in.readInt();
+        regionName = in.readString();
+        ctm = in.readValue();
+        blocks.addAll(in.<Area>readList());
+        regionViewport = in.readValue();
+    }
+
     /** {@inheritDoc} */
     public Object clone() throws CloneNotSupportedException {
         RegionReference rr = (RegionReference) super.clone();
@@ -19,6 +19,7 @@
 
 package org.apache.fop.area;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.fop.fo.Constants;
@@ -232,5 +233,24 @@ public class Span extends Area {
         return sb.toString();
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeList(flowAreas);
+        out.writeInt(colCount);
+        out.writeInt(colGap);
+        out.writeInt(colWidth);
+        out.writeInt(curFlowIdx);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        flowAreas = in.readList();
+        colCount = in.readInt();
+        colGap = in.readInt();
+        colWidth = in.readInt();
+        curFlowIdx = in.readInt();
+    }
 }
 
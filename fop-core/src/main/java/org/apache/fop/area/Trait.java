@@ -176,8 +176,11 @@ public final class Trait implements Serializable {
     /** Used to disable the rendering of a Block http://www.w3.org/TR/xsl/#rend-vis */
     public static final Integer VISIBILITY = 44;
 
+    /** Identifies content that is repeated on several pages, so renderers may reuse it. */
+    public static final Integer REUSABLE_CONTENT = 45;
+
     /** Maximum value used by trait keys */
-    public static final int MAX_TRAIT_KEY = 44;
+    public static final int MAX_TRAIT_KEY = 45;
 
     private static final TraitInfo[] TRAIT_INFO = new TraitInfo[MAX_TRAIT_KEY + 1];
 
@@ -251,6 +254,7 @@ public final class Trait implements Serializable {
                 new TraitInfo("shift-direction", Direction.class));
         put(LAYER, new TraitInfo("layer", String.class));
         put(VISIBILITY, new TraitInfo("visibility", Visibility.class));
+        put(REUSABLE_CONTENT, new TraitInfo("reusable-content", String.class));
     }
 
     /**
@@ -19,7 +19,11 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
+
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.area.LinkResolver;
 
 /**
@@ -69,4 +73,16 @@ public class BasicLinkArea extends InlineParent {
     public LinkResolver getResolver() {
         return this.resolver;
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(resolver);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        resolver = in.readValue();
+    }
 }
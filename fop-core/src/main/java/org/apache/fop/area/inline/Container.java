@@ -19,10 +19,13 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.area.Block;
 
 /**
@@ -76,5 +79,19 @@ public class Container extends Area {
     public int getWidth() {
         return width;
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeList(blocks);
+        out.writeInt(width);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        blocks = in.readList();
+        width = in.readInt();
+    }
 }
 
@@ -19,9 +19,13 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
+
 /**
  * Filled area.
  * This inline area contains some inline areas.
@@ -128,5 +132,16 @@ public class FilledArea extends InlineParent {
         return false;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(unitWidth);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        unitWidth = in.readInt();
+    }
 }
 
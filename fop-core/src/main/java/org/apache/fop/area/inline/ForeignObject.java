@@ -19,9 +19,13 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
+
 import org.w3c.dom.Document;
 
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 
 // cacheable object
 /**
@@ -81,5 +85,19 @@ public class ForeignObject extends Area {
     public String getNameSpace() {
         return namespace;
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeString(namespace);
+        out.writeDocument(doc);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        namespace = in.readString();
+        doc = in.readDocument(namespace);
+    }
 }
 
@@ -19,7 +19,11 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
+
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 
 /**
  * Image area for external-graphic.
@@ -50,5 +54,17 @@ public class Image extends Area {
     public String getURL() {
         return this.url;
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeString(url);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        url = in.readString();
+    }
 }
 
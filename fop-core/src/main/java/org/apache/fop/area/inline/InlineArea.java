@@ -19,10 +19,13 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.area.LineArea;
 import org.apache.fop.area.Trait;
 import org.apache.fop.complexscripts.bidi.InlineRun;
@@ -348,4 +351,29 @@ public class InlineArea extends Area {
         return false;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(blockProgressionOffset);
+        out.writeValue(parentArea);
+        out.writeInt(storedIPDVariation);
+        out.writeBoolean(adjustingInfo != null);
+        if (adjustingInfo != null) {
+            out.writeInt(adjustingInfo.availableStretch);
+            out.writeInt(adjustingInfo.availableShrink);
+            out.writeInt(adjustingInfo.adjustment);
+        }
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        blockProgressionOffset = in.readInt();
+        //not setParentArea(), which may move the children
+        parentArea = in.readValue();
+        storedIPDVariation = in.readInt();
+        if (in.readBoolean()) {
+            adjustingInfo = new InlineAdjustingInfo(in.readInt(), in.readInt(), in.readInt());
+        }
+    }
 }
@@ -19,6 +19,10 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
+
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.area.Block;
 
 /**
@@ -28,7 +32,7 @@ import org.apache.fop.area.Block;
 public class InlineBlock extends InlineParent {
 
     private static final long serialVersionUID = -3725062353292109517L;
-    private final Block block;
+    private Block block;
 
     public InlineBlock(Block block) {
         this.block = block;
@@ -40,4 +44,16 @@ public class InlineBlock extends InlineParent {
     public Block getBlock() {
         return block;
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(block);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        block = in.readValue();
+    }
 }
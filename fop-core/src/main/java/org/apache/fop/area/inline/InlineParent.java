@@ -25,6 +25,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 
 /**
  * Inline parent area.
@@ -148,5 +150,19 @@ public class InlineParent extends InlineArea {
         }
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeList(inlines);
+        out.writeInt(minChildOffset);
+        out.writeInt(maxAfterEdge);
+    }
 
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        inlines = in.readList();
+        minChildOffset = in.readInt();
+        maxAfterEdge = in.readInt();
+    }
 }
@@ -22,9 +22,10 @@ package org.apache.fop.area.inline;
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
-import java.util.TreeMap;
 
 import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.area.Viewport;
 
 /**
@@ -132,7 +133,6 @@ public class InlineViewport extends InlineArea implements Viewport {
             out.writeFloat((float) contentPosition.getHeight());
         }
         out.writeBoolean(clip);
-        out.writeObject((TreeMap)traits);
         out.writeObject(content);
     }
 
@@ -145,11 +145,26 @@ public class InlineViewport extends InlineArea implements Viewport {
                                                     in.readFloat());
         }
         this.clip = in.readBoolean();
-        this.traits = (TreeMap) in.readObject();
         this.content = (Area) in.readObject();
     }
 
     public int getEffectiveIPD() {
         return getIPD();
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeValue(content);
+        out.writeBoolean(clip);
+        out.writeRectangle(contentPosition);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        content = in.readValue();
+        clip = in.readBoolean();
+        contentPosition = in.readRectangle();
+    }
 }
@@ -19,6 +19,10 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
+
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.fo.Constants;
 
 /**
@@ -117,5 +121,18 @@ public class Leader extends InlineArea {
         return ruleThickness;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(ruleStyle);
+        out.writeInt(ruleThickness);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        ruleStyle = in.readInt();
+        ruleThickness = in.readInt();
+    }
 }
 
@@ -19,6 +19,11 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
+
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
+
 /**
  * A space
  */
@@ -59,4 +64,17 @@ public class SpaceArea extends InlineArea {
         return this.isAdjustable;
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeChar(space);
+        out.writeBoolean(isAdjustable);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        space = in.readChar();
+        isAdjustable = in.readBoolean();
+    }
 }
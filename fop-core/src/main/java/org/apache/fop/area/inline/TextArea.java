@@ -19,8 +19,11 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
 import java.util.Arrays;
 
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.util.CharUtilities;
 
 /**
@@ -218,5 +221,17 @@ public class TextArea extends AbstractTextArea {
     public int getEffectiveIPD() {
         return getIPD();
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeBoolean(isHyphenated);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        isHyphenated = in.readBoolean();
+    }
 }
 
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.List;
 
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.area.PageViewport;
 import org.apache.fop.area.Resolvable;
 import org.apache.fop.complexscripts.bidi.InlineRun;
@@ -177,4 +179,24 @@ public class UnresolvedPageNumber extends TextArea implements Resolvable {
         runs.add(new InlineRun(this, new int[] {getBidiLevel()}));
         return runs;
     }
+
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeBoolean(resolved);
+        out.writeString(pageIDRef);
+        out.writeString(text);
+        out.writeBoolean(pageType);
+        out.writeReference(font);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        resolved = in.readBoolean();
+        pageIDRef = in.readString();
+        text = in.readString();
+        pageType = in.readBoolean();
+        font = in.readReference();
+    }
 }
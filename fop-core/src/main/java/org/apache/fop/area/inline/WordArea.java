@@ -19,9 +19,12 @@
 
 package org.apache.fop.area.inline;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.fop.area.AreaInput;
+import org.apache.fop.area.AreaOutput;
 import org.apache.fop.complexscripts.bidi.InlineRun;
 import org.apache.fop.complexscripts.util.CharMirror;
 
@@ -315,4 +318,25 @@ public class WordArea extends InlineArea {
         }
     }
 
+    @Override
+    protected void writeFields(AreaOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeString(word);
+        out.writeIntArray(letterAdjust);
+        out.writeIntArray(levels);
+        out.writeIntArrays(gposAdjustments);
+        out.writeBoolean(reversed);
+        out.writeBoolean(nextIsSpace);
+    }
+
+    @Override
+    protected void readFields(AreaInput in) throws IOException {
+        super.readFields(in);
+        word = in.readString();
+        letterAdjust = in.readIntArray();
+        levels = in.readIntArray();
+        gposAdjustments = in.readIntArrays();
+        reversed = in.readBoolean();
+        nextIsSpace = in.readBoolean();
+    }
 }
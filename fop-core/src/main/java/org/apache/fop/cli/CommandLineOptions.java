@@ -51,6 +51,7 @@ import org.apache.fop.pdf.PDFEncryptionParams;
 import org.apache.fop.pdf.PDFXMode;
 import org.apache.fop.render.Renderer;
 import org.apache.fop.render.awt.AWTRenderer;
+import org.apache.fop.render.intermediate.IFBinarySerializer;
 import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFSerializer;
@@ -229,6 +230,17 @@ public class CommandLineOptions {
                         foUserAgent, mimicRenderer);
             serializer.mimicDocumentHandler(targetHandler);
 
+            //Make sure the prepared serializer is used
+            foUserAgent.setDocumentHandlerOverride(serializer);
+        } else if (MimeConstants.MIME_FOP_IF_BINARY.equals(outputmode)
+                && mimicRenderer != null) {
+            // render from FO to binary Intermediate Format
+            IFBinarySerializer serializer = new IFBinarySerializer(new IFContext(foUserAgent));
+            IFDocumentHandler targetHandler
+                = foUserAgent.getRendererFactory().createDocumentHandler(
+                        foUserAgent, mimicRenderer);
+            serializer.mimicDocumentHandler(targetHandler);
+
             //Make sure the prepared serializer is used
             foUserAgent.setDocumentHandlerOverride(serializer);
         }
@@ -350,6 +362,8 @@ public class CommandLineOptions {
                 i = i + parseAreaTreeOption(args, i);
             } else if (args[i].equals("-if")) {
                 i = i + parseIntermediateFormatOption(args, i);
+            } else if (args[i].equals("-ifb")) {
+                i = i + parseBinaryIntermediateFormatOption(args, i);
             } else if (args[i].equals("-a")) {
                 this.renderingOptions.put(Accessibility.ACCESSIBILITY, Boolean.TRUE);
             } else if (args[i].equals("-v")) {
@@ -775,6 +789,24 @@ public class CommandLineOptions {
         }
     }
 
+    private int parseBinaryIntermediateFormatOption(String[] args, int i) throws FOPException {
+        setOutputMode(MimeConstants.MIME_FOP_IF_BINARY);
+        if ((i + 1 == args.length)
+                || (args[i + 1].charAt(0) == '-')) {
+            throw new FOPException("you must specify the binary intermediate format output file");
+        } else if ((i + 2 == args.length)
+                || (args[i + 2].charAt(0) == '-')) {
+            // only output file is specified
+            setOutputFile(args[i + 1]);
+            return 1;
+        } else {
+            // mimic format and output file have been specified
+            mimicRenderer = args[i + 1];
+            setOutputFile(args[i + 2]);
+            return 2;
+        }
+    }
+
     private int parseAreaTreeInputOption(String[] args, int i) throws FOPException {
         setInputFormat(AREATREE_INPUT);
         if ((i + 1 == args.length)
@@ -984,7 +1016,8 @@ public class CommandLineOptions {
                 throw new FOPException(
                     "Area Tree Output is not available if Intermediate Format"
                     + " is used as input!");
-            } else if (outputmode.equals(MimeConstants.MIME_FOP_IF)) {
+            } else if (outputmode.equals(MimeConstants.MIME_FOP_IF)
+                    || outputmode.equals(MimeConstants.MIME_FOP_IF_BINARY)) {
                 throw new FOPException(
                     "Intermediate Output is not available if Intermediate Format"
                     + " is used as input!");
@@ -1227,7 +1260,7 @@ public class CommandLineOptions {
             + "  -fo  infile       xsl:fo input file  \n"
             + "  -xml infile       xml input file, must be used together with -xsl \n"
             + "  -atin infile      area tree input file \n"
-            + "  -ifin infile      intermediate format input file \n"
+            + "  -ifin infile      intermediate format input file (XML or binary)\n"
             + "  -imagein infile   image input file (piping through stdin not supported)\n"
             + "  -xsl stylesheet   xslt stylesheet \n \n"
             + "  -param name value <value> to use for parameter <name> in xslt stylesheet\n"
@@ -1254,6 +1287,9 @@ public class CommandLineOptions {
             + " (outfile req'd)\n"
             + "                    specify optional mime output to allow the IF to be converted\n"
             + "                    to final format later\n"
+            + "  -ifb [mime] out   representation of document in binary intermediate format"
+            + " (outfile req'd)\n"
+            + "                    a compact alternative to -if that can be read back with -ifin\n"
             + "  -print            input file will be rendered and sent to the printer \n"
             + "                    see options with \"-print help\" \n"
             + "  -out mime outfile input will be rendered using the given MIME type\n"
@@ -1374,6 +1410,9 @@ public class CommandLineOptions {
         } else if (MimeConstants.MIME_FOP_IF.equals(outputmode)) {
             log.info("intermediate format");
             log.info("output file: " + outfile.toString());
+        } else if (MimeConstants.MIME_FOP_IF_BINARY.equals(outputmode)) {
+            log.info("binary intermediate format");
+            log.info("output file: " + outfile.toString());
         } else {
             log.info(outputmode);
             if (isOutputToStdOut()) {
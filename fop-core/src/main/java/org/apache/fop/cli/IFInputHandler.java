@@ -19,7 +19,11 @@
 
 package org.apache.fop.cli;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Vector;
 
@@ -27,15 +31,18 @@ import javax.xml.transform.Result;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.commons.io.IOUtils;
+
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.render.intermediate.IFBinaryParser;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFParser;
 import org.apache.fop.render.intermediate.IFUtil;
 
 /**
- * InputHandler for the intermediate format XML as input.
+ * InputHandler for the intermediate format XML (or its binary encoding) as input.
  */
 public class IFInputHandler extends InputHandler {
 
@@ -68,6 +75,11 @@ public class IFInputHandler extends InputHandler {
             documentHandler.setResult(new StreamResult(out));
             IFUtil.setupFonts(documentHandler);
 
+            if (isBinaryInput()) {
+                renderBinary(userAgent, documentHandler);
+                return;
+            }
+
             //Create IF parser
             IFParser parser = new IFParser();
 
@@ -80,4 +92,25 @@ public class IFInputHandler extends InputHandler {
         }
     }
 
+    private boolean isBinaryInput() throws FOPException {
+        try {
+            return sourcefile != null && sourcefile.isFile() && IFBinaryParser.isBinaryIF(sourcefile);
+        } catch (IOException ioe) {
+            throw new FOPException(ioe);
+        }
+    }
+
+    private void renderBinary(FOUserAgent userAgent, IFDocumentHandler documentHandler)
+                throws FOPException, IFException {
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(sourcefile));
+            new IFBinaryParser().parse(in, documentHandler, userAgent);
+        } catch (IOException ioe) {
+            throw new FOPException(ioe);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
 }
@@ -33,7 +33,6 @@ import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
@@ -53,6 +52,7 @@ import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.render.awt.viewer.Renderable;
+import org.apache.fop.util.TemplatesCache;
 
 /**
  * Class for handling files input from command line
@@ -256,6 +256,16 @@ public class InputHandler implements ErrorListener, Renderable {
         return xr;
     }
 
+    /**
+     * Returns the cache used to compile the stylesheet. By default, the cache shared by all
+     * input handlers is used so that a stylesheet is only compiled once when many documents
+     * are processed in the same JVM.
+     * @return the templates cache
+     */
+    protected TemplatesCache getTemplatesCache() {
+        return TemplatesCache.getDefaultInstance();
+    }
+
     /**
      * Transforms the input document to the input format expected by FOP using XSLT.
      * @param result the Result object where the result of the XSL transformation is sent to
@@ -264,14 +274,14 @@ public class InputHandler implements ErrorListener, Renderable {
     protected void transformTo(Result result) throws FOPException {
         try {
             // Setup XSLT
-            TransformerFactory factory = TransformerFactory.newInstance();
+            TemplatesCache templatesCache = getTemplatesCache();
             Transformer transformer;
 
             Source xsltSource = createXSLTSource();
             if (xsltSource == null) {   // FO Input
-                transformer = factory.newTransformer();
+                transformer = templatesCache.newTransformer();
             } else {    // XML/XSLT input
-                transformer = factory.newTransformer(xsltSource);
+                transformer = templatesCache.newTransformer(xsltSource);
 
                 // Set the value of parameters, if any, defined for stylesheet
                 if (xsltParams != null) {
@@ -88,6 +88,23 @@ public class GlyphPositioningTable extends GlyphTable {
         }
     }
 
+    /**
+     * Instantiate a <code>GlyphPositioningTable</code> object using the specified lookups, whose
+     * subtables are loaded on demand by the specified loader.
+     * @param gdef glyph definition table that applies
+     * @param lookups a map of lookup specifications to subtable identifier strings
+     * @param processors a map of script identifiers to script processors
+     * @param loader a loader of glyph positioning subtables
+     */
+    public GlyphPositioningTable(GlyphDefinitionTable gdef, Map lookups, Map<String, ScriptProcessor> processors,
+                                 LookupTableLoader loader) {
+        super(gdef, lookups, processors, loader);
+        if (loader == null) {
+            throw new AdvancedTypographicTableFormatException("loader must be non-null");
+        }
+        freezeSubtables();
+    }
+
     /**
      * Map a lookup type name to its constant (integer) value.
      * @param name lookup type name
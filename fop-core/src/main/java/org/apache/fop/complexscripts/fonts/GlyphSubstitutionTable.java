@@ -87,6 +87,23 @@ public class GlyphSubstitutionTable extends GlyphTable {
         }
     }
 
+    /**
+     * Instantiate a <code>GlyphSubstitutionTable</code> object using the specified lookups, whose
+     * subtables are loaded on demand by the specified loader.
+     * @param gdef glyph definition table that applies
+     * @param lookups a map of lookup specifications to subtable identifier strings
+     * @param processors a map of script identifiers to script processors
+     * @param loader a loader of glyph substitution subtables
+     */
+    public GlyphSubstitutionTable(GlyphDefinitionTable gdef, Map lookups, Map<String, ScriptProcessor> processors,
+                                  LookupTableLoader loader) {
+        super(gdef, lookups, processors, loader);
+        if (loader == null) {
+            throw new AdvancedTypographicTableFormatException("loader must be non-null");
+        }
+        freezeSubtables();
+    }
+
     /**
      * Perform substitution processing using all matching lookups.
      * @param gs an input glyph sequence
@@ -21,7 +21,8 @@ package org.apache.fop.complexscripts.fonts;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,6 +30,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -66,9 +68,12 @@ public class GlyphTable {
     // map from lookup specs to lists of strings, each of which identifies a lookup table (consisting of one or more subtables)
     private Map<LookupSpec, List<String>> lookups;
 
-    // map from lookup identifiers to lookup tables
+    // map from lookup identifiers to lookup tables, guarded by this table's lock
     private Map<String, LookupTable> lookupTables;
 
+    // (optional) loader of lookup tables which are not loaded yet
+    private LookupTableLoader loader;
+
     // cache for lookups matching
     private Map<LookupSpec, Map<LookupSpec, List<LookupTable>>> matchedLookups;
 
@@ -84,7 +89,22 @@ public class GlyphTable {
      */
     public GlyphTable(GlyphTable gdef, Map<LookupSpec, List<String>> lookups,
                       Map<String, ScriptProcessor> processors) {
+        this(gdef, lookups, processors, null);
+    }
+
+    /**
+     * Instantiate glyph table with specified lookups, whose lookup tables are loaded on demand
+     * by the specified loader. Lookup tables are loaded the first time they are matched or
+     * obtained, and are then shared by all users of this table.
+     * @param gdef glyph definition table that applies
+     * @param lookups map from lookup specs to lookup tables
+     * @param processors map from script identifiers to script processors
+     * @param loader loader of lookup tables (or null if all subtables are added on construction)
+     */
+    public GlyphTable(GlyphTable gdef, Map<LookupSpec, List<String>> lookups,
+                      Map<String, ScriptProcessor> processors, LookupTableLoader loader) {
         this.processors = processors;
+        this.loader = loader;
         if ((gdef != null) && !(gdef instanceof GlyphDefinitionTable)) {
             throw new AdvancedTypographicTableFormatException("bad glyph definition table");
         } else if (lookups == null) {
@@ -93,7 +113,7 @@ public class GlyphTable {
             this.gdef = gdef;
             this.lookups = lookups;
             this.lookupTables = new LinkedHashMap<String, LookupTable>();
-            this.matchedLookups = new HashMap<LookupSpec, Map<LookupSpec, List<LookupTable>>>();
+            this.matchedLookups = new ConcurrentHashMap<LookupSpec, Map<LookupSpec, List<LookupTable>>>();
         }
     }
 
@@ -118,7 +138,8 @@ public class GlyphTable {
      * lexicographic ordering follows the lookup list order.
      * @return (possibly empty) ordered list of all lookup tables
      */
-    public List<LookupTable> getLookupTables() {
+    public synchronized List<LookupTable> getLookupTables() {
+        loadLookupTables(null);
         TreeSet<String> lids = new TreeSet<String>(lookupTables.keySet());
         List<LookupTable> ltl = new ArrayList<LookupTable>(lids.size());
         for (Object lid1 : lids) {
@@ -134,7 +155,8 @@ public class GlyphTable {
      * @param lid lookup id
      * @return table associated with lookup id or null if none
      */
-    public LookupTable getLookupTable(String lid) {
+    public synchronized LookupTable getLookupTable(String lid) {
+        loadLookupTables(Collections.singletonList(lid));
         return lookupTables.get(lid);
     }
 
@@ -174,6 +196,45 @@ public class GlyphTable {
         }
     }
 
+    /**
+     * Load the lookup tables that are not loaded yet, along with the lookup tables they refer to.
+     * Must be called with this table's lock held.
+     * @param lids identifiers of the lookup tables to load, or null to load all lookup tables
+     */
+    private void loadLookupTables(Collection<String> lids) {
+        if (loader == null) {
+            return;
+        }
+        if (lids != null) {
+            boolean loaded = true;
+            for (String lid : lids) {
+                if (!lookupTables.containsKey(lid)) {
+                    loaded = false;
+                    break;
+                }
+            }
+            if (loaded) {
+                return;
+            }
+        }
+        Map<String, LookupTable> added = new LinkedHashMap<String, LookupTable>();
+        for (GlyphSubtable subtable : loader.loadSubtables(lids)) {
+            String lid = subtable.getLookupId();
+            if (added.containsKey(lid)) {
+                subtable.setTable(this);
+                added.get(lid).addSubtable(subtable);
+            } else if (!lookupTables.containsKey(lid)) {
+                subtable.setTable(this);
+                added.put(lid, new LookupTable(lid, subtable));
+            }
+        }
+        lookupTables.putAll(added);
+        // references are resolved once all lookup tables they may refer to are loaded
+        for (LookupTable lt : added.values()) {
+            lt.freezeSubtables(lookupTables);
+        }
+    }
+
     /**
      * Match lookup specifications according to &lt;script,language,feature&gt; tuple, where
      * '*' is a wildcard for a tuple component.
@@ -239,10 +300,11 @@ public class GlyphTable {
      * @param ls a (non-null) lookup specification
      * @return a (possibly empty) ordered list of lookup tables whose corresponding lookup specifications match the specified lookup spec
      */
-    public List<LookupTable> findLookupTables(LookupSpec ls) {
+    public synchronized List<LookupTable> findLookupTables(LookupSpec ls) {
         TreeSet<LookupTable> lts = new TreeSet<LookupTable>();
         List<String> ids;
         if ((ids = lookups.get(ls)) != null) {
+            loadLookupTables(ids);
             for (Object id : ids) {
                 String lid = (String) id;
                 LookupTable lt;
@@ -295,7 +357,7 @@ public class GlyphTable {
     }
 
     /** {@inheritDoc} */
-    public String toString() {
+    public synchronized String toString() {
         StringBuffer sb = new StringBuffer(super.toString());
         sb.append("{");
         sb.append("lookups={");
@@ -345,6 +407,24 @@ public class GlyphTable {
         }
     }
 
+    /**
+     * The <code>LookupTableLoader</code> interface is implemented by sources of lookup tables
+     * that are only parsed when they are first used.
+     */
+    public interface LookupTableLoader {
+
+        /**
+         * Load the subtables of lookup tables which have not been loaded before, along with the
+         * subtables of the (not yet loaded) lookup tables they refer to, e.g., through contextual
+         * rules. Each lookup table is loaded at most once.
+         * @param lids identifiers of the lookup tables to load, e.g. "lu4", or null to load all
+         * lookup tables
+         * @return the (possibly empty) list of loaded subtables
+         */
+        List<GlyphSubtable> loadSubtables(Collection<String> lids);
+
+    }
+
     /**
      * A structure class encapsulating a lookup specification as a &lt;script,language,feature&gt; tuple.
      */
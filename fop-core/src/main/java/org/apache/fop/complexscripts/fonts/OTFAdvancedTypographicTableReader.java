@@ -19,9 +19,14 @@
 
 package org.apache.fop.complexscripts.fonts;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -40,15 +45,23 @@ import org.apache.fop.fonts.truetype.OpenFont;
  * <p>OpenType Font (OTF) advanced typographic table reader. Used by @{Link org.apache.fop.fonts.truetype.TTFFile}
  * to read advanced typographic tables (GDEF, GSUB, GPOS).</p>
  *
+ * <p>The lookups of the GSUB and GPOS tables are only read when a lookup specification that uses
+ * them is first looked up. The tables read for a font are immutable and are shared with all
+ * loads of the same font, see {@link #readShared(OpenFont, FontFileReader)}.</p>
+ *
  * <p>This work was originally authored by Glenn Adams (gadams@apache.org).</p>
  */
 public final class OTFAdvancedTypographicTableReader {
 
     // logging state
     private static Log log = LogFactory.getLog(OTFAdvancedTypographicTableReader.class);
+    // shared state
+    private static final Map<SharedTablesKey, SoftReference<OTFAdvancedTypographicTableReader>> SHARED_READERS
+        = new HashMap<SharedTablesKey, SoftReference<OTFAdvancedTypographicTableReader>>();
     // instance state
-    private OpenFont otf;                                        // parent font file reader
-    private FontFileReader in;                                  // input reader
+    private OpenFont otf;                                        // parent font file reader (released after reading)
+    private FontFileReader in;                                  // input reader (released after reading)
+    private int upem;                                           // units per em of parent font
     private GlyphDefinitionTable gdef;                          // glyph definition table
     private GlyphSubstitutionTable gsub;                        // glyph substitution table
     private GlyphPositioningTable gpos;                         // glyph positioning table
@@ -59,6 +72,7 @@ public final class OTFAdvancedTypographicTableReader {
     private transient GlyphMappingTable seMapping;              // subtable entry mappings
     private transient List seEntries;                           // subtable entry entries
     private transient List seSubtables;                         // subtable entry subtables
+    private transient BitSet seLookupReferences;                // indices of lookups referenced by rules
     private Map<String, ScriptProcessor> processors = new HashMap<String, ScriptProcessor>();
 
     /**
@@ -74,10 +88,54 @@ public final class OTFAdvancedTypographicTableReader {
     }
 
     /**
-     * Read all advanced typographic tables.
+     * Obtain a reader of the advanced typographic tables of a font, which have been read by this or
+     * an earlier call for a font with the same tables, e.g., the same font file loaded by another
+     * font manager. The tables are kept as long as memory allows.
+     * @param otf parent font file reader (must be non-null)
+     * @param in font file reader (must be non-null)
+     * @return reader whose tables have been read
+     * @throws AdvancedTypographicTableFormatException if ATT table has invalid format
+     */
+    public static OTFAdvancedTypographicTableReader readShared(OpenFont otf, FontFileReader in)
+            throws AdvancedTypographicTableFormatException {
+        SharedTablesKey key = new SharedTablesKey(otf, in);
+        OTFAdvancedTypographicTableReader atr = getSharedReader(key);
+        if (atr == null) {
+            atr = new OTFAdvancedTypographicTableReader(otf, in);
+            atr.readAll();
+            synchronized (SHARED_READERS) {
+                OTFAdvancedTypographicTableReader shared = getSharedReader(key);
+                if (shared != null) {
+                    atr = shared;
+                } else {
+                    for (Iterator<SoftReference<OTFAdvancedTypographicTableReader>> it
+                            = SHARED_READERS.values().iterator(); it.hasNext();) {
+                        if (it.next().get() == null) {
+                            it.remove();
+                        }
+                    }
+                    SHARED_READERS.put(key, new SoftReference<OTFAdvancedTypographicTableReader>(atr));
+                }
+            }
+        }
+        return atr;
+    }
+
+    private static OTFAdvancedTypographicTableReader getSharedReader(SharedTablesKey key) {
+        synchronized (SHARED_READERS) {
+            SoftReference<OTFAdvancedTypographicTableReader> ref = SHARED_READERS.get(key);
+            return (ref != null) ? ref.get() : null;
+        }
+    }
+
+    /**
+     * Read all advanced typographic tables. The lookups of the GSUB and GPOS tables are read
+     * when they are first used, from copies of these tables, so that neither the parent font nor
+     * the font file reader is referenced once this method returns.
      * @throws AdvancedTypographicTableFormatException if ATT table has invalid format
      */
     public void readAll() throws AdvancedTypographicTableFormatException {
+        upem = otf.getUnitsPerEm();
         try {
             readGDEF();
             readGSUB();
@@ -90,6 +148,8 @@ public final class OTFAdvancedTypographicTableReader {
             throw new AdvancedTypographicTableFormatException(e.getMessage(), e);
         } finally {
             resetATState();
+            otf = null;
+            in = null;
         }
     }
 
@@ -911,6 +971,9 @@ public final class OTFAdvancedTypographicTableReader {
             int sequenceIndex = in.readTTFUShort();
             int lookupIndex = in.readTTFUShort();
             la [ i ] = new GlyphTable.RuleLookup(sequenceIndex, lookupIndex);
+            if (seLookupReferences != null) {
+                seLookupReferences.set(lookupIndex);
+            }
             // dump info if debugging and header is non-null
             if (log.isDebugEnabled() && (header != null)) {
                 log.debug(header + "lookup[" + i + "]: " + la[i]);
@@ -1729,28 +1792,28 @@ public final class OTFAdvancedTypographicTableReader {
         // XPlacement
         int xp;
         if ((valueFormat & GlyphPositioningTable.Value.X_PLACEMENT) != 0) {
-            xp = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            xp = convertTTFUnit2PDFUnit(in.readTTFShort());
         } else {
             xp = 0;
         }
         // YPlacement
         int yp;
         if ((valueFormat & GlyphPositioningTable.Value.Y_PLACEMENT) != 0) {
-            yp = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            yp = convertTTFUnit2PDFUnit(in.readTTFShort());
         } else {
             yp = 0;
         }
         // XAdvance
         int xa;
         if ((valueFormat & GlyphPositioningTable.Value.X_ADVANCE) != 0) {
-            xa = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            xa = convertTTFUnit2PDFUnit(in.readTTFShort());
         } else {
             xa = 0;
         }
         // YAdvance
         int ya;
         if ((valueFormat & GlyphPositioningTable.Value.Y_ADVANCE) != 0) {
-            ya = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            ya = convertTTFUnit2PDFUnit(in.readTTFShort());
         } else {
             ya = 0;
         }
@@ -2022,23 +2085,23 @@ public final class OTFAdvancedTypographicTableReader {
         int af = in.readTTFUShort();
         if (af == 1) {
             // read x coordinate
-            int x = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int x = convertTTFUnit2PDFUnit(in.readTTFShort());
             // read y coordinate
-            int y = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int y = convertTTFUnit2PDFUnit(in.readTTFShort());
             a = new GlyphPositioningTable.Anchor(x, y);
         } else if (af == 2) {
             // read x coordinate
-            int x = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int x = convertTTFUnit2PDFUnit(in.readTTFShort());
             // read y coordinate
-            int y = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int y = convertTTFUnit2PDFUnit(in.readTTFShort());
             // read anchor point index
             int ap = in.readTTFUShort();
             a = new GlyphPositioningTable.Anchor(x, y, ap);
         } else if (af == 3) {
             // read x coordinate
-            int x = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int x = convertTTFUnit2PDFUnit(in.readTTFShort());
             // read y coordinate
-            int y = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int y = convertTTFUnit2PDFUnit(in.readTTFShort());
             // read x device table offset
             int xdo = in.readTTFUShort();
             // read y device table offset
@@ -3191,42 +3254,41 @@ public final class OTFAdvancedTypographicTableReader {
         }
     }
 
-    private void readLookupList(OFTableName tableTag, long lookupList) throws IOException {
+    private LookupLoader readLookupList(OFTableName tableTag, OFDirTabEntry dirTab, long lookupList) throws IOException {
         in.seekSet(lookupList);
         // read lookup record count
         int nl = in.readTTFUShort();
         if (log.isDebugEnabled()) {
             log.debug(tableTag + " lookup list record count: " + nl);
         }
-        if (nl > 0) {
-            int[] loa = new int[nl];
-            // read lookup records
-            for (int i = 0, n = nl; i < n; i++) {
-                int lo = in.readTTFUShort();
-                if (log.isDebugEnabled()) {
-                    log.debug(tableTag + " lookup table offset: " + lo);
-                }
-                loa[i] = lo;
-            }
-            // read lookup tables
-            for (int i = 0, n = nl; i < n; i++) {
-                if (log.isDebugEnabled()) {
-                    log.debug(tableTag + " lookup index: " + i);
-                }
-                readLookupTable(tableTag, i, lookupList + loa [ i ]);
+        int[] loa = new int[nl];
+        // read lookup records
+        for (int i = 0, n = nl; i < n; i++) {
+            int lo = in.readTTFUShort();
+            if (log.isDebugEnabled()) {
+                log.debug(tableTag + " lookup table offset: " + lo);
             }
+            loa[i] = lo;
         }
+        // lookup tables are read on demand from a copy of the table
+        long to = dirTab.getOffset();
+        int tl = (int) Math.min(dirTab.getLength(), in.getFileSize() - to);
+        FontFileReader tableReader = new FontFileReader(new ByteArrayInputStream(in.getBytes((int) to, tl)));
+        return new LookupLoader(tableTag, tableReader, lookupList - to, loa);
     }
 
     /**
-     * Read the common layout tables (used by GSUB and GPOS).
+     * Read the common layout tables (used by GSUB and GPOS). The lookup tables are not read,
+     * but are read on demand by the returned loader.
      * @param tableTag tag of table being read
+     * @param dirTab directory entry of table being read
      * @param scriptList offset to script list from beginning of font file
      * @param featureList offset to feature list from beginning of font file
      * @param lookupList offset to lookup list from beginning of font file
+     * @return loader of lookup tables or null if no lookup list
      * @throws IOException In case of a I/O problem
      */
-    private void readCommonLayoutTables(OFTableName tableTag, long scriptList, long featureList, long lookupList) throws IOException {
+    private LookupLoader readCommonLayoutTables(OFTableName tableTag, OFDirTabEntry dirTab, long scriptList, long featureList, long lookupList) throws IOException {
         if (scriptList > 0) {
             readScriptList(tableTag, scriptList);
         }
@@ -3234,7 +3296,9 @@ public final class OTFAdvancedTypographicTableReader {
             readFeatureList(tableTag, featureList);
         }
         if (lookupList > 0) {
-            readLookupList(tableTag, lookupList);
+            return readLookupList(tableTag, dirTab, lookupList);
+        } else {
+            return null;
         }
     }
 
@@ -3457,9 +3521,9 @@ public final class OTFAdvancedTypographicTableReader {
                 log.debug(tableTag + " lookup list offset: " + llo);
             }
             long to = dirTab.getOffset();
-            readCommonLayoutTables(tableTag, to + slo, to + flo, to + llo);
+            LookupLoader loader = readCommonLayoutTables(tableTag, dirTab, to + slo, to + flo, to + llo);
             GlyphSubstitutionTable gsub;
-            if ((gsub = constructGSUB()) != null) {
+            if ((gsub = constructGSUB(loader)) != null) {
                 this.gsub = gsub;
             }
         }
@@ -3494,9 +3558,9 @@ public final class OTFAdvancedTypographicTableReader {
                 log.debug(tableTag + " lookup list offset: " + llo);
             }
             long to = dirTab.getOffset();
-            readCommonLayoutTables(tableTag, to + slo, to + flo, to + llo);
+            LookupLoader loader = readCommonLayoutTables(tableTag, dirTab, to + slo, to + flo, to + llo);
             GlyphPositioningTable gpos;
-            if ((gpos = constructGPOS()) != null) {
+            if ((gpos = constructGPOS(loader)) != null) {
                 this.gpos = gpos;
             }
         }
@@ -3522,17 +3586,15 @@ public final class OTFAdvancedTypographicTableReader {
     /**
      * Construct the (internal representation of the) GSUB table based on previously
      * parsed state.
+     * @param loader loader of lookup tables (may be null)
      * @returns glyph substitution table or null if insufficient or invalid state
      */
-    private GlyphSubstitutionTable constructGSUB() {
+    private GlyphSubstitutionTable constructGSUB(LookupLoader loader) {
         GlyphSubstitutionTable gsub = null;
         Map lookups;
         if ((lookups = constructLookups()) != null) {
-            List subtables;
-            if ((subtables = constructGSUBSubtables()) != null) {
-                if ((lookups.size() > 0) && (subtables.size() > 0)) {
-                    gsub = new GlyphSubstitutionTable(gdef, lookups, subtables, processors);
-                }
+            if ((lookups.size() > 0) && (loader != null)) {
+                gsub = new GlyphSubstitutionTable(gdef, lookups, processors, loader);
             }
         }
         resetATState();
@@ -3542,17 +3604,15 @@ public final class OTFAdvancedTypographicTableReader {
     /**
      * Construct the (internal representation of the) GPOS table based on previously
      * parsed state.
+     * @param loader loader of lookup tables (may be null)
      * @returns glyph positioning table or null if insufficient or invalid state
      */
-    private GlyphPositioningTable constructGPOS() {
+    private GlyphPositioningTable constructGPOS(LookupLoader loader) {
         GlyphPositioningTable gpos = null;
         Map lookups;
         if ((lookups = constructLookups()) != null) {
-            List subtables;
-            if ((subtables = constructGPOSSubtables()) != null) {
-                if ((lookups.size() > 0) && (subtables.size() > 0)) {
-                    gpos = new GlyphPositioningTable(gdef, lookups, subtables, processors);
-                }
+            if ((lookups.size() > 0) && (loader != null)) {
+                gpos = new GlyphPositioningTable(gdef, lookups, processors, loader);
             }
         }
         resetATState();
@@ -3775,6 +3835,161 @@ public final class OTFAdvancedTypographicTableReader {
         gpos = null;
     }
 
+    private int convertTTFUnit2PDFUnit(int n) {
+        return OpenFont.convertTTFUnit2PDFUnit(n, upem);
+    }
+
+    /**
+     * Reads the lookup tables of a GSUB or GPOS table on demand. Each lookup table is read
+     * at most once, together with the lookup tables its rules refer to.
+     */
+    private final class LookupLoader implements GlyphTable.LookupTableLoader {
+
+        private final OFTableName tableTag;
+        private final FontFileReader tableReader;           // reader of copy of table
+        private final long lookupList;                      // offset to lookup list from beginning of table
+        private final int[] lookupOffsets;                  // offsets to lookup tables from lookup list
+        private final BitSet loaded = new BitSet();         // indices of lookup tables already read
+
+        LookupLoader(OFTableName tableTag, FontFileReader tableReader, long lookupList, int[] lookupOffsets) {
+            this.tableTag = tableTag;
+            this.tableReader = tableReader;
+            this.lookupList = lookupList;
+            this.lookupOffsets = lookupOffsets;
+        }
+
+        /** {@inheritDoc} */
+        public List<GlyphSubtable> loadSubtables(Collection<String> lids) {
+            synchronized (OTFAdvancedTypographicTableReader.this) {
+                BitSet pending = new BitSet();
+                if (lids == null) {
+                    pending.set(0, lookupOffsets.length);
+                } else {
+                    for (String lid : lids) {
+                        int li = getLookupIndex(lid);
+                        if (li >= 0) {
+                            pending.set(li);
+                        }
+                    }
+                }
+                FontFileReader fontReader = in;
+                in = tableReader;
+                initATState();
+                seLookupReferences = new BitSet();
+                List<GlyphSubtable> subtables = new java.util.ArrayList<GlyphSubtable>();
+                try {
+                    for (int li = pending.nextSetBit(0); li >= 0; li = pending.nextSetBit(0)) {
+                        pending.clear(li);
+                        if ((li < lookupOffsets.length) && !loaded.get(li)) {
+                            // a lookup table that cannot be read is not read again
+                            loaded.set(li);
+                            List<GlyphSubtable> lookupSubtables = loadLookup(li);
+                            if (lookupSubtables != null) {
+                                subtables.addAll(lookupSubtables);
+                                pending.or(seLookupReferences);
+                            }
+                            seLookupReferences.clear();
+                        }
+                    }
+                    return subtables;
+                } finally {
+                    resetATState();
+                    seLookupReferences = null;
+                    in = fontReader;
+                }
+            }
+        }
+
+        /**
+         * Reads a single lookup table and constructs its subtables, so that a lookup table
+         * which violates the format doesn't affect the other lookup tables.
+         * @param li the lookup index
+         * @return the subtables of the lookup table, or null if it cannot be read
+         */
+        private List<GlyphSubtable> loadLookup(int li) {
+            if (log.isDebugEnabled()) {
+                log.debug(tableTag + " lookup index: " + li);
+            }
+            try {
+                readLookupTable(tableTag, li, lookupList + lookupOffsets [ li ]);
+                if (tableTag.equals(OFTableName.GSUB)) {
+                    return constructGSUBSubtables();
+                } else {
+                    return constructGPOSSubtables();
+                }
+            } catch (AdvancedTypographicTableFormatException e) {
+                ignoreLookup(li, e);
+            } catch (IOException e) {
+                ignoreLookup(li, e);
+            } finally {
+                seSubtables.clear();
+                resetATSubState();
+            }
+            return null;
+        }
+
+        private int getLookupIndex(String lid) {
+            if ((lid != null) && lid.startsWith("lu")) {
+                try {
+                    return Integer.parseInt(lid.substring(2));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+
+        private void ignoreLookup(int li, Exception e) {
+            log.warn(
+                "Encountered format constraint violation in advanced (typographic) table (AT) "
+                + tableTag + ", ignoring lookup lu" + li + ": " + e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Key of the shared advanced typographic tables of a font: the tables are the same
+     * if the fonts have the same name, size and GDEF, GSUB and GPOS directory entries.
+     */
+    private static final class SharedTablesKey {
+
+        private static final OFTableName[] TABLES = { OFTableName.GDEF, OFTableName.GSUB, OFTableName.GPOS };
+
+        private final String name;
+        private final long[] values;
+
+        SharedTablesKey(OpenFont otf, FontFileReader in) {
+            name = otf.getPostScriptName();
+            values = new long [ 2 + TABLES.length * 3 ];
+            values [ 0 ] = in.getFileSize();
+            values [ 1 ] = otf.getUnitsPerEm();
+            for (int i = 0, n = TABLES.length; i < n; i++) {
+                OFDirTabEntry dirTab = otf.getDirectoryEntry(TABLES [ i ]);
+                if (dirTab != null) {
+                    values [ 2 + i * 3 ] = dirTab.getOffset();
+                    values [ 3 + i * 3 ] = dirTab.getLength();
+                    values [ 4 + i * 3 ] = dirTab.getChecksum();
+                }
+            }
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return ((name != null) ? name.hashCode() : 0) * 31 + Arrays.hashCode(values);
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object o) {
+            if (o instanceof SharedTablesKey) {
+                SharedTablesKey k = (SharedTablesKey) o;
+                return ((name != null) ? name.equals(k.name) : (k.name == null)) && Arrays.equals(values, k.values);
+            } else {
+                return false;
+            }
+        }
+    }
+
     /** helper method for formatting an integer array for output */
     private String toString(int[] ia) {
         StringBuffer sb = new StringBuffer();
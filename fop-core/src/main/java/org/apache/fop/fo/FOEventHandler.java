@@ -125,6 +125,13 @@ public abstract class FOEventHandler {
     public void endDocument() throws SAXException {
     }
 
+    /**
+     * This method is called instead of {@link #endDocument()} when a document run is aborted
+     * because of an error. It releases the resources held for the document run.
+     */
+    public void abortDocument() {
+    }
+
     /**
      * Called upon start of root element.
      * @param root element
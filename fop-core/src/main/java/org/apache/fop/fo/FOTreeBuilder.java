@@ -85,6 +85,7 @@ public class FOTreeBuilder extends DefaultHandler {
 
     private int depth;
     private boolean errorinstart;
+    private boolean aborted;
 
     /**
      * <code>FOTreeBuilder</code> constructor
@@ -133,7 +134,15 @@ public class FOTreeBuilder extends DefaultHandler {
     /** {@inheritDoc} */
     public void characters(char[] data, int start, int length)
                 throws SAXException {
-        delegate.characters(data, start, length);
+        try {
+            delegate.characters(data, start, length);
+        } catch (SAXException e) {
+            abortDocument();
+            throw e;
+        } catch (RuntimeException e) {
+            abortDocument();
+            throw e;
+        }
     }
 
     /** {@inheritDoc} */
@@ -157,6 +166,18 @@ public class FOTreeBuilder extends DefaultHandler {
 
     /** {@inheritDoc} */
     public void endDocument() throws SAXException {
+        try {
+            endFOTree();
+        } catch (SAXException e) {
+            abortDocument();
+            throw e;
+        } catch (RuntimeException e) {
+            abortDocument();
+            throw e;
+        }
+    }
+
+    private void endFOTree() throws SAXException {
         this.delegate.endDocument();
         if (this.rootFObj == null && empty) {
             FOValidationEventProducer eventProducer
@@ -179,6 +200,10 @@ public class FOTreeBuilder extends DefaultHandler {
             delegate.startElement(namespaceURI, localName, rawName, attlist);
         } catch (SAXException e) {
             errorinstart = true;
+            abortDocument();
+            throw e;
+        } catch (RuntimeException e) {
+            abortDocument();
             throw e;
         }
     }
@@ -187,15 +212,23 @@ public class FOTreeBuilder extends DefaultHandler {
     public void endElement(String uri, String localName, String rawName)
                 throws SAXException {
         if (!errorinstart) {
-            this.delegate.endElement(uri, localName, rawName);
-            this.depth--;
-            if (depth == 0) {
-                if (delegate != mainFOHandler) {
-                    //Return from sub-handler back to main handler
-                    delegate.endDocument();
-                    delegate = mainFOHandler;
-                    delegate.endElement(uri, localName, rawName);
+            try {
+                this.delegate.endElement(uri, localName, rawName);
+                this.depth--;
+                if (depth == 0) {
+                    if (delegate != mainFOHandler) {
+                        //Return from sub-handler back to main handler
+                        delegate.endDocument();
+                        delegate = mainFOHandler;
+                        delegate.endElement(uri, localName, rawName);
+                    }
                 }
+            } catch (SAXException e) {
+                abortDocument();
+                throw e;
+            } catch (RuntimeException e) {
+                abortDocument();
+                throw e;
             }
         }
     }
@@ -213,9 +246,21 @@ public class FOTreeBuilder extends DefaultHandler {
     /** {@inheritDoc} */
     public void fatalError(SAXParseException e) throws SAXException {
         LOG.error(e.toString());
+        abortDocument();
         throw e;
     }
 
+    /**
+     * Notifies the FO event handler that the document run is aborted, so that it releases
+     * what it holds for the document. An exception thrown by a SAX handler ends parsing.
+     */
+    private void abortDocument() {
+        if (!aborted) {
+            aborted = true;
+            foEventHandler.abortDocument();
+        }
+    }
+
     /**
      * Provides access to the underlying {@link FOEventHandler} object.
      *
@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.fonts.truetype.FontFileReader;
 
 
 /**
@@ -76,6 +77,7 @@ public abstract class CustomFont extends Typeface
     private int strikeoutThickness;
 
     private Map<Integer, Map<Integer, Integer>> kerning;
+    private volatile KerningTable kerningTable;
 
     private boolean useKerning = true;
     /** the character map, mapping Unicode ranges to glyph indices. */
@@ -166,6 +168,18 @@ public abstract class CustomFont extends Typeface
         return resourceResolver.getResource(embedFileURI);
     }
 
+    /**
+     * Returns a {@link FontFileReader} for the embeddable font file. Local font files are
+     * memory-mapped and the mapping is shared with all other readers of the same file.
+     * Subclasses that override {@link #getInputStream()} should override this method, too.
+     *
+     * @return the font file reader which must be closed by the caller
+     * @throws IOException if embedFileName is not null but Source is not found
+     */
+    public FontFileReader getFontFileReader() throws IOException {
+        return FontFileReader.open(resourceResolver, embedFileURI);
+    }
+
     /**
      * Returns the lookup name to an embeddable font file available as a
      * resource.
@@ -324,6 +338,20 @@ public abstract class CustomFont extends Typeface
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getKerning(int ch1, int ch2) {
+        if (!isKerningEnabled()) {
+            return 0;
+        }
+        KerningTable table = kerningTable;
+        if (table == null) {
+            table = KerningTable.build(kerning);
+            kerningTable = table;
+        }
+        return table.getKerning(ch1, ch2);
+    }
+
     /**
      * Used to determine if advanced typographic features are enabled.
      * By default, this is false, but may be overridden by subclasses.
@@ -511,6 +539,7 @@ public abstract class CustomFont extends Typeface
             kerning = new HashMap<Integer, Map<Integer, Integer>>();
         }
         this.kerning.put(key, value);
+        this.kerningTable = null;
     }
 
     /**
@@ -524,6 +553,7 @@ public abstract class CustomFont extends Typeface
         } else {
             this.kerning = kerningMap;
         }
+        this.kerningTable = null;
     }
 
     /**
@@ -82,6 +82,8 @@ public class Font implements Substitutable, Positionable {
 
     private final FontMetrics metric;
 
+    private final WordWidthCache wordWidthCache = new WordWidthCache();
+
     /**
      * Main constructor
      * @param key key of the font
@@ -104,6 +106,14 @@ public class Font implements Substitutable, Positionable {
         return this.metric;
     }
 
+    /**
+     * Returns the cache of word measurements for this font and size.
+     * @return the word width cache
+     */
+    public WordWidthCache getWordWidthCache() {
+        return this.wordWidthCache;
+    }
+
     /**
      * Determines whether the font is a multibyte font.
      * @return True if it is multibyte
@@ -204,6 +214,9 @@ public class Font implements Substitutable, Positionable {
             return 0;
         }
 
+        if (metric instanceof Typeface) {
+            return ((Typeface) metric).getKerning(ch1, ch2) * getFontSize() / 1000;
+        }
         Map<Integer, Integer> kernPair = getKerning().get(ch1);
         if (kernPair != null) {
             Integer width = kernPair.get(ch2);
@@ -19,20 +19,32 @@
 
 package org.apache.fop.fonts;
 
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.fonts.autodetect.FontInfoFinder;
 
 /**
  * Adds a list of fonts to a given font info list
+ * <p>
+ * The font files are examined concurrently on a fork-join pool. The resulting font infos are
+ * added in the order of the font file list, and the font cache is updated in one batch once
+ * all font files have been examined, so the outcome doesn't depend on the parallelism.
  */
 public class FontAdder {
+
+    /** the number of font files examined by one task without further splitting */
+    private static final int FONTS_PER_TASK = 4;
+
     private final FontEventListener listener;
     private final InternalResourceResolver resourceResolver;
     private final FontManager manager;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
     /**
      * Main constructor
@@ -59,16 +71,86 @@ public class FontAdder {
         FontInfoFinder finder = new FontInfoFinder();
         finder.setEventListener(listener);
 
-        for (URL fontURL : fontURLList) {
-            EmbedFontInfo[] embedFontInfos = finder.find(fontURL.toURI(), resourceResolver, cache);
-            if (embedFontInfos == null) {
+        URI[] fontURIs = new URI[fontURLList.size()];
+        for (int i = 0; i < fontURIs.length; i++) {
+            fontURIs[i] = fontURLList.get(i).toURI();
+        }
+        EmbedFontInfo[][] results = new EmbedFontInfo[fontURIs.length][];
+        FontCache.Batch[] updates = new FontCache.Batch[fontURIs.length];
+        FindTask task = new FindTask(finder, cache, fontURIs, results, updates, 0, fontURIs.length);
+        if (parallelism > 1 && fontURIs.length > FONTS_PER_TASK) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            task.compute();
+        }
+
+        for (int i = 0; i < fontURIs.length; i++) {
+            if (cache != null) {
+                cache.apply(updates[i]);
+            }
+            if (results[i] == null) {
                 continue;
             }
-            for (EmbedFontInfo fontInfo : embedFontInfos) {
+            for (EmbedFontInfo fontInfo : results[i]) {
                 if (fontInfo != null) {
                     fontInfoList.add(fontInfo);
                 }
             }
         }
     }
+
+    /**
+     * Sets the number of font files that are examined concurrently.
+     * @param parallelism the parallelism (1 to examine font files sequentially)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /** Examines a range of font files, splitting it up if it is large. */
+    private final class FindTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -3452364585236425716L;
+
+        private final FontInfoFinder finder;
+        private final FontCache cache;
+        private final URI[] fontURIs;
+        private final EmbedFontInfo[][] results;
+        private final FontCache.Batch[] updates;
+        private final int start;
+        private final int end;
+
+        FindTask(FontInfoFinder finder, FontCache cache, URI[] fontURIs, EmbedFontInfo[][] results,
+                FontCache.Batch[] updates, int start, int end) {
+            this.finder = finder;
+            this.cache = cache;
+            this.fontURIs = fontURIs;
+            this.results = results;
+            this.updates = updates;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute() {
+            if (end - start > FONTS_PER_TASK && getPool() != null) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new FindTask(finder, cache, fontURIs, results, updates, start, middle),
+                        new FindTask(finder, cache, fontURIs, results, updates, middle, end));
+            } else {
+                for (int i = start; i < end; i++) {
+                    updates[i] = new FontCache.Batch();
+                    results[i] = finder.find(fontURIs[i], resourceResolver, cache,
+                            cache != null ? updates[i] : null);
+                }
+            }
+        }
+    }
 }
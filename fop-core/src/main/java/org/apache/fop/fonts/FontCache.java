@@ -25,15 +25,20 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -46,6 +51,12 @@ import org.apache.fop.util.LogUtil;
 
 /**
  * Fop cache (currently only used for font info caching)
+ * <p>
+ * The cache is stored as a binary index (see {@link FontCacheIndex}) that is memory-mapped
+ * when the cache is loaded. Font files are only decoded from the index when they are looked
+ * up; additions and removals are kept in memory until the cache is saved. Cache files written
+ * with Java serialization by earlier versions are still read and are converted the next time
+ * the cache is saved.
  */
 public final class FontCache implements Serializable {
 
@@ -84,6 +95,23 @@ public final class FontCache implements Serializable {
      */
     private Map<String, Long> failedFontMap;
 
+    /** the memory-mapped cache file this cache was loaded from (may be null) */
+    private transient FontCacheIndex index;
+
+    /** keys of font files in the index that have been removed from the cache */
+    private transient Set<String> removedFonts;
+
+    /**
+     * Creates an empty font cache.
+     */
+    public FontCache() {
+    }
+
+    private FontCache(FontCacheIndex index) throws IOException {
+        this.index = index;
+        index.readFailedFonts(getFailedFontMap());
+    }
+
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
     }
@@ -159,10 +187,16 @@ public final class FontCache implements Serializable {
                     log.trace("Loading font cache from "
                             + cacheFile.getCanonicalPath());
                 }
+                if (FontCacheIndex.isIndex(cacheFile)) {
+                    return new FontCache(FontCacheIndex.open(cacheFile));
+                }
                 InputStream in = new BufferedInputStream(new FileInputStream(cacheFile));
                 ObjectInputStream oin = new ObjectInputStream(in);
                 try {
-                    return (FontCache) oin.readObject();
+                    FontCache cache = (FontCache) oin.readObject();
+                    //convert the serialized cache to the binary format on the next save
+                    cache.changed = true;
+                    return cache;
                 } finally {
                     IOUtils.closeQuietly(oin);
                 }
@@ -210,13 +244,23 @@ public final class FontCache implements Serializable {
             if (changed) {
                 try {
                     log.trace("Writing font cache to " + cacheFile.getCanonicalPath());
-                    OutputStream out = new java.io.FileOutputStream(cacheFile);
+                    //the current cache file may be mapped: write a new file and replace it
+                    File tempFile = File.createTempFile("fop-fonts", ".tmp",
+                            cacheFile.getAbsoluteFile().getParentFile());
+                    OutputStream out = new java.io.FileOutputStream(tempFile);
                     out = new java.io.BufferedOutputStream(out);
-                    ObjectOutputStream oout = new ObjectOutputStream(out);
                     try {
-                        oout.writeObject(this);
+                        FontCacheIndex.write(out, getEncodedEntries(), getFailedFontMap());
                     } finally {
-                        IOUtils.closeQuietly(oout);
+                        IOUtils.closeQuietly(out);
+                    }
+                    if (!tempFile.renameTo(cacheFile)) {
+                        cacheFile.delete();
+                        if (!tempFile.renameTo(cacheFile)) {
+                            tempFile.delete();
+                            throw new IOException("Could not replace font cache file "
+                                    + cacheFile);
+                        }
                     }
                 } catch (IOException ioe) {
                     LogUtil.handleException(log, ioe, true);
@@ -227,6 +271,29 @@ public final class FontCache implements Serializable {
         }
     }
 
+    private SortedMap<byte[], byte[]> getEncodedEntries() throws IOException {
+        SortedMap<byte[], byte[]> entries = new TreeMap<byte[], byte[]>(FontCacheIndex.KEY_ORDER);
+        if (index != null) {
+            for (int i = 0, c = index.size(); i < c; i++) {
+                String key = index.getKey(i);
+                if (!isRemoved(key) && !getFontFileMap().containsKey(key)) {
+                    //copy the entry unchanged, without decoding its font infos
+                    entries.put(FontCacheIndex.toUTF8(key), index.getEntry(i));
+                }
+            }
+        }
+        for (Map.Entry<String, CachedFontFile> e : getFontFileMap().entrySet()) {
+            CachedFontFile cff = e.getValue();
+            entries.put(FontCacheIndex.toUTF8(e.getKey()), FontCacheIndex.encodeEntry(e.getKey(),
+                    cff.lastModified(), Arrays.asList(cff.getEmbedFontInfos())));
+        }
+        return entries;
+    }
+
+    private boolean isRemoved(String key) {
+        return removedFonts != null && removedFonts.contains(key);
+    }
+
     /**
      * creates a key given a font info for the font mapping
      *
@@ -260,7 +327,7 @@ public final class FontCache implements Serializable {
      * @return boolean
      */
     public boolean containsFont(String embedUrl) {
-        return (embedUrl != null && getFontFileMap().containsKey(embedUrl));
+        return (embedUrl != null && lookup(embedUrl) != null);
     }
 
     /**
@@ -271,8 +338,7 @@ public final class FontCache implements Serializable {
      * @return font
      */
     public boolean containsFont(EmbedFontInfo fontInfo) {
-        return (fontInfo != null && getFontFileMap().containsKey(
-                getCacheKey(fontInfo)));
+        return (fontInfo != null && containsFont(getCacheKey(fontInfo)));
     }
 
     /**
@@ -313,6 +379,41 @@ public final class FontCache implements Serializable {
         return fontfileMap;
     }
 
+    /**
+     * Looks up a font file, decoding it from the index if it hasn't been accessed before.
+     */
+    private CachedFontFile lookup(String embedUrl) {
+        synchronized (changeLock) {
+            CachedFontFile cachedFontFile = getFontFileMap().get(embedUrl);
+            if (cachedFontFile == null && index != null && !isRemoved(embedUrl)) {
+                int i = index.find(embedUrl);
+                if (i >= 0) {
+                    try {
+                        cachedFontFile = new CachedFontFile(index.getLastModified(i));
+                        for (EmbedFontInfo efi : index.getFontInfos(i)) {
+                            cachedFontFile.put(efi);
+                        }
+                        getFontFileMap().put(embedUrl, cachedFontFile);
+                    } catch (IOException ioe) {
+                        log.warn("Discarding corrupt font cache entry for " + embedUrl
+                                + ": " + ioe.getMessage());
+                        getRemovedFonts().add(embedUrl);
+                        changed = true;
+                        cachedFontFile = null;
+                    }
+                }
+            }
+            return cachedFontFile;
+        }
+    }
+
+    private Set<String> getRemovedFonts() {
+        if (removedFonts == null) {
+            removedFonts = new HashSet<String>();
+        }
+        return removedFonts;
+    }
+
     /**
      * Adds a font info to cache
      *
@@ -321,6 +422,18 @@ public final class FontCache implements Serializable {
      */
     public void addFont(EmbedFontInfo fontInfo, InternalResourceResolver resourceResolver) {
         String cacheKey = getCacheKey(fontInfo);
+        synchronized (changeLock) {
+            if (containsFont(cacheKey)) {
+                addFont(fontInfo, cacheKey, -1);
+            } else {
+                // try and determine modified date
+                URI fontUri = resourceResolver.resolveFromBase(fontInfo.getEmbedURI());
+                addFont(fontInfo, cacheKey, getLastModified(fontUri));
+            }
+        }
+    }
+
+    private void addFont(EmbedFontInfo fontInfo, String cacheKey, long lastModified) {
         synchronized (changeLock) {
             CachedFontFile cachedFontFile;
             if (containsFont(cacheKey)) {
@@ -329,9 +442,6 @@ public final class FontCache implements Serializable {
                     cachedFontFile.put(fontInfo);
                 }
             } else {
-                // try and determine modified date
-                URI fontUri = resourceResolver.resolveFromBase(fontInfo.getEmbedURI());
-                long lastModified = getLastModified(fontUri);
                 cachedFontFile = new CachedFontFile(lastModified);
                 if (log.isTraceEnabled()) {
                     log.trace("Font added to cache: " + cacheKey);
@@ -343,6 +453,23 @@ public final class FontCache implements Serializable {
         }
     }
 
+    /**
+     * Applies the changes collected in a batch to this cache, in the order they were recorded.
+     *
+     * @param batch the batch of changes
+     */
+    public void apply(Batch batch) {
+        synchronized (changeLock) {
+            for (Batch.Change change : batch.changes) {
+                if (change.fontInfo != null) {
+                    addFont(change.fontInfo, getCacheKey(change.fontInfo), change.lastModified);
+                } else {
+                    registerFailedFont(change.failedUrl, change.lastModified);
+                }
+            }
+        }
+    }
+
     /**
      * Returns a font from the cache.
      *
@@ -351,7 +478,7 @@ public final class FontCache implements Serializable {
      * @return CachedFontFile object
      */
     public CachedFontFile getFontFile(String embedUrl) {
-        return containsFont(embedUrl) ? getFontFileMap().get(embedUrl) : null;
+        return embedUrl != null ? lookup(embedUrl) : null;
     }
 
     /**
@@ -389,6 +516,9 @@ public final class FontCache implements Serializable {
                     log.trace("Font removed from cache: " + embedUrl);
                 }
                 getFontFileMap().remove(embedUrl);
+                if (index != null) {
+                    getRemovedFonts().add(embedUrl);
+                }
                 changed = true;
             }
         }
@@ -455,6 +585,8 @@ public final class FontCache implements Serializable {
             }
             fontfileMap = null;
             failedFontMap = null;
+            index = null;
+            removedFonts = null;
             changed = true;
         }
     }
@@ -483,6 +615,59 @@ public final class FontCache implements Serializable {
         }
     }
 
+    /**
+     * Collects additions to a font cache so they can be applied in a single step through
+     * {@link FontCache#apply(Batch)}, for example once fonts have been detected concurrently.
+     * A batch is not thread-safe; use one batch per thread.
+     */
+    public static final class Batch {
+
+        private final List<Change> changes = new java.util.ArrayList<Change>();
+
+        /**
+         * Records a font info to be added to the cache. The modification date of the font file
+         * is determined right away.
+         *
+         * @param fontInfo font info
+         * @param resourceResolver the resolver used to locate the font file
+         */
+        public void addFont(EmbedFontInfo fontInfo, InternalResourceResolver resourceResolver) {
+            URI fontUri = resourceResolver.resolveFromBase(fontInfo.getEmbedURI());
+            changes.add(new Change(fontInfo, null, getLastModified(fontUri)));
+        }
+
+        /**
+         * Records a font that failed to load.
+         *
+         * @param embedUrl embed url
+         * @param lastModified time last modified
+         */
+        public void registerFailedFont(String embedUrl, long lastModified) {
+            changes.add(new Change(null, embedUrl, lastModified));
+        }
+
+        /**
+         * Indicates whether changes have been recorded.
+         * @return true if the batch is empty
+         */
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        /** Either an added font info or a font that failed to load. */
+        private static final class Change {
+            private final EmbedFontInfo fontInfo;
+            private final String failedUrl;
+            private final long lastModified;
+
+            Change(EmbedFontInfo fontInfo, String failedUrl, long lastModified) {
+                this.fontInfo = fontInfo;
+                this.failedUrl = failedUrl;
+                this.lastModified = lastModified;
+            }
+        }
+    }
+
     private static class CachedFontFile implements Serializable {
         private static final long serialVersionUID = 4524237324330578883L;
 
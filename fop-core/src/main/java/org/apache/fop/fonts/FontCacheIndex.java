@@ -0,0 +1,490 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A read-only, memory-mapped font cache file. The index is queried in place: looking up a font
+ * file only decodes the entry of that font file, so opening a cache of thousands of fonts
+ * costs no more than mapping the file.
+ * <p>
+ * Layout (all integers big-endian):
+ * <pre>
+ * magic "FOPFONTS", int version
+ * int n, int[n + 1] entry offsets (entries sorted by the UTF-8 bytes of their key)
+ * int m, m failed fonts (string key, long lastModified)
+ * n entries: string key, long lastModified, int count, count font infos
+ * </pre>
+ * Strings are stored as their UTF-8 length (-1 for null) followed by the UTF-8 bytes.
+ */
+final class FontCacheIndex {
+
+    /** The magic bytes a font cache index starts with. */
+    private static final byte[] MAGIC = {'F', 'O', 'P', 'F', 'O', 'N', 'T', 'S'};
+
+    /** The version of the format; readers reject other versions. */
+    static final int VERSION = 1;
+
+    /**
+     * Windows doesn't allow a mapped file to be replaced until the mapping has been garbage
+     * collected, so a loaded cache could not be saved again. There the index is read into
+     * memory instead, which still spares decoding the entries that aren't used.
+     */
+    private static final boolean MAP_FILES = !System.getProperty("os.name", "").startsWith("Windows");
+
+    private static final int FLAG_KERNING = 0x01;
+    private static final int FLAG_ADVANCED = 0x02;
+    private static final int FLAG_SIMULATE_STYLE = 0x04;
+    private static final int FLAG_EMBED_AS_TYPE1 = 0x08;
+
+    /** Orders keys by their UTF-8 bytes, the order of the entries in the index. */
+    static final Comparator<byte[]> KEY_ORDER = new Comparator<byte[]>() {
+        public int compare(byte[] a, byte[] b) {
+            int len = Math.min(a.length, b.length);
+            for (int i = 0; i < len; i++) {
+                int diff = (a[i] & 0xff) - (b[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int offsetsStart;
+
+    private FontCacheIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a font cache index");
+                }
+            }
+            int version = buffer.getInt(MAGIC.length);
+            if (version != VERSION) {
+                throw new IOException("Unsupported font cache index version: " + version);
+            }
+            count = buffer.getInt(MAGIC.length + 4);
+            offsetsStart = MAGIC.length + 8;
+            if (count < 0 || getOffset(count) > buffer.capacity()) {
+                throw new IOException("Corrupt font cache index");
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated font cache index");
+        }
+    }
+
+    /**
+     * Indicates whether a file is a font cache index (rather than a serialized font cache).
+     *
+     * @param file the file
+     * @return true if the file starts with the index' magic bytes
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isIndex(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] header = new byte[MAGIC.length];
+            int len = 0;
+            while (len < header.length) {
+                int n = in.read(header, len, header.length - len);
+                if (n < 0) {
+                    return false;
+                }
+                len += n;
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Maps a font cache index file, or reads it into memory where a mapped file could not be
+     * replaced.
+     *
+     * @param file the file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a valid index
+     */
+    static FontCacheIndex open(File file) throws IOException {
+        return open(file, MAP_FILES);
+    }
+
+    /**
+     * Opens a font cache index file.
+     *
+     * @param file the file
+     * @param map true to map the file, false to read it into memory
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a valid index
+     */
+    static FontCacheIndex open(File file, boolean map) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (map) {
+                return new FontCacheIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            byte[] bytes = new byte[(int) channel.size()];
+            raf.readFully(bytes);
+            return new FontCacheIndex(ByteBuffer.wrap(bytes));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** @return the number of font files in the index */
+    int size() {
+        return count;
+    }
+
+    private int getOffset(int i) {
+        return buffer.getInt(offsetsStart + i * 4);
+    }
+
+    /**
+     * Finds the entry of a font file.
+     *
+     * @param key the cache key of the font file
+     * @return the index of the entry or -1 if there's no such entry
+     */
+    int find(String key) {
+        byte[] bytes = toUTF8(key);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(getOffset(mid), bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareKey(int offset, byte[] key) {
+        int len = buffer.getInt(offset);
+        int pos = offset + 4;
+        int common = Math.min(len, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(pos + i) & 0xff) - (key[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return len - key.length;
+    }
+
+    /**
+     * Returns the cache key of an entry.
+     * @param i the index of the entry
+     * @return the key
+     */
+    String getKey(int i) {
+        return readString(entryReader(i));
+    }
+
+    /**
+     * Returns the last modification date of the font file of an entry.
+     * @param i the index of the entry
+     * @return the last modification date at the time the font file was cached
+     */
+    long getLastModified(int i) {
+        ByteBuffer in = entryReader(i);
+        skipString(in);
+        return in.getLong();
+    }
+
+    /**
+     * Decodes the font infos of an entry.
+     * @param i the index of the entry
+     * @return the font infos
+     * @throws IOException if the entry is corrupt
+     */
+    EmbedFontInfo[] getFontInfos(int i) throws IOException {
+        try {
+            ByteBuffer in = entryReader(i);
+            skipString(in);
+            in.getLong();
+            EmbedFontInfo[] infos = new EmbedFontInfo[in.getInt()];
+            for (int j = 0; j < infos.length; j++) {
+                infos[j] = readFontInfo(in);
+            }
+            return infos;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt font cache entry");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt font cache entry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the encoded bytes of an entry, so it can be copied to a new index without
+     * decoding it.
+     * @param i the index of the entry
+     * @return the entry
+     */
+    byte[] getEntry(int i) {
+        ByteBuffer in = entryReader(i);
+        byte[] entry = new byte[in.remaining()];
+        in.get(entry);
+        return entry;
+    }
+
+    /**
+     * Reads the failed fonts of the index.
+     * @param failedFonts the map to add the failed fonts (key -&gt; last modified) to
+     * @throws IOException if the index is corrupt
+     */
+    void readFailedFonts(Map<String, Long> failedFonts) throws IOException {
+        try {
+            ByteBuffer in = buffer.duplicate();
+            in.position(offsetsStart + (count + 1) * 4);
+            int failed = in.getInt();
+            for (int i = 0; i < failed; i++) {
+                String key = readString(in);
+                failedFonts.put(key, in.getLong());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt font cache index");
+        }
+    }
+
+    private ByteBuffer entryReader(int i) {
+        ByteBuffer in = buffer.duplicate();
+        in.limit(getOffset(i + 1));
+        in.position(getOffset(i));
+        return in;
+    }
+
+    /**
+     * Writes a font cache index.
+     *
+     * @param out the stream to write to
+     * @param entries the encoded entries, sorted by key
+     * @param failedFonts the failed fonts (key -&gt; last modified)
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(OutputStream out, SortedMap<byte[], byte[]> entries,
+            Map<String, Long> failedFonts) throws IOException {
+        ByteArrayOutputStream failed = new ByteArrayOutputStream();
+        DataOutputStream failedOut = new DataOutputStream(failed);
+        failedOut.writeInt(failedFonts.size());
+        for (Map.Entry<String, Long> e : failedFonts.entrySet()) {
+            writeString(failedOut, e.getKey());
+            failedOut.writeLong(e.getValue());
+        }
+        failedOut.flush();
+
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.write(MAGIC);
+        dout.writeInt(VERSION);
+        dout.writeInt(entries.size());
+        int offset = MAGIC.length + 8 + (entries.size() + 1) * 4 + failed.size();
+        for (byte[] entry : entries.values()) {
+            dout.writeInt(offset);
+            offset += entry.length;
+        }
+        dout.writeInt(offset);
+        failed.writeTo(dout);
+        for (byte[] entry : entries.values()) {
+            dout.write(entry);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Encodes the entry of a font file.
+     *
+     * @param key the cache key of the font file
+     * @param lastModified the last modification date of the font file
+     * @param infos the font infos of the font file
+     * @return the encoded entry
+     * @throws IOException if an I/O error occurs
+     */
+    static byte[] encodeEntry(String key, long lastModified, List<EmbedFontInfo> infos)
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        writeString(out, key);
+        out.writeLong(lastModified);
+        out.writeInt(infos.size());
+        for (EmbedFontInfo info : infos) {
+            writeFontInfo(out, info);
+        }
+        out.flush();
+        return bout.toByteArray();
+    }
+
+    private static void writeFontInfo(DataOutputStream out, EmbedFontInfo info) throws IOException {
+        FontUris uris = info.getFontUris();
+        writeURI(out, uris.getEmbed());
+        writeURI(out, uris.getMetrics());
+        writeURI(out, uris.getAfm());
+        writeURI(out, uris.getPfm());
+        int flags = 0;
+        if (info.getKerning()) {
+            flags |= FLAG_KERNING;
+        }
+        if (info.getAdvanced()) {
+            flags |= FLAG_ADVANCED;
+        }
+        if (info.getSimulateStyle()) {
+            flags |= FLAG_SIMULATE_STYLE;
+        }
+        if (info.getEmbedAsType1()) {
+            flags |= FLAG_EMBED_AS_TYPE1;
+        }
+        out.writeByte(flags);
+        writeString(out, info.getEncodingMode() != null ? info.getEncodingMode().getName() : null);
+        writeString(out, info.getEmbeddingMode() != null ? info.getEmbeddingMode().getName() : null);
+        writeString(out, info.getPostScriptName());
+        writeString(out, info.getSubFontName());
+        List<FontTriplet> triplets = info.getFontTriplets();
+        if (triplets == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(triplets.size());
+            for (FontTriplet triplet : triplets) {
+                writeString(out, triplet.getName());
+                writeString(out, triplet.getStyle());
+                out.writeInt(triplet.getWeight());
+                out.writeInt(triplet.getPriority());
+            }
+        }
+    }
+
+    private static EmbedFontInfo readFontInfo(ByteBuffer in) {
+        URI embed = readURI(in);
+        URI metrics = readURI(in);
+        URI afm = readURI(in);
+        URI pfm = readURI(in);
+        int flags = in.get();
+        String encodingMode = readString(in);
+        String embeddingMode = readString(in);
+        String postScriptName = readString(in);
+        String subFontName = readString(in);
+        int tripletCount = in.getInt();
+        List<FontTriplet> triplets = null;
+        if (tripletCount >= 0) {
+            triplets = new java.util.ArrayList<FontTriplet>(tripletCount);
+            for (int i = 0; i < tripletCount; i++) {
+                String name = readString(in);
+                String style = readString(in);
+                int weight = in.getInt();
+                triplets.add(new FontTriplet(name, style, weight, in.getInt()));
+            }
+        }
+        FontUris uris = (afm != null || pfm != null)
+                ? new FontUris(embed, metrics, afm, pfm) : new FontUris(embed, metrics);
+        EmbedFontInfo info = new EmbedFontInfo(uris, (flags & FLAG_KERNING) != 0,
+                (flags & FLAG_ADVANCED) != 0, triplets, subFontName,
+                encodingMode != null ? EncodingMode.getValue(encodingMode) : null,
+                embeddingMode != null ? EmbeddingMode.getValue(embeddingMode) : null,
+                (flags & FLAG_SIMULATE_STYLE) != 0, (flags & FLAG_EMBED_AS_TYPE1) != 0);
+        info.setPostScriptName(postScriptName);
+        return info;
+    }
+
+    private static void writeURI(DataOutputStream out, URI uri) throws IOException {
+        writeString(out, uri != null ? uri.toString() : null);
+    }
+
+    private static URI readURI(ByteBuffer in) {
+        String uri = readString(in);
+        return uri != null ? URI.create(uri) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = toUTF8(s);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len > 0) {
+            in.position(in.position() + len);
+        }
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a key.
+     * @param s the key
+     * @return the UTF-8 bytes
+     */
+    static byte[] toUTF8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
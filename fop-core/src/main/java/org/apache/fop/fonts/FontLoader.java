@@ -71,7 +71,7 @@ public abstract class FontLoader {
         this.resourceResolver = resourceResolver;
     }
 
-    private static boolean isType1(FontUris fontUris) {
+    static boolean isType1(FontUris fontUris) {
         return fontUris.getEmbed().toASCIIString().toLowerCase().endsWith(".pfb") || fontUris.getAfm() != null
             || fontUris.getPfm() != null;
     }
@@ -26,6 +26,7 @@ import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.fonts.FontTriplet.Matcher;
 import org.apache.fop.fonts.substitute.FontSubstitutions;
+import org.apache.fop.fonts.truetype.FontFileMappings;
 
 // TODO: Refactor fonts package so major font activities (autodetection etc)
 // are all centrally managed and delegated from this class
@@ -52,6 +53,12 @@ public class FontManager {
     /** FontTriplet matcher for fonts that shall be referenced rather than embedded. */
     private FontTriplet.Matcher referencedFontsMatcher;
 
+    /** The font subsets shared between documents */
+    private final FontSubsetCache fontSubsetCache = new FontSubsetCache();
+
+    /** The memory mappings of the font files loaded so far */
+    private final FontFileMappings fontFileMappings = new FontFileMappings();
+
     /**
      * Main constructor
      *
@@ -133,6 +140,24 @@ public class FontManager {
         return fontCacheManager.load();
     }
 
+    /**
+     * Returns the cache of font subsets shared by the documents using this font manager. It is
+     * disabled until a maximum size is set with {@link FontSubsetCache#setMaxSize(long)}.
+     * @return the font subset cache
+     */
+    public FontSubsetCache getFontSubsetCache() {
+        return fontSubsetCache;
+    }
+
+    /**
+     * Returns the memory mappings of the font files loaded by the documents using this font
+     * manager. They are kept until {@link FontFileMappings#release()} is called.
+     * @return the font file mappings
+     */
+    public FontFileMappings getFontFileMappings() {
+        return fontFileMappings;
+    }
+
     /**
      * Saves the FontCache as necessary
      *
@@ -162,6 +187,11 @@ public class FontManager {
         for (FontCollection fontCollection : fontCollections) {
             startNum = fontCollection.setup(startNum, fontInfo);
         }
+        for (Typeface font : fontInfo.getFonts().values()) {
+            if (font instanceof LazyFont) {
+                ((LazyFont) font).setFontFileMappings(fontFileMappings);
+            }
+        }
         // Make any defined substitutions in the font info
         getFontSubstitutions().adjustFontInfo(fontInfo);
     }
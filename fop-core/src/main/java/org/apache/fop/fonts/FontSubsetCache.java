@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of font subsets, shared by all documents produced with the same
+ * {@link FontManager}. A subset is identified by the font file, the font within that file,
+ * the embedding mode, the subset format and name, and the glyph set of the document. When a
+ * later document uses the same glyphs of a font, the subset bytes are taken from the cache
+ * instead of being built again. The glyph names the subsetter records on the font are
+ * cached along with the bytes and recorded again on a cache hit.
+ * <p>
+ * The least recently used subsets are evicted once the cached bytes exceed the maximum size.
+ * The cache is disabled (maximum size 0) by default. Font files are expected not to change
+ * while the cache is in use. This class is thread-safe.
+ */
+public final class FontSubsetCache {
+
+    /** Builds a font subset on a cache miss. */
+    public interface SubsetBuilder {
+
+        /**
+         * Builds the font subset.
+         * @return the subset bytes
+         * @throws IOException if the font cannot be read
+         */
+        byte[] build() throws IOException;
+    }
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    private long maxSize;
+
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    /**
+     * Returns the subset of a font for the glyphs currently used, building it with the given
+     * builder if it is not cached. The returned array must not be modified.
+     * @param font the font
+     * @param format the subset format, for example "ttf" or "cff"
+     * @param name the name of the font inside the subset, if it is part of the subset bytes
+     * @param builder builds the subset on a cache miss
+     * @return the subset bytes
+     * @throws IOException if the font cannot be read
+     */
+    public byte[] getSubset(CustomFont font, String format, String name, SubsetBuilder builder)
+            throws IOException {
+        if (!isEnabled() || font.getEmbedFileURI() == null) {
+            return builder.build();
+        }
+        Key key = new Key(font, format, name);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+        if (entry != null) {
+            if (entry.glyphNames != null) {
+                for (Map.Entry<Integer, String> glyphName : entry.glyphNames.entrySet()) {
+                    mapUsedGlyphName(font, glyphName.getKey(), glyphName.getValue());
+                }
+            }
+            return entry.data;
+        }
+        byte[] data = builder.build();
+        Map<Integer, String> glyphNames = getUsedGlyphNames(font);
+        put(key, new Entry(data,
+                glyphNames != null ? new LinkedHashMap<Integer, String>(glyphNames) : null));
+        return data;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        if (entry.data.length > maxSize) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.data.length;
+        }
+        size += entry.data.length;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry> iter = entries.values().iterator();
+        while (size > maxSize && iter.hasNext()) {
+            size -= iter.next().data.length;
+            iter.remove();
+        }
+    }
+
+    private static Map<Integer, String> getUsedGlyphNames(CustomFont font) {
+        if (font instanceof MultiByteFont) {
+            return ((MultiByteFont) font).getUsedGlyphNames();
+        } else if (font instanceof SingleByteFont) {
+            return ((SingleByteFont) font).getUsedGlyphNames();
+        }
+        return null;
+    }
+
+    private static void mapUsedGlyphName(CustomFont font, int gid, String name) {
+        if (font instanceof MultiByteFont) {
+            ((MultiByteFont) font).mapUsedGlyphName(gid, name);
+        } else {
+            ((SingleByteFont) font).mapUsedGlyphName(gid, name);
+        }
+    }
+
+    /**
+     * Sets the maximum number of subset bytes kept in this cache. Subsets are evicted if the
+     * cache currently holds more.
+     * @param maxSize the maximum size in bytes, 0 to disable the cache
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /** @return the maximum number of subset bytes kept in this cache */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return true if font subsets are cached at all */
+    public synchronized boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /** Removes all subsets from this cache. */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /** @return the number of subset bytes currently cached */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /** @return the number of subsets currently cached */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /** @return the number of subsets that were found in the cache */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /** @return the number of subsets that had to be built */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static final class Entry {
+
+        private final byte[] data;
+
+        private final Map<Integer, String> glyphNames;
+
+        Entry(byte[] data, Map<Integer, String> glyphNames) {
+            this.data = data;
+            this.glyphNames = glyphNames;
+        }
+    }
+
+    private static final class Key {
+
+        private final URI fontFile;
+
+        private final String fontName;
+
+        private final String subFontName;
+
+        private final EmbeddingMode embeddingMode;
+
+        private final String format;
+
+        private final String name;
+
+        /** the used glyphs as pairs of original and subset glyph index, in iteration order */
+        private final int[] glyphs;
+
+        /** the glyph names recorded on the font before the subset is built */
+        private final Map<Integer, String> glyphNames;
+
+        private final int hashCode;
+
+        Key(CustomFont font, String format, String name) {
+            this.fontFile = font.getEmbedFileURI();
+            this.fontName = font.getFontName();
+            this.subFontName = font instanceof MultiByteFont ? ((MultiByteFont) font).getTTCName() : null;
+            this.embeddingMode = font.getEmbeddingMode();
+            this.format = format;
+            this.name = name;
+            Map<Integer, Integer> usedGlyphs = font.getUsedGlyphs();
+            glyphs = new int[usedGlyphs.size() * 2];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> glyph : usedGlyphs.entrySet()) {
+                glyphs[i++] = glyph.getKey();
+                glyphs[i++] = glyph.getValue();
+            }
+            Map<Integer, String> names = getUsedGlyphNames(font);
+            this.glyphNames = names != null ? new LinkedHashMap<Integer, String>(names) : null;
+            int h = fontFile.hashCode();
+            h = 31 * h + format.hashCode();
+            h = 31 * h + (name != null ? name.hashCode() : 0);
+            h = 31 * h + Arrays.hashCode(glyphs);
+            this.hashCode = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && fontFile.equals(other.fontFile)
+                    && equal(fontName, other.fontName)
+                    && equal(subFontName, other.subFontName)
+                    && embeddingMode == other.embeddingMode
+                    && format.equals(other.format)
+                    && equal(name, other.name)
+                    && Arrays.equals(glyphs, other.glyphs)
+                    && equal(glyphNames, other.glyphNames);
+        }
+
+        private static boolean equal(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.List;
+
+/**
+ * Immutable direct mapping from Unicode code points to glyph indices, built from the
+ * segments of a character map. The code points are split into pages of 256 entries which
+ * are only allocated when at least one of their code points is mapped, so a lookup costs
+ * two array accesses.
+ */
+public final class GlyphIndexTable {
+
+    /** An empty glyph index table. */
+    public static final GlyphIndexTable EMPTY = new GlyphIndexTable(new int[0][]);
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+    private final int[][] pages;
+
+    private GlyphIndexTable(int[][] pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Builds a glyph index table from character map segments. If several segments map the
+     * same code point, the first one mapping it to a glyph index other than 0 wins.
+     * @param cmap the character map segments
+     * @return the glyph index table
+     */
+    public static GlyphIndexTable build(List<CMapSegment> cmap) {
+        int last = -1;
+        for (CMapSegment segment : cmap) {
+            last = Math.max(last, Math.min(segment.getUnicodeEnd(), MAX_CODE_POINT));
+        }
+        if (last < 0) {
+            return EMPTY;
+        }
+        int[][] pages = new int[(last >> PAGE_BITS) + 1][];
+        for (CMapSegment segment : cmap) {
+            int start = Math.max(segment.getUnicodeStart(), 0);
+            int end = Math.min(segment.getUnicodeEnd(), MAX_CODE_POINT);
+            int glyphOffset = segment.getGlyphStartIndex() - segment.getUnicodeStart();
+            for (int cp = start; cp <= end; cp++) {
+                int gi = glyphOffset + cp;
+                if (gi != 0) {
+                    int[] page = pages[cp >> PAGE_BITS];
+                    if (page == null) {
+                        page = new int[PAGE_SIZE];
+                        pages[cp >> PAGE_BITS] = page;
+                    }
+                    if (page[cp & PAGE_MASK] == 0) {
+                        page[cp & PAGE_MASK] = gi;
+                    }
+                }
+            }
+        }
+        return new GlyphIndexTable(pages);
+    }
+
+    /**
+     * Returns the glyph index for a code point.
+     * @param cp the Unicode code point
+     * @return the glyph index or 0 if the code point is not mapped
+     */
+    public int getGlyphIndex(int cp) {
+        int pageIndex = cp >> PAGE_BITS;
+        if (pageIndex < 0 || pageIndex >= pages.length) {
+            return 0;
+        }
+        int[] page = pages[pageIndex];
+        return page == null ? 0 : page[cp & PAGE_MASK];
+    }
+
+    /**
+     * Returns a copy of this table with an additional mapping. Only the affected page is
+     * copied, the other pages are shared with this table.
+     * @param cp the Unicode code point (must not be mapped yet)
+     * @param gi the glyph index
+     * @return the new glyph index table
+     */
+    public GlyphIndexTable withMapping(int cp, int gi) {
+        int pageIndex = cp >> PAGE_BITS;
+        int[][] newPages = new int[Math.max(pages.length, pageIndex + 1)][];
+        System.arraycopy(pages, 0, newPages, 0, pages.length);
+        int[] page = newPages[pageIndex];
+        newPages[pageIndex] = page == null ? new int[PAGE_SIZE] : page.clone();
+        newPages[pageIndex][cp & PAGE_MASK] = gi;
+        return new GlyphIndexTable(newPages);
+    }
+}
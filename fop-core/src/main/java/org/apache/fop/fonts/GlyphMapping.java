@@ -117,6 +117,34 @@ public class GlyphMapping {
         // 1. extract unmapped character sequence.
         CharSequence ics = text.subSequence(startIndex, endIndex);
 
+        // the mapping of words without associations only depends on the characters, script and language
+        WordWidthCache cache = retainAssociations ? null : font.getWordWidthCache();
+        String key = null;
+        WordWidthCache.WordWidth measured = null;
+        if (cache != null) {
+            key = WordWidthCache.createKey(ics, script, language, dontOptimizeForIdentityMapping,
+                    retainControls);
+            measured = cache.get(key);
+        }
+        if (measured == null) {
+            measured = mapWord(ics, font, script, language, dontOptimizeForIdentityMapping,
+                    retainAssociations ? new ArrayList() : null, retainControls);
+            if (cache != null) {
+                cache.put(key, measured);
+            }
+        }
+
+        // [TBD] - handle letter spacing
+
+        return new GlyphMapping(startIndex, endIndex, 0, nLS, MinOptMax.getInstance(measured.width),
+                endsWithHyphen, false, breakOpportunityChar != 0, font, level,
+                copy(measured.positionAdjustments), measured.mapping, measured.associations);
+    }
+
+    private static WordWidthCache.WordWidth mapWord(CharSequence ics, final Font font, String script,
+            String language, boolean dontOptimizeForIdentityMapping, List associations,
+            boolean retainControls) {
+
         // 2. if script is not specified (by FO property) or it is specified as 'auto',
         // then compute dominant script.
         if ((script == null) || "auto".equals(script)) {
@@ -128,7 +156,6 @@ public class GlyphMapping {
 
         // 3. perform mapping of chars to glyphs ... to glyphs ... to chars, retaining
         // associations if requested.
-        List associations = retainAssociations ? new ArrayList() : null;
 
         // This is a workaround to read the ligature from the font even if the script
         // does not match the one defined for the table.
@@ -156,7 +183,7 @@ public class GlyphMapping {
         mcs = font.reorderCombiningMarks(mcs, gpa, script, language, associations);
 
         // 6. compute word ipd based on final position adjustments.
-        MinOptMax ipd = MinOptMax.ZERO;
+        int ipd = 0;
         for (int i = 0, n = mcs.length(); i < n; i++) {
             int c = mcs.charAt(i);
 
@@ -171,17 +198,25 @@ public class GlyphMapping {
             if (gpa != null) {
                 w += gpa[i][GlyphPositioningTable.Value.IDX_X_ADVANCE];
             }
-            ipd = ipd.plus(w);
+            ipd += w;
         }
 
-        // [TBD] - handle letter spacing
-
-        return new GlyphMapping(startIndex, endIndex, 0, nLS, ipd, endsWithHyphen, false,
-                breakOpportunityChar != 0, font, level, gpa,
+        return new WordWidthCache.WordWidth(ipd, gpa,
                 !dontOptimizeForIdentityMapping && CharUtilities.isSameSequence(mcs, ics) ? null : mcs.toString(),
                 associations);
     }
 
+    private static int[][] copy(int[][] gpa) {
+        if (gpa == null) {
+            return null;
+        }
+        int[][] copy = new int[gpa.length][];
+        for (int i = 0; i < gpa.length; i++) {
+            copy[i] = gpa[i].clone();
+        }
+        return copy;
+    }
+
     private static boolean useKerningAdjustments(final Font font, String script, String language) {
         return font.hasKerning() && !font.hasFeature(GlyphTable.GLYPH_TABLE_TYPE_POSITIONING, script, language, "kern");
     }
@@ -236,7 +271,6 @@ public class GlyphMapping {
             final Font font, MinOptMax letterSpaceIPD, MinOptMax[] letterSpaceAdjustArray,
             char precedingChar, final char breakOpportunityChar, final boolean endsWithHyphen, int level) {
         boolean kerning = font.hasKerning();
-        MinOptMax wordIPD = MinOptMax.ZERO;
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("PW: [" + startIndex + "," + endIndex + "]: {"
@@ -246,28 +280,20 @@ public class GlyphMapping {
         }
 
         CharSequence ics = text.subSequence(startIndex, endIndex);
-        int offset = 0;
-        for (int currentChar : CharUtilities.codepointsIter(ics)) {
-
-            // character width
-            int charWidth = font.getCharWidth(currentChar);
-            wordIPD = wordIPD.plus(charWidth);
-
-            // kerning
-            if (kerning) {
-                int kern = 0;
-                if (offset > 0) {
-                    int previousChar = Character.codePointAt(ics, offset - 1);
-                    kern = font.getKernValue(previousChar, currentChar);
-                } else if (precedingChar != 0) {
-                    kern = font.getKernValue(precedingChar, currentChar);
-                }
-                if (kern != 0) {
-                    addToLetterAdjust(letterSpaceAdjustArray, startIndex + offset, kern);
-                    wordIPD = wordIPD.plus(kern);
+        WordWidthCache cache = font.getWordWidthCache();
+        String key = WordWidthCache.createKey(ics, kerning ? precedingChar : 0);
+        WordWidthCache.WordWidth measured = cache.get(key);
+        if (measured == null) {
+            measured = measureWord(ics, font, kerning, precedingChar);
+            cache.put(key, measured);
+        }
+        MinOptMax wordIPD = MinOptMax.getInstance(measured.width);
+        if (measured.kerns != null) {
+            for (int offset = 0; offset < measured.kerns.length; offset++) {
+                if (measured.kerns[offset] != 0) {
+                    addToLetterAdjust(letterSpaceAdjustArray, startIndex + offset, measured.kerns[offset]);
                 }
             }
-            offset++;
         }
         if (kerning
                 && (breakOpportunityChar != 0)
@@ -308,6 +334,47 @@ public class GlyphMapping {
                 (breakOpportunityChar != 0) && !isSpace(breakOpportunityChar), font, level, null);
     }
 
+    /**
+     * Sums up the character widths and kerning values of a word.
+     *
+     * @param ics the characters of the word
+     * @param font applicable font
+     * @param kerning true if the font has kerning information
+     * @param precedingChar the character preceding the word, 0 if there is none
+     * @return the word measurement
+     */
+    private static WordWidthCache.WordWidth measureWord(CharSequence ics, final Font font,
+            boolean kerning, char precedingChar) {
+        int width = 0;
+        int[] kerns = null;
+        int offset = 0;
+        for (int currentChar : CharUtilities.codepointsIter(ics)) {
+
+            // character width
+            width += font.getCharWidth(currentChar);
+
+            // kerning
+            if (kerning) {
+                int kern = 0;
+                if (offset > 0) {
+                    int previousChar = Character.codePointAt(ics, offset - 1);
+                    kern = font.getKernValue(previousChar, currentChar);
+                } else if (precedingChar != 0) {
+                    kern = font.getKernValue(precedingChar, currentChar);
+                }
+                if (kern != 0) {
+                    if (kerns == null) {
+                        kerns = new int[ics.length()];
+                    }
+                    kerns[offset] = kern;
+                    width += kern;
+                }
+            }
+            offset++;
+        }
+        return new WordWidthCache.WordWidth(width, kerns);
+    }
+
     private static void addToLetterAdjust(MinOptMax[] letterSpaceAdjustArray, int index, int width) {
         if (letterSpaceAdjustArray[index] == null) {
             letterSpaceAdjustArray[index] = MinOptMax.getInstance(width);
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable kerning table mapping character pairs to kerning values. The pairs are stored
+ * in an open addressing hash table of primitive longs so that lookups neither box the
+ * characters nor walk nested maps.
+ */
+public final class KerningTable {
+
+    /** An empty kerning table. */
+    public static final KerningTable EMPTY = new KerningTable(new long[1], new int[1], 0);
+
+    private static final long FREE = -1L;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private final int size;
+
+    private KerningTable(long[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+        if (size == 0) {
+            keys[0] = FREE;
+        }
+    }
+
+    /**
+     * Builds a kerning table from the nested kerning map used by {@link FontMetrics}.
+     * @param kerning the kerning map (may be null)
+     * @return the kerning table
+     */
+    public static KerningTable build(Map<Integer, Map<Integer, Integer>> kerning) {
+        if (kerning == null || kerning.isEmpty()) {
+            return EMPTY;
+        }
+        int count = 0;
+        for (Map<Integer, Integer> pairs : kerning.values()) {
+            count += pairs.size();
+        }
+        //keep the load factor at or below 0.5
+        int capacity = Integer.highestOneBit(Math.max(count, 1)) << 2;
+        long[] keys = new long[capacity];
+        int[] values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        int mask = capacity - 1;
+        int size = 0;
+        for (Map.Entry<Integer, Map<Integer, Integer>> first : kerning.entrySet()) {
+            for (Map.Entry<Integer, Integer> second : first.getValue().entrySet()) {
+                long key = key(first.getKey(), second.getKey());
+                int slot = hash(key) & mask;
+                while (keys[slot] != FREE && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if (keys[slot] == FREE) {
+                    size++;
+                }
+                keys[slot] = key;
+                values[slot] = second.getValue();
+            }
+        }
+        return new KerningTable(keys, values, size);
+    }
+
+    private static long key(int ch1, int ch2) {
+        return ((long) ch1 << 32) | (ch2 & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the kerning value for a character pair.
+     * @param ch1 the first character
+     * @param ch2 the second character
+     * @return the kerning value (in 1/1000ths of the font size), 0 if the pair is not kerned
+     */
+    public int getKerning(int ch1, int ch2) {
+        long key = key(ch1, ch2);
+        int slot = hash(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            } else if (k == FREE) {
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** @return the number of kerning pairs */
+    public int size() {
+        return size;
+    }
+
+    /** @return true if the table holds no kerning pairs */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
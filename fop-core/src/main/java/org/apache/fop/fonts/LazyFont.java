@@ -33,6 +33,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.complexscripts.fonts.Positionable;
 import org.apache.fop.complexscripts.fonts.Substitutable;
+import org.apache.fop.fonts.truetype.FontFileMappings;
 
 /**
  * This class is used to defer the loading of a font until it is really used.
@@ -52,8 +53,9 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
     private final String subFontName;
     private final boolean embedded;
     private final InternalResourceResolver resourceResolver;
+    private FontFileMappings fontFileMappings;
 
-    private boolean isMetricsLoaded;
+    private volatile boolean isMetricsLoaded;
     private Typeface realFont;
     private FontDescriptor realFontDescriptor;
 
@@ -83,6 +85,14 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
         this.resourceResolver = resourceResolver;
     }
 
+    /**
+     * Sets the font file mappings that keep the font file mapped once the font is loaded.
+     * @param fontFileMappings the font file mappings, null for none
+     */
+    public void setFontFileMappings(FontFileMappings fontFileMappings) {
+        this.fontFileMappings = fontFileMappings;
+    }
+
     /** {@inheritDoc} */
     public String toString() {
         StringBuffer sbuf = new StringBuffer(super.toString());
@@ -97,44 +107,56 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
 
     private void load(boolean fail) {
         if (!isMetricsLoaded) {
-            try {
-                if (fontUris.getMetrics() != null) {
-                    // Use of XML based font metrics is DEPRECATED!
-                    // @todo Possible thread problem here
-                    XMLFontMetricsReader reader = null;
-                    InputStream in = resourceResolver.getResource(fontUris.getMetrics());
-                    InputSource src = new InputSource(in);
-                    src.setSystemId(fontUris.getMetrics().toASCIIString());
-                    reader = new XMLFontMetricsReader(src, resourceResolver);
-                    reader.setKerningEnabled(useKerning);
-                    reader.setAdvancedEnabled(useAdvanced);
-                    if (this.embedded) {
-                        reader.setFontEmbedURI(fontUris.getEmbed());
-                    }
-                    realFont = reader.getFont();
-                } else {
-                    if (fontUris.getEmbed() == null) {
-                        throw new RuntimeException("Cannot load font. No font URIs available.");
-                    }
-                    realFont = FontLoader.loadFont(fontUris, subFontName, embedded, embeddingMode,
-                                encodingMode, useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1);
+            //page-sequences may be laid out concurrently
+            synchronized (this) {
+                if (!isMetricsLoaded) {
+                    loadMetrics(fail);
                 }
-                if (realFont instanceof FontDescriptor) {
-                    realFontDescriptor = (FontDescriptor) realFont;
+            }
+        }
+    }
+
+    private void loadMetrics(boolean fail) {
+        try {
+            if (fontUris.getMetrics() != null) {
+                // Use of XML based font metrics is DEPRECATED!
+                // @todo Possible thread problem here
+                XMLFontMetricsReader reader = null;
+                InputStream in = resourceResolver.getResource(fontUris.getMetrics());
+                InputSource src = new InputSource(in);
+                src.setSystemId(fontUris.getMetrics().toASCIIString());
+                reader = new XMLFontMetricsReader(src, resourceResolver);
+                reader.setKerningEnabled(useKerning);
+                reader.setAdvancedEnabled(useAdvanced);
+                if (this.embedded) {
+                    reader.setFontEmbedURI(fontUris.getEmbed());
                 }
-            } catch (RuntimeException e) {
-                String error = "Failed to read font file " + fontUris.getEmbed();
-                throw new RuntimeException(error, e);
-            } catch (Exception e) {
-                String error = "Failed to read font file " + fontUris.getEmbed();
-                log.error(error, e);
-                if (fail) {
-                    throw new RuntimeException(error, e);
+                realFont = reader.getFont();
+            } else {
+                if (fontUris.getEmbed() == null) {
+                    throw new RuntimeException("Cannot load font. No font URIs available.");
                 }
+                if (fontFileMappings != null && !FontLoader.isType1(fontUris)) {
+                    fontFileMappings.retain(resourceResolver, fontUris.getEmbed());
+                }
+                realFont = FontLoader.loadFont(fontUris, subFontName, embedded, embeddingMode,
+                            encodingMode, useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1);
+            }
+            if (realFont instanceof FontDescriptor) {
+                realFontDescriptor = (FontDescriptor) realFont;
+            }
+        } catch (RuntimeException e) {
+            String error = "Failed to read font file " + fontUris.getEmbed();
+            throw new RuntimeException(error, e);
+        } catch (Exception e) {
+            String error = "Failed to read font file " + fontUris.getEmbed();
+            log.error(error, e);
+            if (fail) {
+                throw new RuntimeException(error, e);
             }
-            realFont.setEventListener(this.eventListener);
-            isMetricsLoaded = true;
         }
+        realFont.setEventListener(this.eventListener);
+        isMetricsLoaded = true;
     }
 
     /**
@@ -319,6 +341,13 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
         return realFont.getKerningInfo();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getKerning(int ch1, int ch2) {
+        load(true);
+        return realFont.getKerning(ch1, ch2);
+    }
+
     /** {@inheritDoc} */
     public boolean hasFeature(int tableType, String script, String language, String feature) {
         load(true);
@@ -80,9 +80,8 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     private boolean isOTFFile;
 
-    // since for most users the most likely glyphs are in the first cmap segments we store their mapping.
-    private static final int NUM_MOST_LIKELY_GLYPHS = 256;
-    private int[] mostLikelyGlyphs = new int[NUM_MOST_LIKELY_GLYPHS];
+    // direct code point to glyph index mapping, built from the cmap segments on first use
+    private volatile GlyphIndexTable glyphIndexTable;
 
     //A map to store each used glyph from the CID set against the glyph name.
     private LinkedHashMap<Integer, String> usedGlyphNames = new LinkedHashMap<Integer, String>();
@@ -218,32 +217,29 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
      * @param c the Unicode character index
      * @return the glyph index (or 0 if the glyph is not available)
      */
-    // [TBD] - needs optimization, i.e., change from linear search to binary search
     public int findGlyphIndex(int c) {
-        int idx = c;
-        int retIdx = SingleByteEncoding.NOT_FOUND_CODE_POINT;
+        return getGlyphIndexTable().getGlyphIndex(c);
+    }
 
-        // for most users the most likely glyphs are in the first cmap segments (meaning the one with
-        // the lowest unicode start values)
-        if (idx < NUM_MOST_LIKELY_GLYPHS && mostLikelyGlyphs[idx] != 0) {
-            return mostLikelyGlyphs[idx];
-        }
-        for (CMapSegment i : cmap) {
-            if (retIdx == 0
-                    && i.getUnicodeStart() <= idx
-                    && i.getUnicodeEnd() >= idx) {
-                retIdx = i.getGlyphStartIndex()
-                    + idx
-                    - i.getUnicodeStart();
-                if (idx < NUM_MOST_LIKELY_GLYPHS) {
-                    mostLikelyGlyphs[idx] = retIdx;
-                }
-                if (retIdx != 0) {
-                    break;
+    private GlyphIndexTable getGlyphIndexTable() {
+        GlyphIndexTable table = glyphIndexTable;
+        if (table == null) {
+            synchronized (this) {
+                table = glyphIndexTable;
+                if (table == null) {
+                    table = GlyphIndexTable.build(cmap);
+                    glyphIndexTable = table;
                 }
             }
         }
-        return retIdx;
+        return table;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void setCMap(CMapSegment[] cmap) {
+        super.setCMap(cmap);
+        glyphIndexTable = null;
     }
 
     /**
@@ -253,6 +249,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
     protected synchronized void addPrivateUseMapping(int pu, int gi) {
         assert findGlyphIndex(pu) == SingleByteEncoding.NOT_FOUND_CODE_POINT;
         cmap.add(new CMapSegment(pu, pu, gi));
+        glyphIndexTable = getGlyphIndexTable().withMapping(pu, gi);
     }
 
     /**
@@ -360,7 +357,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     /** {@inheritDoc} */
     @Override
-    public char mapChar(char c) {
+    public synchronized char mapChar(char c) {
         notifyMapOperation();
         int glyphIndex = findGlyphIndex(c);
         if (glyphIndex == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -380,7 +377,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     /** {@inheritDoc} */
     @Override
-    public int mapCodePoint(int cp) {
+    public synchronized int mapCodePoint(int cp) {
         notifyMapOperation();
         int glyphIndex = findGlyphIndex(cp);
         if (glyphIndex == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -20,6 +20,7 @@
 package org.apache.fop.fonts;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -107,6 +108,25 @@ public abstract class Typeface implements FontMetrics {
         return getAscender(size);
     }
 
+    /**
+     * Returns the kerning value for a character pair.
+     * @param ch1 the first character
+     * @param ch2 the second character
+     * @return the kerning value (in 1/1000ths of the font size), 0 if the pair is not kerned
+     */
+    public int getKerning(int ch1, int ch2) {
+        if (hasKerningInfo()) {
+            Map<Integer, Integer> kernPair = getKerningInfo().get(ch1);
+            if (kernPair != null) {
+                Integer width = kernPair.get(ch2);
+                if (width != null) {
+                    return width;
+                }
+            }
+        }
+        return 0;
+    }
+
     /** {@inheritDoc} */
     public boolean hasFeature(int tableType, String script, String language, String feature) {
         return false;
@@ -129,24 +149,28 @@ public abstract class Typeface implements FontMetrics {
      */
     protected void warnMissingGlyph(char c) {
         // Give up, character is not available
-        Character ch = c;
-        if (warnedChars == null) {
-            warnedChars = new HashSet<Character>();
+        int warnedCount;
+        //mapChar() of the base 14 fonts is not synchronized, so guard the set here
+        synchronized (this) {
+            if (warnedChars == null) {
+                warnedChars = new HashSet<Character>();
+            }
+            if (warnedChars.size() >= 8 || !warnedChars.add(c)) {
+                return;
+            }
+            warnedCount = warnedChars.size();
         }
-        if (warnedChars.size() < 8 && !warnedChars.contains(ch)) {
-            warnedChars.add(ch);
-            if (this.eventListener != null) {
-                this.eventListener.glyphNotAvailable(this, c, getFontName());
+        if (this.eventListener != null) {
+            this.eventListener.glyphNotAvailable(this, c, getFontName());
+        } else {
+            if (warnedCount == 8) {
+                log.warn("Many requested glyphs are not available in font "
+                        + getFontName());
             } else {
-                if (warnedChars.size() == 8) {
-                    log.warn("Many requested glyphs are not available in font "
-                            + getFontName());
-                } else {
-                    log.warn("Glyph " + (int) c + " (0x"
-                            + Integer.toHexString(c) + ", "
-                            + Glyphs.charToGlyphName(c)
-                            + ") not available in font " + getFontName());
-                }
+                log.warn("Glyph " + (int) c + " (0x"
+                        + Integer.toHexString(c) + ", "
+                        + Glyphs.charToGlyphName(c)
+                        + ") not available in font " + getFontName());
             }
         }
     }
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of word measurements for one {@link Font} instance, i.e. for one font at one
+ * size. It holds the sum of the character widths of a word together with the kerning
+ * adjustments between its characters so that words occurring repeatedly in a document are
+ * only measured once. For fonts performing glyph substitution or positioning, the mapped
+ * characters and the glyph position adjustments are cached as well, keyed by script and
+ * language. Letter spacing and break opportunities are not part of the cached measurement,
+ * they are applied by {@link GlyphMapping} on every occurrence.
+ * <p>
+ * This class is thread-safe. When the cache is full it is cleared rather than evicting
+ * individual entries to keep lookups free of locking.
+ */
+public final class WordWidthCache {
+
+    /** The default maximum number of words cached per font instance */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /** distinguishes the keys of mapped words from those of measured words */
+    private static final char MAPPED_KEY_MARKER = '\uFFFF';
+
+    private final int maxEntries;
+
+    private final Map<String, WordWidth> entries = new ConcurrentHashMap<String, WordWidth>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The measurement of a word. */
+    static final class WordWidth {
+
+        /** the sum of the character widths and kerning values */
+        final int width;
+
+        /** kerning before each code point of the word, null if the word is not kerned */
+        final int[] kerns;
+
+        /** the glyph position adjustments of a mapped word, must not be modified */
+        final int[][] positionAdjustments;
+
+        /** the mapped characters of a mapped word, null if they are unchanged */
+        final String mapping;
+
+        /** the character associations of a mapped word, if requested */
+        final List associations;
+
+        WordWidth(int width, int[] kerns) {
+            this(width, kerns, null, null, null);
+        }
+
+        WordWidth(int width, int[][] positionAdjustments, String mapping, List associations) {
+            this(width, null, positionAdjustments, mapping, associations);
+        }
+
+        private WordWidth(int width, int[] kerns, int[][] positionAdjustments, String mapping,
+                List associations) {
+            this.width = width;
+            this.kerns = kerns;
+            this.positionAdjustments = positionAdjustments;
+            this.mapping = mapping;
+            this.associations = associations;
+        }
+    }
+
+    /** Creates a cache holding up to {@link #DEFAULT_MAX_ENTRIES} words. */
+    public WordWidthCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a new cache.
+     * @param maxEntries the maximum number of words kept
+     */
+    public WordWidthCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Creates the key of a word.
+     * @param word the characters of the word
+     * @param precedingChar the character preceding the word if it is kerned against the
+     *          word's first character, 0 otherwise
+     * @return the key
+     */
+    static String createKey(CharSequence word, char precedingChar) {
+        return new StringBuilder(word.length() + 1).append(precedingChar).append(word).toString();
+    }
+
+    /**
+     * Creates the key of a word that is mapped by glyph substitution and positioning.
+     * @param word the characters of the word
+     * @param script the script of the word
+     * @param language the language of the word
+     * @param dontOptimizeForIdentityMapping true if unchanged characters are still returned as
+     *          mapping
+     * @param retainControls true if control characters are retained
+     * @return the key
+     */
+    static String createKey(CharSequence word, String script, String language,
+            boolean dontOptimizeForIdentityMapping, boolean retainControls) {
+        return new StringBuilder(word.length() + 32).append(MAPPED_KEY_MARKER).append(script).append('\u0000')
+                .append(language).append('\u0000').append(dontOptimizeForIdentityMapping ? 'D' : '-')
+                .append(retainControls ? 'C' : '-').append(word).toString();
+    }
+
+    WordWidth get(String key) {
+        WordWidth width = entries.get(key);
+        if (width != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return width;
+    }
+
+    void put(String key, WordWidth width) {
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+        entries.put(key, width);
+    }
+
+    /** @return the number of lookups that were served from the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return the number of lookups for words that had to be measured */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return the number of cached words */
+    public int size() {
+        return entries.size();
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        long h = getHitCount();
+        long total = h + getMissCount();
+        return "WordWidthCache[size=" + size() + ", hits=" + h + ", misses=" + (total - h)
+                + (total > 0 ? ", hitRate=" + (h * 100 / total) + "%" : "") + "]";
+    }
+}
@@ -25,6 +25,10 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.DirectoryWalker;
 import org.apache.commons.io.IOCase;
@@ -152,9 +156,47 @@ public class FontFileFinder extends DirectoryWalker implements FontFinder {
             }
         }
         List<File> fontDirs = fontDirFinder.find();
+        return walk(fontDirs);
+    }
+
+    /**
+     * Searches the given directories concurrently. The results are returned in the order of
+     * the directories, as if they had been searched one after the other.
+     */
+    private List<URL> walk(List<File> dirs) throws IOException {
         List<URL> results = new java.util.ArrayList<URL>();
-        for (File dir : fontDirs) {
-            super.walk(dir, results);
+        int parallelism = Math.min(dirs.size(), Runtime.getRuntime().availableProcessors());
+        if (parallelism <= 1) {
+            for (File dir : dirs) {
+                super.walk(dir, results);
+            }
+            return results;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<List<URL>>> dirResults = new java.util.ArrayList<Future<List<URL>>>();
+            for (final File dir : dirs) {
+                dirResults.add(pool.submit(new Callable<List<URL>>() {
+                    public List<URL> call() throws IOException {
+                        List<URL> dirResult = new java.util.ArrayList<URL>();
+                        walk(dir, dirResult);
+                        return dirResult;
+                    }
+                }));
+            }
+            for (Future<List<URL>> dirResult : dirResults) {
+                results.addAll(dirResult.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching for fonts");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
         }
         return results;
     }
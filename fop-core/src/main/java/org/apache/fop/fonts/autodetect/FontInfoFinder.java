@@ -19,14 +19,12 @@
 
 package org.apache.fop.fonts.autodetect;
 
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -137,11 +135,11 @@ public class FontInfoFinder {
      * Attempts to determine FontInfo from a given custom font
      * @param fontUri the font URI
      * @param customFont the custom font
-     * @param fontCache font cache (may be null)
+     * @param updates collects the changes for the font cache (may be null)
      * @return FontInfo from the given custom font
      */
     private EmbedFontInfo getFontInfoFromCustomFont(URI fontUri, CustomFont customFont,
-            FontCache fontCache, InternalResourceResolver resourceResolver) {
+            FontCache.Batch updates, InternalResourceResolver resourceResolver) {
         FontUris fontUris = new FontUris(fontUri, null);
         List<FontTriplet> fontTripletList = new java.util.ArrayList<FontTriplet>();
         generateTripletsFromFont(customFont, fontTripletList);
@@ -152,8 +150,8 @@ public class FontInfoFinder {
         EmbedFontInfo fontInfo = new EmbedFontInfo(fontUris, customFont.isKerningEnabled(),
                 customFont.isAdvancedEnabled(), fontTripletList, subFontName);
         fontInfo.setPostScriptName(customFont.getFontName());
-        if (fontCache != null) {
-            fontCache.addFont(fontInfo, resourceResolver);
+        if (updates != null) {
+            updates.addFont(fontInfo, resourceResolver);
         }
         return fontInfo;
     }
@@ -168,6 +166,29 @@ public class FontInfoFinder {
      *         will have only one entry, unless the fontUrl is a TrueType Collection
      */
     public EmbedFontInfo[] find(URI fontURI, InternalResourceResolver resourceResolver, FontCache fontCache) {
+        FontCache.Batch updates = fontCache != null ? new FontCache.Batch() : null;
+        EmbedFontInfo[] fontInfos = find(fontURI, resourceResolver, fontCache, updates);
+        if (updates != null && !updates.isEmpty()) {
+            fontCache.apply(updates);
+        }
+        return fontInfos;
+    }
+
+    /**
+     * Attempts to determine EmbedFontInfo from a given font file without modifying the font
+     * cache. New font infos and fonts that failed to load are recorded in a batch instead, so
+     * that several font files can be examined concurrently and the cache updated afterwards.
+     *
+     * @param fontURI the URI of the font resource
+     * @param resourceResolver font resolver used to resolve font
+     * @param fontCache font cache to look up font files in (may be null)
+     * @param updates the batch that collects changes for the font cache (may only be null
+     *          if fontCache is null)
+     * @return an array of newly created embed font info. Generally, this array
+     *         will have only one entry, unless the fontUrl is a TrueType Collection
+     */
+    public EmbedFontInfo[] find(URI fontURI, InternalResourceResolver resourceResolver, FontCache fontCache,
+            FontCache.Batch updates) {
         URI embedUri = resourceResolver.resolveFromBase(fontURI);
         String embedStr = embedUri.toASCIIString();
         boolean useKerning = true;
@@ -197,11 +218,10 @@ public class FontInfoFinder {
         if (fontURI.toASCIIString().toLowerCase().endsWith(".ttc")) {
             // Get a list of the TTC Font names
             List<String> ttcNames = null;
-            InputStream in = null;
+            FontFileReader reader = null;
             try {
-                in = resourceResolver.getResource(fontURI);
                 TTFFile ttf = new TTFFile(false, false);
-                FontFileReader reader = new FontFileReader(in);
+                reader = FontFileReader.open(resourceResolver, fontURI);
                 ttcNames = ttf.getTTCnames(reader);
             } catch (Exception e) {
                 if (this.eventListener != null) {
@@ -210,7 +230,9 @@ public class FontInfoFinder {
                 }
                 return null;
             } finally {
-                IOUtils.closeQuietly(in);
+                if (reader != null) {
+                    reader.close();
+                }
             }
 
             List<EmbedFontInfo> embedFontInfoList = new java.util.ArrayList<EmbedFontInfo>();
@@ -229,8 +251,8 @@ public class FontInfoFinder {
                         customFont.setEventListener(this.eventListener);
                     }
                 } catch (Exception e) {
-                    if (fontCache != null) {
-                        fontCache.registerFailedFont(embedUri.toASCIIString(), fileLastModified);
+                    if (updates != null) {
+                        updates.registerFailedFont(embedUri.toASCIIString(), fileLastModified);
                     }
                     if (this.eventListener != null) {
                         this.eventListener.fontLoadingErrorAtAutoDetection(this,
@@ -238,7 +260,7 @@ public class FontInfoFinder {
                     }
                     continue;
                 }
-                EmbedFontInfo fi = getFontInfoFromCustomFont(fontURI, customFont, fontCache,
+                EmbedFontInfo fi = getFontInfoFromCustomFont(fontURI, customFont, updates,
                         resourceResolver);
                 if (fi != null) {
                     embedFontInfoList.add(fi);
@@ -256,8 +278,8 @@ public class FontInfoFinder {
                     customFont.setEventListener(this.eventListener);
                 }
             } catch (Exception e) {
-                if (fontCache != null) {
-                    fontCache.registerFailedFont(embedUri.toASCIIString(), fileLastModified);
+                if (updates != null) {
+                    updates.registerFailedFont(embedUri.toASCIIString(), fileLastModified);
                 }
                 if (this.eventListener != null) {
                     this.eventListener.fontLoadingErrorAtAutoDetection(this,
@@ -265,7 +287,7 @@ public class FontInfoFinder {
                 }
                 return null;
             }
-            EmbedFontInfo fi = getFontInfoFromCustomFont(fontURI, customFont, fontCache, resourceResolver);
+            EmbedFontInfo fi = getFontInfoFromCustomFont(fontURI, customFont, updates, resourceResolver);
             if (fi != null) {
                 return new EmbedFontInfo[] {fi};
             } else {
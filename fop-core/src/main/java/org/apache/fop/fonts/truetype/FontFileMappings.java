@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+
+/**
+ * The font file mappings retained by a {@link org.apache.fop.fonts.FontManager}. A font file
+ * is mapped by {@link MappedFontFileCache} when one of its fonts is first loaded, and the
+ * mapping is kept until {@link #release()} is called. Fonts loaded and embedded for later
+ * documents therefore read the file from the same mapping instead of mapping it anew. If a
+ * font file changes on disk, the mapping of the new version replaces the old one.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class FontFileMappings {
+
+    private final Map<String, MappedFontFileCache.Mapping> mappings
+            = new java.util.HashMap<String, MappedFontFileCache.Mapping>();
+
+    /**
+     * Keeps the font file a URI resolves to mapped. Nothing happens if the URI does not denote
+     * a local file or the file cannot be mapped.
+     *
+     * @param resourceResolver the resource resolver of the font
+     * @param uri the URI of the font file
+     * @throws IOException if the file cannot be read
+     */
+    public void retain(InternalResourceResolver resourceResolver, URI uri) throws IOException {
+        File file = resourceResolver.getLocalFile(uri);
+        if (file == null) {
+            return;
+        }
+        MappedFontFileCache.Mapping mapping = MappedFontFileCache.getInstance().acquire(file);
+        if (mapping == null) {
+            return;
+        }
+        MappedFontFileCache.Mapping previous;
+        synchronized (mappings) {
+            previous = mappings.put(file.getCanonicalPath(), mapping);
+        }
+        if (previous != null) {
+            //either the same mapping, which is already referenced, or an outdated one
+            previous.release();
+        }
+    }
+
+    /**
+     * Returns the number of retained font file mappings.
+     * @return the number of mappings
+     */
+    public int size() {
+        synchronized (mappings) {
+            return mappings.size();
+        }
+    }
+
+    /**
+     * Releases all retained mappings. Readers that are still open keep their mapping.
+     */
+    public void release() {
+        MappedFontFileCache.Mapping[] released;
+        synchronized (mappings) {
+            released = mappings.values().toArray(new MappedFontFileCache.Mapping[mappings.size()]);
+            mappings.clear();
+        }
+        for (MappedFontFileCache.Mapping mapping : released) {
+            mapping.release();
+        }
+    }
+}
@@ -19,20 +19,33 @@
 
 package org.apache.fop.fonts.truetype;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.io.IOUtils;
 
+import org.apache.fop.apps.io.InternalResourceResolver;
+
 /**
  * Reads a TrueType font file into a byte array and
  * provides file like functions for array access.
+ * <p>
+ * Readers obtained through {@link #open(InternalResourceResolver, URI)} for local font files
+ * share a read-only memory mapping of the file (see {@link MappedFontFileCache}) instead of
+ * holding a private copy of it on the heap. Such readers only copy the file when it is modified
+ * through {@link #writeTTFUShort(long, int)} and should be {@link #close() closed} when they are
+ * no longer needed.
  */
-public class FontFileReader {
+public class FontFileReader implements Closeable {
 
     private final int fsize; // file size
     private int current;    // current position in file
-    private final byte[] file;
+    private ByteBuffer file;
+    private MappedFontFileCache.Mapping mapping;
 
     /**
      * Constructor
@@ -41,11 +54,77 @@ public class FontFileReader {
      * @throws IOException In case of an I/O problem
      */
     public FontFileReader(InputStream in) throws IOException {
-        this.file = IOUtils.toByteArray(in);
-        this.fsize = this.file.length;
+        this.file = ByteBuffer.wrap(IOUtils.toByteArray(in));
+        this.fsize = this.file.capacity();
+        this.current = 0;
+    }
+
+    /**
+     * Creates a reader over a shared mapping of a font file.
+     *
+     * @param mapping the mapping acquired from the cache
+     */
+    FontFileReader(MappedFontFileCache.Mapping mapping) {
+        this.mapping = mapping;
+        this.file = mapping.getBuffer();
+        this.fsize = this.file.capacity();
         this.current = 0;
     }
 
+    /**
+     * Opens a font file for reading. If the URI resolves to a local file that the resource
+     * resolver reads directly from the file system, the returned reader is backed by a
+     * memory mapping of the file that is shared with all other readers of the same file
+     * (as long as it is not modified on disk). Otherwise the font file is read into memory
+     * through the resource resolver.
+     *
+     * @param resourceResolver the resource resolver used to access the font file
+     * @param uri the URI of the font file
+     * @return the font file reader, to be closed by the caller
+     * @throws IOException In case of an I/O problem
+     */
+    public static FontFileReader open(InternalResourceResolver resourceResolver, URI uri)
+            throws IOException {
+        File localFile = resourceResolver.getLocalFile(uri);
+        if (localFile != null) {
+            MappedFontFileCache.Mapping mapping = MappedFontFileCache.getInstance().acquire(localFile);
+            if (mapping != null) {
+                return new FontFileReader(mapping);
+            }
+        }
+        InputStream in = resourceResolver.getResource(uri);
+        try {
+            return new FontFileReader(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Indicates whether this reader is backed by a shared memory mapping of the font file.
+     *
+     * @return true if the font file is memory-mapped
+     */
+    public boolean isMapped() {
+        return mapping != null && !file.hasArray();
+    }
+
+    /**
+     * Releases the reader's reference to a shared memory mapping of the font file. The reader
+     * itself remains usable. Closing a reader that was created from an {@link InputStream} has
+     * no effect.
+     */
+    public void close() {
+        MappedFontFileCache.Mapping m;
+        synchronized (this) {
+            m = mapping;
+            mapping = null;
+        }
+        if (m != null) {
+            m.release();
+        }
+    }
+
 
     /**
      * Set current file position to offset
@@ -100,7 +179,7 @@ public class FontFileReader {
             throw new java.io.EOFException("Reached EOF, file size=" + fsize);
         }
 
-        final byte ret = file[current++];
+        final byte ret = file.get(current++);
         return ret;
     }
 
@@ -167,8 +246,12 @@ public class FontFileReader {
         final byte b1 = (byte)((val >> 8) & 0xff);
         final byte b2 = (byte)(val & 0xff);
         final int fileIndex = (int) pos;
-        file[fileIndex] = b1;
-        file[fileIndex + 1] = b2;
+        if (!file.hasArray()) {
+            //the mapping is shared and read-only: switch to a private copy
+            file = ByteBuffer.wrap(copyBytes(0, fsize));
+        }
+        file.put(fileIndex, b1);
+        file.put(fileIndex + 1, b2);
     }
 
     /**
@@ -239,15 +322,14 @@ public class FontFileReader {
      */
     public final String readTTFString() throws IOException {
         int i = current;
-        while (file[i++] != 0) {
+        while (file.get(i++) != 0) {
             if (i >= fsize) {
                 throw new java.io.EOFException("Reached EOF, file size="
                                                + fsize);
             }
         }
 
-        byte[] tmp = new byte[i - current - 1];
-        System.arraycopy(file, current, tmp, 0, i - current - 1);
+        byte[] tmp = copyBytes(current, i - current - 1);
         return new String(tmp, "ISO-8859-1");
     }
 
@@ -264,8 +346,7 @@ public class FontFileReader {
             throw new java.io.EOFException("Reached EOF, file size=" + fsize);
         }
 
-        byte[] tmp = new byte[len];
-        System.arraycopy(file, current, tmp, 0, len);
+        byte[] tmp = copyBytes(current, len);
         current += len;
         final String encoding;
         if ((tmp.length > 0) && (tmp[0] == 0)) {
@@ -289,8 +370,7 @@ public class FontFileReader {
             throw new java.io.EOFException("Reached EOF, file size=" + fsize);
         }
 
-        byte[] tmp = new byte[len];
-        System.arraycopy(file, current, tmp, 0, len);
+        byte[] tmp = copyBytes(current, len);
         current += len;
         final String encoding;
         encoding = "UTF-16BE"; //Use this for all known encoding IDs for now
@@ -311,15 +391,31 @@ public class FontFileReader {
             throw new java.io.IOException("Reached EOF");
         }
 
-        byte[] ret = new byte[length];
-        System.arraycopy(file, offset, ret, 0, length);
-        return ret;
+        return copyBytes(offset, length);
     }
+
     /**
-     * Returns the full byte array representation of the file.
+     * Returns the full byte array representation of the file. For a memory-mapped reader this
+     * is a copy of the file on the heap, so callers that only need parts of the file should
+     * prefer {@link #getBytes(int, int)}.
      * @return byte array.
      */
     public byte[] getAllBytes() {
-        return file;
+        if (file.hasArray()) {
+            return file.array();
+        }
+        return copyBytes(0, fsize);
+    }
+
+    private byte[] copyBytes(int offset, int length) {
+        byte[] ret = new byte[length];
+        if (file.hasArray()) {
+            System.arraycopy(file.array(), offset, ret, 0, length);
+        } else {
+            ByteBuffer view = file.duplicate();
+            view.position(offset);
+            view.get(ret);
+        }
+        return ret;
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Process-wide cache of read-only memory mappings of font files. All {@link FontFileReader}s
+ * opened for the same file share a single off-heap mapping, regardless of the document or
+ * {@link org.apache.fop.apps.FopFactory} they belong to. Mappings are reference-counted and
+ * keyed by the file's location and modification time, so a font file that changes on disk is
+ * mapped anew while readers of the old version keep using the old mapping.
+ * <p>
+ * {@link FontFileMappings} keeps the mappings of the fonts used with a
+ * {@link org.apache.fop.fonts.FontManager} referenced between documents.
+ * A mapping that is no longer referenced is only dropped from the cache; the memory itself is
+ * unmapped by the JVM once the buffer becomes unreachable.
+ */
+public final class MappedFontFileCache {
+
+    private static final Log LOG = LogFactory.getLog(MappedFontFileCache.class);
+
+    private static final MappedFontFileCache INSTANCE = new MappedFontFileCache();
+
+    private final Map<Key, Mapping> mappings = new java.util.HashMap<Key, Mapping>();
+
+    private MappedFontFileCache() {
+    }
+
+    /**
+     * Returns the process-wide instance.
+     * @return the font file mapping cache
+     */
+    public static MappedFontFileCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires a reference to the mapping of the given font file, mapping it if necessary.
+     * Each successful call must be balanced with a call to {@link Mapping#release()}.
+     *
+     * @param file the font file
+     * @return the mapping or null if the file cannot be mapped (for example because it is
+     *          too large)
+     * @throws IOException if the file cannot be read
+     */
+    public Mapping acquire(File file) throws IOException {
+        long length = file.length();
+        if (length <= 0 || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        Key key = new Key(file.getCanonicalPath(), file.lastModified(), length);
+        synchronized (mappings) {
+            Mapping mapping = mappings.get(key);
+            if (mapping == null) {
+                mapping = new Mapping(key, map(file, length));
+                mappings.put(key, mapping);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Mapped font file " + key.path + " (" + length + " bytes)");
+                }
+            }
+            mapping.refCount++;
+            return mapping;
+        }
+    }
+
+    /**
+     * Returns the number of font files that are currently mapped.
+     * @return the number of mappings
+     */
+    public int size() {
+        synchronized (mappings) {
+            return mappings.size();
+        }
+    }
+
+    private void release(Mapping mapping) {
+        synchronized (mappings) {
+            if (mapping.refCount <= 0) {
+                throw new IllegalStateException("Font file mapping released too often: "
+                        + mapping.key.path);
+            }
+            mapping.refCount--;
+            if (mapping.refCount == 0 && mappings.get(mapping.key) == mapping) {
+                mappings.remove(mapping.key);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            //the mapping stays valid after the channel has been closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** A reference-counted, read-only mapping of a font file. */
+    public final class Mapping {
+
+        private final Key key;
+        private final MappedByteBuffer buffer;
+        private int refCount;
+
+        private Mapping(Key key, MappedByteBuffer buffer) {
+            this.key = key;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Returns a read-only view of the mapped font file with its own position.
+         * @return the buffer
+         */
+        public ByteBuffer getBuffer() {
+            return buffer.asReadOnlyBuffer();
+        }
+
+        /**
+         * Releases one reference to this mapping.
+         */
+        public void release() {
+            MappedFontFileCache.this.release(this);
+        }
+    }
+
+    private static final class Key {
+
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        Key(String path, long lastModified, long length) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return path.equals(other.path) && lastModified == other.lastModified
+                    && length == other.length;
+        }
+
+        public int hashCode() {
+            return path.hashCode() * 31 + (int) (lastModified ^ (lastModified >>> 32));
+        }
+    }
+}
@@ -21,13 +21,10 @@ package org.apache.fop.fonts.truetype;
 
 import java.awt.Rectangle;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.io.IOUtils;
-
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.fonts.CFFToType1Font;
 import org.apache.fop.fonts.CIDFontType;
@@ -108,9 +105,8 @@ public class OFFontLoader extends FontLoader {
      * @throws IOException if an I/O error occurs
      */
     private void read(String ttcFontName) throws IOException {
-        InputStream in = resourceResolver.getResource(this.fontFileURI);
+        FontFileReader reader = FontFileReader.open(resourceResolver, this.fontFileURI);
         try {
-            FontFileReader reader = new FontFileReader(in);
             String header = readHeader(reader);
             boolean isCFF = header.equals("OTTO");
             OpenFont otf = (isCFF) ? new OTFFile(useKerning, useAdvanced) : new TTFFile(useKerning, useAdvanced);
@@ -121,7 +117,7 @@ public class OFFontLoader extends FontLoader {
             buildFont(otf, ttcFontName, embedAsType1);
             loaded = true;
         } finally {
-            IOUtils.closeQuietly(in);
+            reader.close();
         }
     }
 
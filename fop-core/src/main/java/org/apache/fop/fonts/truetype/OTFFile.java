@@ -31,6 +31,9 @@ public class OTFFile extends OpenFont {
 
     protected CFFFont fileFont;
 
+    /** The CFF table of the font, read once from the font file */
+    protected byte[] cffData;
+
     public OTFFile() throws IOException {
         this(true, false);
     }
@@ -99,8 +102,9 @@ public class OTFFile extends OpenFont {
     protected void initializeFont(FontFileReader in) throws IOException {
         fontFile = in;
         fontFile.seekSet(0);
+        cffData = getCFFData(in);
         CFFParser parser = new CFFParser();
-        fileFont = parser.parse(in.getAllBytes()).get(0);
+        fileFont = parser.parse(cffData).get(0);
         embedFontName = fileFont.getName();
     }
 
@@ -121,26 +125,21 @@ public class OTFFile extends OpenFont {
      * @return The byte data found in the CFF table
      */
     public static byte[] getCFFData(FontFileReader fontFile) throws IOException {
-        byte[] cff = fontFile.getAllBytes();
-        CFFDataInput input = new CFFDataInput(fontFile.getAllBytes());
-        input.readBytes(4); //OTTO
-        short numTables = input.readShort();
-        input.readShort(); //searchRange
-        input.readShort(); //entrySelector
-        input.readShort(); //rangeShift
-
-        for (int q = 0; q < numTables; q++) {
+        //Only the table directory and the CFF table are copied, not the whole file
+        int numTables = fontFile.readTTFUShort(4);
+        int directoryLength = Math.min(numTables * 16, fontFile.getFileSize() - 12);
+        CFFDataInput input = new CFFDataInput(fontFile.getBytes(12, directoryLength));
+        for (int q = 0; q < directoryLength / 16; q++) {
             String tagName = new String(input.readBytes(4));
             readLong(input); //Checksum
             long offset = readLong(input);
             long length = readLong(input);
             if (tagName.equals("CFF ")) {
-                cff = new byte[(int)length];
-                System.arraycopy(fontFile.getAllBytes(), (int)offset, cff, 0, cff.length);
-                break;
+                return fontFile.getBytes((int) offset, (int) length);
             }
         }
-        return cff;
+        //A bare CFF font
+        return fontFile.getAllBytes();
     }
 
     private static long readLong(CFFDataInput input) throws IOException {
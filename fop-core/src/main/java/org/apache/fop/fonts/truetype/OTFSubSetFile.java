@@ -137,7 +137,7 @@ public class OTFSubSetFile extends OTFSubSetWriter {
 
         initializeFont(in);
 
-        cffReader = new CFFDataReader(fontFile);
+        cffReader = new CFFDataReader(cffData);
 
         //Create the CIDFontType0C data
         createCFF();
@@ -371,6 +371,17 @@ public abstract class OpenFont {
      * @return pdf unit
      */
     public int convertTTFUnit2PDFUnit(int n) {
+        return convertTTFUnit2PDFUnit(n, upem);
+    }
+
+    /**
+     * Convert from truetype unit to pdf unit based on the given
+     * unitsPerEm field of the "head" table
+     * @param n truetype unit
+     * @param upem units per em
+     * @return pdf unit
+     */
+    public static int convertTTFUnit2PDFUnit(int n, int upem) {
         int ret;
         if (n < 0) {
             long rest1 = n % upem;
@@ -384,6 +395,14 @@ public abstract class OpenFont {
         return ret;
     }
 
+    /**
+     * Returns the unitsPerEm field of the "head" table.
+     * @return units per em
+     */
+    public int getUnitsPerEm() {
+        return upem;
+    }
+
     /**
      * Read the cmap table,
      * return false if the table is not present or only unsupported
@@ -881,10 +900,7 @@ public abstract class OpenFont {
         // Read advanced typographic tables.
         if (useAdvanced) {
             try {
-                OTFAdvancedTypographicTableReader atr
-                    = new OTFAdvancedTypographicTableReader(this, in);
-                atr.readAll();
-                this.advancedTableReader = atr;
+                this.advancedTableReader = OTFAdvancedTypographicTableReader.readShared(this, in);
             } catch (AdvancedTypographicTableFormatException e) {
                 log.warn(
                     "Encountered format constraint violation in advanced (typographic) table (AT) "
@@ -1766,7 +1782,6 @@ public abstract class OpenFont {
      */
     public void stream(TTFOutputStream ttfOut) throws IOException {
         SortedSet<Map.Entry<OFTableName, OFDirTabEntry>> sortedDirTabs = sortDirTabMap(dirTabs);
-        byte[] file = fontFile.getAllBytes();
         TTFTableOutputStream tableOut = ttfOut.getTableOutputStream();
         TTFGlyphOutputStream glyphOut = ttfOut.getGlyphOutputStream();
         ttfOut.startFontStream();
@@ -1774,27 +1789,29 @@ public abstract class OpenFont {
             int offset = (int) entry.getValue().getOffset();
             int paddedLength = (int) entry.getValue().getLength();
             paddedLength += getPadSize(offset + paddedLength);
+            //only the table is copied from the font file, which may be memory-mapped
+            byte[] table = fontFile.getBytes(offset, paddedLength);
             if (entry.getKey().equals(OFTableName.GLYF)) {
-                streamGlyf(glyphOut, file, offset, paddedLength);
+                streamGlyf(glyphOut, table, paddedLength);
             } else {
-                tableOut.streamTable(file, offset, paddedLength);
+                tableOut.streamTable(table, 0, paddedLength);
             }
         }
         ttfOut.endFontStream();
     }
 
-    private void streamGlyf(TTFGlyphOutputStream glyphOut, byte[] fontFile, int tableOffset,
-            int tableLength) throws IOException {
+    private void streamGlyf(TTFGlyphOutputStream glyphOut, byte[] glyf, int tableLength)
+            throws IOException {
         //Stream all but the last glyph
         int glyphStart = 0;
         int glyphEnd = 0;
         glyphOut.startGlyphStream();
         for (int i = 0; i < mtxTab.length - 1; i++) {
-            glyphStart = (int) mtxTab[i].getOffset() + tableOffset;
-            glyphEnd = (int) mtxTab[i + 1].getOffset() + tableOffset;
-            glyphOut.streamGlyph(fontFile, glyphStart, glyphEnd - glyphStart);
+            glyphStart = (int) mtxTab[i].getOffset();
+            glyphEnd = (int) mtxTab[i + 1].getOffset();
+            glyphOut.streamGlyph(glyf, glyphStart, glyphEnd - glyphStart);
         }
-        glyphOut.streamGlyph(fontFile, glyphEnd, (tableOffset + tableLength) - glyphEnd);
+        glyphOut.streamGlyph(glyf, glyphEnd, tableLength - glyphEnd);
         glyphOut.endGlyphStream();
     }
 
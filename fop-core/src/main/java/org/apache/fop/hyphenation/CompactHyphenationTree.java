@@ -0,0 +1,588 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xml.sax.InputSource;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A read-only hyphenation tree that is searched in place in a flat binary pattern file,
+ * typically memory-mapped. Unlike a serialized {@link HyphenationTree}, loading it doesn't
+ * materialize the node arrays on the heap: only the (usually few) hyphenation exceptions are
+ * decoded.
+ * <p>
+ * Layout (all integers and chars big-endian):
+ * <pre>
+ * magic "FOPHYPAT", int version
+ * pattern tree: int nodes, int key chars, int root, int size
+ * class map: int nodes, int key chars, int root, int size
+ * int value bytes
+ * pattern tree: char[nodes] lo, hi, eq, sc, char[key chars] kv
+ * class map: char[nodes] lo, hi, eq, sc, char[key chars] kv
+ * byte[value bytes] packed interletter values
+ * int n, n exceptions: string word, int count, count parts
+ * </pre>
+ * A part is either a string (tag 0) or a hyphen (tag 1) made of its pre-break, no-break
+ * and post-break strings. Strings are stored as their length in chars (-1 for null)
+ * followed by the chars.
+ */
+public class CompactHyphenationTree extends HyphenationTree {
+
+    private static final long serialVersionUID = -3521887201373838434L;
+
+    /** The magic bytes a compact pattern file starts with. */
+    private static final byte[] MAGIC = {'F', 'O', 'P', 'H', 'Y', 'P', 'A', 'T'};
+
+    /** The version of the format; readers reject other versions. */
+    static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = MAGIC.length + 40;
+
+    private static final byte PART_STRING = 0;
+    private static final byte PART_HYPHEN = 1;
+
+    private final transient Nodes patterns;
+    private final transient ByteBuffer values;
+
+    private CompactHyphenationTree(ByteBuffer buffer) throws IOException {
+        try {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a compact hyphenation pattern file");
+                }
+            }
+            int version = buffer.getInt(MAGIC.length);
+            if (version != VERSION) {
+                throw new IOException("Unsupported hyphenation pattern file version: " + version);
+            }
+            int offset = HEADER_LENGTH;
+            patterns = new Nodes(buffer, MAGIC.length + 4, offset);
+            offset += patterns.byteLength();
+            Nodes classes = new Nodes(buffer, MAGIC.length + 20, offset);
+            offset += classes.byteLength();
+            int valueLength = buffer.getInt(MAGIC.length + 36);
+            values = slice(buffer, offset, valueLength);
+            offset += valueLength;
+            root = patterns.root;
+            length = patterns.size;
+            classmap = new ClassMap(classes);
+            vspace = new ByteVector(new byte[0]);
+            ByteBuffer exceptions = buffer.duplicate();
+            exceptions.position(offset);
+            stoplist = readExceptions(exceptions);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated hyphenation pattern file");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt hyphenation pattern file");
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated hyphenation pattern file");
+        }
+    }
+
+    /** {@inheritDoc} The node arrays are never used, so they aren't allocated. */
+    protected void init() {
+        lo = new char[0];
+        hi = new char[0];
+        eq = new char[0];
+        sc = new char[0];
+        kv = new CharVector(new char[0]);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.limit(offset + length);
+        dup.position(offset);
+        return dup.slice();
+    }
+
+    /**
+     * Indicates whether a stream holds a compact pattern file. The stream must support marks;
+     * it is reset to its current position.
+     * @param in the stream
+     * @return true if the stream starts with the magic bytes of a compact pattern file
+     * @throws IOException if the stream cannot be read
+     */
+    public static boolean isCompact(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            byte[] header = new byte[MAGIC.length];
+            int len = 0;
+            while (len < header.length) {
+                int n = in.read(header, len, header.length - len);
+                if (n < 0) {
+                    return false;
+                }
+                len += n;
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Maps a compact pattern file. The file is searched in place, so loading it costs
+     * neither time nor heap proportional to the number of patterns.
+     * @param file the file
+     * @return the hyphenation tree
+     * @throws IOException if the file cannot be read or is not a compact pattern file
+     */
+    public static CompactHyphenationTree map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new CompactHyphenationTree(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a compact pattern file from a stream that cannot be mapped, e.g. a resource in a
+     * JAR file. The content is kept in a direct buffer outside the heap.
+     * @param in the stream
+     * @return the hyphenation tree
+     * @throws IOException if the stream cannot be read or is not a compact pattern file
+     */
+    public static CompactHyphenationTree read(InputStream in) throws IOException {
+        byte[] content = IOUtils.toByteArray(in);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content);
+        buffer.clear();
+        return new CompactHyphenationTree(buffer);
+    }
+
+    /**
+     * Writes a hyphenation tree in the compact pattern format.
+     * @param tree the hyphenation tree
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(HyphenationTree tree, OutputStream out) throws IOException {
+        if (tree instanceof CompactHyphenationTree) {
+            throw new IllegalArgumentException("The hyphenation tree is already compact");
+        }
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.write(MAGIC);
+        dout.writeInt(VERSION);
+        writeTreeHeader(tree, dout);
+        writeTreeHeader(tree.classmap, dout);
+        dout.writeInt(tree.vspace.length());
+        writeTreeNodes(tree, dout);
+        writeTreeNodes(tree.classmap, dout);
+        dout.write(tree.vspace.getArray(), 0, tree.vspace.length());
+        //sorted so that the output doesn't depend on the hash order
+        Map<String, List<?>> exceptions = new TreeMap<String, List<?>>(tree.stoplist);
+        dout.writeInt(exceptions.size());
+        for (Map.Entry<String, List<?>> exception : exceptions.entrySet()) {
+            writeString(exception.getKey(), dout);
+            List<?> parts = exception.getValue();
+            dout.writeInt(parts.size());
+            for (Object part : parts) {
+                if (part instanceof Hyphen) {
+                    Hyphen hyphen = (Hyphen) part;
+                    dout.writeByte(PART_HYPHEN);
+                    writeString(hyphen.preBreak, dout);
+                    writeString(hyphen.noBreak, dout);
+                    writeString(hyphen.postBreak, dout);
+                } else {
+                    dout.writeByte(PART_STRING);
+                    writeString((String) part, dout);
+                }
+            }
+        }
+        dout.flush();
+    }
+
+    private static void writeTreeHeader(TernaryTree tree, DataOutputStream out) throws IOException {
+        out.writeInt(tree.freenode);
+        out.writeInt(tree.kv.length());
+        out.writeInt(tree.root);
+        out.writeInt(tree.length);
+    }
+
+    private static void writeTreeNodes(TernaryTree tree, DataOutputStream out) throws IOException {
+        for (char[] nodes : new char[][] {tree.lo, tree.hi, tree.eq, tree.sc}) {
+            for (int i = 0; i < tree.freenode; i++) {
+                out.writeChar(nodes[i]);
+            }
+        }
+        char[] keys = tree.kv.getArray();
+        for (int i = 0; i < tree.kv.length(); i++) {
+            out.writeChar(keys[i]);
+        }
+    }
+
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) {
+            return null;
+        }
+        char[] chars = new char[len];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + len * 2);
+        return new String(chars);
+    }
+
+    private static HashMap<String, ArrayList<Object>> readExceptions(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        HashMap<String, ArrayList<Object>> exceptions = new HashMap<String, ArrayList<Object>>(23);
+        for (int i = 0; i < count; i++) {
+            String word = readString(in);
+            int partCount = in.getInt();
+            ArrayList<Object> parts = new ArrayList<Object>(partCount);
+            for (int j = 0; j < partCount; j++) {
+                byte tag = in.get();
+                if (tag == PART_HYPHEN) {
+                    parts.add(new Hyphen(readString(in), readString(in), readString(in)));
+                } else if (tag == PART_STRING) {
+                    parts.add(readString(in));
+                } else {
+                    throw new IOException("Corrupt hyphenation exception: " + word);
+                }
+            }
+            exceptions.put(word, parts);
+        }
+        return exceptions;
+    }
+
+    /** {@inheritDoc} */
+    public int find(char[] key, int start) {
+        return patterns.find(key, start);
+    }
+
+    /** {@inheritDoc} */
+    protected String unpackValues(int k) {
+        StringBuffer buf = new StringBuffer();
+        for (byte value : getValues(k)) {
+            buf.append((char) (value + '0'));
+        }
+        return buf.toString();
+    }
+
+    /** {@inheritDoc} */
+    protected byte[] getValues(int k) {
+        int end = k;
+        while (values.get(end) != 0) {
+            end++;
+        }
+        int n = (end - k) * 2;
+        if (end > k && (values.get(end - 1) & 0x0f) == 0) {
+            n--;
+        }
+        byte[] res = new byte[n];
+        for (int i = 0; i < n; i++) {
+            byte v = values.get(k + (i >> 1));
+            //decoded like HyphenationTree.getValues(), including the sign extension of v
+            res[i] = (byte) ((((i & 1) == 0) ? v >>> 4 : v & 0x0f) - 1);
+        }
+        return res;
+    }
+
+    /** {@inheritDoc} */
+    protected void searchPatterns(char[] word, int index, byte[] il) {
+        CharBuffer lo = patterns.lo;
+        CharBuffer hi = patterns.hi;
+        CharBuffer eq = patterns.eq;
+        CharBuffer sc = patterns.sc;
+        int nodeCount = patterns.nodeCount;
+        int i = index;
+        char sp = word[i];
+        char p = root;
+
+        while (p > 0 && p < nodeCount) {
+            if (sc.get(p) == 0xFFFF) {
+                if (patterns.hstrcmp(word, i, lo.get(p)) == 0) {
+                    updateValues(eq.get(p), index, il);    // data pointer is in eq[]
+                }
+                return;
+            }
+            int d = sp - sc.get(p);
+            if (d == 0) {
+                if (sp == 0) {
+                    break;
+                }
+                sp = word[++i];
+                p = eq.get(p);
+                char q = p;
+
+                // look for a pattern ending at this position by searching for
+                // the null char ( splitchar == 0 )
+                while (q > 0 && q < nodeCount) {
+                    if (sc.get(q) == 0xFFFF) {        // stop at compressed branch
+                        break;
+                    }
+                    if (sc.get(q) == 0) {
+                        updateValues(eq.get(q), index, il);
+                        break;
+                    } else {
+                        q = lo.get(q);
+                    }
+                }
+            } else {
+                p = d < 0 ? lo.get(p) : hi.get(p);
+            }
+        }
+    }
+
+    private void updateValues(int k, int index, byte[] il) {
+        int j = index;
+        byte v = values.get(k++);
+        while (v != 0 && j < il.length) {
+            byte value = (byte) ((v >>> 4) - 1);    // see getValues()
+            if (value > il[j]) {
+                il[j] = value;
+            }
+            j++;
+            if ((v & 0x0f) == 0 || j >= il.length) {
+                break;
+            }
+            value = (byte) ((v & 0x0f) - 1);
+            if (value > il[j]) {
+                il[j] = value;
+            }
+            j++;
+            v = values.get(k++);
+        }
+    }
+
+    /**
+     * Not supported: a compact hyphenation tree is read-only.
+     * {@inheritDoc}
+     */
+    public void insert(char[] key, int start, char val) {
+        throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+    }
+
+    /**
+     * Not supported: a compact hyphenation tree is read-only.
+     * {@inheritDoc}
+     */
+    public void insert(String key, char val) {
+        throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+    }
+
+    /**
+     * Not supported: a compact hyphenation tree is read-only.
+     * {@inheritDoc}
+     */
+    public void addException(String word, ArrayList hyphenatedword) {
+        throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+    }
+
+    /**
+     * Not supported: a compact hyphenation tree is read-only.
+     * {@inheritDoc}
+     */
+    public void addPattern(String pattern, String ivalue) {
+        throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+    }
+
+    /**
+     * Not supported: a compact hyphenation tree is read-only.
+     * {@inheritDoc}
+     */
+    public void loadPatterns(InputSource source) throws HyphenationException {
+        throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+    }
+
+    /** {@inheritDoc} The tree is stored balanced already. */
+    public void balance() {
+    }
+
+    /** {@inheritDoc} The tree is stored compacted already. */
+    public void trimToSize() {
+    }
+
+    /**
+     * Not supported: the keys of a compact hyphenation tree cannot be enumerated.
+     * {@inheritDoc}
+     */
+    public Enumeration keys() {
+        throw new UnsupportedOperationException(
+                "The keys of a compact hyphenation tree cannot be enumerated");
+    }
+
+    /** {@inheritDoc} */
+    public void printStats() {
+        System.out.println("Number of keys = " + Integer.toString(length));
+        System.out.println("Node count = " + Integer.toString(patterns.nodeCount));
+        System.out.println("Key Array length = " + Integer.toString(patterns.kv.limit()));
+        System.out.println("Value space size = " + Integer.toString(values.limit()));
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        throw new NotSerializableException("A compact hyphenation tree cannot be serialized");
+    }
+
+    /**
+     * The nodes of a ternary tree, read in place from a compact pattern file.
+     */
+    private static final class Nodes {
+
+        private final int nodeCount;
+        private final char root;
+        private final int size;
+        private final CharBuffer lo;
+        private final CharBuffer hi;
+        private final CharBuffer eq;
+        private final CharBuffer sc;
+        private final CharBuffer kv;
+
+        Nodes(ByteBuffer buffer, int headerOffset, int offset) {
+            nodeCount = buffer.getInt(headerOffset);
+            int keyLength = buffer.getInt(headerOffset + 4);
+            root = (char) buffer.getInt(headerOffset + 8);
+            size = buffer.getInt(headerOffset + 12);
+            int nodesLength = nodeCount * 2;
+            lo = slice(buffer, offset, nodesLength).asCharBuffer();
+            hi = slice(buffer, offset + nodesLength, nodesLength).asCharBuffer();
+            eq = slice(buffer, offset + 2 * nodesLength, nodesLength).asCharBuffer();
+            sc = slice(buffer, offset + 3 * nodesLength, nodesLength).asCharBuffer();
+            kv = slice(buffer, offset + 4 * nodesLength, keyLength * 2).asCharBuffer();
+        }
+
+        int byteLength() {
+            return nodeCount * 8 + kv.limit() * 2;
+        }
+
+        /** Same as {@link TernaryTree#find(char[], int)}. */
+        int find(char[] key, int start) {
+            char p = root;
+            int i = start;
+            while (p != 0) {
+                if (sc.get(p) == 0xFFFF) {
+                    return strcmp(key, i, lo.get(p)) == 0 ? eq.get(p) : -1;
+                }
+                char c = key[i];
+                int d = c - sc.get(p);
+                if (d == 0) {
+                    if (c == 0) {
+                        return eq.get(p);
+                    }
+                    i++;
+                    p = eq.get(p);
+                } else if (d < 0) {
+                    p = lo.get(p);
+                } else {
+                    p = hi.get(p);
+                }
+            }
+            return -1;
+        }
+
+        /** Same as {@link TernaryTree#strcmp(char[], int, char[], int)} against the keys. */
+        private int strcmp(char[] a, int startA, int startB) {
+            for (; a[startA] == kv.get(startB); startA++, startB++) {
+                if (a[startA] == 0) {
+                    return 0;
+                }
+            }
+            return a[startA] - kv.get(startB);
+        }
+
+        /** Same as {@link HyphenationTree#hstrcmp(char[], int, char[], int)} against the keys. */
+        int hstrcmp(char[] s, int si, int ti) {
+            for (; s[si] == kv.get(ti); si++, ti++) {
+                if (s[si] == 0) {
+                    return 0;
+                }
+            }
+            if (kv.get(ti) == 0) {
+                return 0;
+            }
+            return s[si] - kv.get(ti);
+        }
+    }
+
+    /**
+     * The character class map of a compact hyphenation tree.
+     */
+    private static final class ClassMap extends TernaryTree {
+
+        private static final long serialVersionUID = 4958064512768745474L;
+
+        private final transient Nodes nodes;
+
+        ClassMap(Nodes nodes) {
+            this.nodes = nodes;
+            root = nodes.root;
+            length = nodes.size;
+        }
+
+        /** {@inheritDoc} The node arrays are never used, so they aren't allocated. */
+        protected void init() {
+            lo = new char[0];
+            hi = new char[0];
+            eq = new char[0];
+            sc = new char[0];
+            kv = new CharVector(new char[0]);
+        }
+
+        /** {@inheritDoc} */
+        public int find(char[] key, int start) {
+            return nodes.find(key, start);
+        }
+
+        /** {@inheritDoc} */
+        public void insert(char[] key, int start, char val) {
+            throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+        }
+
+        /** {@inheritDoc} */
+        public void insert(String key, char val) {
+            throw new UnsupportedOperationException("A compact hyphenation tree is read-only");
+        }
+    }
+}
@@ -19,19 +19,58 @@
 
 package org.apache.fop.hyphenation;
 
-import java.util.Hashtable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * <p>This is a cache for HyphenationTree instances.</p>
+ * <p>This is a cache for HyphenationTree instances and for the hyphenation of individual
+ * words. It is shared by all documents produced by a FopFactory and is thread-safe.</p>
  */
 public class HyphenationTreeCache {
 
+    /** The default maximum number of hyphenated words kept in the cache */
+    public static final int DEFAULT_MAX_HYPHENATIONS = 20000;
+
+    /** Marks words that cannot be hyphenated. */
+    private static final Hyphenation NO_HYPHENATION = new Hyphenation("", new int[0]);
+
     /** Contains the cached hyphenation trees */
-    private Hashtable hyphenTrees = new Hashtable();
+    private final ConcurrentMap<String, HyphenationTree> hyphenTrees
+            = new ConcurrentHashMap<String, HyphenationTree>();
     /** Used to avoid multiple error messages for the same language if a pattern file is missing. */
-    private Set missingHyphenationTrees;
+    private final Set<String> missingHyphenationTrees
+            = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** Contains the hyphenation of recently hyphenated words */
+    private final ConcurrentMap<String, Hyphenation> hyphenations
+            = new ConcurrentHashMap<String, Hyphenation>();
+
+    private final int maxHyphenations;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Creates a cache keeping up to {@link #DEFAULT_MAX_HYPHENATIONS} hyphenated words. */
+    public HyphenationTreeCache() {
+        this(DEFAULT_MAX_HYPHENATIONS);
+    }
+
+    /**
+     * Creates a new cache.
+     * @param maxHyphenations the maximum number of hyphenated words kept in the cache, 0 disables
+     *          the caching of hyphenated words
+     */
+    public HyphenationTreeCache(int maxHyphenations) {
+        if (maxHyphenations < 0) {
+            throw new IllegalArgumentException("maxHyphenations must not be negative: " + maxHyphenations);
+        }
+        this.maxHyphenations = maxHyphenations;
+    }
 
     /**
      * Looks in the cache if a hyphenation tree is available and returns it if it is found.
@@ -43,13 +82,11 @@ public class HyphenationTreeCache {
         String key = constructLlccKey(lang, country);
 
         // first try to find it in the cache
-        if (hyphenTrees.containsKey(key)) {
-            return (HyphenationTree)hyphenTrees.get(key);
-        } else if (hyphenTrees.containsKey(lang)) {
-            return (HyphenationTree)hyphenTrees.get(lang);
-        } else {
-            return null;
+        HyphenationTree hTree = hyphenTrees.get(key);
+        if (hTree == null) {
+            hTree = hyphenTrees.get(lang);
         }
+        return hTree;
     }
 
     /**
@@ -101,9 +138,6 @@ public class HyphenationTreeCache {
      * @param key the key (ex. "de_CH" or "en")
      */
     public void noteMissing(String key) {
-        if (missingHyphenationTrees == null) {
-            missingHyphenationTrees = new java.util.HashSet();
-        }
         missingHyphenationTrees.add(key);
     }
 
@@ -115,7 +149,52 @@ public class HyphenationTreeCache {
      * @return true if the hyphenation tree is unavailable
      */
     public boolean isMissing(String key) {
-        return (missingHyphenationTrees != null && missingHyphenationTrees.contains(key));
+        return missingHyphenationTrees.contains(key);
+    }
+
+    /**
+     * Hyphenates a word using the given hyphenation tree, returning a cached result if the word
+     * has been hyphenated before with the same parameters.
+     * @param llccKey the key of the language and country (ex. "de_CH" or "en")
+     * @param hTree the hyphenation tree for the language and country
+     * @param word the word to hyphenate
+     * @param remainCharCount the minimum number of characters before a hyphenation point
+     * @param pushCharCount the minimum number of characters after a hyphenation point
+     * @return the hyphenation or null if the word cannot be hyphenated
+     */
+    public Hyphenation hyphenate(String llccKey, HyphenationTree hTree, String word,
+            int remainCharCount, int pushCharCount) {
+        if (maxHyphenations == 0) {
+            return hTree.hyphenate(word, remainCharCount, pushCharCount);
+        }
+        String key = new StringBuilder(llccKey.length() + word.length() + 8).append(llccKey)
+                .append('\u0000').append(remainCharCount).append('\u0000').append(pushCharCount)
+                .append('\u0000').append(word).toString();
+        Hyphenation hyphenation = hyphenations.get(key);
+        if (hyphenation != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            hyphenation = hTree.hyphenate(word, remainCharCount, pushCharCount);
+            if (hyphenation == null) {
+                hyphenation = NO_HYPHENATION;
+            }
+            if (hyphenations.size() >= maxHyphenations) {
+                hyphenations.clear();
+            }
+            hyphenations.put(key, hyphenation);
+        }
+        return hyphenation == NO_HYPHENATION ? null : hyphenation;
+    }
+
+    /** @return the number of hyphenations that were served from the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return the number of hyphenations that required a lookup in the hyphenation tree */
+    public long getMissCount() {
+        return misses.get();
     }
 
 }
@@ -20,6 +20,8 @@
 package org.apache.fop.hyphenation;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -139,6 +141,12 @@ public final class Hyphenator {
     private static HyphenationTree readHyphenationTree(InputStream in) {
         HyphenationTree hTree = null;
         try {
+            if (!in.markSupported()) {
+                in = new BufferedInputStream(in);
+            }
+            if (CompactHyphenationTree.isCompact(in)) {
+                return CompactHyphenationTree.read(in);
+            }
             ObjectInputStream ois = new ObjectInputStream(in);
             hTree = (HyphenationTree)ois.readObject();
         } catch (IOException ioe) {
@@ -179,7 +187,8 @@ public final class Hyphenator {
         HyphenationTree hTree = null;
         // I use here the following convention. The file name specified in
         // the configuration is taken as the base name. First we try
-        // name + ".hyp" assuming a serialized HyphenationTree. If that fails
+        // name + ".hyp" assuming a compact pattern file (memory-mapped if
+        // possible) or a serialized HyphenationTree. If that fails
         // we try name + ".xml", assumming a raw hyphenation pattern file.
 
         // first try serialized object
@@ -188,6 +197,10 @@ public final class Hyphenator {
             name = key.replace(HYPTYPE, "");
         }
         if (!key.endsWith(XMLTYPE)) {
+            hTree = mapHyphenationTree(name, resourceResolver);
+            if (hTree != null) {
+                return hTree;
+            }
             try {
                 InputStream in = getHyphenationTreeStream(name, resourceResolver);
                 try {
@@ -234,6 +247,36 @@ public final class Hyphenator {
         }
     }
 
+    /**
+     * Maps a compact pattern file if it can be read straight from a local file.
+     * @param name the name of the pattern file
+     * @param resourceResolver the resource resolver to find the file
+     * @return the hyphenation tree or null if the file isn't a local compact pattern file
+     */
+    private static HyphenationTree mapHyphenationTree(String name,
+            InternalResourceResolver resourceResolver) {
+        try {
+            File file = resourceResolver.getLocalFile(InternalResourceResolver.cleanURI(name));
+            if (file == null) {
+                return null;
+            }
+            InputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                if (!CompactHyphenationTree.isCompact(in)) {
+                    return null;
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            return CompactHyphenationTree.map(file);
+        } catch (URISyntaxException use) {
+            log.debug("An exception was thrown while attempting to map " + name, use);
+        } catch (IOException ioe) {
+            log.error("I/O error while mapping compact hyphenation pattern file " + name, ioe);
+        }
+        return null;
+    }
+
     private static InputStream getHyphenationTreeStream(String name,
             InternalResourceResolver resourceResolver) throws IOException {
         try {
@@ -252,7 +295,8 @@ public final class Hyphenator {
         if (hTree == null) {
             return null;
         }
-        return hTree.hyphenate(word, leftMin, rightMin);
+        return foUserAgent.getHyphenationTreeCache().hyphenate(
+                HyphenationTreeCache.constructLlccKey(lang, country), hTree, word, leftMin, rightMin);
     }
 
 }
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 /**
  * <p>Serialize hyphenation patterns.</p>
@@ -33,6 +34,8 @@ public class SerializeHyphPattern {
 
     private boolean errorDump;
 
+    private boolean compact;
+
     /**
      * Controls the amount of error information dumped.
      * @param errorDump True if more error info should be provided
@@ -41,6 +44,15 @@ public class SerializeHyphPattern {
         this.errorDump = errorDump;
     }
 
+    /**
+     * Controls the format of the pattern files. Compact pattern files are memory-mapped and
+     * searched in place (see {@link CompactHyphenationTree}) instead of being deserialized.
+     * @param compact True if compact pattern files should be written
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
     /**
      * Compile all xml files in sourceDir, and write output hyp files in targetDir
      * @param sourceDir Directory with pattern xml files
@@ -76,10 +88,15 @@ public class SerializeHyphPattern {
             // serialize class
             try {
                 // @SuppressFBWarnings("OS_OPEN_STREAM_EXCEPTION_PATH")
-                ObjectOutputStream out = new ObjectOutputStream(
-                        new java.io.BufferedOutputStream(
-                        new java.io.FileOutputStream(outfile)));
-                out.writeObject(hTree);
+                OutputStream out = new java.io.BufferedOutputStream(
+                        new java.io.FileOutputStream(outfile));
+                if (compact) {
+                    CompactHyphenationTree.write(hTree, out);
+                } else {
+                    ObjectOutputStream oos = new ObjectOutputStream(out);
+                    oos.writeObject(hTree);
+                    out = oos;
+                }
                 out.close();
             } catch (IOException ioe) {
                 System.err.println("Can't write compiled pattern file: "
@@ -131,10 +148,11 @@ public class SerializeHyphPattern {
 
     /**
      * Entry point for ant java task
-     * @param args sourceDir, targetDir
+     * @param args sourceDir, targetDir and optionally "compact" to write compact pattern files
      */
     public static void main(String[] args) {
         SerializeHyphPattern ser = new SerializeHyphPattern();
+        ser.setCompact(args.length > 2 && "compact".equals(args[2]));
         ser.serializeDir(new File(args[0]), new File(args[1]));
     }
 
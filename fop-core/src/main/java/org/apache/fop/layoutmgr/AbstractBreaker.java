@@ -222,6 +222,12 @@ public abstract class AbstractBreaker {
     /** footnote separator length */
     protected MinOptMax footnoteSeparatorLength = MinOptMax.ZERO;
 
+    /** elements of a chunk that have not been committed to parts yet (streaming mode) */
+    private List<KnuthElement> pendingElements;
+
+    /** true if no part of the pending elements has been committed */
+    private boolean pendingOnCurrentPart;
+
     /** @return current display alignment */
     protected abstract int getCurrentDisplayAlign();
 
@@ -244,6 +250,35 @@ public abstract class AbstractBreaker {
     /** @return current child layout manager */
     protected abstract LayoutManager getCurrentChildLM();
 
+    /**
+     * Returns the number of parts at the end of a chunk of content that are kept open for
+     * revision in streaming mode. Only breakers whose content is returned in chunks (see
+     * {@link #isAtChunkBoundary()}) need to override this.
+     * @return the number of parts to keep open, 0 if streaming is disabled
+     */
+    protected int getLookahead() {
+        return 0;
+    }
+
+    /**
+     * Indicates whether the last element list obtained from
+     * {@link #getNextKnuthElements(LayoutContext, int)} is a chunk of the content that is
+     * continued by the next element list.
+     * @return true if the last element list ended at a chunk boundary
+     */
+    protected boolean isAtChunkBoundary() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the next block list continues the content of the previous one on the
+     * current part, because none of its parts could be committed yet.
+     * @return true if the next block list starts on the current part
+     */
+    protected boolean continuesOnCurrentPart() {
+        return pendingElements != null && pendingOnCurrentPart;
+    }
+
     /**
      * Controls the behaviour of the algorithm in cases where the first element of a part
      * overflows a line/page.
@@ -455,7 +490,12 @@ public abstract class AbstractBreaker {
                             + " pageBreaks.size()= " + alg.getPageBreaks().size());
 
                     //*** Phase 3: Add areas ***
-                    doPhase3(alg, optimalPageCount, blockList, blockList);
+                    if (getLookahead() > 0 && isAtChunkBoundary() && hasMoreContent()
+                            && blockListIndex == blockLists.size() - 1) {
+                        nextSequenceStartsOn = commitSettledParts(alg, optimalPageCount, blockList);
+                    } else {
+                        doPhase3(alg, optimalPageCount, blockList, blockList);
+                    }
                 }
             }
         }
@@ -465,6 +505,74 @@ public abstract class AbstractBreaker {
         return true;
     }
 
+    /**
+     * Phase 3 in streaming mode: adds the areas for the parts of a chunk of content whose
+     * breaks can no longer be changed by the content that follows, and keeps the elements of
+     * the remaining parts pending, to be broken again together with the next chunk. A part
+     * is settled if it is followed by at least {@link #getLookahead()} parts and all footnotes
+     * cited up to its end have been placed.
+     * @param alg PageBreakingAlgorithm instance which determined the breaks
+     * @param partCount number of parts (pages) in the chunk
+     * @param blockList the Knuth element list of the chunk
+     * @return the page on which the pending content should appear
+     */
+    private int commitSettledParts(PageBreakingAlgorithm alg, int partCount, BlockSequence blockList) {
+        int settledParts = partCount - getLookahead();
+        while (settledParts > 0
+                && !areFootnotesPlaced(alg, blockList, alg.getPageBreaks().get(settledParts - 1))) {
+            settledParts--;
+        }
+        int pendingStart;
+        int nextSequenceStartsOn;
+        if (settledParts > 0) {
+            log.debug("PLM> committing " + settledParts + " of " + partCount + " parts");
+            addAreas(alg, settledParts, blockList, blockList);
+            int breakIndex = alg.getPageBreaks().get(settledParts - 1).getLeafPos();
+            // notify the space resolution of the break before the first pending part
+            SpaceResolver.performConditionalsNotification(blockList, 0, -1, breakIndex);
+            nextSequenceStartsOn = getBreakClass(blockList.getElement(breakIndex));
+            pendingStart = breakIndex + 1;
+            pendingOnCurrentPart = false;
+        } else {
+            nextSequenceStartsOn = blockList.getStartOn();
+            pendingStart = blockList.ignoreAtStart;
+            pendingOnCurrentPart = true;
+        }
+        pendingElements = new java.util.ArrayList<KnuthElement>(
+                blockList.subList(pendingStart, blockList.size() - blockList.ignoreAtEnd));
+        return nextSequenceStartsOn;
+    }
+
+    private static int getBreakClass(ListElement breakElement) {
+        if (breakElement.isPenalty()) {
+            KnuthPenalty pen = (KnuthPenalty) breakElement;
+            if (pen.getPenalty() == KnuthPenalty.INFINITE) {
+                // see addAreas()
+                return Constants.EN_COLUMN;
+            }
+            return pen.getBreakClass();
+        }
+        return Constants.EN_COLUMN;
+    }
+
+    private static boolean areFootnotesPlaced(PageBreakingAlgorithm alg, BlockSequence blockList,
+            PageBreakPosition pbp) {
+        int citedFootnotes = 0;
+        for (int i = 0; i <= pbp.getLeafPos(); i++) {
+            Object element = blockList.get(i);
+            if (element instanceof KnuthBlockBox && ((KnuthBlockBox) element).hasAnchors()) {
+                citedFootnotes += ((KnuthBlockBox) element).getElementLists().size();
+            }
+        }
+        if (citedFootnotes == 0) {
+            return true;
+        }
+        int lastListIndex = citedFootnotes - 1;
+        return pbp.footnoteLastListIndex > lastListIndex
+                || (pbp.footnoteLastListIndex == lastListIndex
+                    && pbp.footnoteLastElementIndex >= alg.getFootnoteList(lastListIndex).size() - 1);
+    }
+
     /**
      * Returns {@code true} if the given position or one of its descendants
      * corresponds to a non-restartable LM.
@@ -673,6 +781,14 @@ public abstract class AbstractBreaker {
         List<KnuthElement> returnedList;
         if (firstElements == null) {
             returnedList = getNextKnuthElements(childLC, alignment);
+            if (pendingElements != null) {
+                // prepend the parts of the previous chunk that have not been committed
+                if (returnedList != null) {
+                    pendingElements.addAll(returnedList);
+                }
+                returnedList = pendingElements;
+                pendingElements = null;
+            }
         } else if (positionAtIPDChange == null) {
             /*
              * No restartable element found after changing IPD break. Simply add the
@@ -20,6 +20,7 @@
 package org.apache.fop.layoutmgr;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -83,6 +84,13 @@ public abstract class AbstractPageSequenceLayoutManager extends AbstractLayoutMa
         return areaTreeHandler.getLayoutManagerMaker();
     }
 
+    /**
+     * @return the pool breaking paragraphs into lines ahead of layout, null if there is none
+     */
+    public ForkJoinPool getLineBreakingPool() {
+        return areaTreeHandler.getLineBreakingPool();
+    }
+
     /**
      * Provides access to the current page.
      * @return the current Page
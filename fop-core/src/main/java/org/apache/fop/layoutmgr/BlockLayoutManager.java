@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -151,6 +152,38 @@ public class BlockLayoutManager extends SpacedBorderedPaddedBlockLayoutManager
         }
     }
 
+    /**
+     * Indicates whether this block holds nothing but text, in a single
+     * {@link LineLayoutManager}.
+     * @return true if the block only holds text
+     */
+    boolean hasOnlyText() {
+        createNextChildLMs(1);
+        return getChildLMs().size() == 1 && childLMs.get(0) instanceof LineLayoutManager
+                && ((LineLayoutManager) childLMs.get(0)).hasOnlyText();
+    }
+
+    /**
+     * Starts breaking the lines of this block ahead of layout. The block must only hold text.
+     * @param context the layout context this LM is going to be laid out with
+     * @param pool the pool breaking the lines
+     * @return true if the lines are being broken, false if they are broken during layout
+     */
+    boolean prefetchLineBreaks(LayoutContext context, ForkJoinPool pool) {
+        int contentIPD = context.getRefIPD() - (startIndent + endIndent);
+        if (contentIPD < 0) {
+            return false;
+        }
+        // the values the layout sets first, which percentages in the lines refer to
+        referenceIPD = context.getRefIPD();
+        setContentAreaIPD(contentIPD);
+        LineLayoutManager lineLM = (LineLayoutManager) childLMs.get(0);
+        lineLM.initialize();
+        LayoutContext lineLC = LayoutContext.newInstance();
+        lineLC.setRefIPD(contentIPD);
+        return lineLM.prefetchLineBreaks(lineLC, pool);
+    }
+
     private void resetSpaces() {
         this.discardBorderBefore = false;
         this.discardBorderAfter = false;
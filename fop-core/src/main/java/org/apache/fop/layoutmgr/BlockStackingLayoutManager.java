@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -90,6 +91,11 @@ public abstract class BlockStackingLayoutManager extends AbstractLayoutManager
     private int contentAreaIPD;
     private boolean isRestartAtLM;
 
+    /** Index of the first child LM not considered for line breaking ahead of layout */
+    private int lineBreaksPrefetchIndex;
+    /** True if the child LM at lineBreaksPrefetchIndex cannot be broken ahead of layout */
+    private boolean lineBreaksPrefetchBlocked;
+
     /**
      * @param node the fo this LM deals with
      */
@@ -282,6 +288,9 @@ public abstract class BlockStackingLayoutManager extends AbstractLayoutManager
 
         while (currentChildLM != null) {
 
+            if (!isRestart) {
+                prefetchLineBreaks(context);
+            }
             childLC = makeChildLayoutContext(context);
 
             if (!isRestart || emptyStack) {
@@ -394,6 +403,63 @@ public abstract class BlockStackingLayoutManager extends AbstractLayoutManager
         return childLC;
     }
 
+    /**
+     * Starts breaking the lines of the child blocks following the current child LM ahead of
+     * layout, if the page-sequence has a line-breaking pool. This is only done while the
+     * current child LM and the following ones are blocks holding nothing but text and no
+     * breaks, so that they are all laid out in the same call with the same layout context.
+     * At most twice as many child LMs as the pool has threads are broken ahead of the current
+     * one.
+     * @param context the layout context of this LM
+     */
+    protected void prefetchLineBreaks(LayoutContext context) {
+        ForkJoinPool pool = getPSLM().getLineBreakingPool();
+        if (pool == null) {
+            return;
+        }
+        int current = childLMiter.previousIndex();
+        if (lineBreaksPrefetchIndex <= current) {
+            lineBreaksPrefetchIndex = current + 1;
+            lineBreaksPrefetchBlocked = !isTextBlock(childLMs.get(current), context);
+        }
+        int end = current + 1 + pool.getParallelism() * 2;
+        while (!lineBreaksPrefetchBlocked && lineBreaksPrefetchIndex < end
+                && createNextChildLMs(lineBreaksPrefetchIndex)) {
+            LayoutManager childLM = childLMs.get(lineBreaksPrefetchIndex);
+            if (childLM.getClass() == BlockLayoutManager.class) {
+                childLM.initialize();
+            }
+            if (isTextBlock(childLM, context)
+                    && ((BlockLayoutManager) childLM).prefetchLineBreaks(
+                            makeChildLayoutContext(context), pool)) {
+                lineBreaksPrefetchIndex++;
+            } else {
+                lineBreaksPrefetchBlocked = true;
+            }
+        }
+    }
+
+    private boolean isTextBlock(LayoutManager childLM, LayoutContext context) {
+        if (childLM.getClass() != BlockLayoutManager.class) {
+            return false;
+        }
+        BlockLayoutManager blockLM = (BlockLayoutManager) childLM;
+        return blockLM.getBlockFO().getBreakBefore() == EN_AUTO
+                && blockLM.getBlockFO().getBreakAfter() == EN_AUTO
+                && canPrefetchLineBreaks(blockLM, context) && blockLM.hasOnlyText();
+    }
+
+    /**
+     * Indicates whether the lines of a child block may be broken ahead of layout, that is,
+     * whether this LM lays it out in the same call as the preceding child blocks.
+     * @param childLM the child block
+     * @param context the layout context of this LM
+     * @return true if the lines of the child block may be broken ahead of layout
+     */
+    protected boolean canPrefetchLineBreaks(BlockLayoutManager childLM, LayoutContext context) {
+        return true;
+    }
+
     /**
      * Checks if this LM's first "visible marks" (= borders, padding, spaces) have
      * already been processed, and if necessary, adds corresponding elements to
@@ -19,6 +19,8 @@
 
 package org.apache.fop.layoutmgr;
 
+import java.util.Arrays;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -115,6 +117,11 @@ public abstract class BreakingAlgorithm {
      */
     protected KnuthSequence par;
 
+    /**
+     * The values of the paragraph's elements, in primitive arrays indexed like the paragraph.
+     */
+    protected final KnuthElementColumns elements = new KnuthElementColumns();
+
     /**
      * The width of a line (or height of a column in page-breaking mode).
      * -1 indicates that the line widths are different for each line.
@@ -523,6 +530,7 @@ public abstract class BreakingAlgorithm {
                                   double threshold, boolean force,
                                   int allowedBreaks) {
         this.par = par;
+        this.elements.loadSequence(par);
         this.threshold = threshold;
         this.force = force;
 
@@ -552,7 +560,7 @@ public abstract class BreakingAlgorithm {
         }
 
         // main loop
-        for (int elementIndex = startIndex; elementIndex < par.size(); elementIndex++) {
+        for (int elementIndex = startIndex; elementIndex < elements.size(); elementIndex++) {
 
             previousIsBox = handleElementAt(
                     elementIndex, previousIsBox, allowedBreaks).isBox();
@@ -604,7 +612,8 @@ public abstract class BreakingAlgorithm {
             }
         }
 
-        activeLines = null;
+        //keep the table of active lines for the next pass, but not the nodes
+        Arrays.fill(activeLines, null);
         return line;
     }
 
@@ -645,6 +654,7 @@ public abstract class BreakingAlgorithm {
             ListElement el = (ListElement)this.par.get(0);
             if (!el.isPenalty()) {
                 this.par.add(0, KnuthPenalty.DUMMY_ZERO_PENALTY);
+                this.elements.insert(0, KnuthPenalty.DUMMY_ZERO_PENALTY);
             }
         }
 
@@ -665,7 +675,11 @@ public abstract class BreakingAlgorithm {
         this.lastTooLong = null;
         this.startLine = 0;
         this.endLine = 0;
-        this.activeLines = new KnuthNode[20];
+        if (this.activeLines == null) {
+            this.activeLines = new KnuthNode[20];
+        } else {
+            Arrays.fill(this.activeLines, null);
+        }
     }
 
     /**
@@ -752,11 +766,11 @@ public abstract class BreakingAlgorithm {
                                                  boolean previousIsBox,
                                                  int allowedBreaks) {
         KnuthElement element = getElement(position);
-        if (element.isBox()) {
+        if (elements.isBox(position)) {
             handleBox((KnuthBox) element);
-        } else if (element.isGlue()) {
+        } else if (elements.isGlue(position)) {
             handleGlueAt((KnuthGlue) element, position, previousIsBox, allowedBreaks);
-        } else if (element.isPenalty()) {
+        } else if (elements.isPenalty(position)) {
             handlePenaltyAt((KnuthPenalty) element, position, allowedBreaks);
         } else {
             throw new IllegalArgumentException(
@@ -905,7 +919,7 @@ public abstract class BreakingAlgorithm {
         // these elements twice
         int restartingIndex = restartingNode.position;
         while (restartingIndex + 1 < par.size()
-               && !(getElement(restartingIndex + 1).isBox())) {
+               && !elements.isBox(restartingIndex + 1)) {
             restartingIndex++;
         }
         return restartingIndex;
@@ -928,6 +942,7 @@ public abstract class BreakingAlgorithm {
 
         lastDeactivated = null;
         lastTooLong = null;
+        boolean forcedBreak = elements.isForcedBreak(elementIdx);
         for (int line = startLine; line < endLine; line++) {
             for (KnuthNode node = getNode(line); node != null; node = node.next) {
                 if (node.position == elementIdx) {
@@ -948,11 +963,11 @@ public abstract class BreakingAlgorithm {
                     log.trace("\tline=" + line);
                 }
 
-                if (element.isForcedBreak() && handlingFloat()) {
+                if (forcedBreak && handlingFloat()) {
                     disableFloatHandling(); // so that we do not create a float edge position later
                 }
                 // The line would be too long.
-                if (r < -1 || element.isForcedBreak() || handlingFloat()) {
+                if (r < -1 || forcedBreak || handlingFloat()) {
                     deactivateNode(node, line);
                 }
 
@@ -1021,15 +1036,14 @@ public abstract class BreakingAlgorithm {
         // the values stored in the node; these would be as if the break
         // was just before the next box element, thus ignoring glues and
         // penalties between the "real" break and the following box
-        for (int i = elementIdx; i < par.size(); i++) {
-            KnuthElement tempElement = getElement(i);
-            if (tempElement.isBox()) {
+        for (int i = elementIdx; i < elements.size(); i++) {
+            if (elements.isBox(i)) {
                 break;
-            } else if (tempElement.isGlue()) {
-                newWidth += tempElement.getWidth();
-                newStretch += tempElement.getStretch();
-                newShrink += tempElement.getShrink();
-            } else if (tempElement.isForcedBreak() && i != elementIdx) {
+            } else if (elements.isGlue(i)) {
+                newWidth += elements.getWidth(i);
+                newStretch += elements.getStretch(i);
+                newShrink += elements.getShrink(i);
+            } else if (elements.isForcedBreak(i) && i != elementIdx) {
                 break;
             }
         }
@@ -1140,15 +1154,14 @@ public abstract class BreakingAlgorithm {
         // the values stored in the node; these would be as if the break
         // was just before the next box element, thus ignoring glues and
         // penalties between the "real" break and the following box
-        for (int i = elementIdx; i < par.size(); i++) {
-            KnuthElement tempElement = getElement(i);
-            if (tempElement.isBox()) {
+        for (int i = elementIdx; i < elements.size(); i++) {
+            if (elements.isBox(i)) {
                 break;
-            } else if (tempElement.isGlue()) {
-                newWidth += tempElement.getWidth();
-                newStretch += tempElement.getStretch();
-                newShrink += tempElement.getShrink();
-            } else if (tempElement.isForcedBreak() && i != elementIdx) {
+            } else if (elements.isGlue(i)) {
+                newWidth += elements.getWidth(i);
+                newStretch += elements.getStretch(i);
+                newShrink += elements.getShrink(i);
+            } else if (elements.isForcedBreak(i) && i != elementIdx) {
                 break;
             }
         }
@@ -1185,8 +1198,8 @@ public abstract class BreakingAlgorithm {
                                     int elementIndex) {
         // compute the adjustment ratio
         int actualWidth = totalWidth - activeNode.totalWidth;
-        if (element.isPenalty()) {
-            actualWidth += element.getWidth();
+        if (elements.isPenalty(elementIndex)) {
+            actualWidth += elements.getWidth(elementIndex);
         }
         return getLineWidth() - actualWidth;
     }
@@ -1258,8 +1271,7 @@ public abstract class BreakingAlgorithm {
         }
 
         if (element.isPenalty() && ((KnuthPenalty) element).isPenaltyFlagged()
-            && getElement(activeNode.position).isPenalty()
-            && ((KnuthPenalty) getElement(activeNode.position)).isPenaltyFlagged()) {
+            && elements.isFlaggedPenalty(activeNode.position)) {
             // add demerit for consecutive breaks at flagged penalties
             demerits += repeatedFlaggedDemerit;
             // there are at least two consecutive lines ending with a flagged penalty;
@@ -1269,9 +1281,7 @@ public abstract class BreakingAlgorithm {
             for (KnuthNode prevNode = activeNode.previous;
                  prevNode != null && flaggedPenaltiesCount <= maxFlaggedPenaltiesCount;
                  prevNode = prevNode.previous) {
-                KnuthElement prevElement = getElement(prevNode.position);
-                if (prevElement.isPenalty()
-                    && ((KnuthPenalty) prevElement).isPenaltyFlagged()) {
+                if (elements.isFlaggedPenalty(prevNode.position)) {
                     // the previous line ends with a flagged penalty too
                     flaggedPenaltiesCount++;
                 } else {
@@ -51,6 +51,15 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
 
     private boolean handlingFloat;
 
+    /** Number of elements after which the element list is returned in chunks, 0 to disable */
+    private int chunkSize;
+    /** Elements of the last child held back at the end of the previous chunk */
+    private List<ListElement> heldBackElements;
+    /** True while the elements returned continue the previous chunk */
+    private boolean continuingChunk;
+    /** True if the last element list returned ended at a chunk boundary */
+    private boolean atChunkBoundary;
+
     /**
      * This is the top level layout manager.
      * It is created by the PageSequence FO.
@@ -85,6 +94,15 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         List<ListElement> elements = new LinkedList<ListElement>();
 
         boolean isRestart = (restartPosition != null);
+        atChunkBoundary = false;
+        if (isRestart) {
+            // the content after the restart position is laid out again
+            heldBackElements = null;
+            continuingChunk = false;
+        } else if (heldBackElements != null) {
+            elements.addAll(heldBackElements);
+            heldBackElements = null;
+        }
         // always reset in case of restart (exception: see below)
         boolean doReset = isRestart;
         LayoutManager currentChildLM;
@@ -109,6 +127,9 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         }
 
         while (currentChildLM != null) {
+            if (!isRestart) {
+                prefetchLineBreaks(context);
+            }
             if (!isRestart || doReset) {
                 if (doReset) {
                     currentChildLM.reset(); // TODO won't work with forced breaks
@@ -126,9 +147,13 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
                 doReset = true;
             }
             currentChildLM = getChildLM();
+            if (currentChildLM != null && chunkSize > 0 && elements.size() >= chunkSize
+                    && endChunk(elements)) {
+                return elements;
+            }
         }
 
-        SpaceResolver.resolveElementList(elements);
+        resolveElementList(elements);
         setFinished(true);
 
         assert !elements.isEmpty();
@@ -139,7 +164,7 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
             LayoutManager childLM, LayoutContext context, int alignment,
             Stack<LayoutManager> lmStack, Position position, LayoutManager restartAtLM) {
         if (handleSpanChange(childLM, context)) {
-            SpaceResolver.resolveElementList(elements);
+            resolveElementList(elements);
             return elements;
         }
 
@@ -163,12 +188,67 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
             if (childLM.isFinished() && !hasNextChildLM()) {
                 setFinished(true);
             }
-            SpaceResolver.resolveElementList(elements);
+            resolveElementList(elements);
             return elements;
         }
         return null;
     }
 
+    private void resolveElementList(List<ListElement> elements) {
+        SpaceResolver.resolveElementList(elements, continuingChunk);
+        continuingChunk = false;
+    }
+
+    /**
+     * Ends a chunk of the element list at a child boundary. Everything after the second to
+     * last box is held back and returned with the next chunk, so the chunk ends with a box and
+     * spaces, borders and breaks between the last child and its successor are resolved together.
+     * @param elements the elements collected so far
+     * @return true if the chunk was ended, false if it contains too few boxes
+     */
+    private boolean endChunk(List<ListElement> elements) {
+        ListIterator<ListElement> iter = elements.listIterator(elements.size());
+        int boxes = 0;
+        while (iter.hasPrevious() && boxes < 2) {
+            if (iter.previous().isBox()) {
+                boxes++;
+            }
+        }
+        if (boxes < 2) {
+            return false;
+        }
+        iter.next();
+        heldBackElements = new LinkedList<ListElement>();
+        while (iter.hasNext()) {
+            heldBackElements.add(iter.next());
+            iter.remove();
+        }
+        resolveElementList(elements);
+        continuingChunk = true;
+        atChunkBoundary = true;
+        return true;
+    }
+
+    /**
+     * Makes this LM return the element list of the flow in chunks of roughly the given number
+     * of elements, each ending at the boundary between two children, instead of returning the
+     * content up to the next forced break or span change in one list.
+     * @param chunkSize the minimum number of elements per chunk, 0 to disable chunking
+     */
+    void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Indicates whether the last element list returned is a chunk that is continued by the
+     * next element list, rather than ending at a forced break, a span change or the end of
+     * the flow.
+     * @return true if the last element list ended at a chunk boundary
+     */
+    boolean isAtChunkBoundary() {
+        return atChunkBoundary;
+    }
+
     private boolean handleSpanChange(LayoutManager childLM, LayoutContext context) {
         int span = EN_NONE;
         int disableColumnBalancing = EN_FALSE;
@@ -195,6 +275,17 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         }
     }
 
+    /**
+     * Overridden to only break the lines of child blocks in the current span ahead of layout,
+     * and none while a float is handled or the element list is returned in chunks.
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean canPrefetchLineBreaks(BlockLayoutManager childLM, LayoutContext context) {
+        return !handlingFloat && chunkSize == 0
+                && childLM.getBlockFO().getSpan() == context.getCurrentSpan();
+    }
+
     /**
      * Overridden to take into account the current page-master's
      * writing-mode
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.util.List;
+
+/**
+ * Column-oriented copy of the values of a sequence of {@link KnuthElement Knuth elements}
+ * that the breaking algorithms read in their inner loops: the element type, width,
+ * stretch, shrink, penalty value and penalty flag are stored in parallel primitive arrays
+ * indexed like the sequence. Scanning these arrays avoids dereferencing, casting and
+ * calling virtual methods on every element object. The element objects themselves stay
+ * in the sequence and are still used by the layout managers.
+ * <p>
+ * The arrays are reused when new elements are loaded, so the same instance can serve
+ * several breaking passes without allocating. Loading a {@link KnuthSequence} that is
+ * already loaded and hasn't been modified since doesn't copy anything, so several passes
+ * over the same paragraph or flow only read the elements once. The values of an element
+ * must not change while it is part of a loaded sequence.
+ */
+public final class KnuthElementColumns {
+
+    private static final byte BOX = 1;
+    private static final byte GLUE = 2;
+    private static final byte PENALTY = 4;
+    private static final byte FLAGGED = 8;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] widths = new int[INITIAL_CAPACITY];
+    private int[] stretches = new int[INITIAL_CAPACITY];
+    private int[] shrinks = new int[INITIAL_CAPACITY];
+    private int[] penalties = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /** The loaded sequence, null if the values were loaded from another list */
+    private KnuthSequence sequence;
+    private int sequenceModificationCount;
+
+    /**
+     * Makes this instance hold the values of the elements of the given sequence, unless
+     * it already does.
+     * @param elements the sequence
+     */
+    public void loadSequence(KnuthSequence elements) {
+        if (elements != sequence || elements.getModificationCount() != sequenceModificationCount) {
+            load((List<?>) elements);
+            sequence = elements;
+            sequenceModificationCount = elements.getModificationCount();
+        }
+    }
+
+    /**
+     * Replaces the values held by this instance by the values of the given elements.
+     * @param elements the elements; elements which are not {@link KnuthElement}s are
+     * neither boxes, glues nor penalties
+     */
+    public void load(List<?> elements) {
+        sequence = null;
+        size = 0;
+        ensureCapacity(elements.size());
+        for (Object element : elements) {
+            set(size++, (ListElement) element);
+        }
+    }
+
+    /**
+     * Inserts the values of an element, mirroring an insertion into the loaded sequence.
+     * @param index the index at which the element was inserted
+     * @param element the inserted element
+     */
+    public void insert(int index, ListElement element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        int count = size - index;
+        System.arraycopy(types, index, types, index + 1, count);
+        System.arraycopy(widths, index, widths, index + 1, count);
+        System.arraycopy(stretches, index, stretches, index + 1, count);
+        System.arraycopy(shrinks, index, shrinks, index + 1, count);
+        System.arraycopy(penalties, index, penalties, index + 1, count);
+        size++;
+        set(index, element);
+        if (sequence != null) {
+            //the insertion into the sequence has been mirrored
+            sequenceModificationCount = sequence.getModificationCount();
+        }
+    }
+
+    private void set(int index, ListElement element) {
+        byte type = 0;
+        int width = 0;
+        int stretch = 0;
+        int shrink = 0;
+        int penalty = 0;
+        if (element instanceof KnuthElement) {
+            KnuthElement knuthElement = (KnuthElement) element;
+            width = knuthElement.getWidth();
+            if (knuthElement.isBox()) {
+                type = BOX;
+            } else if (knuthElement.isGlue()) {
+                type = GLUE;
+                stretch = knuthElement.getStretch();
+                shrink = knuthElement.getShrink();
+            } else if (knuthElement.isPenalty()) {
+                type = PENALTY;
+                penalty = knuthElement.getPenalty();
+                if (((KnuthPenalty) knuthElement).isPenaltyFlagged()) {
+                    type |= FLAGGED;
+                }
+            }
+        }
+        types[index] = type;
+        widths[index] = width;
+        stretches[index] = stretch;
+        shrinks[index] = shrink;
+        penalties[index] = penalty;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            int newCapacity = Math.max(capacity, types.length * 2);
+            types = copyOf(types, newCapacity);
+            widths = copyOf(widths, newCapacity);
+            stretches = copyOf(stretches, newCapacity);
+            shrinks = copyOf(shrinks, newCapacity);
+            penalties = copyOf(penalties, newCapacity);
+        }
+    }
+
+    private byte[] copyOf(byte[] array, int newCapacity) {
+        byte[] copy = new byte[newCapacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    private int[] copyOf(int[] array, int newCapacity) {
+        int[] copy = new int[newCapacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    /** @return the number of elements */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return true if the element is a box
+     */
+    public boolean isBox(int index) {
+        return types[index] == BOX;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return true if the element is a glue
+     */
+    public boolean isGlue(int index) {
+        return types[index] == GLUE;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return true if the element is a penalty
+     */
+    public boolean isPenalty(int index) {
+        return (types[index] & PENALTY) != 0;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return true if the element is a flagged penalty
+     */
+    public boolean isFlaggedPenalty(int index) {
+        return (types[index] & FLAGGED) != 0;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return true if the element is a penalty forcing a break
+     */
+    public boolean isForcedBreak(int index) {
+        return isPenalty(index) && penalties[index] == -KnuthElement.INFINITE;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return true if the element is a penalty with a value smaller than
+     * {@link KnuthElement#INFINITE}
+     */
+    public boolean isLegalPenaltyBreak(int index) {
+        return isPenalty(index) && penalties[index] < KnuthElement.INFINITE;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return the width of the element
+     */
+    public int getWidth(int index) {
+        return widths[index];
+    }
+
+    /**
+     * @param index the index of the element
+     * @return the stretch of the element, 0 if it is not a glue
+     */
+    public int getStretch(int index) {
+        return stretches[index];
+    }
+
+    /**
+     * @param index the index of the element
+     * @return the shrink of the element, 0 if it is not a glue
+     */
+    public int getShrink(int index) {
+        return shrinks[index];
+    }
+
+    /**
+     * @param index the index of the element
+     * @return the penalty value of the element, 0 if it is not a penalty
+     */
+    public int getPenalty(int index) {
+        return penalties[index];
+    }
+
+    /**
+     * Returns the index of the first box at or after the given index.
+     * @param startIndex the index from which to start the lookup
+     * @return the index of the box, {@link #size()} if there is no such element
+     */
+    public int nextBoxIndex(int startIndex) {
+        int index = startIndex;
+        while (index < size && types[index] != BOX) {
+            index++;
+        }
+        return index;
+    }
+}
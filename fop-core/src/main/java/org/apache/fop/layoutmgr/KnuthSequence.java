@@ -160,6 +160,26 @@ public abstract class KnuthSequence extends ArrayList {
                 : (ListElement) get(index);
     }
 
+    /**
+     * {@inheritDoc}
+     * Replacing an element counts as a modification, see {@link #getModificationCount()}.
+     */
+    @Override
+    public Object set(int index, Object element) {
+        modCount++;
+        return super.set(index, element);
+    }
+
+    /**
+     * Returns a number that changes whenever elements are added to, removed from or
+     * replaced in this sequence. This allows the breaking algorithms to reuse the values
+     * they have read from the elements as long as the sequence is unchanged.
+     * @return the modification count
+     */
+    int getModificationCount() {
+        return modCount;
+    }
+
     /**
      * Returns the position index of the first box in this sequence, starting at the given
      * index. If {@code startIndex} is outside the bounds of this sequence, it is
@@ -69,6 +69,12 @@ public class PageBreaker extends AbstractBreaker {
     private int previousFootnoteListIndex = -2;
     private int previousFootnoteElementIndex = -2;
 
+    /** Number of elements per chunk of the main flow in streaming mode */
+    static final int STREAMING_CHUNK_SIZE = 1000;
+
+    /** Number of pages kept open for revision in streaming mode, 0 if disabled */
+    private final int lookahead;
+
     /**
      * The FlowLayoutManager object, which processes
      * the single fo:flow of the fo:page-sequence
@@ -86,6 +92,20 @@ public class PageBreaker extends AbstractBreaker {
         this.pageProvider = pslm.getPageProvider();
         this.childFLM = pslm.getLayoutManagerMaker().makeFlowLayoutManager(
                 pslm, pslm.getPageSequence().getMainFlow());
+        this.lookahead = pslm.getPageSequence().getUserAgent().getPageBreakingLookahead();
+        if (lookahead > 0) {
+            childFLM.setChunkSize(STREAMING_CHUNK_SIZE);
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected int getLookahead() {
+        return lookahead;
+    }
+
+    /** {@inheritDoc} */
+    protected boolean isAtChunkBoundary() {
+        return childFLM.isAtChunkBoundary();
     }
 
     /** {@inheritDoc} */
@@ -161,7 +181,7 @@ public class PageBreaker extends AbstractBreaker {
     /** {@inheritDoc} */
     protected int getNextBlockList(LayoutContext childLC, int nextSequenceStartsOn,
             Position positionAtIPDChange, LayoutManager restartLM, List firstElements) {
-        if (!layoutRedone && !handlingFloat()) {
+        if (!layoutRedone && !handlingFloat() && !continuesOnCurrentPart()) {
             if (!firstPart) {
                 // if this is the first page that will be created by
                 // the current BlockSequence, it could have a break
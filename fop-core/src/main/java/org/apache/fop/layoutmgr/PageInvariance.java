@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.FObj;
+import org.apache.fop.fo.flow.AbstractPageNumberCitation;
+import org.apache.fop.fo.flow.AbstractRetrieveMarker;
+import org.apache.fop.fo.flow.BasicLink;
+import org.apache.fop.fo.flow.BlockContainer;
+import org.apache.fop.fo.flow.ChangeBar;
+import org.apache.fop.fo.flow.Footnote;
+import org.apache.fop.fo.flow.PageNumber;
+
+/**
+ * Determines whether the areas generated for a subtree of formatting objects are the same on
+ * every page, so that they may be laid out once and reused on the following pages.
+ */
+public final class PageInvariance {
+
+    private PageInvariance() {
+    }
+
+    /**
+     * Indicates whether the areas of a formatting object and its descendants don't depend on
+     * the page they are placed on. This isn't the case if the subtree contains page numbers,
+     * page number citations, markers, retrieved markers, footnotes, links, change bars,
+     * formatting objects with an id or block-containers with a fixed position, which are
+     * placed relative to the page rather than to the region.
+     * @param node the root of the subtree
+     * @return true if the areas may be reused on other pages
+     */
+    public static boolean isPageInvariant(FONode node) {
+        if (node instanceof PageNumber || node instanceof AbstractPageNumberCitation
+                || node instanceof AbstractRetrieveMarker
+                || node instanceof Footnote || node instanceof BasicLink
+                || node instanceof ChangeBar) {
+            return false;
+        }
+        if (node instanceof BlockContainer && ((BlockContainer) node).getCommonAbsolutePosition()
+                .absolutePosition == Constants.EN_FIXED) {
+            return false;
+        }
+        if (node instanceof FObj && (((FObj) node).hasId() || ((FObj) node).hasMarkers())) {
+            return false;
+        }
+        for (FONode.FONodeIterator it = node.getChildNodes(); it != null && it.hasNext();) {
+            if (!isPageInvariant(it.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
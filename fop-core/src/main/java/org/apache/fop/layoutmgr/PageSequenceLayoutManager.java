@@ -63,6 +63,9 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
     private int startIntrusionAdjustment;
     private int endIntrusionAdjustment;
 
+    /** The areas of page-invariant static-content, reused on the following pages. */
+    private final StaticContentAreaCache staticContentAreaCache;
+
     /**
      * Constructor
      *
@@ -72,6 +75,7 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
     public PageSequenceLayoutManager(AreaTreeHandler ath, PageSequence pseq) {
         super(ath, pseq);
         this.pageProvider = new PageProvider(ath, pseq);
+        this.staticContentAreaCache = new StaticContentAreaCache(ath);
     }
 
     /** @return the PageProvider applicable to this page-sequence. */
@@ -94,6 +98,11 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
         return this;
     }
 
+    /** @return the areas of page-invariant static-content laid out so far */
+    StaticContentAreaCache getStaticContentAreaCache() {
+        return staticContentAreaCache;
+    }
+
     public FlowLayoutManager getFlowLayoutManager() {
         if (pageBreaker == null) {
             throw new IllegalStateException("This method can be called only during layout");
@@ -597,10 +597,20 @@ public final class SpaceResolver {
      * @param elems the element list
      */
     public static void resolveElementList(List elems) {
+        resolveElementList(elems, false);
+    }
+
+    /**
+     * Resolves unresolved elements applying the space resolution rules defined in 4.3.1.
+     * @param elems the element list
+     * @param continued true if the list continues an element list that has already been
+     *          resolved, i.e. the first elements are not at the beginning of the flow
+     */
+    public static void resolveElementList(List elems, boolean continued) {
         if (LOG.isTraceEnabled()) {
             LOG.trace(elems);
         }
-        boolean first = true;
+        boolean first = !continued;
         boolean last = false;
         boolean skipNextElement = false;
         List unresolvedFirst = new java.util.ArrayList();
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fop.area.Area;
+import org.apache.fop.area.AreaTreeHandler;
+import org.apache.fop.area.Block;
+import org.apache.fop.fo.pagination.SideRegion;
+import org.apache.fop.fo.pagination.StaticContent;
+
+/**
+ * Holds the areas of page-invariant static-content of a page-sequence, so that they are laid
+ * out once per region size and added to the following pages as they are. Each set of areas
+ * gets a key that is unique in the document, which renderers use to paint the areas once and
+ * show them again on the following pages.
+ * @see PageInvariance
+ */
+final class StaticContentAreaCache {
+
+    private final AreaTreeHandler areaTreeHandler;
+    private final Map<StaticContent, Boolean> pageInvariance = new HashMap<StaticContent, Boolean>();
+    private final Map<Key, ReusableAreas> areas = new HashMap<Key, ReusableAreas>();
+
+    /**
+     * Creates a cache for the static-content of a page-sequence.
+     * @param areaTreeHandler the area tree handler generating the keys of the cached areas
+     */
+    StaticContentAreaCache(AreaTreeHandler areaTreeHandler) {
+        this.areaTreeHandler = areaTreeHandler;
+    }
+
+    /**
+     * Indicates whether the areas of a static-content are the same on every page.
+     * @param staticContent the static-content
+     * @return true if the areas may be reused on other pages
+     */
+    boolean isPageInvariant(StaticContent staticContent) {
+        Boolean pageInvariant = pageInvariance.get(staticContent);
+        if (pageInvariant == null) {
+            pageInvariant = PageInvariance.isPageInvariant(staticContent);
+            pageInvariance.put(staticContent, pageInvariant);
+        }
+        return pageInvariant;
+    }
+
+    /**
+     * Returns the areas previously laid out for a static-content in a region of the given size.
+     * @param staticContent the static-content
+     * @param region the region the static-content is laid out into
+     * @param ipd the inline-progression-dimension of the region
+     * @param bpd the block-progression-dimension of the region
+     * @return the areas, or null if the static-content hasn't been laid out for this size
+     */
+    ReusableAreas getAreas(StaticContent staticContent, SideRegion region, int ipd, int bpd) {
+        return areas.get(new Key(staticContent, region, ipd, bpd));
+    }
+
+    /**
+     * Records the areas laid out for a static-content in a region of the given size.
+     * @param staticContent the static-content
+     * @param region the region the static-content is laid out into
+     * @param ipd the inline-progression-dimension of the region
+     * @param bpd the block-progression-dimension of the region
+     * @param blocks the block areas
+     * @return the recorded areas
+     */
+    ReusableAreas putAreas(StaticContent staticContent, SideRegion region, int ipd, int bpd,
+            List<Area> blocks) {
+        List<Block> copy = new ArrayList<Block>(blocks.size());
+        for (Area block : blocks) {
+            copy.add((Block) block);
+        }
+        ReusableAreas reusableAreas = new ReusableAreas(copy,
+                areaTreeHandler.generateReusableContentKey());
+        areas.put(new Key(staticContent, region, ipd, bpd), reusableAreas);
+        return reusableAreas;
+    }
+
+    /** The block areas laid out for a static-content, and the key identifying them. */
+    static final class ReusableAreas {
+
+        private final List<Block> blocks;
+        private final String contentKey;
+
+        ReusableAreas(List<Block> blocks, String contentKey) {
+            this.blocks = blocks;
+            this.contentKey = contentKey;
+        }
+
+        /** @return the block areas */
+        List<Block> getBlocks() {
+            return blocks;
+        }
+
+        /** @return the key that is unique in the document */
+        String getContentKey() {
+            return contentKey;
+        }
+    }
+
+    private static final class Key {
+
+        private final StaticContent staticContent;
+        private final SideRegion region;
+        private final int ipd;
+        private final int bpd;
+
+        Key(StaticContent staticContent, SideRegion region, int ipd, int bpd) {
+            this.staticContent = staticContent;
+            this.region = region;
+            this.ipd = ipd;
+            this.bpd = bpd;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return staticContent == other.staticContent && region == other.region
+                    && ipd == other.ipd && bpd == other.bpd;
+        }
+
+        public int hashCode() {
+            int hash = System.identityHashCode(staticContent);
+            hash = 31 * hash + System.identityHashCode(region);
+            hash = 31 * hash + ipd;
+            return 31 * hash + bpd;
+        }
+    }
+}
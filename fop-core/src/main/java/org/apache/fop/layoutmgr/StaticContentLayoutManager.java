@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.fop.area.Area;
 import org.apache.fop.area.Block;
 import org.apache.fop.area.RegionReference;
+import org.apache.fop.area.Trait;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.fo.pagination.PageSequence;
 import org.apache.fop.fo.pagination.SideRegion;
@@ -121,6 +122,9 @@ public class StaticContentLayoutManager extends BlockStackingLayoutManager {
         int targetAlign = EN_AUTO;
         boolean autoHeight = false;
         StaticContentBreaker breaker;
+        StaticContentAreaCache areaCache = null;
+        RegionReference region = targetRegion;
+        int firstBlock = 0;
 
         if (getStaticContentFO().getFlowName().equals("xsl-footnote-separator")) {
             targetIPD = targetBlock.getIPD();
@@ -133,6 +137,22 @@ public class StaticContentLayoutManager extends BlockStackingLayoutManager {
             targetIPD = targetRegion.getIPD();
             targetBPD = targetRegion.getBPD();
             targetAlign = regionFO.getDisplayAlign();
+            if (canReuseAreas()) {
+                areaCache = getPSLM().getStaticContentAreaCache();
+                StaticContentAreaCache.ReusableAreas reusableAreas = areaCache.getAreas(
+                        getStaticContentFO(), regionFO, targetIPD, targetBPD);
+                if (reusableAreas != null) {
+                    if (targetRegion.getBlocks().isEmpty()) {
+                        targetRegion.addTrait(Trait.REUSABLE_CONTENT, reusableAreas.getContentKey());
+                    }
+                    for (Block block : reusableAreas.getBlocks()) {
+                        targetRegion.addBlock(block);
+                    }
+                    targetRegion = null;
+                    return;
+                }
+                firstBlock = region.getBlocks().size();
+            }
         }
         setContentAreaIPD(targetIPD);
         setContentAreaBPD(targetBPD);
@@ -152,9 +172,29 @@ public class StaticContentLayoutManager extends BlockStackingLayoutManager {
                         breaker.getOverflowAmount(), needClip, canRecover,
                         getStaticContentFO().getLocator());
             }
+        } else if (areaCache != null) {
+            List<Area> blocks = region.getBlocks();
+            StaticContentAreaCache.ReusableAreas reusableAreas = areaCache.putAreas(
+                    getStaticContentFO(), regionFO, targetIPD, targetBPD,
+                    blocks.subList(firstBlock, blocks.size()));
+            if (firstBlock == 0) {
+                region.addTrait(Trait.REUSABLE_CONTENT, reusableAreas.getContentKey());
+            }
         }
     }
 
+    /**
+     * Indicates whether the areas laid out for the static-content may be reused on the
+     * following pages of the page-sequence, which is the case if the static-content doesn't
+     * depend on the page. The areas aren't shared if the structure tree is built, as every
+     * page needs its own structure elements.
+     * @return true if the areas may be reused
+     */
+    private boolean canReuseAreas() {
+        return !getStaticContentFO().getUserAgent().isAccessibilityEnabled()
+                && getPSLM().getStaticContentAreaCache().isPageInvariant(getStaticContentFO());
+    }
+
     /**
      * Convenience method that returns the Static Content node.
      * @return the static content node
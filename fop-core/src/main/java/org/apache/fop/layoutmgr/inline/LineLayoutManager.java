@@ -25,6 +25,9 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -168,7 +171,6 @@ public class LineLayoutManager extends InlineStackingLayoutManager
 
     private List<KnuthSequence> knuthParagraphs;
 
-    private LineLayoutPossibilities lineLayouts;
     private LineLayoutPossibilities[] lineLayoutsList;
     private int ipd;
     /**
@@ -177,6 +179,12 @@ public class LineLayoutManager extends InlineStackingLayoutManager
      */
     private boolean hyphenationPerformed;
 
+    /** The line breaks being computed in advance on a fork-join pool, null if there are none */
+    private ForkJoinTask<?> lineBreaksTask;
+    private LineBreakingAlgorithm[] prefetchedAlgorithms;
+    private int prefetchedIPD;
+    private int prefetchedAlignment;
+
     /**
      * This class is used to remember
      * which was the first element in the paragraph
@@ -314,18 +322,31 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         private final int lineHeight;
         private final int lead;
         private final int follow;
+        private final int parIndex;
+        private final boolean firstInBlock;
+        private final boolean canWrap;
+        private final boolean canHyphenate;
+        private final LineLayoutPossibilities lineLayouts = new LineLayoutPossibilities();
+        /** the overflowing lines found, as (line number, overflow) pairs */
+        private final List<int[]> overflows = new ArrayList<int[]>();
+        private int lastLineHeight = -1;
         private static final double MAX_DEMERITS = 10e6;
 
         public LineBreakingAlgorithm(int pageAlign, int textAlign, int textAlignLast, int indent, int fillerWidth,
-                int lh, int ld, int fl, boolean first, int maxFlagCount, LineLayoutManager llm) {
-            super(textAlign, textAlignLast, first, false, maxFlagCount);
+                int lh, int ld, int fl, int parIndex, int maxFlagCount, LineLayoutManager llm) {
+            super(textAlign, textAlignLast, parIndex == 0, false, maxFlagCount);
             pageAlignment = pageAlign;
             textIndent = indent;
             lineHeight = lh;
             lead = ld;
             follow = fl;
+            this.parIndex = parIndex;
             thisLLM = llm;
             activePossibility = -1;
+            // copy the state of the LLM read while breaking, so that it may run on another thread
+            firstInBlock = isFirstInBlock;
+            canWrap = (wrapOption != EN_NO_WRAP);
+            canHyphenate = canHyphenate();
         }
 
         @Override
@@ -371,7 +392,7 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             startIndent += (textAlign == Constants.EN_CENTER)
                       ? difference / 2 : (textAlign == Constants.EN_END) ? difference : 0;
             */
-            startIndent += (bestActiveNode.line == 1 && indentFirstPart && isFirstInBlock)
+            startIndent += (bestActiveNode.line == 1 && indentFirstPart && firstInBlock)
                       ? textIndent : 0;
 
             double ratio = (textAlign == Constants.EN_JUSTIFY
@@ -393,20 +414,9 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             }
 
             int lack = difference + bestActiveNode.availableShrink;
-            // if this LLM is nested inside a BlockContainerLayoutManager that is constraining
-            // the available width and thus responsible for the overflow then we do not issue
-            // warning event here and instead let the BCLM handle that at a later stage
-            if (lack < 0 && !handleOverflow(-lack)) {
-                InlineLevelEventProducer eventProducer
-                    = InlineLevelEventProducer.Provider.get(
-                        getFObj().getUserAgent().getEventBroadcaster());
-                if (curChildLM.getFObj() == null) {
-                    eventProducer.lineOverflows(this, getFObj().getName(), bestActiveNode.line,
-                            -lack, getFObj().getLocator());
-                } else {
-                    eventProducer.lineOverflows(this, curChildLM.getFObj().getName(), bestActiveNode.line,
-                        -lack, curChildLM.getFObj().getLocator());
-                }
+            if (lack < 0) {
+                // reported by reportResults(), once the breaks are found
+                overflows.add(new int[] {bestActiveNode.line, -lack});
             }
 
             //log.debug("LLM> (" + (lineLayouts.getLineNumber(activePossibility) - addedPositions)
@@ -427,6 +437,92 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             activePossibility = -1;
         }
 
+        /**
+         * Finds the optimal line breaks for a paragraph whose hyphenation points have been
+         * found. Only this algorithm and the paragraph are modified, so several paragraphs
+         * may be broken concurrently.
+         * @param currPar the paragraph
+         * @return the line layout possibilities for the paragraph
+         */
+        private LineLayoutPossibilities findOptimalBreakingPoints(Paragraph currPar) {
+            double maxAdjustment = 1;
+
+            // first try: do not consider hyphenation points as legal breaks
+            int allowedBreaks = (canWrap ? BreakingAlgorithm.NO_FLAGGED_PENALTIES
+                    : BreakingAlgorithm.ONLY_FORCED_BREAKS);
+            int breakingPoints = findBreakingPoints(currPar, maxAdjustment, false, allowedBreaks);
+
+            if (breakingPoints == 0 || pageAlignment == EN_JUSTIFY) {
+                // if the first try found a set of breaking points, save them
+                if (breakingPoints > 0) {
+                    resetAlgorithm();
+                    lineLayouts.savePossibilities(false);
+                } else {
+                    // the first try failed
+                    log.debug("No set of breaking points found with maxAdjustment = " + maxAdjustment);
+                }
+
+                // now try something different
+                log.debug("Hyphenation possible? " + canHyphenate);
+                // Note: if allowedBreaks is guaranteed to be unchanged by findBreakingPoints(),
+                // the below check can be simplified to 'if (canHyphenate) ...'
+                if (canHyphenate && allowedBreaks != BreakingAlgorithm.ONLY_FORCED_BREAKS) {
+                    // consider every hyphenation point as a legal break
+                    allowedBreaks = BreakingAlgorithm.ALL_BREAKS;
+                } else {
+                    // try with a higher threshold
+                    maxAdjustment = 5;
+                }
+
+                breakingPoints = findBreakingPoints(currPar, maxAdjustment, false, allowedBreaks);
+                if (breakingPoints == 0) {
+                    // the second try failed too, try with a huge threshold
+                    // and force the algorithm to find a set of breaking points
+                    if (log.isDebugEnabled()) {
+                        log.debug("No set of breaking points found with maxAdjustment = "
+                                + maxAdjustment + (canHyphenate ? " and hyphenation" : ""));
+                    }
+                    maxAdjustment = 20;
+                    findBreakingPoints(currPar, maxAdjustment, true, allowedBreaks);
+                }
+
+                // use non-hyphenated breaks, when possible
+                lineLayouts.restorePossibilities();
+            }
+
+            return lineLayouts;
+        }
+
+        /**
+         * Reports the overflowing lines and updates the line height of the LLM. This is done
+         * on the layout thread, after the breaks are found.
+         */
+        private void reportResults() {
+            for (int[] overflow : overflows) {
+                int line = overflow[0];
+                int lack = overflow[1];
+                // if this LLM is nested inside a BlockContainerLayoutManager that is constraining
+                // the available width and thus responsible for the overflow then we do not issue
+                // warning event here and instead let the BCLM handle that at a later stage
+                if (!handleOverflow(lack)) {
+                    InlineLevelEventProducer eventProducer
+                        = InlineLevelEventProducer.Provider.get(
+                            getFObj().getUserAgent().getEventBroadcaster());
+                    if (curChildLM.getFObj() == null) {
+                        eventProducer.lineOverflows(this, getFObj().getName(), line,
+                                lack, getFObj().getLocator());
+                    } else {
+                        eventProducer.lineOverflows(this, curChildLM.getFObj().getName(), line,
+                            lack, curChildLM.getFObj().getLocator());
+                    }
+                }
+            }
+            overflows.clear();
+            if (lastLineHeight >= 0) {
+                constantLineHeight = lastLineHeight;
+            }
+        }
+
         private LineBreakPosition makeLineBreakPosition(KnuthSequence par, int firstElementIndex, int lastElementIndex,
                 int availableShrink, int availableStretch, int difference, double ratio,
                 int startIndent, int endIndent) {
@@ -441,7 +537,7 @@ public class LineLayoutManager extends InlineStackingLayoutManager
             // true if this line contains only zero-height, auxiliary boxes
             // and the actual line width is 0; in this case, the line "collapses"
             // i.e. the line area will have bpd = 0
-            boolean isZeroHeightLine = (difference == ipd);
+            boolean isZeroHeightLine = (difference == getLineWidth());
 
             // if line-stacking-strategy is "font-height", the line height
             // is not affected by its content
@@ -489,23 +585,23 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                 }
             }
 
-            constantLineHeight = lineLead + lineFollow;
+            lastLineHeight = lineLead + lineFollow;
 
             if (isZeroHeightLine) {
                 return new LineBreakPosition(thisLLM,
-                                             knuthParagraphs.indexOf(par),
+                                             parIndex,
                                              firstElementIndex, lastElementIndex,
                                              availableShrink, availableStretch,
                                              difference, ratio, 0, startIndent, endIndent,
-                                             0, ipd, 0, 0, 0);
+                                             0, getLineWidth(), 0, 0, 0);
             } else {
                 return new LineBreakPosition(thisLLM,
-                                             knuthParagraphs.indexOf(par),
+                                             parIndex,
                                              firstElementIndex, lastElementIndex,
                                              availableShrink, availableStretch,
                                              difference, ratio, 0, startIndent, endIndent,
                                              lineLead + lineFollow,
-                                             ipd, spaceBefore, spaceAfter,
+                                             getLineWidth(), spaceBefore, spaceAfter,
                                              lineLead);
             }
         }
@@ -608,14 +704,7 @@ public class LineLayoutManager extends InlineStackingLayoutManager
     /** {@inheritDoc} */
     @Override
     public List getNextKnuthElements(LayoutContext context, int alignment) {
-        if (alignmentContext == null) {
-            FontInfo fi = fobj.getFOEventHandler().getFontInfo();
-            FontTriplet[] fontkeys = fobj.getCommonFont().getFontState(fi);
-            Font fs = fi.getFontInstance(fontkeys[0], fobj.getCommonFont().fontSize.getValue(this));
-            alignmentContext = new AlignmentContext(fs, lineHeight.getValue(this),
-                    context.getWritingMode());
-        }
-        context.setAlignmentContext(alignmentContext);
+        setAlignmentContext(context);
         ipd = context.getRefIPD();
 
         //PHASE 1: Create Knuth elements
@@ -637,9 +726,137 @@ public class LineLayoutManager extends InlineStackingLayoutManager
         }
 
         //PHASE 2: Create line breaks
+        if (lineBreaksTask != null) {
+            return joinLineBreaks(context);
+        }
         return createLineBreaks(context.getBPAlignment(), context);
     }
 
+    private void setAlignmentContext(LayoutContext context) {
+        if (alignmentContext == null) {
+            FontInfo fi = fobj.getFOEventHandler().getFontInfo();
+            FontTriplet[] fontkeys = fobj.getCommonFont().getFontState(fi);
+            Font fs = fi.getFontInstance(fontkeys[0], fobj.getCommonFont().fontSize.getValue(this));
+            alignmentContext = new AlignmentContext(fs, lineHeight.getValue(this),
+                    context.getWritingMode());
+        }
+        context.setAlignmentContext(alignmentContext);
+    }
+
+    /**
+     * Indicates whether the lines hold nothing but text without preserved linefeeds, so that
+     * they may be broken ahead of layout.
+     * @return true if the lines only hold text
+     */
+    public boolean hasOnlyText() {
+        if (fobj.getLinefeedTreatment() == EN_PRESERVE) {
+            return false;
+        }
+        for (LayoutManager childLM : getChildLMs()) {
+            if (!(childLM instanceof TextLayoutManager)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the Knuth elements of the lines and starts breaking their paragraphs on the
+     * given pool, so that the breaks are ready when the element list is requested. This is
+     * only done for lines made of text (see {@link #hasOnlyText()}). The elements are
+     * collected and hyphenated on the calling thread.
+     * @param context the layout context the lines are expected to be laid out with
+     * @param pool the pool breaking the paragraphs
+     * @return true if the line breaks are being computed, false if this LM is not eligible
+     */
+    public boolean prefetchLineBreaks(LayoutContext context, ForkJoinPool pool) {
+        if (knuthParagraphs != null || !hasOnlyText()) {
+            return false;
+        }
+        setAlignmentContext(context);
+        ipd = context.getRefIPD();
+        knuthParagraphs = new ArrayList<KnuthSequence>();
+        collectInlineKnuthElements(context);
+
+        int alignment = context.getBPAlignment();
+        LineBreakingAlgorithm[] algs = new LineBreakingAlgorithm[knuthParagraphs.size()];
+        Paragraph[] paragraphs = new Paragraph[algs.length];
+        for (int i = 0; i < algs.length; i++) {
+            KnuthSequence seq = knuthParagraphs.get(i);
+            if (seq.isInlineSequence()) {
+                paragraphs[i] = (Paragraph) seq;
+                algs[i] = createLineBreakingAlgorithm(alignment, paragraphs[i]);
+                hyphenate(paragraphs[i], i == algs.length - 1);
+            }
+        }
+        prefetchedAlgorithms = algs;
+        prefetchedIPD = ipd;
+        prefetchedAlignment = alignment;
+        lineBreaksTask = pool.submit(new LineBreakingTask(algs, paragraphs, 0, algs.length));
+        return true;
+    }
+
+    /**
+     * Waits for the line breaks computed in advance and creates the element list from them.
+     * If the lines are laid out with another IPD or alignment than expected, the paragraphs
+     * are broken again.
+     * @param context the layout context
+     * @return a list of Knuth elements representing broken lines
+     */
+    private List<ListElement> joinLineBreaks(LayoutContext context) {
+        LineBreakingAlgorithm[] algs = prefetchedAlgorithms;
+        lineBreaksTask.join();
+        lineBreaksTask = null;
+        prefetchedAlgorithms = null;
+        int alignment = context.getBPAlignment();
+        if (ipd != prefetchedIPD || alignment != prefetchedAlignment) {
+            return createLineBreaks(alignment, context);
+        }
+        lineLayoutsList = new LineLayoutPossibilities[algs.length];
+        for (int i = 0; i < algs.length; i++) {
+            if (algs[i] == null) {
+                lineLayoutsList[i] = new LineLayoutPossibilities();
+            } else {
+                algs[i].reportResults();
+                lineLayoutsList[i] = algs[i].lineLayouts;
+            }
+        }
+
+        setFinished(true);
+
+        //Post-process the line breaks found
+        return postProcessLineBreaks(alignment, context);
+    }
+
+    /** Breaks a range of paragraphs into lines, splitting the range among the pool's threads. */
+    private static final class LineBreakingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -1871236011420931187L;
+
+        private final LineBreakingAlgorithm[] algs;
+        private final Paragraph[] paragraphs;
+        private final int from;
+        private final int to;
+
+        private LineBreakingTask(LineBreakingAlgorithm[] algs, Paragraph[] paragraphs, int from, int to) {
+            this.algs = algs;
+            this.paragraphs = paragraphs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LineBreakingTask(algs, paragraphs, from, middle),
+                        new LineBreakingTask(algs, paragraphs, middle, to));
+            } else if (to > from && algs[from] != null) {
+                algs[from].findOptimalBreakingPoints(paragraphs[from]);
+            }
+        }
+    }
+
     /**
      * Get a sequence of KnuthElements representing the content
      * of the node assigned to the LM.
@@ -841,73 +1058,42 @@ public class LineLayoutManager extends InlineStackingLayoutManager
      */
     private LineLayoutPossibilities findOptimalBreakingPoints(int alignment, Paragraph currPar,
                                                               boolean isLastPar) {
-        // use the member lineLayouts, which is read by LineBreakingAlgorithm.updateData1 and 2
-        lineLayouts = new LineLayoutPossibilities();
-        double maxAdjustment = 1;
+        LineBreakingAlgorithm alg = createLineBreakingAlgorithm(alignment, currPar);
+        hyphenate(currPar, isLastPar);
+        LineLayoutPossibilities lineLayouts = alg.findOptimalBreakingPoints(currPar);
+        alg.reportResults();
+        return lineLayouts;
+    }
+
+    private LineBreakingAlgorithm createLineBreakingAlgorithm(int alignment, Paragraph currPar) {
         LineBreakingAlgorithm alg = new LineBreakingAlgorithm(alignment,
                                         textAlignment, textAlignmentLast,
                                         textIndent.getValue(this), currPar.lineFiller.getOpt(),
                                         lineHeight.getValue(this), lead, follow,
-                                        (knuthParagraphs.indexOf(currPar) == 0),
+                                        knuthParagraphs.indexOf(currPar),
                                         hyphenationLadderCount.getEnum() == EN_NO_LIMIT
                                             ? 0 : hyphenationLadderCount.getValue(),
                                         this);
         alg.setConstantLineWidth(ipd);
-        boolean canWrap = (wrapOption != EN_NO_WRAP);
-        boolean canHyphenate = (canWrap && hyphenationProperties.hyphenate.getEnum() == EN_TRUE);
+        return alg;
+    }
+
+    private boolean canHyphenate() {
+        return wrapOption != EN_NO_WRAP && hyphenationProperties.hyphenate.getEnum() == EN_TRUE;
+    }
 
-        // find hyphenation points, if allowed and not yet done
-        if (canHyphenate && !hyphenationPerformed) {
+    /**
+     * Finds the hyphenation points of a paragraph, if allowed and not yet done.
+     * @param currPar the paragraph
+     * @param isLastPar flag indicating whether currPar is the last paragraph
+     */
+    private void hyphenate(Paragraph currPar, boolean isLastPar) {
+        if (canHyphenate() && !hyphenationPerformed) {
             // make sure findHyphenationPoints() is bypassed if
             // the method is called twice (e.g. due to changing page-ipd)
             hyphenationPerformed = isLastPar;
             findHyphenationPoints(currPar);
         }
-
-        // first try: do not consider hyphenation points as legal breaks
-        int allowedBreaks = (canWrap ? BreakingAlgorithm.NO_FLAGGED_PENALTIES
-                : BreakingAlgorithm.ONLY_FORCED_BREAKS);
-        int breakingPoints = alg.findBreakingPoints(currPar, maxAdjustment, false, allowedBreaks);
-
-        if (breakingPoints == 0 || alignment == EN_JUSTIFY) {
-            // if the first try found a set of breaking points, save them
-            if (breakingPoints > 0) {
-                alg.resetAlgorithm();
-                lineLayouts.savePossibilities(false);
-            } else {
-                // the first try failed
-                log.debug("No set of breaking points found with maxAdjustment = " + maxAdjustment);
-            }
-
-            // now try something different
-            log.debug("Hyphenation possible? " + canHyphenate);
-            // Note: if allowedBreaks is guaranteed to be unchanged by alg.findBreakingPoints(),
-            // the below check can be simplified to 'if (canHyphenate) ...'
-            if (canHyphenate && allowedBreaks != BreakingAlgorithm.ONLY_FORCED_BREAKS) {
-                // consider every hyphenation point as a legal break
-                allowedBreaks = BreakingAlgorithm.ALL_BREAKS;
-            } else {
-                // try with a higher threshold
-                maxAdjustment = 5;
-            }
-
-            breakingPoints = alg.findBreakingPoints(currPar, maxAdjustment, false, allowedBreaks);
-            if (breakingPoints == 0) {
-                // the second try failed too, try with a huge threshold
-                // and force the algorithm to find a set of breaking points
-                if (log.isDebugEnabled()) {
-                    log.debug("No set of breaking points found with maxAdjustment = "
-                            + maxAdjustment + (canHyphenate ? " and hyphenation" : ""));
-                }
-                maxAdjustment = 20;
-                alg.findBreakingPoints(currPar, maxAdjustment, true, allowedBreaks);
-            }
-
-            // use non-hyphenated breaks, when possible
-            lineLayouts.restorePossibilities();
-        }
-
-        return lineLayouts;
     }
 
     /**
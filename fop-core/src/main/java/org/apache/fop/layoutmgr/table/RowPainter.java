@@ -140,6 +140,17 @@ class RowPainter {
         return currentRowOffset;
     }
 
+    /**
+     * Accounts for a table part whose areas have been added without this painter, leaving
+     * it in the same state as if the part had been painted.
+     *
+     * @param bpd the height of the table part
+     */
+    void skipTablePart(int bpd) {
+        currentRowOffset += bpd;
+        firstRowOnPageIndex = Integer.MAX_VALUE;
+    }
+
     /**
      * Records the fragment of row represented by the given position. If it belongs to
      * another (grid) row than the current one, that latter is painted and flushed first.
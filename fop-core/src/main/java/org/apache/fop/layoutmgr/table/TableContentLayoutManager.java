@@ -19,6 +19,7 @@
 
 package org.apache.fop.layoutmgr.table;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -28,6 +29,8 @@ import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.fop.area.Area;
+import org.apache.fop.area.Block;
 import org.apache.fop.datatypes.PercentBaseContext;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.fo.FObj;
@@ -36,6 +39,7 @@ import org.apache.fop.fo.flow.table.EffRow;
 import org.apache.fop.fo.flow.table.PrimaryGridUnit;
 import org.apache.fop.fo.flow.table.Table;
 import org.apache.fop.fo.flow.table.TableBody;
+import org.apache.fop.fo.flow.table.TableColumn;
 import org.apache.fop.fo.flow.table.TablePart;
 import org.apache.fop.layoutmgr.BreakElement;
 import org.apache.fop.layoutmgr.ElementListUtils;
@@ -50,6 +54,7 @@ import org.apache.fop.layoutmgr.KnuthPossPosIter;
 import org.apache.fop.layoutmgr.LayoutContext;
 import org.apache.fop.layoutmgr.ListElement;
 import org.apache.fop.layoutmgr.PageBreaker;
+import org.apache.fop.layoutmgr.PageInvariance;
 import org.apache.fop.layoutmgr.Position;
 import org.apache.fop.layoutmgr.PositionIterator;
 import org.apache.fop.layoutmgr.SpaceResolver.SpaceHandlingBreakPosition;
@@ -80,6 +85,11 @@ public class TableContentLayoutManager implements PercentBaseContext {
     private boolean headerIsBeingRepeated;
     private boolean  atLeastOnce;
 
+    /** Indicates whether the areas of the table-header and -footer may be reused. */
+    private Boolean headerFooterReusable;
+    /** The areas of the table-header and -footer, replayed where they are repeated. */
+    private List<HeaderFooterAreas> headerFooterAreas = new ArrayList<HeaderFooterAreas>();
+
     /**
      * Main constructor
      * @param parent Parent layout manager
@@ -463,7 +473,7 @@ public class TableContentLayoutManager implements PercentBaseContext {
             //header positions for the last part are the second-to-last element and need to
             //be handled first before all other TableContentPositions
             addHeaderFooterAreas(headerElements, tableLM.getTable().getTableHeader(), painter,
-                    false);
+                    false, layoutContext);
             if (!ancestorTreatAsArtifact) {
                 headerIsBeingRepeated = true;
             }
@@ -489,7 +499,8 @@ public class TableContentLayoutManager implements PercentBaseContext {
             boolean ancestorTreatAsArtifact = layoutContext.treatAsArtifact();
             layoutContext.setTreatAsArtifact(treatFooterAsArtifact);
             //Positions for footers are simply added at the end
-            addHeaderFooterAreas(footerElements, tableLM.getTable().getTableFooter(), painter, true);
+            addHeaderFooterAreas(footerElements, tableLM.getTable().getTableFooter(), painter, true,
+                    layoutContext);
             if (lastPos instanceof TableHFPenaltyPosition && !tableLM.getFooterFootnotes().isEmpty()) {
                 tableLM.getPSLM().addTableFooterFootnotes(getTableLM().getFooterFootnotes());
             }
@@ -504,6 +515,69 @@ public class TableContentLayoutManager implements PercentBaseContext {
         }
     }
 
+    /**
+     * Adds the areas of the table-header or -footer. If the part's areas don't depend on the
+     * page, the areas added the first time are kept and added again where the part is
+     * repeated, moved to the current offset, instead of being created anew.
+     */
+    private void addHeaderFooterAreas(List elements, TablePart part, RowPainter painter,
+            boolean lastOnPage, LayoutContext layoutContext) {
+        if (!isHeaderFooterReusable()) {
+            addHeaderFooterAreas(elements, part, painter, lastOnPage);
+            return;
+        }
+        boolean artifact = layoutContext.treatAsArtifact();
+        int contentAreaIPD = tableLM.getContentAreaIPD();
+        int offset = painter.getAccumulatedBPD();
+        Block tableArea = (Block) tableLM.getParentArea(null);
+        for (HeaderFooterAreas areas : headerFooterAreas) {
+            if (areas.part == part && areas.artifact == artifact && areas.xOffset == startXOffset
+                    && areas.contentAreaIPD == contentAreaIPD) {
+                areas.addTo(tableArea, offset);
+                painter.skipTablePart(areas.bpd);
+                return;
+            }
+        }
+        List children = tableArea.getChildAreas();
+        int firstArea = children == null ? 0 : children.size();
+        int tableBPD = tableArea.getBPD();
+        addHeaderFooterAreas(elements, part, painter, lastOnPage);
+        children = tableArea.getChildAreas();
+        List<Area> areas = new ArrayList<Area>();
+        if (children != null) {
+            for (int i = firstArea; i < children.size(); i++) {
+                areas.add((Area) children.get(i));
+            }
+        }
+        headerFooterAreas.add(new HeaderFooterAreas(part, artifact, startXOffset, contentAreaIPD,
+                offset, painter.getAccumulatedBPD() - offset, tableArea.getBPD() - tableBPD, areas));
+    }
+
+    /**
+     * Indicates whether the areas of the table-header and -footer are the same wherever they
+     * are repeated. This isn't the case if they contain page-dependent content, if column
+     * backgrounds have to be adjusted to the height of each table fragment, or if the
+     * structure tree is built.
+     */
+    private boolean isHeaderFooterReusable() {
+        if (headerFooterReusable == null) {
+            Table table = tableLM.getTable();
+            boolean reusable = !table.getUserAgent().isAccessibilityEnabled()
+                    && (table.getTableHeader() == null
+                            || PageInvariance.isPageInvariant(table.getTableHeader()))
+                    && (table.getTableFooter() == null
+                            || PageInvariance.isPageInvariant(table.getTableFooter()));
+            for (Object column : table.getColumns()) {
+                if (column != null
+                        && ((TableColumn) column).getCommonBorderPaddingBackground().hasBackground()) {
+                    reusable = false;
+                }
+            }
+            headerFooterReusable = reusable;
+        }
+        return headerFooterReusable;
+    }
+
     private void addHeaderFooterAreas(List elements, TablePart part, RowPainter painter,
             boolean lastOnPage) {
         List lst = new java.util.ArrayList(elements.size());
@@ -577,6 +651,55 @@ public class TableContentLayoutManager implements PercentBaseContext {
         painter.endTablePart(lastInBody, lastOnPage);
     }
 
+    /** The areas created for a table-header or -footer. */
+    private static final class HeaderFooterAreas {
+
+        private final TablePart part;
+        private final boolean artifact;
+        private final int xOffset;
+        private final int contentAreaIPD;
+        private final int offset;
+        private final int bpd;
+        private final int tableBPD;
+        private final List<Area> areas;
+
+        HeaderFooterAreas(TablePart part, boolean artifact, int xOffset, int contentAreaIPD,
+                int offset, int bpd, int tableBPD, List<Area> areas) {
+            this.part = part;
+            this.artifact = artifact;
+            this.xOffset = xOffset;
+            this.contentAreaIPD = contentAreaIPD;
+            this.offset = offset;
+            this.bpd = bpd;
+            this.tableBPD = tableBPD;
+            this.areas = areas;
+        }
+
+        /**
+         * Adds the areas to the given table area. The areas are shared if they are placed at
+         * the same offset as the first time, otherwise shallow copies of the absolutely
+         * positioned areas are moved by the difference.
+         */
+        void addTo(Block tableArea, int newOffset) {
+            int shift = newOffset - offset;
+            for (Area area : areas) {
+                if (shift != 0 && area instanceof Block
+                        && ((Block) area).getPositioning() == Block.ABSOLUTE) {
+                    Block block;
+                    try {
+                        block = (Block) area.clone();
+                    } catch (CloneNotSupportedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    block.setYOffset(block.getYOffset() + shift);
+                    area = block;
+                }
+                tableArea.addChildArea(area);
+            }
+            tableArea.setBPD(tableArea.getBPD() + tableBPD);
+        }
+    }
+
     /**
      * Sets the overall starting x-offset. Used for proper placement of cells.
      * @param startXOffset starting x-offset (table's start-indent)
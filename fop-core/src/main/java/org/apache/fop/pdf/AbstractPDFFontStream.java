@@ -25,6 +25,8 @@ package org.apache.fop.pdf;
  */
 public abstract class AbstractPDFFontStream extends AbstractPDFStream {
 
+    private String contentKey;
+
     /**
      * Main constructor.
      */
@@ -32,9 +34,28 @@ public abstract class AbstractPDFFontStream extends AbstractPDFStream {
         super();
     }
 
+    /** {@inheritDoc} */
+    protected boolean isBackgroundEncodingSupported() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     protected String getDefaultFilterName() {
         return PDFFilterList.FONT_FILTER;
     }
 
+    /**
+     * Sets a key that identifies the font data by its content, so that its encoded data can
+     * be shared with other documents through the {@link EncodedStreamCache}.
+     * @param contentKey the content key
+     */
+    public void setContentKey(String contentKey) {
+        this.contentKey = contentKey;
+    }
+
+    /** {@inheritDoc} */
+    protected String getContentKey() {
+        return contentKey;
+    }
+
 }
@@ -19,9 +19,16 @@
 
 package org.apache.fop.pdf;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.io.output.CountingOutputStream;
 
@@ -41,6 +48,9 @@ public abstract class AbstractPDFStream extends PDFObject {
 
     private PDFNumber refLength = new PDFNumber();
 
+    /** The stream data encoded in the background, if any */
+    private Future<StreamCache> backgroundEncodedStream;
+
     protected AbstractPDFStream() {
         this(true);
     }
@@ -111,6 +121,7 @@ public abstract class AbstractPDFStream extends PDFObject {
                 this.filters = new PDFFilterList();
             } else {
                 this.filters = new PDFFilterList(getDocument().isEncryptionActive());
+                this.filters.setCompressionLevel(getDocument().getCompressionLevel());
             }
             boolean hasFilterEntries = (get("Filter") != null);
             if (hasFilterEntries) {
@@ -159,14 +170,40 @@ public abstract class AbstractPDFStream extends PDFObject {
         return length;
     }
 
+    /**
+     * Returns the factory for the stream caches of this stream, as configured on the
+     * document if it is known already.
+     * @return the stream cache factory
+     */
+    protected StreamCacheFactory getStreamCacheFactory() {
+        PDFDocument doc = getDocument();
+        return doc != null ? doc.getStreamCacheFactory() : StreamCacheFactory.getInstance();
+    }
+
     /**
      * Encodes the raw data stream for output to a PDF file.
      * @return the encoded stream
      * @throws IOException in case of an I/O problem
      */
     protected StreamCache encodeStream() throws IOException {
+        String cacheKey = getEncodedStreamCacheKey();
+        if (cacheKey != null) {
+            EncodedStreamCache cache = getDocument().getEncodedStreamCache();
+            byte[] encoded = cache.get(cacheKey);
+            if (encoded == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                OutputStream filteredOutput = getFilterList().applyFilters(buffer);
+                outputRawStreamData(filteredOutput);
+                filteredOutput.close();
+                encoded = buffer.toByteArray();
+                cache.put(cacheKey, encoded);
+            }
+            StreamCache encodedStream = getStreamCacheFactory().createStreamCache(encoded.length);
+            encodedStream.write(encoded);
+            return encodedStream;
+        }
         //Allocate a temporary buffer to find out the size of the encoded stream
-        final StreamCache encodedStream = StreamCacheFactory.getInstance()
+        final StreamCache encodedStream = getStreamCacheFactory()
                 .createStreamCache(getSizeHint());
         OutputStream filteredOutput
                 = getFilterList().applyFilters(encodedStream.getOutputStream());
@@ -176,6 +213,81 @@ public abstract class AbstractPDFStream extends PDFObject {
         return encodedStream;
     }
 
+    /**
+     * Returns a key that identifies the raw data of this stream by its content, so that its
+     * encoded data can be shared with other documents through the {@link EncodedStreamCache}.
+     * Subclasses return null (the default) if their data has no such key.
+     * @return the content key or null
+     */
+    protected String getContentKey() {
+        return null;
+    }
+
+    private String getEncodedStreamCacheKey() {
+        PDFDocument doc = getDocument();
+        if (doc == null || doc.isEncryptionActive()) {
+            //encrypted data depends on the object number
+            return null;
+        }
+        EncodedStreamCache cache = doc.getEncodedStreamCache();
+        if (cache == null || !cache.isEnabled()) {
+            return null;
+        }
+        String contentKey = getContentKey();
+        return contentKey != null ? contentKey + "|" + getFilterList().getEncodingDescription() : null;
+    }
+
+    /**
+     * Indicates whether the stream data is complete before {@link #output(OutputStream)} is
+     * called and can be encoded on another thread. Subclasses that generate or modify their
+     * data during output must return false.
+     * @return true if the stream may be encoded in the background
+     */
+    protected boolean isBackgroundEncodingSupported() {
+        return false;
+    }
+
+    /**
+     * Sets up the filters and starts encoding the stream data on the given executor, so that
+     * {@link #output(OutputStream)} only has to copy the encoded bytes. The output is the
+     * same as if the stream had been encoded while being written.
+     * @param executor the executor that runs the encoding task
+     */
+    void encodeInBackground(Executor executor) {
+        setupFilterList();
+        FutureTask<StreamCache> task = new FutureTask<StreamCache>(new Callable<StreamCache>() {
+            public StreamCache call() throws IOException {
+                return encodeStream();
+            }
+        });
+        backgroundEncodedStream = task;
+        executor.execute(task);
+    }
+
+    private StreamCache takeBackgroundEncodedStream() throws IOException {
+        if (backgroundEncodedStream == null) {
+            return null;
+        }
+        try {
+            return backgroundEncodedStream.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for stream encoding");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            backgroundEncodedStream = null;
+        }
+    }
+
     /**
      * Encodes and writes a stream directly to an OutputStream. The length of
      * the stream, in this case, is set on a PDFNumber object that has to be
@@ -194,13 +306,24 @@ public abstract class AbstractPDFStream extends PDFObject {
         bytesWritten += buf.length;
 
         //Stream contents
-        CloseBlockerOutputStream cbout = new CloseBlockerOutputStream(out);
-        CountingOutputStream cout = new CountingOutputStream(cbout);
-        OutputStream filteredOutput = getFilterList().applyFilters(cout);
-        outputRawStreamData(filteredOutput);
-        filteredOutput.close();
-        refLength.setNumber(cout.getCount());
-        bytesWritten += cout.getCount();
+        StreamCache encodedStream = takeBackgroundEncodedStream();
+        if (encodedStream == null && getEncodedStreamCacheKey() != null) {
+            encodedStream = encodeStream();
+        }
+        if (encodedStream != null) {
+            int length = encodedStream.outputContents(out);
+            encodedStream.clear();
+            refLength.setNumber(length);
+            bytesWritten += length;
+        } else {
+            CloseBlockerOutputStream cbout = new CloseBlockerOutputStream(out);
+            CountingOutputStream cout = new CountingOutputStream(cbout);
+            OutputStream filteredOutput = getFilterList().applyFilters(cout);
+            outputRawStreamData(filteredOutput);
+            filteredOutput.close();
+            refLength.setNumber(cout.getCount());
+            bytesWritten += cout.getCount();
+        }
 
         //Stream trailer
         buf = encode("\nendstream");
@@ -217,7 +340,9 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     @Override
     public int output(OutputStream stream) throws IOException {
-        setupFilterList();
+        if (backgroundEncodedStream == null) {
+            setupFilterList();
+        }
 
         CountingOutputStream cout = new CountingOutputStream(stream);
         StringBuilder textBuffer = new StringBuilder(64);
@@ -230,7 +355,10 @@ public abstract class AbstractPDFStream extends PDFObject {
             }
             lengthEntry = refLength;
         } else {
-            encodedStream = encodeStream();
+            encodedStream = takeBackgroundEncodedStream();
+            if (encodedStream == null) {
+                encodedStream = encodeStream();
+            }
             lengthEntry = encodedStream.getSize();
         }
 
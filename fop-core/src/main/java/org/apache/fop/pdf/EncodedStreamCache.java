@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of encoded (filtered) PDF stream data, shared by all documents produced
+ * with the same {@link org.apache.fop.apps.FopFactory}. Streams whose data is identified by
+ * a hash of its content, like images and ICC profiles, are only encoded for the first
+ * document; later documents copy the encoded bytes. The least recently used entries are
+ * evicted once the cached data exceeds the maximum size. The cache is disabled (maximum
+ * size 0) by default.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class EncodedStreamCache {
+
+    private final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    private long maxSize;
+
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    /**
+     * Sets the maximum number of bytes of encoded stream data kept in this cache. Entries are
+     * evicted if the cache currently holds more.
+     * @param maxSize the maximum size in bytes, 0 to disable the cache
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /** @return the maximum number of bytes of encoded stream data kept in this cache */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return true if encoded stream data is cached at all */
+    public synchronized boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the encoded data cached for a key. The returned array must not be modified.
+     * @param key the key identifying the stream content and its encoding
+     * @return the encoded data or null if it is not cached
+     */
+    public synchronized byte[] get(String key) {
+        byte[] data = entries.get(key);
+        if (data != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return data;
+    }
+
+    /**
+     * Caches encoded stream data. Data larger than the maximum size is not cached. The array
+     * must not be modified afterwards.
+     * @param key the key identifying the stream content and its encoding
+     * @param data the encoded data
+     */
+    public synchronized void put(String key, byte[] data) {
+        if (data.length > maxSize) {
+            return;
+        }
+        byte[] previous = entries.put(key, data);
+        if (previous != null) {
+            size -= previous.length;
+        }
+        size += data.length;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<byte[]> iter = entries.values().iterator();
+        while (size > maxSize && iter.hasNext()) {
+            size -= iter.next().length;
+            iter.remove();
+        }
+    }
+
+    /** Removes all entries from this cache. */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /** @return the number of bytes of encoded stream data currently cached */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /** @return the number of streams currently cached */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /** @return the number of lookups that found cached data */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /** @return the number of lookups that found no cached data */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+}
@@ -57,6 +57,11 @@ public class ObjectStream extends PDFStream {
         return reference;
     }
 
+    @Override
+    protected boolean isBackgroundEncodingSupported() {
+        return false;
+    }
+
     @Override
     protected void outputRawStreamData(OutputStream out) throws IOException {
         int currentOffset = 0;
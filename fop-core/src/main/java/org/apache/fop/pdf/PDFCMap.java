@@ -422,6 +422,14 @@ public class PDFCMap extends PDFStream {
         return new CMapBuilder(writer, this.name);
     }
 
+    /**
+     * {@inheritDoc}
+     * The CMap is only written to the buffer when the stream is output.
+     */
+    protected boolean isBackgroundEncodingSupported() {
+        return false;
+    }
+
     /** {@inheritDoc} */
     public int output(OutputStream stream) throws IOException {
         CMapBuilder builder = createCMapBuilder(getBufferWriter());
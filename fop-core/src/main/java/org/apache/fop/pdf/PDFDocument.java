@@ -32,10 +32,17 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.fop.fonts.FontSubsetCache;
 import org.apache.fop.pdf.StandardStructureAttributes.Table.Scope;
 import org.apache.fop.pdf.xref.CrossReferenceStream;
 import org.apache.fop.pdf.xref.CrossReferenceTable;
@@ -70,6 +77,9 @@ public class PDFDocument {
     /** the encoding to use when converting strings to PDF commands */
     public static final String ENCODING = "ISO-8859-1";
 
+    /** the number of seconds an idle stream encoding thread is kept */
+    private static final long STREAM_ENCODING_KEEP_ALIVE_SECONDS = 30;
+
     /** the counter for object numbering */
     protected int objectcount;
 
@@ -176,6 +186,18 @@ public class PDFDocument {
 
     private boolean formXObjectEnabled;
 
+    private StreamCacheFactory streamCacheFactory = StreamCacheFactory.getInstance();
+
+    private EncodedStreamCache encodedStreamCache;
+
+    private FontSubsetCache fontSubsetCache;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int streamEncodingThreads;
+
+    private ThreadPoolExecutor streamEncodingExecutor;
+
     protected boolean outputStarted;
 
     /**
@@ -338,6 +360,105 @@ public class PDFDocument {
         return this.filterMap;
     }
 
+    /**
+     * Sets the factory used to create the buffers holding the data of this document's streams.
+     *
+     * @param streamCacheFactory the stream cache factory
+     */
+    public void setStreamCacheFactory(StreamCacheFactory streamCacheFactory) {
+        this.streamCacheFactory = streamCacheFactory;
+    }
+
+    /**
+     * Returns the factory used to create the buffers holding the data of this document's
+     * streams.
+     *
+     * @return the stream cache factory
+     */
+    public StreamCacheFactory getStreamCacheFactory() {
+        return this.streamCacheFactory;
+    }
+
+    /**
+     * Sets the cache holding encoded stream data shared with other documents. Only streams
+     * identified by a hash of their content use it, and only if encryption is off.
+     *
+     * @param encodedStreamCache the encoded stream cache, null for none
+     */
+    public void setEncodedStreamCache(EncodedStreamCache encodedStreamCache) {
+        this.encodedStreamCache = encodedStreamCache;
+    }
+
+    /**
+     * Returns the cache holding encoded stream data shared with other documents.
+     *
+     * @return the encoded stream cache or null
+     */
+    public EncodedStreamCache getEncodedStreamCache() {
+        return this.encodedStreamCache;
+    }
+
+    /**
+     * Sets the cache holding font subsets shared with other documents.
+     *
+     * @param fontSubsetCache the font subset cache, null for none
+     */
+    public void setFontSubsetCache(FontSubsetCache fontSubsetCache) {
+        this.fontSubsetCache = fontSubsetCache;
+    }
+
+    /**
+     * Returns the cache holding font subsets shared with other documents.
+     *
+     * @return the font subset cache or null
+     */
+    public FontSubsetCache getFontSubsetCache() {
+        return this.fontSubsetCache;
+    }
+
+    /**
+     * Sets the compression level for the flate filters of this document's streams.
+     *
+     * @param level the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+     */
+    public void setCompressionLevel(int level) {
+        this.compressionLevel = level;
+    }
+
+    /**
+     * Returns the compression level for the flate filters of this document's streams.
+     *
+     * @return the compression level
+     */
+    public int getCompressionLevel() {
+        return this.compressionLevel;
+    }
+
+    /**
+     * Sets the number of threads used to encode (compress) streams while the document is
+     * written. With more than one thread, all streams queued by a call to
+     * {@link #output(OutputStream)} are encoded concurrently and written in their usual order,
+     * so the output doesn't change. Encrypted and linearized documents are always encoded
+     * serially. The same number of threads is used to subset the embedded fonts, see
+     * {@link PDFFactory#prepareFontFiles(java.util.Map)}. The encoding threads are released
+     * when the trailer has been written or writing fails, and when they have been idle for a
+     * while, so an abandoned document doesn't hold on to them.
+     *
+     * @param threads the number of encoding threads, 0 or 1 to encode on the writing thread
+     */
+    public void setStreamEncodingThreads(int threads) {
+        this.streamEncodingThreads = threads;
+    }
+
+    /**
+     * Returns the number of threads used to encode streams.
+     *
+     * @return the number of encoding threads, 0 or 1 if streams are encoded on the writing thread
+     */
+    public int getStreamEncodingThreads() {
+        return this.streamEncodingThreads;
+    }
+
     /**
      * Returns the {@link PDFPages} object associated with the root object.
      *
@@ -813,6 +934,17 @@ public class PDFDocument {
         return this.xObjectsMap.get(key);
     }
 
+    /**
+     * Registers an XObject under an additional key, for example the URI of an image that is
+     * identified by a hash of its content, so it can be found without hashing the content again.
+     *
+     * @param key the additional key
+     * @param xObject the XObject
+     */
+    public void addXObjectKey(String key, PDFXObject xObject) {
+        this.xObjectsMap.put(key, xObject);
+    }
+
     /**
      * Adds a destination to the document.
      * @param destination the destination object
@@ -988,12 +1120,59 @@ public class PDFDocument {
      */
     public void output(OutputStream stream) throws IOException {
         outputStarted = true;
-        //Write out objects until the list is empty. This approach (used with a
-        //LinkedList) allows for output() methods to create and register objects
-        //on the fly even during serialization.
-        while (this.objects.size() > 0) {
-            PDFObject object = this.objects.remove(0);
-            streamIndirectObject(object, stream);
+        boolean written = false;
+        try {
+            encodeStreamsInBackground();
+            //Write out objects until the list is empty. This approach (used with a
+            //LinkedList) allows for output() methods to create and register objects
+            //on the fly even during serialization.
+            while (this.objects.size() > 0) {
+                PDFObject object = this.objects.remove(0);
+                streamIndirectObject(object, stream);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                //The document is unusable, don't keep encoding streams nobody will write
+                shutdownStreamEncoding();
+            }
+        }
+    }
+
+    private void encodeStreamsInBackground() {
+        if (streamEncodingThreads < 2 || isEncryptionActive() || isLinearizationEnabled()) {
+            return;
+        }
+        List<AbstractPDFStream> streams = new ArrayList<AbstractPDFStream>();
+        for (PDFObject object : this.objects) {
+            if (object instanceof AbstractPDFStream
+                    && ((AbstractPDFStream) object).isBackgroundEncodingSupported()) {
+                streams.add((AbstractPDFStream) object);
+            }
+        }
+        if (streams.size() < 2) {
+            //Nothing to gain, the stream is encoded while it is written
+            return;
+        }
+        if (streamEncodingExecutor == null) {
+            streamEncodingExecutor = new ThreadPoolExecutor(streamEncodingThreads,
+                    streamEncodingThreads, STREAM_ENCODING_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger threadCounter = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FOP PDF stream encoder "
+                            + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            //The pool is idle between two calls to output(), so a document that is never
+            //finished doesn't keep its threads
+            streamEncodingExecutor.allowCoreThreadTimeOut(true);
+        }
+        for (AbstractPDFStream pdfStream : streams) {
+            pdfStream.encodeInBackground(streamEncodingExecutor);
         }
     }
 
@@ -1095,9 +1274,20 @@ public class PDFDocument {
      * @throws IOException if there is an exception writing to the output stream
      */
     public void outputTrailer(OutputStream stream) throws IOException {
-        createDestinations();
-        output(stream);
-        outputTrailerObjectsAndXref(stream);
+        try {
+            createDestinations();
+            output(stream);
+            outputTrailerObjectsAndXref(stream);
+        } finally {
+            shutdownStreamEncoding();
+        }
+    }
+
+    private void shutdownStreamEncoding() {
+        if (streamEncodingExecutor != null) {
+            streamEncodingExecutor.shutdownNow();
+            streamEncodingExecutor = null;
+        }
     }
 
     private void createDestinations() {
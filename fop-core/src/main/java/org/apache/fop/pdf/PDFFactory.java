@@ -25,18 +25,31 @@ import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -52,6 +65,7 @@ import org.apache.fop.fonts.CustomFont;
 import org.apache.fop.fonts.EmbeddingMode;
 import org.apache.fop.fonts.FontDescriptor;
 import org.apache.fop.fonts.FontMetrics;
+import org.apache.fop.fonts.FontSubsetCache;
 import org.apache.fop.fonts.FontType;
 import org.apache.fop.fonts.LazyFont;
 import org.apache.fop.fonts.MultiByteFont;
@@ -75,12 +89,16 @@ public class PDFFactory {
     /** Resolution of the User Space coordinate system (72dpi). */
     public static final int DEFAULT_PDF_RESOLUTION = 72;
 
+    /** Used when the document has no font subset cache */
+    private static final FontSubsetCache DISABLED_FONT_SUBSET_CACHE = new FontSubsetCache();
+
     private PDFDocument document;
 
     private Log log = LogFactory.getLog(PDFFactory.class);
 
     private int subsetFontCounter = -1;
     private Map<String, PDFDPart> dparts = new HashMap<String, PDFDPart>();
+    private Map<String, PreparedFontFile> preparedFontFiles = new HashMap<String, PreparedFontFile>();
 
     /**
      * Creates a new PDFFactory.
@@ -938,11 +956,18 @@ public class PDFFactory {
         } else {
             FontType fonttype = metrics.getFontType();
 
-            String fontPrefix = descriptor.isSubsetEmbedded() ? createSubsetFontPrefix() : "";
+            PreparedFontFile prepared = preparedFontFiles.remove(fontname);
+            String fontPrefix;
+            if (prepared != null) {
+                fontPrefix = prepared.fontPrefix;
+            } else {
+                fontPrefix = descriptor.isSubsetEmbedded() ? createSubsetFontPrefix() : "";
+            }
 
             String subsetFontName = fontPrefix + basefont;
 
-            PDFFontDescriptor pdfdesc = makeFontDescriptor(descriptor, fontPrefix);
+            PDFFontDescriptor pdfdesc = makeFontDescriptor(descriptor, fontPrefix,
+                    prepared != null ? prepared.fontFile : null);
 
             PDFFont font = null;
 
@@ -1274,9 +1299,11 @@ public class PDFFactory {
      *
      * @param desc the font descriptor
      * @param fontPrefix the String with which to prefix the font name
+     * @param preparedFontFile the font file prepared by {@link #prepareFontFiles(Map)}, or null
      * @return the new PDF font descriptor
      */
-    private PDFFontDescriptor makeFontDescriptor(FontDescriptor desc, String fontPrefix) {
+    private PDFFontDescriptor makeFontDescriptor(FontDescriptor desc, String fontPrefix,
+            Future<AbstractPDFStream> preparedFontFile) {
         PDFFontDescriptor descriptor = null;
 
         if (desc.getFontType() == FontType.TYPE0 || desc.getFontType() == FontType.CIDTYPE0) {
@@ -1302,7 +1329,9 @@ public class PDFFactory {
 
         // Check if the font is embeddable
         if (desc.isEmbeddable()) {
-            AbstractPDFStream stream = makeFontFile(desc, fontPrefix);
+            AbstractPDFStream stream = preparedFontFile != null
+                    ? getPreparedFontFile(desc, preparedFontFile)
+                    : makeFontFile(desc, fontPrefix);
             if (stream != null) {
                 descriptor.setFontFile(desc.getFontType(), stream);
                 getDocument().registerObject(stream);
@@ -1351,6 +1380,114 @@ public class PDFFactory {
      * @return PDFStream The embedded font file
      */
     public AbstractPDFStream makeFontFile(FontDescriptor desc, String fontPrefix) {
+        AbstractPDFStream embeddedFont = createFontFile(desc, fontPrefix);
+        if (embeddedFont != null) {
+            updateVersionForFontFile(desc);
+        }
+        return embeddedFont;
+    }
+
+    /**
+     * Prepares the embedded font files of the given fonts concurrently, so that the subsets of
+     * documents using many fonts are not built one after the other. The PDF objects are still
+     * created and numbered by {@link #makeFont} in call order, so the output is the same as
+     * without preparation. This does nothing unless the document uses more than one stream
+     * encoding thread.
+     * <p>
+     * The fonts must then be passed to {@link #makeFont} in the same order, so that they get
+     * the same subset prefixes as without preparation.
+     * @param fonts the font descriptors (null for base 14 fonts) by internal font name, in the
+     * order in which their fonts will be made
+     */
+    public void prepareFontFiles(Map<String, FontDescriptor> fonts) {
+        int fontFileCount = 0;
+        for (Map.Entry<String, FontDescriptor> entry : fonts.entrySet()) {
+            if (entry.getValue() != null && entry.getValue().isEmbeddable()
+                    && getDocument().findFont(entry.getKey()) == null) {
+                fontFileCount++;
+            }
+        }
+        int threads = Math.min(getDocument().getStreamEncodingThreads(), fontFileCount);
+        if (threads < 2) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FOP PDF font embedder "
+                        + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            //the subsetters modify the fonts, so a font used twice is embedded serially
+            Set<Object> preparedFonts = Collections.newSetFromMap(
+                    new IdentityHashMap<Object, Boolean>());
+            for (Map.Entry<String, FontDescriptor> entry : fonts.entrySet()) {
+                final FontDescriptor desc = entry.getValue();
+                if (desc == null || getDocument().findFont(entry.getKey()) != null) {
+                    continue;
+                }
+                //reserve the prefixes in the order makeFont would create them
+                final String fontPrefix = desc.isSubsetEmbedded() ? createSubsetFontPrefix() : "";
+                Future<AbstractPDFStream> fontFile = null;
+                Object font = desc instanceof LazyFont ? ((LazyFont) desc).getRealFont() : desc;
+                if (desc.isEmbeddable() && preparedFonts.add(font)) {
+                    fontFile = executor.submit(new Callable<AbstractPDFStream>() {
+                        public AbstractPDFStream call() {
+                            return createFontFile(desc, fontPrefix);
+                        }
+                    });
+                }
+                preparedFontFiles.put(entry.getKey(), new PreparedFontFile(fontPrefix, fontFile));
+            }
+        } finally {
+            //lets the submitted tasks finish
+            executor.shutdown();
+        }
+    }
+
+    private AbstractPDFStream getPreparedFontFile(FontDescriptor desc,
+            Future<AbstractPDFStream> preparedFontFile) {
+        AbstractPDFStream embeddedFont;
+        try {
+            embeddedFont = preparedFontFile.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while embedding font [" + desc + "] " + desc.getEmbedFontName());
+            return null;
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        if (embeddedFont != null) {
+            updateVersionForFontFile(desc);
+        }
+        return embeddedFont;
+    }
+
+    private void updateVersionForFontFile(FontDescriptor desc) {
+        if (desc.getFontType() == FontType.TYPE0) {
+            CustomFont font = getCustomFont(desc);
+            if (font.getEmbeddingMode() == EmbeddingMode.FULL && ((MultiByteFont) font).isOTFFile()) {
+                //Ensure version 1.6 for full OTF CFF embedding
+                document.setPDFVersion(Version.V1_6);
+            }
+        }
+    }
+
+    /**
+     * Creates the stream of an embedded font. This doesn't modify the document, so it may be
+     * called concurrently for different fonts.
+     */
+    private AbstractPDFStream createFontFile(FontDescriptor desc, String fontPrefix) {
         if (desc.getFontType() == FontType.OTHER) {
             throw new IllegalArgumentException("Trying to embed unsupported font type: "
                                                 + desc.getFontType());
@@ -1360,36 +1497,29 @@ public class PDFFactory {
 
         InputStream in = null;
         try {
+            if (desc.getFontType() == FontType.TYPE0 || (desc.getFontType() == FontType.TYPE1C
+                    && font.getEmbeddingMode() == EmbeddingMode.SUBSET)) {
+                //only read through the (shared) font file reader, the file is not opened twice
+                return createOpenTypeFontFile((MultiByteFont) font, desc, fontPrefix);
+            }
             in = font.getInputStream();
             if (in == null) {
                 return null;
             }
             AbstractPDFStream embeddedFont = null;
-            if (desc.getFontType() == FontType.TYPE0) {
-                MultiByteFont mbfont = (MultiByteFont) font;
-                FontFileReader reader = new FontFileReader(in);
-                byte[] fontBytes;
-                String header = OFFontLoader.readHeader(reader);
-                boolean isCFF = mbfont.isOTFFile();
-                if (font.getEmbeddingMode() == EmbeddingMode.FULL) {
-                    fontBytes = reader.getAllBytes();
-                    if (isCFF) {
-                        //Ensure version 1.6 for full OTF CFF embedding
-                        document.setPDFVersion(Version.V1_6);
-                    }
-                } else {
-                    fontBytes = getFontSubsetBytes(reader, mbfont, header, fontPrefix, desc,
-                            isCFF);
-                }
-                embeddedFont = getFontStream(font, fontBytes, isCFF);
-            } else if (desc.getFontType() == FontType.TYPE1) {
+            if (desc.getFontType() == FontType.TYPE1) {
                 if (font.getEmbeddingMode() != EmbeddingMode.SUBSET) {
                     embeddedFont = fullyEmbedType1Font(in);
                 } else {
                     assert font instanceof SingleByteFont;
-                    SingleByteFont sbfont = (SingleByteFont)font;
-                    Type1SubsetFile pfbFile = new Type1SubsetFile();
-                    byte[] subsetData = pfbFile.createSubset(in, sbfont);
+                    final SingleByteFont sbfont = (SingleByteFont)font;
+                    final InputStream fontStream = in;
+                    byte[] subsetData = getFontSubsetCache().getSubset(sbfont, "type1", null,
+                            new FontSubsetCache.SubsetBuilder() {
+                        public byte[] build() throws IOException {
+                            return new Type1SubsetFile().createSubset(fontStream, sbfont);
+                        }
+                    });
                     InputStream subsetStream = new ByteArrayInputStream(subsetData);
                     PFBParser parser = new PFBParser();
                     PFBData pfb = parser.parsePFB(subsetStream);
@@ -1397,17 +1527,10 @@ public class PDFFactory {
                     ((PDFT1Stream) embeddedFont).setData(pfb);
                 }
             } else if (desc.getFontType() == FontType.TYPE1C) {
-                if (font.getEmbeddingMode() == EmbeddingMode.SUBSET) {
-                    FontFileReader reader = new FontFileReader(in);
-                    String header = OFFontLoader.readHeader(reader);
-                    byte[] fontBytes = getFontSubsetBytes(reader, (MultiByteFont) font, header, fontPrefix, desc, true);
-                    embeddedFont = getFontStream(font, fontBytes, true);
-                } else {
-                    byte[] file = IOUtils.toByteArray(in);
-                    PDFCFFStream embeddedFont2 = new PDFCFFStream("Type1C");
-                    embeddedFont2.setData(file);
-                    return embeddedFont2;
-                }
+                byte[] file = IOUtils.toByteArray(in);
+                PDFCFFStream embeddedFont2 = new PDFCFFStream("Type1C");
+                embeddedFont2.setData(file);
+                return embeddedFont2;
             } else if (desc.getFontType() == FontType.CIDTYPE0) {
                 byte[] file = IOUtils.toByteArray(in);
                 PDFCFFStream embeddedFont2 = new PDFCFFStream("CIDFontType0C");
@@ -1438,6 +1561,25 @@ public class PDFFactory {
         }
     }
 
+    private AbstractPDFStream createOpenTypeFontFile(MultiByteFont mbfont, FontDescriptor desc,
+            String fontPrefix) throws IOException {
+        boolean isCFF = desc.getFontType() == FontType.TYPE1C || mbfont.isOTFFile();
+        FontFileReader reader = mbfont.getFontFileReader();
+        byte[] fontBytes;
+        try {
+            String header = OFFontLoader.readHeader(reader);
+            if (mbfont.getEmbeddingMode() == EmbeddingMode.FULL) {
+                //the whole file is embedded, so this is the one place it is copied in full
+                fontBytes = reader.getAllBytes();
+            } else {
+                fontBytes = getFontSubsetBytes(reader, mbfont, header, fontPrefix, desc, isCFF);
+            }
+        } finally {
+            reader.close();
+        }
+        return getFontStream(mbfont, fontBytes, isCFF);
+    }
+
     private AbstractPDFStream fullyEmbedType1Font(InputStream in) throws IOException {
         PFBParser parser = new PFBParser();
         PFBData pfb = parser.parsePFB(in);
@@ -1446,19 +1588,36 @@ public class PDFFactory {
         return embeddedFont;
     }
 
-    private byte[] getFontSubsetBytes(FontFileReader reader, MultiByteFont mbfont, String header,
-            String fontPrefix, FontDescriptor desc, boolean isCFF) throws IOException {
+    private byte[] getFontSubsetBytes(final FontFileReader reader, final MultiByteFont mbfont,
+            final String header, String fontPrefix, FontDescriptor desc, boolean isCFF)
+            throws IOException {
         if (isCFF) {
-            OTFSubSetFile otfFile = new OTFSubSetFile();
-            otfFile.readFont(reader, fontPrefix + desc.getEmbedFontName(), mbfont);
-            return otfFile.getFontSubset();
+            final String embeddedName = fontPrefix + desc.getEmbedFontName();
+            return getFontSubsetCache().getSubset(mbfont, "cff", embeddedName,
+                    new FontSubsetCache.SubsetBuilder() {
+                public byte[] build() throws IOException {
+                    OTFSubSetFile otfFile = new OTFSubSetFile();
+                    otfFile.readFont(reader, embeddedName, mbfont);
+                    return otfFile.getFontSubset();
+                }
+            });
         } else {
-            TTFSubSetFile otfFile = new TTFSubSetFile();
-            otfFile.readFont(reader, mbfont.getTTCName(), header, mbfont.getUsedGlyphs());
-            return otfFile.getFontSubset();
+            return getFontSubsetCache().getSubset(mbfont, "ttf", null,
+                    new FontSubsetCache.SubsetBuilder() {
+                public byte[] build() throws IOException {
+                    TTFSubSetFile otfFile = new TTFSubSetFile();
+                    otfFile.readFont(reader, mbfont.getTTCName(), header, mbfont.getUsedGlyphs());
+                    return otfFile.getFontSubset();
+                }
+            });
         }
     }
 
+    private FontSubsetCache getFontSubsetCache() {
+        FontSubsetCache cache = getDocument().getFontSubsetCache();
+        return cache != null ? cache : DISABLED_FONT_SUBSET_CACHE;
+    }
+
     private AbstractPDFStream getFontStream(CustomFont font, byte[] fontBytes, boolean isCFF)
             throws IOException {
         AbstractPDFStream embeddedFont;
@@ -1469,9 +1628,22 @@ public class PDFFactory {
             embeddedFont = new PDFTTFStream(fontBytes.length);
             ((PDFTTFStream) embeddedFont).setData(fontBytes, fontBytes.length);
         }
+        setContentKey((AbstractPDFFontStream) embeddedFont, fontBytes);
         return embeddedFont;
     }
 
+    private void setContentKey(AbstractPDFFontStream fontStream, byte[] fontBytes) {
+        EncodedStreamCache cache = getDocument().getEncodedStreamCache();
+        if (cache != null && cache.isEnabled() && !getDocument().isEncryptionActive()) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(fontBytes);
+                fontStream.setContentKey("font:" + new BigInteger(1, hash).toString(16));
+            } catch (NoSuchAlgorithmException e) {
+                //the font data is encoded again
+            }
+        }
+    }
+
     private CustomFont getCustomFont(FontDescriptor desc) {
         Typeface tempFont;
         if (desc instanceof LazyFont) {
@@ -1678,4 +1850,18 @@ public class PDFFactory {
         getDocument().registerTrailerObject(pdfdPartRoot);
         return pdfdPartRoot;
     }
+
+    /** The subset prefix and the font file of a font prepared by prepareFontFiles(). */
+    private static final class PreparedFontFile {
+
+        private final String fontPrefix;
+
+        /** null if the font is not embedded or must be embedded serially */
+        private final Future<AbstractPDFStream> fontFile;
+
+        PreparedFontFile(String fontPrefix, Future<AbstractPDFStream> fontFile) {
+            this.fontPrefix = fontPrefix;
+            this.fontFile = fontFile;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 /**
  * This class represents a list of PDF filters to be applied when serializing
@@ -54,6 +55,8 @@ public class PDFFilterList {
 
     private boolean disableAllFilters;
 
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
     /**
      * Default constructor.
      * <p>
@@ -88,6 +91,15 @@ public class PDFFilterList {
         return this.disableAllFilters;
     }
 
+    /**
+     * Sets the compression level for flate filters that are subsequently added by name or
+     * as a default filter.
+     * @param level the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+     */
+    public void setCompressionLevel(int level) {
+        this.compressionLevel = level;
+    }
+
     /**
      * Indicates whether the filter list is already initialized.
      * @return true if more there are filters present
@@ -122,7 +134,7 @@ public class PDFFilterList {
             return;
         }
         if (filterType.equals("flate")) {
-            addFilter(new FlateFilter());
+            addFilter(createFlateFilter());
         } else if (filterType.equals("null")) {
             addFilter(new NullFilter());
         } else if (filterType.equals("ascii-85")) {
@@ -143,6 +155,12 @@ public class PDFFilterList {
         }
     }
 
+    private FlateFilter createFlateFilter() {
+        FlateFilter filter = new FlateFilter();
+        filter.setCompressionLevel(compressionLevel);
+        return filter;
+    }
+
     /**
      * Checks the filter list for the filter and adds it in the correct
      * place if necessary.
@@ -188,7 +206,7 @@ public class PDFFilterList {
                 addFilter(new NullFilter());
             } else {
                 // built-in default to flate
-                addFilter(new FlateFilter());
+                addFilter(createFlateFilter());
             }
         } else {
             for (Object aFilterset : filterset) {
@@ -352,6 +370,30 @@ public class PDFFilterList {
         }
     }
 
+    /**
+     * Returns a description of the encoding done by {@link #applyFilters(OutputStream)}. Two
+     * filter lists with the same description encode the same data to the same bytes.
+     * @return the encoding description
+     */
+    public String getEncodingDescription() {
+        if (isDisableAllFilters()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (PDFFilter filter : filters) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(filter.getClass().getName());
+            if (filter.isApplied()) {
+                sb.append("/applied");
+            } else if (filter instanceof FlateFilter) {
+                sb.append('/').append(((FlateFilter) filter).getCompressionLevel());
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Applies all registered filters as necessary. The method returns an
      * OutputStream which will receive the filtered contents.
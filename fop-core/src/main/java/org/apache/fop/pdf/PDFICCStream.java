@@ -22,6 +22,9 @@ package org.apache.fop.pdf;
 import java.awt.color.ICC_Profile;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * Special PDFStream for ICC profiles (color profiles).
@@ -30,6 +33,7 @@ public class PDFICCStream extends PDFStream {
 
     private ICC_Profile cp;
     private PDFDeviceColorSpace pdfColorSpace;
+    private String contentKey;
 
     /**
      * @see org.apache.fop.pdf.PDFObject#PDFObject()
@@ -77,6 +81,20 @@ public class PDFICCStream extends PDFStream {
         cp.write(out);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected String getContentKey() {
+        if (contentKey == null) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(cp.getData());
+                contentKey = "icc:" + new BigInteger(1, hash).toString(16);
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+        }
+        return contentKey;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void populateStreamDict(Object lengthEntry) {
@@ -41,6 +41,15 @@ import java.util.UUID;
  */
 public class PDFImageXObject extends PDFXObject {
 
+    /**
+     * The prefix of image keys that are made of a hash of the image content. The encoded
+     * data of such images, and of the soft masks derived from them, is shared through the
+     * {@link EncodedStreamCache}.
+     */
+    public static final String CONTENT_KEY_PREFIX = "sha256:";
+
+    private static final String SOFT_MASK_KEY_PREFIX = "Mask:";
+
     private PDFImage pdfimage;
 
     /**
@@ -153,11 +162,29 @@ public class PDFImageXObject extends PDFXObject {
         pdfimage.outputContents(out);
     }
 
+    /** {@inheritDoc} */
+    protected boolean isBackgroundEncodingSupported() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     protected int getSizeHint() throws IOException {
         return 0;
     }
 
+    /** {@inheritDoc} */
+    protected String getContentKey() {
+        String key = pdfimage.getKey();
+        if (key == null) {
+            return null;
+        }
+        if (key.startsWith(CONTENT_KEY_PREFIX)
+                || key.startsWith(SOFT_MASK_KEY_PREFIX + CONTENT_KEY_PREFIX)) {
+            return key;
+        }
+        return null;
+    }
+
     /** {@inheritDoc} */
     protected void prepareImplicitFilters() {
         PDFFilter pdfFilter = pdfimage.getPDFFilter();
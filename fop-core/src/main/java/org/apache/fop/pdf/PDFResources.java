@@ -119,8 +119,8 @@ public class PDFResources extends PDFDictionary {
      */
    public void addFonts(PDFDocument doc, FontInfo fontInfo) {
         Map<String, Typeface> usedFonts = fontInfo.getUsedFonts();
+        Map<String, FontDescriptor> fonts = new LinkedHashMap<String, FontDescriptor>();
         for (Map.Entry<String, Typeface> e : usedFonts.entrySet()) {
-            String f = e.getKey();
             Typeface font = e.getValue();
 
             //Check if the font actually had any mapping operations. If not, it is an indication
@@ -130,13 +130,20 @@ public class PDFResources extends PDFDictionary {
                 if (font instanceof FontDescriptor) {
                     desc = (FontDescriptor)font;
                 }
-                String encoding = font.getEncodingName();
-                if (font instanceof Symbol || font instanceof ZapfDingbats) {
-                    encoding = null; //Symbolic fonts shouldn't specify an encoding value in PDF
-                }
-                addFont(doc.getFactory().makeFont(
-                    f, font.getEmbedFontName(), encoding, font, desc));
+                fonts.put(e.getKey(), desc);
+            }
+        }
+        //subsets the fonts concurrently if enabled, makeFont() then picks up the font files
+        doc.getFactory().prepareFontFiles(fonts);
+        for (Map.Entry<String, FontDescriptor> e : fonts.entrySet()) {
+            String f = e.getKey();
+            Typeface font = usedFonts.get(f);
+            String encoding = font.getEncodingName();
+            if (font instanceof Symbol || font instanceof ZapfDingbats) {
+                encoding = null; //Symbolic fonts shouldn't specify an encoding value in PDF
             }
+            addFont(doc.getFactory().makeFont(
+                f, font.getEmbedFontName(), encoding, font, e.getValue()));
         }
    }
 
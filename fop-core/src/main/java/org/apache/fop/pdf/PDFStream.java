@@ -42,6 +42,8 @@ public class PDFStream extends AbstractPDFStream {
      */
     protected StreamCache data;
 
+    private transient StreamCacheFactory dataFactory;
+
     private transient Writer streamWriter;
     private transient char[] charBuffer;
 
@@ -69,16 +71,46 @@ public class PDFStream extends AbstractPDFStream {
 
     private void setUp() {
         try {
-            data = StreamCacheFactory.getInstance().createStreamCache();
-            this.streamWriter = new OutputStreamWriter(
-                    getBufferOutputStream(), PDFDocument.ENCODING);
-            //Buffer to minimize calls to the converter
-            this.streamWriter = new java.io.BufferedWriter(this.streamWriter);
+            dataFactory = getStreamCacheFactory();
+            data = dataFactory.createStreamCache();
+            setUpWriter();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void setUpWriter() throws IOException {
+        this.streamWriter = new OutputStreamWriter(
+                getBufferOutputStream(), PDFDocument.ENCODING);
+        //Buffer to minimize calls to the converter
+        this.streamWriter = new java.io.BufferedWriter(this.streamWriter);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Streams are usually created before they are registered, so the buffer is moved to a
+     * cache created by the document's {@link StreamCacheFactory} when the document becomes
+     * known.
+     */
+    public void setDocument(PDFDocument doc) {
+        super.setDocument(doc);
+        if (doc != null && data != null && doc.getStreamCacheFactory() != dataFactory) {
+            try {
+                flush();
+                StreamCacheFactory factory = doc.getStreamCacheFactory();
+                StreamCache newData = factory.createStreamCache(data.getSize());
+                data.outputContents(newData.getOutputStream());
+                data.clear();
+                data = newData;
+                dataFactory = factory;
+                setUpWriter();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     /**
      * Append data to the stream
      *
@@ -171,6 +203,11 @@ public class PDFStream extends AbstractPDFStream {
         }
     }
 
+    /** {@inheritDoc} */
+    protected boolean isBackgroundEncodingSupported() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     protected int getSizeHint() throws IOException {
         flush();
@@ -190,10 +227,19 @@ public class PDFStream extends AbstractPDFStream {
         final int len = super.output(stream);
 
         //Now that the data has been written, it can be discarded.
-//        this.data = null;
+        discardData();
         return len;
     }
 
+    /**
+     * Discards the data once it has been written. This returns its memory to the document's
+     * budget and deletes its temporary file, if it has been spilled.
+     * @throws IOException if the temporary file cannot be released
+     */
+    void discardData() throws IOException {
+        data.clear();
+    }
+
     public String streamHashCode() throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         outputRawStreamData(bos);
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.xmlgraphics.io.TempResourceURIGenerator;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+
+/**
+ * StreamCache implementation that keeps its data on the heap as long as the limits of its
+ * {@link StreamCacheFactory} allow and then transparently moves it to a temporary file. The
+ * file contents are memory-mapped when they are written to the final output. If the factory
+ * has a custom resource resolver, the data is moved to a temporary resource obtained from the
+ * resolver instead.
+ */
+public class SpillingStreamCache implements StreamCache {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private static final Log LOG = LogFactory.getLog(SpillingStreamCache.class);
+
+    private static final TempResourceURIGenerator TEMP_URI_GENERATOR
+            = new TempResourceURIGenerator("pdf-stream-cache");
+
+    private final StreamCacheFactory factory;
+
+    private final int hintSize;
+
+    private final OutputStream output = new SpillingOutputStream();
+
+    /** The in-memory buffer (null when empty or spilled) */
+    private byte[] buffer;
+
+    /** The number of bytes of memory reserved from the factory */
+    private int reserved;
+
+    /** The temporary file once the data has been spilled */
+    private File tempFile;
+
+    /** The temporary resource once the data has been spilled through a resource resolver */
+    private URI tempURI;
+
+    private OutputStream fileOutput;
+
+    private int size;
+
+    /**
+     * Creates a new SpillingStreamCache.
+     * @param factory the factory whose memory limits apply
+     * @param hintSize a hint about the approximate expected size of the buffer (-1 if unknown)
+     */
+    public SpillingStreamCache(StreamCacheFactory factory, int hintSize) {
+        this.factory = factory;
+        this.hintSize = hintSize;
+    }
+
+    /**
+     * Get the current OutputStream. The returned stream is the same for the lifetime of the
+     * cache and follows the data when it is moved to disk.
+     * @return the output stream for this cache
+     */
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    /** {@inheritDoc} */
+    public void write(byte[] data) throws IOException {
+        output.write(data, 0, data.length);
+    }
+
+    /**
+     * Outputs the cached bytes to the given stream.
+     * @param out the output stream to write to
+     * @return the number of bytes written
+     * @throws IOException if there is an IO error writing to the output stream
+     */
+    public int outputContents(OutputStream out) throws IOException {
+        if (tempURI != null) {
+            copyTempResource(out);
+            return size;
+        }
+        if (tempFile == null) {
+            if (buffer != null) {
+                out.write(buffer, 0, size);
+            }
+            return size;
+        }
+        fileOutput.flush();
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            //Deliberately not closed: that would close the target stream
+            WritableByteChannel target = Channels.newChannel(out);
+            while (mapped.hasRemaining()) {
+                target.write(mapped);
+            }
+        } finally {
+            raf.close();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the current size of the stream.
+     * @return the length of the stream
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Indicates whether the data has been moved to a temporary file.
+     * @return true if the cache is backed by a file
+     */
+    public boolean isSpilled() {
+        return fileOutput != null;
+    }
+
+    /**
+     * Clears and resets the cache, releasing its memory and deleting its temporary file.
+     * @throws IOException if there is an error closing or releasing the temporary file
+     */
+    public void clear() throws IOException {
+        buffer = null;
+        factory.releaseMemory(reserved);
+        reserved = 0;
+        size = 0;
+        if (fileOutput != null) {
+            try {
+                fileOutput.close();
+            } finally {
+                fileOutput = null;
+                if (tempFile != null) {
+                    if (!tempFile.delete()) {
+                        tempFile.deleteOnExit();
+                    }
+                    tempFile = null;
+                } else {
+                    URI uri = tempURI;
+                    tempURI = null;
+                    //A temporary resource is released once it has been read
+                    factory.getTempResourceResolver().getResource(uri).close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of the temporary resource to the given stream. As a temporary resource
+     * can only be read once, the data is copied to a new one which takes its place.
+     * @param out the output stream to write to
+     * @throws IOException if there is an IO error
+     */
+    private void copyTempResource(OutputStream out) throws IOException {
+        InternalResourceResolver resolver = factory.getTempResourceResolver();
+        fileOutput.close();
+        InputStream in = resolver.getResource(tempURI);
+        try {
+            tempURI = TEMP_URI_GENERATOR.generate();
+            fileOutput = new BufferedOutputStream(resolver.getOutputStream(tempURI));
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+                fileOutput.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            //an empty cache has no buffer yet
+            return;
+        }
+        if (fileOutput == null && !ensureCapacity(size + len)) {
+            spill();
+        }
+        if (fileOutput != null) {
+            fileOutput.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, buffer, size, len);
+        }
+        size += len;
+    }
+
+    /**
+     * Makes sure the in-memory buffer can hold the given number of bytes.
+     * @param required the required capacity
+     * @return false if the memory limits do not allow the buffer to grow
+     */
+    private boolean ensureCapacity(int required) {
+        int capacity = buffer != null ? buffer.length : 0;
+        if (required <= capacity) {
+            return true;
+        }
+        int maxStreamMemory = factory.getMaxStreamMemory();
+        if (required > maxStreamMemory || required < 0) {
+            return false;
+        }
+        int newCapacity = Math.max(capacity * 2, Math.max(required,
+                buffer == null && hintSize > 0 ? hintSize : INITIAL_CAPACITY));
+        newCapacity = Math.min(newCapacity, maxStreamMemory);
+        if (!factory.reserveMemory(newCapacity - reserved)) {
+            return false;
+        }
+        byte[] newBuffer = new byte[newCapacity];
+        if (buffer != null) {
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+        }
+        buffer = newBuffer;
+        reserved = newCapacity;
+        return true;
+    }
+
+    private void spill() throws IOException {
+        InternalResourceResolver resolver = factory.getTempResourceResolver();
+        if (resolver != null) {
+            tempURI = TEMP_URI_GENERATOR.generate();
+            fileOutput = new BufferedOutputStream(resolver.getOutputStream(tempURI));
+        } else {
+            File file = File.createTempFile("org.apache.fop.pdf.StreamCache-", ".temp");
+            fileOutput = new BufferedOutputStream(new FileOutputStream(file));
+            tempFile = file;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Spilling stream of " + size + " bytes to "
+                    + (tempFile != null ? tempFile : tempURI));
+        }
+        if (buffer != null) {
+            fileOutput.write(buffer, 0, size);
+            buffer = null;
+        }
+        factory.releaseMemory(reserved);
+        reserved = 0;
+    }
+
+    private class SpillingOutputStream extends OutputStream {
+
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            writeBytes(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeBytes(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOutput != null) {
+                fileOutput.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            //The cache stays writable and readable until it is cleared
+            flush();
+        }
+    }
+}
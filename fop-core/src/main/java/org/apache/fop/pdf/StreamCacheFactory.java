@@ -20,13 +20,24 @@
 package org.apache.fop.pdf;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
 
 /**
  * This class is serves as a factory from
  */
 public final class StreamCacheFactory {
 
-    private static StreamCacheFactory memoryInstance = new StreamCacheFactory();
+    private static StreamCacheFactory memoryInstance = new StreamCacheFactory(-1, -1, null);
+
+    private final int maxStreamMemory;
+
+    private final long maxDocumentMemory;
+
+    private final AtomicLong memoryInUse = new AtomicLong();
+
+    private final InternalResourceResolver resourceResolver;
 
     /**
      * Returns an instance of a StreamCacheFactory with the requested features.
@@ -36,11 +47,59 @@ public final class StreamCacheFactory {
         return memoryInstance;
     }
 
+    /**
+     * Returns a StreamCacheFactory whose caches keep their data on the heap until one of the
+     * given limits is exceeded and then spill it to a temporary file. The factory keeps track
+     * of the memory used by all of its caches, so a new instance should be used per document.
+     * If both limits are negative, the shared in-memory factory is returned.
+     * @param maxStreamMemory the number of bytes a single stream may keep in memory
+     * (-1 for no limit)
+     * @param maxDocumentMemory the number of bytes all streams created by the factory may
+     * keep in memory together (-1 for no limit)
+     * @return StreamCacheFactory the requested factory
+     */
+    public static StreamCacheFactory getInstance(int maxStreamMemory, long maxDocumentMemory) {
+        return getInstance(maxStreamMemory, maxDocumentMemory, null);
+    }
+
+    /**
+     * Returns a StreamCacheFactory like {@link #getInstance(int, long)} whose caches obtain their
+     * temporary storage from the given resource resolver. Temporary files are only created
+     * directly if the resolver is the default one.
+     * @param maxStreamMemory the number of bytes a single stream may keep in memory
+     * (-1 for no limit)
+     * @param maxDocumentMemory the number of bytes all streams created by the factory may
+     * keep in memory together (-1 for no limit)
+     * @param resourceResolver the resolver for temporary resources (null to use temporary files)
+     * @return StreamCacheFactory the requested factory
+     */
+    public static StreamCacheFactory getInstance(int maxStreamMemory, long maxDocumentMemory,
+            InternalResourceResolver resourceResolver) {
+        if (maxStreamMemory < 0 && maxDocumentMemory < 0) {
+            return memoryInstance;
+        }
+        return new StreamCacheFactory(maxStreamMemory, maxDocumentMemory, resourceResolver);
+    }
+
     /**
      * Creates a new StreamCacheFactory.
-     * @param cacheToFile True if file shall be cached using a temporary file
+     * @param maxStreamMemory the per-stream memory limit (-1 for no limit)
+     * @param maxDocumentMemory the memory limit over all streams (-1 for no limit)
+     * @param resourceResolver the resolver for temporary resources (may be null)
      */
-    private StreamCacheFactory() {
+    private StreamCacheFactory(int maxStreamMemory, long maxDocumentMemory,
+            InternalResourceResolver resourceResolver) {
+        this.maxStreamMemory = maxStreamMemory < 0 ? Integer.MAX_VALUE : maxStreamMemory;
+        this.maxDocumentMemory = maxDocumentMemory < 0 ? Long.MAX_VALUE : maxDocumentMemory;
+        this.resourceResolver = resourceResolver;
+    }
+
+    /**
+     * Indicates whether the caches created by this factory may spill their data to disk.
+     * @return true if a memory limit is in effect
+     */
+    public boolean isSpillingEnabled() {
+        return this != memoryInstance;
     }
 
     /**
@@ -50,6 +109,9 @@ public final class StreamCacheFactory {
      * @return a new StreamCache for caching streams
      */
     public StreamCache createStreamCache() throws IOException {
+        if (isSpillingEnabled()) {
+            return new SpillingStreamCache(this, -1);
+        }
         return new InMemoryStreamCache();
     }
 
@@ -61,6 +123,56 @@ public final class StreamCacheFactory {
      * @return a new StreamCache for caching streams
      */
     public StreamCache createStreamCache(int hintSize) throws IOException {
+        if (isSpillingEnabled()) {
+            return new SpillingStreamCache(this, hintSize);
+        }
         return new InMemoryStreamCache(hintSize);
     }
+
+    /** @return the number of bytes a single stream may keep in memory */
+    int getMaxStreamMemory() {
+        return maxStreamMemory;
+    }
+
+    /**
+     * Returns the resolver through which spilled data is written unless it is the default one.
+     * @return the resource resolver to use for temporary data, or null to use temporary files
+     */
+    InternalResourceResolver getTempResourceResolver() {
+        if (resourceResolver == null || resourceResolver.isDefaultResourceResolver()) {
+            return null;
+        }
+        return resourceResolver;
+    }
+
+    /** @return the number of bytes currently held in memory by this factory's caches */
+    long getMemoryInUse() {
+        return memoryInUse.get();
+    }
+
+    /**
+     * Reserves memory from the document budget.
+     * @param bytes the number of bytes to reserve
+     * @return true if the memory was granted, false if the budget is exhausted
+     */
+    boolean reserveMemory(long bytes) {
+        while (true) {
+            long current = memoryInUse.get();
+            long next = current + bytes;
+            if (next > maxDocumentMemory || next < 0) {
+                return false;
+            }
+            if (memoryInUse.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns memory previously reserved with {@link #reserveMemory(long)} to the budget.
+     * @param bytes the number of bytes to release
+     */
+    void releaseMemory(long bytes) {
+        memoryInUse.addAndGet(-bytes);
+    }
 }
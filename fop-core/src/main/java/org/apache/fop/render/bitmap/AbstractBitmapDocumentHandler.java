@@ -24,9 +24,21 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -62,6 +74,11 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
      */
     public static final String TARGET_BITMAP_SIZE = "target-bitmap-size";
 
+    private static final AtomicInteger PIPELINE_COUNTER = new AtomicInteger();
+
+    /** The number of seconds an idle rasterization thread is kept */
+    private static final long PIPELINE_KEEP_ALIVE_SECONDS = 30;
+
     private ImageWriter imageWriter;
     private MultiImageWriter multiImageWriter;
 
@@ -77,6 +94,15 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
     private double scaleFactor = 1.0;
     private Dimension targetBitmapSize;
 
+    /** Paints the recorded pages, null if pages are painted on the rendering thread */
+    private ExecutorService paintingExecutor;
+    /** Encodes and writes the painted pages in page order */
+    private ExecutorService writingExecutor;
+    /** Bounds the number of pages that are recorded but not yet written */
+    private Semaphore pendingPages;
+    private final LinkedList<Future<?>> pendingWrites = new LinkedList<Future<?>>();
+    private RecordedPage currentRecordedPage;
+
     /**
      * Default constructor.
      */
@@ -153,17 +179,114 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
                         getUserAgent().getOutputFile());
             }
             this.pageCount = 0;
+            int threads = getUserAgent().getRasterizationThreads();
+            if (threads > 1) {
+                startPipeline(threads);
+            }
         } catch (IOException e) {
             throw new IFException("I/O error in startDocument()", e);
         }
     }
 
+    /**
+     * Starts the rasterization pipeline. It is stopped by {@link #endDocument()} and as soon as
+     * painting or writing a page fails. If the document is abandoned without either, the
+     * pipeline finishes the pages it was handed and its threads exit once they are idle.
+     * @param threads the number of threads painting pages
+     */
+    private void startPipeline(int threads) {
+        final String prefix = "FOP rasterizer " + PIPELINE_COUNTER.incrementAndGet() + "-";
+        this.paintingExecutor = createPipelineExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.writingExecutor = createPipelineExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        //Bound the number of page bitmaps held in memory
+        this.pendingPages = new Semaphore(threads * 2);
+    }
+
+    private static ExecutorService createPipelineExecutor(int threads, ThreadFactory factory) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                PIPELINE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void stopPipeline() {
+        if (paintingExecutor != null) {
+            for (Future<?> write : pendingWrites) {
+                write.cancel(true);
+            }
+            pendingWrites.clear();
+            paintingExecutor.shutdownNow();
+            writingExecutor.shutdownNow();
+            paintingExecutor = null;
+            writingExecutor = null;
+            pendingPages = null;
+        }
+    }
+
+    /**
+     * Waits for pages that have been handed to the rasterization pipeline to be written.
+     * @param all true to wait for all pending pages, false to only collect the ones that are
+     *          already written
+     * @throws IFException if painting or writing one of the pages failed
+     */
+    private void collectPendingWrites(boolean all) throws IFException {
+        while (!pendingWrites.isEmpty() && (all || pendingWrites.getFirst().isDone())) {
+            Future<?> write = pendingWrites.removeFirst();
+            try {
+                write.get();
+            } catch (InterruptedException ie) {
+                stopPipeline();
+                Thread.currentThread().interrupt();
+                throw new IFException("Interrupted while waiting for a page to be rasterized", ie);
+            } catch (ExecutionException ee) {
+                stopPipeline();
+                Throwable cause = ee.getCause();
+                while (cause instanceof ExecutionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof BandPaintingException) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof IFException) {
+                    throw (IFException) cause;
+                } else if (cause instanceof IOException) {
+                    throw new IFException("I/O error while encoding BufferedImage", (IOException) cause);
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IFException("Error while rasterizing a page", (Exception) cause);
+            }
+        }
+    }
+
     /** {@inheritDoc} */
     public void endDocumentHeader() throws IFException {
     }
 
     /** {@inheritDoc} */
     public void endDocument() throws IFException {
+        try {
+            collectPendingWrites(true);
+        } finally {
+            stopPipeline();
+        }
         try {
             if (this.multiImageWriter != null) {
                 this.multiImageWriter.close();
@@ -228,12 +351,38 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
             bitmapHeight = (int) ((this.currentPageDimensions.height * scale / 1000f) + 0.5f);
         }
 
+        if (paintingExecutor != null || isBanded(bitmapHeight)) {
+            //The page is painted on the rasterization pipeline or in bands once it is complete
+            IFContext pageContext = new IFContext(getUserAgent());
+            pageContext.setPageIndex(getContext().getPageIndex());
+            pageContext.setPageNumber(getContext().getPageNumber());
+            currentRecordedPage = new RecordedPage(this.pageCount, bitmapWidth, bitmapHeight,
+                    scale, offset, pageContext, new RecordingPainter(getContext()));
+            return currentRecordedPage.recorder;
+        }
+
         //Set up bitmap to paint on
         if (currentImage == null || currentImage.getWidth() != bitmapWidth
                 || currentImage.getHeight() != bitmapHeight) {
             currentImage = createBufferedImage(bitmapWidth, bitmapHeight);
         }
-        Graphics2D graphics2D = this.currentImage.createGraphics();
+        Graphics2D graphics2D = createGraphics(this.currentImage, scale, offset, 0);
+        return new Java2DPainter(graphics2D, getContext(), getFontInfo(), this);
+    }
+
+    /**
+     * Creates the graphics to paint a page on and sets up the page background, the
+     * rendering hints and the coordinate system.
+     * @param image the bitmap to paint on
+     * @param scale the scale factor
+     * @param offset the offset of the page in the bitmap (may be null)
+     * @param y the vertical offset of the image in the page bitmap, if it only holds a band
+     * @return the graphics
+     */
+    private Graphics2D createGraphics(BufferedImage image, double scale, Point2D offset, int y) {
+        int bitmapWidth = image.getWidth();
+        int bitmapHeight = image.getHeight();
+        Graphics2D graphics2D = image.createGraphics();
 
         // draw page background
         if (!getSettings().hasTransparentPageBackground()) {
@@ -246,7 +395,7 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
         graphics2D.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
                 RenderingHints.VALUE_FRACTIONALMETRICS_ON);
         if (getSettings().isAntiAliasingEnabled()
-                && this.currentImage.getColorModel().getPixelSize() > 1) {
+                && image.getColorModel().getPixelSize() > 1) {
             graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                     RenderingHints.VALUE_ANTIALIAS_ON);
             graphics2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
@@ -268,12 +417,14 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
                 RenderingHints.VALUE_STROKE_PURE);
 
         //Set up initial coordinate system for the page
+        if (y != 0) {
+            graphics2D.translate(0, -y);
+        }
         if (offset != null) {
             graphics2D.translate(offset.getX(), offset.getY());
         }
         graphics2D.scale(scale / 1000f, scale / 1000f);
-
-        return new Java2DPainter(graphics2D, getContext(), getFontInfo(), this);
+        return graphics2D;
     }
 
     /**
@@ -288,42 +439,146 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
 
     /** {@inheritDoc} */
     public void endPageContent() throws IFException {
+        if (currentRecordedPage != null) {
+            RecordedPage page = currentRecordedPage;
+            currentRecordedPage = null;
+            if (paintingExecutor != null) {
+                submitPage(page);
+                return;
+            }
+            try {
+                writePage(paintPage(page), page.pageNumber);
+            } catch (IOException ioe) {
+                throw new IFException("I/O error while encoding BufferedImage", ioe);
+            } catch (BandPaintingException bpe) {
+                throw bpe.getCause();
+            }
+            return;
+        }
         try {
-            if (this.multiImageWriter == null) {
-                switch (this.pageCount) {
-                case 1:
-                    this.imageWriter.writeImage(
-                            this.currentImage, this.outputStream,
-                            getSettings().getWriterParams());
-                    IOUtils.closeQuietly(this.outputStream);
-                    this.outputStream = null;
-                    break;
-                default:
-                    OutputStream out = this.multiFileUtil.createOutputStream(this.pageCount - 1);
-                    if (out == null) {
-                        BitmapRendererEventProducer eventProducer
-                            = BitmapRendererEventProducer.Provider.get(
-                                    getUserAgent().getEventBroadcaster());
-                        eventProducer.stoppingAfterFirstPageNoFilename(this);
-                    } else {
-                        try {
-                            this.imageWriter.writeImage(
-                                    this.currentImage, out,
-                                    getSettings().getWriterParams());
-                        } finally {
-                            IOUtils.closeQuietly(out);
-                        }
+            writePage(this.currentImage, this.pageCount);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error while encoding BufferedImage", ioe);
+        }
+    }
+
+    private boolean isBanded(int bitmapHeight) {
+        int bandHeight = getUserAgent().getRasterizationBandHeight();
+        return bandHeight > 0 && bitmapHeight > bandHeight;
+    }
+
+    /**
+     * Encodes a page bitmap and writes it to the output.
+     * @param image the page bitmap
+     * @param pageNumber the page number (one-based)
+     * @throws IOException if an I/O error occurs
+     */
+    private void writePage(RenderedImage image, int pageNumber) throws IOException {
+        if (this.multiImageWriter == null) {
+            switch (pageNumber) {
+            case 1:
+                this.imageWriter.writeImage(
+                        image, this.outputStream,
+                        getSettings().getWriterParams());
+                IOUtils.closeQuietly(this.outputStream);
+                this.outputStream = null;
+                break;
+            default:
+                OutputStream out = this.multiFileUtil.createOutputStream(pageNumber - 1);
+                if (out == null) {
+                    BitmapRendererEventProducer eventProducer
+                        = BitmapRendererEventProducer.Provider.get(
+                                getUserAgent().getEventBroadcaster());
+                    eventProducer.stoppingAfterFirstPageNoFilename(this);
+                } else {
+                    try {
+                        this.imageWriter.writeImage(
+                                image, out,
+                                getSettings().getWriterParams());
+                    } finally {
+                        IOUtils.closeQuietly(out);
                     }
                 }
-            } else {
-                this.multiImageWriter.writeImage(this.currentImage,
-                        getSettings().getWriterParams());
             }
-        } catch (IOException ioe) {
-            throw new IFException("I/O error while encoding BufferedImage", ioe);
+        } else {
+            this.multiImageWriter.writeImage(image,
+                    getSettings().getWriterParams());
+        }
+    }
+
+    /**
+     * Hands a recorded page to the rasterization pipeline: it is painted on the painting pool
+     * and then written by the writing thread, after all previous pages.
+     * @param page the recorded page
+     * @throws IFException if painting or writing a previous page failed
+     */
+    private void submitPage(final RecordedPage page) throws IFException {
+        collectPendingWrites(false);
+        try {
+            pendingPages.acquire();
+        } catch (InterruptedException ie) {
+            stopPipeline();
+            Thread.currentThread().interrupt();
+            throw new IFException("Interrupted while waiting for a page to be rasterized", ie);
+        }
+        final Future<RenderedImage> painted;
+        try {
+            painted = paintingExecutor.submit(new Callable<RenderedImage>() {
+                public RenderedImage call() throws IFException {
+                    return paintPage(page);
+                }
+            });
+            pendingWrites.add(writingExecutor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    try {
+                        writePage(painted.get(), page.pageNumber);
+                    } finally {
+                        pendingPages.release();
+                    }
+                    return null;
+                }
+            }));
+        } catch (RuntimeException re) {
+            stopPipeline();
+            throw re;
         }
     }
 
+    /**
+     * Paints a recorded page. If the page is higher than the band height, only a
+     * {@link BandedImage} is returned, its bands are painted when the page is encoded.
+     * @param page the recorded page
+     * @return the page bitmap
+     * @throws IFException if an error occurs while painting the page
+     */
+    private RenderedImage paintPage(final RecordedPage page) throws IFException {
+        if (isBanded(page.bitmapHeight)) {
+            return new BandedImage(page.bitmapWidth, page.bitmapHeight,
+                    getUserAgent().getRasterizationBandHeight(), createBufferedImage(1, 1)) {
+                protected BufferedImage paintBand(int y, int bandHeight) {
+                    try {
+                        return paintPage(page, y, bandHeight);
+                    } catch (IFException ife) {
+                        throw new BandPaintingException(ife);
+                    }
+                }
+            };
+        }
+        return paintPage(page, 0, page.bitmapHeight);
+    }
+
+    private BufferedImage paintPage(RecordedPage page, int y, int height) throws IFException {
+        BufferedImage image = createBufferedImage(page.bitmapWidth, height);
+        Graphics2D graphics2D = createGraphics(image, page.scale, page.offset, y);
+        try {
+            Java2DPainter painter = new Java2DPainter(graphics2D, page.context, getFontInfo(), this);
+            page.recorder.replay(painter, page.context, getUserAgent().getImageSessionContext());
+        } finally {
+            graphics2D.dispose();
+        }
+        return image;
+    }
+
     /** {@inheritDoc} */
     public void endPage() throws IFException {
         this.currentPageDimensions = null;
@@ -335,4 +590,42 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
                     + extension + " (" + extension.getClass().getName() + ")");
     }
 
+    /** Reports an error while painting a band, as {@link RenderedImage} doesn't allow checked exceptions. */
+    private static final class BandPaintingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1946313628735361580L;
+
+        BandPaintingException(IFException cause) {
+            super(cause);
+        }
+
+        /** {@inheritDoc} */
+        public synchronized IFException getCause() {
+            return (IFException) super.getCause();
+        }
+    }
+
+    /** A page whose painting operations are recorded for the rasterization pipeline or banding. */
+    private static final class RecordedPage {
+
+        private final int pageNumber;
+        private final int bitmapWidth;
+        private final int bitmapHeight;
+        private final double scale;
+        private final Point2D offset;
+        private final IFContext context;
+        private final RecordingPainter recorder;
+
+        RecordedPage(int pageNumber, int bitmapWidth, int bitmapHeight, double scale,
+                Point2D offset, IFContext context, RecordingPainter recorder) {
+            this.pageNumber = pageNumber;
+            this.bitmapWidth = bitmapWidth;
+            this.bitmapHeight = bitmapHeight;
+            this.scale = scale;
+            this.offset = offset;
+            this.context = context;
+            this.recorder = recorder;
+        }
+    }
+
 }
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * A {@link RenderedImage} made of horizontal bands that are only painted when an image encoder
+ * requests their pixels. Encoders that process an image strip by strip therefore never need
+ * more than one band in memory, instead of the whole bitmap. Only the most recently painted
+ * band is kept; a band that is requested again is painted again.
+ */
+abstract class BandedImage implements RenderedImage {
+
+    private final int width;
+    private final int height;
+    private final int bandHeight;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+
+    private int cachedBandIndex = -1;
+    private Raster cachedBand;
+
+    /**
+     * Creates a new banded image.
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param bandHeight the height of a band in pixels
+     * @param prototype an image with the color and sample model of the bands
+     */
+    BandedImage(int width, int height, int bandHeight, BufferedImage prototype) {
+        this.width = width;
+        this.height = height;
+        this.bandHeight = Math.min(bandHeight, height);
+        this.colorModel = prototype.getColorModel();
+        this.sampleModel = prototype.getSampleModel().createCompatibleSampleModel(
+                width, this.bandHeight);
+    }
+
+    /**
+     * Paints a band of the image.
+     * @param y the vertical offset of the band in the image
+     * @param bandHeight the height of the band
+     * @return the painted band, an image of the image's width and the given height
+     */
+    protected abstract BufferedImage paintBand(int y, int bandHeight);
+
+    /** {@inheritDoc} */
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public Object getProperty(String name) {
+        return java.awt.Image.UndefinedProperty;
+    }
+
+    /** {@inheritDoc} */
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    /** {@inheritDoc} */
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    /** {@inheritDoc} */
+    public int getWidth() {
+        return width;
+    }
+
+    /** {@inheritDoc} */
+    public int getHeight() {
+        return height;
+    }
+
+    /** {@inheritDoc} */
+    public int getMinX() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public int getMinY() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    /** {@inheritDoc} */
+    public int getNumYTiles() {
+        return (height + bandHeight - 1) / bandHeight;
+    }
+
+    /** {@inheritDoc} */
+    public int getMinTileX() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public int getMinTileY() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public int getTileWidth() {
+        return width;
+    }
+
+    /** {@inheritDoc} */
+    public int getTileHeight() {
+        return bandHeight;
+    }
+
+    /** {@inheritDoc} */
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized Raster getTile(int tileX, int tileY) {
+        if (tileX != 0 || tileY < 0 || tileY >= getNumYTiles()) {
+            throw new IllegalArgumentException("Invalid tile: " + tileX + ", " + tileY);
+        }
+        if (tileY != cachedBandIndex) {
+            //release the previous band before painting the next one
+            cachedBand = null;
+            int y = tileY * bandHeight;
+            BufferedImage band = paintBand(y, Math.min(bandHeight, height - y));
+            cachedBand = band.getRaster().createTranslatedChild(0, y);
+            cachedBandIndex = tileY;
+        }
+        return cachedBand;
+    }
+
+    /** {@inheritDoc} */
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    /** {@inheritDoc} */
+    public Raster getData(Rectangle rect) {
+        WritableRaster raster = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(rect.width, rect.height),
+                new Point(rect.x, rect.y));
+        return copyData(raster);
+    }
+
+    /** {@inheritDoc} */
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            return (WritableRaster) getData();
+        }
+        Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (bounds.isEmpty()) {
+            return raster;
+        }
+        int firstBand = bounds.y / bandHeight;
+        int lastBand = (bounds.y + bounds.height - 1) / bandHeight;
+        for (int i = firstBand; i <= lastBand; i++) {
+            raster.setRect(getTile(0, i));
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFPainter;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+
+/**
+ * {@link IFPainter} implementation that records the painting operations of a page so they can
+ * be replayed later, on another thread, against a {@link org.apache.fop.render.java2d.Java2DPainter}.
+ * Mutable arguments are copied as the caller may reuse them, and the foreign attributes of
+ * the {@link IFContext} in effect for each operation are recorded along with it.
+ */
+final class RecordingPainter implements IFPainter {
+
+    private final IFContext context;
+    private final List<Operation> operations = new ArrayList<Operation>();
+    private Map lastForeignAttributes = Collections.EMPTY_MAP;
+
+    /**
+     * Creates a new recording painter.
+     * @param context the IF context whose foreign attributes are recorded
+     */
+    RecordingPainter(IFContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Replays the recorded painting operations.
+     * @param painter the painter to replay the operations on
+     * @param painterContext the IF context of the painter, receives the recorded foreign attributes
+     * @param imageLock the lock to hold while images are painted, as image loading uses the
+     *          user agent's image session context which isn't thread-safe
+     * @throws IFException if an error occurs while painting
+     */
+    void replay(IFPainter painter, IFContext painterContext, Object imageLock) throws IFException {
+        for (Operation operation : operations) {
+            if (operation.usesImages()) {
+                synchronized (imageLock) {
+                    operation.paint(painter, painterContext);
+                }
+            } else {
+                operation.paint(painter, painterContext);
+            }
+        }
+    }
+
+
+    private void record(Operation operation) {
+        Map foreignAttributes = context.getForeignAttributes();
+        if (foreignAttributes != lastForeignAttributes) {
+            lastForeignAttributes = foreignAttributes;
+            final Map copy = foreignAttributes.isEmpty()
+                    ? Collections.EMPTY_MAP : new HashMap(foreignAttributes);
+            operations.add(new Operation() {
+                void paint(IFPainter painter, IFContext painterContext) {
+                    painterContext.setForeignAttributes(copy);
+                }
+            });
+        }
+        operations.add(operation);
+    }
+
+    private static Rectangle copy(Rectangle rect) {
+        return rect != null ? new Rectangle(rect) : null;
+    }
+
+    private static AffineTransform copy(AffineTransform transform) {
+        return transform != null ? new AffineTransform(transform) : null;
+    }
+
+    private static AffineTransform[] copy(AffineTransform[] transforms) {
+        if (transforms == null) {
+            return null;
+        }
+        AffineTransform[] copy = new AffineTransform[transforms.length];
+        for (int i = 0; i < transforms.length; i++) {
+            copy[i] = copy(transforms[i]);
+        }
+        return copy;
+    }
+
+    private static int[][] copy(int[][] dp) {
+        if (dp == null) {
+            return null;
+        }
+        int[][] copy = new int[dp.length][];
+        for (int i = 0; i < dp.length; i++) {
+            copy[i] = dp[i] != null ? dp[i].clone() : null;
+        }
+        return copy;
+    }
+
+    /** {@inheritDoc} */
+    public void startViewport(AffineTransform transform, Dimension size, Rectangle clipRect) {
+        final AffineTransform t = copy(transform);
+        final Dimension s = size != null ? new Dimension(size) : null;
+        final Rectangle c = copy(clipRect);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.startViewport(t, s, c);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void startViewport(AffineTransform[] transforms, Dimension size, Rectangle clipRect) {
+        final AffineTransform[] t = copy(transforms);
+        final Dimension s = size != null ? new Dimension(size) : null;
+        final Rectangle c = copy(clipRect);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.startViewport(t, s, c);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void endViewport() {
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.endViewport();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void startGroup(AffineTransform[] transforms, final String layer) {
+        final AffineTransform[] t = copy(transforms);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.startGroup(t, layer);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void startGroup(AffineTransform transform, final String layer) {
+        final AffineTransform t = copy(transform);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.startGroup(t, layer);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void endGroup() {
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.endGroup();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void setFont(final String family, final String style, final Integer weight,
+            final String variant, final Integer size, final Color color) {
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.setFont(family, style, weight, variant, size, color);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawText(final int x, final int y, final int letterSpacing, final int wordSpacing,
+            int[][] dp, final String text) {
+        final int[][] p = copy(dp);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.drawText(x, y, letterSpacing, wordSpacing, p, text);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawText(final int x, final int y, final int letterSpacing, final int wordSpacing,
+            int[][] dp, final String text, final boolean nextIsSpace) {
+        final int[][] p = copy(dp);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.drawText(x, y, letterSpacing, wordSpacing, p, text, nextIsSpace);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void clipRect(Rectangle rect) {
+        final Rectangle r = copy(rect);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.clipRect(r);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void clipBackground(Rectangle rect, final BorderProps bpsBefore,
+            final BorderProps bpsAfter, final BorderProps bpsStart, final BorderProps bpsEnd) {
+        final Rectangle r = copy(rect);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.clipBackground(r, bpsBefore, bpsAfter, bpsStart, bpsEnd);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc} Like {@link org.apache.fop.render.java2d.Java2DPainter}, this painter
+     * always requires the background.
+     */
+    public boolean isBackgroundRequired(BorderProps bpsBefore, BorderProps bpsAfter,
+            BorderProps bpsStart, BorderProps bpsEnd) {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public void fillRect(Rectangle rect, final Paint fill) {
+        final Rectangle r = copy(rect);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.fillRect(r, fill);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawBorderRect(Rectangle rect, final BorderProps top, final BorderProps bottom,
+            final BorderProps left, final BorderProps right, final Color innerBackgroundColor) {
+        final Rectangle r = copy(rect);
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.drawBorderRect(r, top, bottom, left, right, innerBackgroundColor);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawLine(Point start, Point end, final int width, final Color color,
+            final RuleStyle style) {
+        final Point s = start != null ? new Point(start) : null;
+        final Point e = end != null ? new Point(end) : null;
+        record(new Operation() {
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.drawLine(s, e, width, color, style);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawImage(final String uri, Rectangle rect) {
+        final Rectangle r = copy(rect);
+        record(new Operation() {
+            boolean usesImages() {
+                return true;
+            }
+
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.drawImage(uri, r);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawImage(final Document doc, Rectangle rect) {
+        final Rectangle r = copy(rect);
+        record(new Operation() {
+            boolean usesImages() {
+                return true;
+            }
+
+            void paint(IFPainter painter, IFContext painterContext) throws IFException {
+                painter.drawImage(doc, r);
+            }
+        });
+    }
+
+    /** A recorded painting operation. */
+    private abstract static class Operation {
+
+        /** @return true if the operation loads or paints images */
+        boolean usesImages() {
+            return false;
+        }
+
+        abstract void paint(IFPainter painter, IFContext painterContext) throws IFException;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Constants for the binary encoding of the intermediate format.
+ * <p>
+ * A binary IF stream starts with {@link #MAGIC} and a version byte, followed by a sequence of
+ * records. Each record consists of a one-byte opcode, the payload length as an unsigned
+ * variable-length integer and the payload itself, so readers can skip records they don't know.
+ * Strings that are likely to repeat are defined once through an {@link #OP_SYMBOL} record and
+ * then referenced by their (1-based) index; index 0 stands for <code>null</code>.
+ */
+public interface IFBinaryConstants extends IFConstants {
+
+    /** MIME type of the binary intermediate format. */
+    String MIME_TYPE_BINARY = MimeConstants.MIME_FOP_IF_BINARY;
+
+    /** The magic bytes a binary IF stream starts with. */
+    byte[] MAGIC = {'F', 'O', 'P', 'I', 'F', 'B'};
+
+    /** The version of the binary encoding. */
+    int VERSION = 1;
+
+    /** record: defines the next entry of the string table */
+    int OP_SYMBOL = 0x01;
+
+    /** record: start of document */
+    int OP_DOCUMENT_START = 0x10;
+    /** record: end of document */
+    int OP_DOCUMENT_END = 0x11;
+    /** record: document locale */
+    int OP_LOCALE = 0x12;
+    /** record: start of document header */
+    int OP_HEADER_START = 0x13;
+    /** record: end of document header */
+    int OP_HEADER_END = 0x14;
+    /** record: start of document trailer */
+    int OP_TRAILER_START = 0x15;
+    /** record: end of document trailer */
+    int OP_TRAILER_END = 0x16;
+    /** record: start of page sequence */
+    int OP_PAGE_SEQUENCE_START = 0x17;
+    /** record: end of page sequence */
+    int OP_PAGE_SEQUENCE_END = 0x18;
+    /** record: start of page */
+    int OP_PAGE_START = 0x19;
+    /** record: end of page */
+    int OP_PAGE_END = 0x1A;
+    /** record: start of page header */
+    int OP_PAGE_HEADER_START = 0x1B;
+    /** record: end of page header */
+    int OP_PAGE_HEADER_END = 0x1C;
+    /** record: start of page content */
+    int OP_PAGE_CONTENT_START = 0x1D;
+    /** record: end of page content */
+    int OP_PAGE_CONTENT_END = 0x1E;
+    /** record: start of page trailer */
+    int OP_PAGE_TRAILER_START = 0x1F;
+    /** record: end of page trailer */
+    int OP_PAGE_TRAILER_END = 0x20;
+
+    /** record: start of viewport */
+    int OP_VIEWPORT_START = 0x30;
+    /** record: end of viewport */
+    int OP_VIEWPORT_END = 0x31;
+    /** record: start of group */
+    int OP_GROUP_START = 0x32;
+    /** record: end of group */
+    int OP_GROUP_END = 0x33;
+    /** record: current ID */
+    int OP_ID = 0x34;
+    /** record: font change */
+    int OP_FONT = 0x35;
+    /** record: text */
+    int OP_TEXT = 0x36;
+    /** record: clip rectangle */
+    int OP_CLIP_RECT = 0x37;
+    /** record: background clipping */
+    int OP_CLIP_BACKGROUND = 0x38;
+    /** record: filled rectangle */
+    int OP_RECT = 0x39;
+    /** record: line */
+    int OP_LINE = 0x3A;
+    /** record: border rectangle */
+    int OP_BORDER_RECT = 0x3B;
+    /** record: image referenced by URI */
+    int OP_IMAGE = 0x3C;
+    /** record: foreign object image (embedded XML fragment) */
+    int OP_IMAGE_DOCUMENT = 0x3D;
+
+    /** record: extension object (embedded XML fragment) */
+    int OP_EXTENSION = 0x50;
+    /** record: document navigation (embedded XML fragment) */
+    int OP_NAVIGATION = 0x51;
+    /** record: structure tree of the following page sequence (embedded XML fragment) */
+    int OP_STRUCTURE_TREE = 0x52;
+    /** record: structure tree of the retrieved markers of a page (embedded XML fragment) */
+    int OP_RETRIEVED_MARKERS = 0x53;
+
+    /** XML fragment event: end of fragment */
+    int EV_END = 0;
+    /** XML fragment event: startPrefixMapping */
+    int EV_START_PREFIX_MAPPING = 1;
+    /** XML fragment event: endPrefixMapping */
+    int EV_END_PREFIX_MAPPING = 2;
+    /** XML fragment event: startElement */
+    int EV_START_ELEMENT = 3;
+    /** XML fragment event: endElement */
+    int EV_END_ELEMENT = 4;
+    /** XML fragment event: characters */
+    int EV_CHARACTERS = 5;
+
+    /** text flag: the next character is a space */
+    int TEXT_NEXT_IS_SPACE = 0x01;
+    /** text flag: the text is hyphenated */
+    int TEXT_HYPHENATED = 0x02;
+    /** text flag: letter spacing follows */
+    int TEXT_LETTER_SPACING = 0x04;
+    /** text flag: word spacing follows */
+    int TEXT_WORD_SPACING = 0x08;
+
+    /** position adjustments: none (identity) */
+    int DP_NONE = 0;
+    /** position adjustments: x advancement adjustments only */
+    int DP_DX = 1;
+    /** position adjustments: full placement and advancement adjustments */
+    int DP_FULL = 2;
+
+    /** transform kind: integral translation */
+    int TRANSFORM_TRANSLATE = 0;
+    /** transform kind: full matrix */
+    int TRANSFORM_MATRIX = 1;
+
+    /** font flag: family follows */
+    int FONT_FAMILY = 0x01;
+    /** font flag: style follows */
+    int FONT_STYLE = 0x02;
+    /** font flag: weight follows */
+    int FONT_WEIGHT = 0x04;
+    /** font flag: variant follows */
+    int FONT_VARIANT = 0x08;
+    /** font flag: size follows */
+    int FONT_SIZE = 0x10;
+    /** font flag: color follows */
+    int FONT_COLOR = 0x20;
+}
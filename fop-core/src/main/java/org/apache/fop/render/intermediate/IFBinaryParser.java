@@ -0,0 +1,764 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.xmlgraphics.util.QName;
+
+import org.apache.fop.accessibility.AccessibilityEventProducer;
+import org.apache.fop.accessibility.StructureTreeElement;
+import org.apache.fop.accessibility.StructureTreeEventHandler;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.ElementMapping;
+import org.apache.fop.fo.expr.PropertyException;
+import org.apache.fop.fo.extensions.InternalElementMapping;
+import org.apache.fop.render.intermediate.extensions.DocumentNavigationHandler;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+import org.apache.fop.util.ColorUtil;
+import org.apache.fop.util.ContentHandlerFactory;
+import org.apache.fop.util.ContentHandlerFactoryRegistry;
+import org.apache.fop.util.DOMBuilderContentHandlerFactory;
+import org.apache.fop.util.LanguageTags;
+
+/**
+ * This is a parser for the binary intermediate format written by {@link IFBinarySerializer}.
+ * It streams the records directly into {@link IFDocumentHandler} and {@link IFPainter} events
+ * without going through an XML parser. Only embedded XML fragments that end up as objects
+ * (foreign object images and extension attachments) are turned into DOM or extension objects.
+ */
+public class IFBinaryParser implements IFBinaryConstants {
+
+    /** Logger instance */
+    protected static final Log log = LogFactory.getLog(IFBinaryParser.class);
+
+    /**
+     * Indicates whether the given file contains the binary intermediate format.
+     * @param file the file to check
+     * @return true if the file starts with the binary intermediate format signature
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static boolean isBinaryIF(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return hasMagic(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static boolean hasMagic(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (in.read() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a binary intermediate format stream and paints it. The stream is not closed.
+     * @param in the input stream to read the binary intermediate format from
+     * @param documentHandler the intermediate format document handler used to process the IF events
+     * @param userAgent the user agent
+     * @throws IOException if an I/O error occurs or the stream is not valid binary IF
+     * @throws IFException if an IF-related error occurs inside the target document handler
+     */
+    public void parse(InputStream in, IFDocumentHandler documentHandler, FOUserAgent userAgent)
+            throws IOException, IFException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        if (!hasMagic(in)) {
+            throw new IOException("Not a binary intermediate format stream");
+        }
+        int version = in.read();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported binary intermediate format version: " + version);
+        }
+        new Handler(in, documentHandler, userAgent).parse();
+    }
+
+    private static final class Handler {
+
+        private final InputStream in;
+        private final IFDocumentHandler documentHandler;
+        private final FOUserAgent userAgent;
+
+        private IFPainter painter;
+
+        /** Payload of the current record */
+        private byte[] buf = new byte[1024];
+        private int pos;
+        private int limit;
+
+        private final List<String> symbols = new ArrayList<String>();
+        private final Map<String, Color> colors = new HashMap<String, Color>();
+        private final Map<String, BorderProps> borders = new HashMap<String, BorderProps>();
+
+        private ContentHandler navParser;
+        private boolean structureTreeSeen;
+        private final Map<String, StructureTreeElement> structureTreeElements
+                = new HashMap<String, StructureTreeElement>();
+
+        Handler(InputStream in, IFDocumentHandler documentHandler, FOUserAgent userAgent) {
+            this.in = in;
+            this.documentHandler = documentHandler;
+            this.userAgent = userAgent;
+        }
+
+        void parse() throws IOException, IFException {
+            while (true) {
+                int opcode = in.read();
+                if (opcode < 0) {
+                    throw new EOFException(
+                            "Binary intermediate format stream ended before the end of the document");
+                }
+                readRecord();
+                if (opcode == OP_DOCUMENT_END) {
+                    documentHandler.endDocument();
+                    return;
+                }
+                try {
+                    handleRecord(opcode);
+                } catch (SAXException e) {
+                    throw new IFException("SAX error while replaying an XML fragment", e);
+                }
+                if (pos != limit) {
+                    throw new IOException("Malformed record (opcode " + opcode + ")");
+                }
+            }
+        }
+
+        private void handleRecord(int opcode) throws IOException, IFException, SAXException {
+            switch (opcode) {
+            case OP_SYMBOL:
+                symbols.add(toString(buf, 0, limit));
+                pos = limit;
+                break;
+            case OP_DOCUMENT_START:
+                documentHandler.startDocument();
+                break;
+            case OP_LOCALE:
+                documentHandler.setDocumentLocale(LanguageTags.toLocale(readSymbol()));
+                break;
+            case OP_HEADER_START:
+                documentHandler.startDocumentHeader();
+                break;
+            case OP_HEADER_END:
+                documentHandler.endDocumentHeader();
+                break;
+            case OP_TRAILER_START:
+                documentHandler.startDocumentTrailer();
+                break;
+            case OP_TRAILER_END:
+                documentHandler.endDocumentTrailer();
+                break;
+            case OP_STRUCTURE_TREE:
+                handleStructureTree();
+                break;
+            case OP_PAGE_SEQUENCE_START:
+                handleStartPageSequence();
+                break;
+            case OP_PAGE_SEQUENCE_END:
+                documentHandler.endPageSequence();
+                documentHandler.getContext().setLanguage(null);
+                break;
+            case OP_PAGE_START:
+                handleStartPage();
+                break;
+            case OP_PAGE_END:
+                documentHandler.endPage();
+                break;
+            case OP_PAGE_HEADER_START:
+                documentHandler.startPageHeader();
+                break;
+            case OP_RETRIEVED_MARKERS:
+                replayFragment(userAgent.isAccessibilityEnabled()
+                        ? new StructureTreeHandler(userAgent.getStructureTreeEventHandler(), false, null)
+                        : new DefaultHandler());
+                break;
+            case OP_PAGE_HEADER_END:
+                documentHandler.endPageHeader();
+                break;
+            case OP_PAGE_CONTENT_START:
+                painter = documentHandler.startPageContent();
+                break;
+            case OP_PAGE_CONTENT_END:
+                painter = null;
+                documentHandler.getContext().setID("");
+                documentHandler.endPageContent();
+                break;
+            case OP_PAGE_TRAILER_START:
+                documentHandler.startPageTrailer();
+                break;
+            case OP_PAGE_TRAILER_END:
+                documentHandler.endPageTrailer();
+                break;
+            case OP_VIEWPORT_START:
+                handleStartViewport();
+                break;
+            case OP_VIEWPORT_END:
+                painter.endViewport();
+                break;
+            case OP_GROUP_START:
+                AffineTransform[] transforms = readTransforms();
+                painter.startGroup(transforms, readSymbol());
+                break;
+            case OP_GROUP_END:
+                painter.endGroup();
+                break;
+            case OP_ID:
+                documentHandler.getContext().setID(readLiteral());
+                break;
+            case OP_FONT:
+                handleFont();
+                break;
+            case OP_TEXT:
+                handleText();
+                break;
+            case OP_CLIP_RECT:
+                painter.clipRect(readRectangle());
+                break;
+            case OP_CLIP_BACKGROUND:
+                Rectangle clip = readRectangle();
+                painter.clipBackground(clip, readBorder(), readBorder(), readBorder(), readBorder());
+                break;
+            case OP_RECT:
+                Rectangle rect = readRectangle();
+                painter.fillRect(rect, readColor());
+                break;
+            case OP_LINE:
+                handleLine();
+                break;
+            case OP_BORDER_RECT:
+                Rectangle borderRect = readRectangle();
+                painter.drawBorderRect(borderRect, readBorder(), readBorder(), readBorder(), readBorder(),
+                        readColor());
+                break;
+            case OP_IMAGE:
+                handleImage();
+                break;
+            case OP_IMAGE_DOCUMENT:
+                handleImageDocument();
+                break;
+            case OP_EXTENSION:
+                handleExtension();
+                break;
+            case OP_NAVIGATION:
+                if (navParser == null) {
+                    navParser = new DocumentNavigationHandler(
+                            documentHandler.getDocumentNavigationHandler(), structureTreeElements);
+                }
+                replayFragment(navParser);
+                break;
+            default:
+                //Unknown record from a newer writer: the length prefix allows to skip it
+                if (log.isDebugEnabled()) {
+                    log.debug("Skipping unknown record with opcode " + opcode);
+                }
+                pos = limit;
+            }
+        }
+
+        private void handleStructureTree() throws IOException, SAXException {
+            String languageTag = readSymbol();
+            if (userAgent.isAccessibilityEnabled()) {
+                Locale language = (languageTag != null ? LanguageTags.toLocale(languageTag) : null);
+                replayFragment(new StructureTreeHandler(userAgent.getStructureTreeEventHandler(), true, language));
+                structureTreeSeen = true;
+            } else {
+                replayFragment(new DefaultHandler());
+            }
+        }
+
+        private void handleStartPageSequence() throws IOException, IFException {
+            String id = readLiteral();
+            String languageTag = readSymbol();
+            Map<QName, String> foreignAttributes = readForeignAttributes();
+            if (userAgent.isAccessibilityEnabled()) {
+                if (!structureTreeSeen) {
+                    AccessibilityEventProducer.Provider.get(userAgent.getEventBroadcaster())
+                            .noStructureTreeInXML(this);
+                }
+                structureTreeSeen = false;
+            }
+            if (languageTag != null) {
+                documentHandler.getContext().setLanguage(LanguageTags.toLocale(languageTag));
+            }
+            documentHandler.getContext().setForeignAttributes(foreignAttributes);
+            documentHandler.startPageSequence(id);
+            documentHandler.getContext().resetForeignAttributes();
+        }
+
+        private void handleStartPage() throws IOException, IFException {
+            int index = readUnsigned();
+            String name = readLiteral();
+            String pageMasterName = readSymbol();
+            int width = readInt();
+            int height = readInt();
+            documentHandler.getContext().setForeignAttributes(readForeignAttributes());
+            documentHandler.startPage(index, name, pageMasterName, new Dimension(width, height));
+            documentHandler.getContext().setPageNumber(index + 1);
+            documentHandler.getContext().resetForeignAttributes();
+        }
+
+        private void handleStartViewport() throws IOException, IFException {
+            AffineTransform[] transforms = readTransforms();
+            int width = readInt();
+            int height = readInt();
+            Rectangle clipRect = (readByte() != 0 ? readRectangle() : null);
+            String regionType = readSymbol();
+            painter.startViewport(transforms, new Dimension(width, height), clipRect);
+            documentHandler.getContext().setRegionType(regionType);
+        }
+
+        private void handleFont() throws IOException, IFException {
+            int flags = readByte();
+            String family = ((flags & FONT_FAMILY) != 0 ? readSymbol() : null);
+            String style = ((flags & FONT_STYLE) != 0 ? readSymbol() : null);
+            Integer weight = ((flags & FONT_WEIGHT) != 0 ? Integer.valueOf(readInt()) : null);
+            String variant = ((flags & FONT_VARIANT) != 0 ? readSymbol() : null);
+            Integer size = ((flags & FONT_SIZE) != 0 ? Integer.valueOf(readInt()) : null);
+            Color color = ((flags & FONT_COLOR) != 0 ? readColor() : null);
+            painter.setFont(family, style, weight, variant, size, color);
+        }
+
+        private void handleText() throws IOException, IFException {
+            int x = readInt();
+            int y = readInt();
+            int flags = readByte();
+            int letterSpacing = ((flags & TEXT_LETTER_SPACING) != 0 ? readInt() : 0);
+            int wordSpacing = ((flags & TEXT_WORD_SPACING) != 0 ? readInt() : 0);
+            int[][] dp = readPositionAdjustments();
+            establishStructureTreeElement(readLiteral());
+            String text = readLiteral();
+            boolean isHyphenated = (flags & TEXT_HYPHENATED) != 0;
+            if (isHyphenated) {
+                documentHandler.getContext().setHyphenated(isHyphenated);
+            }
+            painter.drawText(x, y, letterSpacing, wordSpacing, dp, text, (flags & TEXT_NEXT_IS_SPACE) != 0);
+            documentHandler.getContext().setHyphenated(false);
+            documentHandler.getContext().resetStructureTreeElement();
+        }
+
+        private void handleLine() throws IOException, IFException {
+            int x1 = readInt();
+            int y1 = readInt();
+            int x2 = readInt();
+            int y2 = readInt();
+            int width = readInt();
+            Color color = readColor();
+            RuleStyle style = RuleStyle.valueOf(readSymbol());
+            painter.drawLine(new Point(x1, y1), new Point(x2, y2), width, color, style);
+        }
+
+        private void handleImage() throws IOException, IFException {
+            String uri = readSymbol();
+            Rectangle rect = readRectangle();
+            documentHandler.getContext().setForeignAttributes(readForeignAttributes());
+            establishStructureTreeElement(readLiteral());
+            painter.drawImage(uri, rect);
+            documentHandler.getContext().resetStructureTreeElement();
+            documentHandler.getContext().resetForeignAttributes();
+        }
+
+        private void handleImageDocument() throws IOException, IFException, SAXException {
+            Rectangle rect = readRectangle();
+            Map<QName, String> foreignAttributes = readForeignAttributes();
+            String structRef = readLiteral();
+            Object obj = replayObjectFragment();
+            if (!(obj instanceof Document)) {
+                throw new IFException("Foreign object didn't produce a DOM document: " + obj, null);
+            }
+            documentHandler.getContext().setForeignAttributes(foreignAttributes);
+            establishStructureTreeElement(structRef);
+            painter.drawImage((Document) obj, rect);
+            documentHandler.getContext().resetStructureTreeElement();
+            documentHandler.getContext().resetForeignAttributes();
+        }
+
+        private void handleExtension() throws IOException, IFException, SAXException {
+            Object obj = replayObjectFragment();
+            if (obj != null) {
+                documentHandler.handleExtensionObject(obj);
+            }
+        }
+
+        private void establishStructureTreeElement(String structRef) {
+            if (structRef != null && structRef.length() > 0) {
+                assert structureTreeElements.containsKey(structRef);
+                StructureTreeElement element = structureTreeElements.get(structRef);
+                if (element != null) {
+                    documentHandler.getContext().setStructureTreeElement(element);
+                }
+            }
+        }
+
+        // ============== XML fragments =============
+
+        /**
+         * Replays the XML fragment at the current position into a content handler created for
+         * the namespace of its root element and returns the object built from it.
+         */
+        private Object replayObjectFragment() throws IOException, SAXException {
+            String uri = readSymbol();
+            ContentHandlerFactoryRegistry registry = userAgent.getContentHandlerFactoryRegistry();
+            ContentHandlerFactory factory = registry.getFactory(uri);
+            if (factory == null) {
+                DOMImplementation domImplementation
+                        = userAgent.getElementMappingRegistry().getDOMImplementationForNamespace(uri);
+                if (domImplementation == null) {
+                    domImplementation = ElementMapping.getDefaultDOMImplementation();
+                }
+                factory = new DOMBuilderContentHandlerFactory(uri, domImplementation);
+            }
+            ContentHandler handler = factory.createContentHandler();
+            replayEvents(handler);
+            if (handler instanceof ContentHandlerFactory.ObjectSource) {
+                return ((ContentHandlerFactory.ObjectSource) handler).getObject();
+            } else {
+                return null;
+            }
+        }
+
+        private void replayFragment(ContentHandler handler) throws IOException, SAXException {
+            readSymbol(); //root namespace, only needed for object fragments
+            replayEvents(handler);
+        }
+
+        private void replayEvents(ContentHandler handler) throws IOException, SAXException {
+            handler.startDocument();
+            while (true) {
+                int event = readUnsigned();
+                switch (event) {
+                case EV_END:
+                    handler.endDocument();
+                    return;
+                case EV_START_PREFIX_MAPPING:
+                    String prefix = readSymbol();
+                    handler.startPrefixMapping(prefix, readSymbol());
+                    break;
+                case EV_END_PREFIX_MAPPING:
+                    handler.endPrefixMapping(readSymbol());
+                    break;
+                case EV_START_ELEMENT:
+                    String uri = readSymbol();
+                    String localName = readSymbol();
+                    String qName = readSymbol();
+                    AttributesImpl atts = new AttributesImpl();
+                    for (int i = 0, c = readUnsigned(); i < c; i++) {
+                        String attUri = readSymbol();
+                        String attLocalName = readSymbol();
+                        String attQName = readSymbol();
+                        String type = readSymbol();
+                        atts.addAttribute(attUri, attLocalName, attQName, type, readLiteral());
+                    }
+                    handler.startElement(uri, localName, qName, atts);
+                    break;
+                case EV_END_ELEMENT:
+                    String endUri = readSymbol();
+                    String endLocalName = readSymbol();
+                    handler.endElement(endUri, endLocalName, readSymbol());
+                    break;
+                case EV_CHARACTERS:
+                    char[] chars = readLiteral().toCharArray();
+                    handler.characters(chars, 0, chars.length);
+                    break;
+                default:
+                    throw new IOException("Unknown XML fragment event: " + event);
+                }
+            }
+        }
+
+        /** Feeds structure tree events to the structure tree event handler of the user agent. */
+        private class StructureTreeHandler extends DefaultHandler {
+
+            private final StructureTreeEventHandler structureTreeEventHandler;
+            private final boolean pageSequence;
+            private final Locale pageSequenceLanguage;
+
+            StructureTreeHandler(StructureTreeEventHandler structureTreeEventHandler,
+                    boolean pageSequence, Locale pageSequenceLanguage) {
+                this.structureTreeEventHandler = structureTreeEventHandler;
+                this.pageSequence = pageSequence;
+                this.pageSequenceLanguage = pageSequenceLanguage;
+            }
+
+            @Override
+            public void startElement(String uri, String localName, String qName,
+                    Attributes attributes) throws SAXException {
+                if (EL_STRUCTURE_TREE.equals(localName)) {
+                    if (pageSequence) {
+                        structureTreeEventHandler.startPageSequence(pageSequenceLanguage,
+                                attributes.getValue("type"));
+                    }
+                    return;
+                }
+                if (localName.equals("marked-content")) {
+                    localName = "#PCDATA";
+                }
+                StructureTreeElement parent = null;
+                String structRef = attributes.getValue(InternalElementMapping.URI,
+                        InternalElementMapping.STRUCT_REF);
+                if (structRef != null && structRef.length() > 0) {
+                    parent = structureTreeElements.get(structRef);
+                }
+                String structID = attributes.getValue(InternalElementMapping.URI,
+                        InternalElementMapping.STRUCT_ID);
+                if (structID == null) {
+                    structureTreeEventHandler.startNode(localName, attributes, parent);
+                } else if (localName.equals("external-graphic")
+                        || localName.equals("instream-foreign-object")) {
+                    structureTreeElements.put(structID,
+                            structureTreeEventHandler.startImageNode(localName, attributes, parent));
+                } else {
+                    structureTreeElements.put(structID,
+                            structureTreeEventHandler.startReferencedNode(localName, attributes, parent));
+                }
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) throws SAXException {
+                if (!EL_STRUCTURE_TREE.equals(localName)) {
+                    structureTreeEventHandler.endNode(localName);
+                }
+            }
+        }
+
+        // ============== Record decoding =============
+
+        private void readRecord() throws IOException {
+            int length = readUnsignedFromStream();
+            if (length > buf.length) {
+                buf = new byte[Math.max(length, buf.length * 2)];
+            }
+            int offset = 0;
+            while (offset < length) {
+                int n = in.read(buf, offset, length - offset);
+                if (n < 0) {
+                    throw new EOFException("Truncated record in binary intermediate format stream");
+                }
+                offset += n;
+            }
+            pos = 0;
+            limit = length;
+        }
+
+        private int readUnsignedFromStream() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Truncated record in binary intermediate format stream");
+                }
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= limit) {
+                throw new IOException("Record is shorter than expected");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        private int readUnsigned() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+
+        private int readInt() throws IOException {
+            int value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private double readDouble() throws IOException {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | readByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String readLiteral() throws IOException {
+            int length = readUnsigned();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            if (length > limit - pos) {
+                throw new IOException("Record is shorter than expected");
+            }
+            String s = toString(buf, pos, length);
+            pos += length;
+            return s;
+        }
+
+        private String readSymbol() throws IOException {
+            int index = readUnsigned();
+            if (index == 0) {
+                return null;
+            } else if (index > symbols.size()) {
+                throw new IOException("Undefined string table entry: " + index);
+            }
+            return symbols.get(index - 1);
+        }
+
+        private Rectangle readRectangle() throws IOException {
+            int x = readInt();
+            int y = readInt();
+            int width = readInt();
+            int height = readInt();
+            return new Rectangle(x, y, width, height);
+        }
+
+        private AffineTransform[] readTransforms() throws IOException {
+            AffineTransform[] transforms = new AffineTransform[readUnsigned()];
+            for (int i = 0; i < transforms.length; i++) {
+                int kind = readByte();
+                if (kind == TRANSFORM_TRANSLATE) {
+                    int tx = readInt();
+                    transforms[i] = AffineTransform.getTranslateInstance(tx, readInt());
+                } else {
+                    double[] matrix = new double[6];
+                    for (int j = 0; j < 6; j++) {
+                        matrix[j] = readDouble();
+                    }
+                    transforms[i] = new AffineTransform(matrix);
+                }
+            }
+            return transforms;
+        }
+
+        private int[][] readPositionAdjustments() throws IOException {
+            int mode = readByte();
+            if (mode == DP_DX) {
+                int[] dx = new int[readUnsigned()];
+                for (int i = 0; i < dx.length; i++) {
+                    dx[i] = readInt();
+                }
+                return IFUtil.convertDXToDP(dx);
+            } else if (mode == DP_FULL) {
+                int[][] dp = new int[readUnsigned()][4];
+                for (int[] pa : dp) {
+                    for (int i = 0; i < 4; i++) {
+                        pa[i] = readInt();
+                    }
+                }
+                return dp;
+            } else {
+                return null;
+            }
+        }
+
+        private Color readColor() throws IOException, IFException {
+            String s = readSymbol();
+            if (s == null) {
+                return null;
+            }
+            Color color = colors.get(s);
+            if (color == null) {
+                try {
+                    color = ColorUtil.parseColorString(userAgent, s);
+                } catch (PropertyException pe) {
+                    throw new IFException("Error parsing color: " + s, pe);
+                }
+                colors.put(s, color);
+            }
+            return color;
+        }
+
+        private BorderProps readBorder() throws IOException, IFException {
+            String s = readSymbol();
+            if (s == null) {
+                return null;
+            }
+            BorderProps border = borders.get(s);
+            if (border == null) {
+                border = BorderProps.valueOf(userAgent, s);
+                borders.put(s, border);
+            }
+            return border;
+        }
+
+        private Map<QName, String> readForeignAttributes() throws IOException {
+            int count = readUnsigned();
+            if (count == 0) {
+                return null;
+            }
+            Map<QName, String> foreignAttributes = new HashMap<QName, String>();
+            for (int i = 0; i < count; i++) {
+                String ns = readSymbol();
+                QName qname = new QName(ns, readSymbol());
+                foreignAttributes.put(qname, readLiteral());
+            }
+            return foreignAttributes;
+        }
+
+        private static String toString(byte[] bytes, int offset, int length) {
+            try {
+                return new String(bytes, offset, length, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,1094 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import org.apache.xmlgraphics.image.loader.ImageManager;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
+import org.apache.xmlgraphics.util.QName;
+import org.apache.xmlgraphics.util.XMLizable;
+
+import org.apache.fop.accessibility.StructureTreeEventHandler;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.extensions.InternalElementMapping;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.DefaultRendererConfigurator;
+import org.apache.fop.render.RendererEventProducer;
+import org.apache.fop.render.intermediate.IFRendererConfig.IFRendererConfigParser;
+import org.apache.fop.render.intermediate.IFStructureTreeBuilder.IFStructureTreeElement;
+import org.apache.fop.render.intermediate.extensions.AbstractAction;
+import org.apache.fop.render.intermediate.extensions.Bookmark;
+import org.apache.fop.render.intermediate.extensions.BookmarkTree;
+import org.apache.fop.render.intermediate.extensions.DocumentNavigationExtensionConstants;
+import org.apache.fop.render.intermediate.extensions.Link;
+import org.apache.fop.render.intermediate.extensions.NamedDestination;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+import org.apache.fop.util.ColorUtil;
+import org.apache.fop.util.DOM2SAX;
+import org.apache.fop.util.LanguageTags;
+import org.apache.fop.util.XMLConstants;
+import org.apache.fop.util.XMLUtil;
+
+/**
+ * IFPainter implementation that serializes the intermediate format to a compact binary
+ * encoding (see {@link IFBinaryConstants}) which can be replayed with {@link IFBinaryParser}.
+ * Painting operations are written as binary records; content that is XML by nature
+ * (foreign objects, extension attachments, document navigation and the structure tree) is
+ * embedded as a recorded sequence of SAX events.
+ */
+public class IFBinarySerializer extends AbstractBinaryWritingIFDocumentHandler
+        implements IFBinaryConstants, IFPainter, IFDocumentNavigationHandler {
+
+    private IFDocumentHandler mimicHandler;
+    private int pageSequenceIndex; // used for accessibility
+
+    /** Holds the intermediate format state */
+    private IFState state;
+
+    private String currentID = "";
+
+    private IFStructureTreeBuilder structureTreeBuilder;
+    private int pageNumberEnded;
+
+    private OutputStream out;
+    private final RecordBuffer record = new RecordBuffer();
+    private final Map<String, Integer> symbols = new java.util.HashMap<String, Integer>();
+
+    private Map<String, AbstractAction> incompleteActions = new java.util.HashMap<String, AbstractAction>();
+    private List<AbstractAction> completeActions = new java.util.LinkedList<AbstractAction>();
+
+    /**
+     * Main constructor.
+     * @param context the intermediate format context
+     */
+    public IFBinarySerializer(IFContext context) {
+        super(context);
+    }
+
+    /** {@inheritDoc} */
+    public boolean supportsPagesOutOfOrder() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    public String getMimeType() {
+        return MIME_TYPE_BINARY;
+    }
+
+    /** {@inheritDoc} */
+    public IFDocumentHandlerConfigurator getConfigurator() {
+        if (this.mimicHandler != null) {
+            return getMimickedDocumentHandler().getConfigurator();
+        } else {
+            return new DefaultRendererConfigurator(getUserAgent(), new IFRendererConfigParser());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IFDocumentNavigationHandler getDocumentNavigationHandler() {
+        return this;
+    }
+
+    /**
+     * Tells this serializer to mimic the given document handler (mostly applies to the font set
+     * that is used during layout).
+     * @param targetHandler the document handler to mimic
+     */
+    public void mimicDocumentHandler(IFDocumentHandler targetHandler) {
+        this.mimicHandler = targetHandler;
+    }
+
+    /**
+     * Returns the document handler that is being mimicked by this serializer.
+     * @return the mimicked document handler or null if no such document handler has been set
+     */
+    public IFDocumentHandler getMimickedDocumentHandler() {
+        return this.mimicHandler;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FontInfo getFontInfo() {
+        if (this.mimicHandler != null) {
+            return this.mimicHandler.getFontInfo();
+        } else {
+            return super.getFontInfo();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setFontInfo(FontInfo fontInfo) {
+        if (this.mimicHandler != null) {
+            this.mimicHandler.setFontInfo(fontInfo);
+        } else {
+            super.setFontInfo(fontInfo);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setDefaultFontInfo(FontInfo fontInfo) {
+        if (this.mimicHandler != null) {
+            this.mimicHandler.setDefaultFontInfo(fontInfo);
+        } else {
+            super.setDefaultFontInfo(fontInfo);
+        }
+    }
+
+    @Override
+    public StructureTreeEventHandler getStructureTreeEventHandler() {
+        if (structureTreeBuilder == null) {
+            structureTreeBuilder = new IFStructureTreeBuilder();
+        }
+        return structureTreeBuilder;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocument() throws IFException {
+        super.startDocument();
+        try {
+            this.out = new BufferedOutputStream(this.outputStream);
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeEmptyRecord(OP_DOCUMENT_START);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in startDocument()", ioe);
+        }
+    }
+
+    @Override
+    public void setDocumentLocale(Locale locale) {
+        try {
+            record.reset();
+            record.writeSymbol(LanguageTags.toLanguageTag(locale));
+            writeRecord(OP_LOCALE);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Unable to write the document locale.", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocumentHeader() throws IFException {
+        writeEmptyRecord(OP_HEADER_START, "startDocumentHeader()");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocumentHeader() throws IFException {
+        writeEmptyRecord(OP_HEADER_END, "endDocumentHeader()");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocumentTrailer() throws IFException {
+        writeEmptyRecord(OP_TRAILER_START, "startDocumentTrailer()");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocumentTrailer() throws IFException {
+        writeEmptyRecord(OP_TRAILER_END, "endDocumentTrailer()");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocument() throws IFException {
+        try {
+            writeEmptyRecord(OP_DOCUMENT_END);
+            out.flush();
+            finishDocumentNavigation();
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in endDocument()", ioe);
+        }
+        super.endDocument();
+        this.out = null;
+    }
+
+    /** {@inheritDoc} */
+    public void startPageSequence(String id) throws IFException {
+        try {
+            Locale lang = getContext().getLanguage();
+            String languageTag = (lang != null ? LanguageTags.toLanguageTag(lang) : null);
+            if (getUserAgent().isAccessibilityEnabled()) {
+                assert (structureTreeBuilder != null);
+                //The structure tree precedes the page sequence so the reader can set it up first
+                FragmentRecorder fragment = new FragmentRecorder();
+                structureTreeBuilder.replayEventsForPageSequence(fragment, pageSequenceIndex++);
+                record.reset();
+                record.writeSymbol(languageTag);
+                fragment.writeTo(record);
+                writeRecord(OP_STRUCTURE_TREE);
+            }
+            record.reset();
+            record.writeLiteral(id);
+            record.writeSymbol(languageTag);
+            record.writeForeignAttributes(getContext().getForeignAttributes());
+            writeRecord(OP_PAGE_SEQUENCE_START);
+        } catch (SAXException e) {
+            throw new IFException("SAX error in startPageSequence()", e);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in startPageSequence()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endPageSequence() throws IFException {
+        writeEmptyRecord(OP_PAGE_SEQUENCE_END, "endPageSequence()");
+    }
+
+    /** {@inheritDoc} */
+    public void startPage(int index, String name, String pageMasterName, Dimension size)
+            throws IFException {
+        try {
+            record.reset();
+            record.writeUnsigned(index);
+            record.writeLiteral(name);
+            //fox:external-document doesn't have a page-master
+            record.writeSymbol(pageMasterName);
+            record.writeInt(size.width);
+            record.writeInt(size.height);
+            record.writeForeignAttributes(getContext().getForeignAttributes());
+            getContext().setPageIndex(index);
+            writeRecord(OP_PAGE_START);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in startPage()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPageHeader() throws IFException {
+        try {
+            writeEmptyRecord(OP_PAGE_HEADER_START);
+            if (this.getUserAgent().isAccessibilityEnabled()) {
+                FragmentRecorder fragment = new FragmentRecorder();
+                structureTreeBuilder.replayEventsForRetrievedMarkers(fragment);
+                if (!fragment.isEmpty()) {
+                    record.reset();
+                    fragment.writeTo(record);
+                    writeRecord(OP_RETRIEVED_MARKERS);
+                }
+            }
+        } catch (SAXException e) {
+            throw new IFException("SAX error in startPageHeader()", e);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in startPageHeader()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPageHeader() throws IFException {
+        writeEmptyRecord(OP_PAGE_HEADER_END, "endPageHeader()");
+    }
+
+    /** {@inheritDoc} */
+    public IFPainter startPageContent() throws IFException {
+        writeEmptyRecord(OP_PAGE_CONTENT_START, "startPageContent()");
+        this.state = IFState.create();
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    public void endPageContent() throws IFException {
+        this.state = null;
+        currentID = "";
+        writeEmptyRecord(OP_PAGE_CONTENT_END, "endPageContent()");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPageTrailer() throws IFException {
+        writeEmptyRecord(OP_PAGE_TRAILER_START, "startPageTrailer()");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPageTrailer() throws IFException {
+        commitNavigation();
+        writeEmptyRecord(OP_PAGE_TRAILER_END, "endPageTrailer()");
+    }
+
+    /** {@inheritDoc} */
+    public void endPage() throws IFException {
+        writeEmptyRecord(OP_PAGE_END, "endPage()");
+        getContext().setPageIndex(-1);
+        if (mimicHandler != null) {
+            pageNumberEnded++;
+            FOUserAgent userAgent = mimicHandler.getContext().getUserAgent();
+            RendererEventProducer.Provider.get(userAgent.getEventBroadcaster()).endPage(this, pageNumberEnded);
+        }
+    }
+
+    //---=== IFPainter ===---
+
+    /** {@inheritDoc} */
+    public void startViewport(AffineTransform transform, Dimension size, Rectangle clipRect)
+            throws IFException {
+        startViewport(transform != null ? new AffineTransform[] {transform} : null, size, clipRect);
+    }
+
+    /** {@inheritDoc} */
+    public void startViewport(AffineTransform[] transforms, Dimension size, Rectangle clipRect)
+            throws IFException {
+        try {
+            record.reset();
+            record.writeTransforms(transforms);
+            record.writeInt(size.width);
+            record.writeInt(size.height);
+            if (clipRect != null) {
+                record.write(1);
+                record.writeRectangle(clipRect);
+            } else {
+                record.write(0);
+            }
+            String regionType = null;
+            if (getUserAgent().isAccessibilityEnabled()) {
+                regionType = getContext().getRegionType();
+            }
+            record.writeSymbol(regionType);
+            writeRecord(OP_VIEWPORT_START);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in startViewport()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endViewport() throws IFException {
+        writeEmptyRecord(OP_VIEWPORT_END, "endViewport()");
+    }
+
+    /** {@inheritDoc} */
+    public void startGroup(AffineTransform[] transforms, String layer) throws IFException {
+        try {
+            record.reset();
+            record.writeTransforms(transforms);
+            record.writeSymbol(layer != null && layer.length() > 0 ? layer : null);
+            writeRecord(OP_GROUP_START);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in startGroup()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void startGroup(AffineTransform transform, String layer) throws IFException {
+        startGroup(transform != null ? new AffineTransform[] {transform} : null, layer);
+    }
+
+    /** {@inheritDoc} */
+    public void endGroup() throws IFException {
+        writeEmptyRecord(OP_GROUP_END, "endGroup()");
+    }
+
+    /** {@inheritDoc} */
+    public void drawImage(String uri, Rectangle rect) throws IFException {
+        try {
+            addID();
+            record.reset();
+            record.writeSymbol(uri);
+            record.writeRectangle(rect);
+            record.writeForeignAttributes(getContext().getForeignAttributes());
+            record.writeLiteral(getStructureReference());
+            writeRecord(OP_IMAGE);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in drawImage()", ioe);
+        } finally {
+            ImageSessionContext session = getUserAgent().getImageSessionContext();
+            ImageManager imageManager = getUserAgent().getImageManager();
+            imageManager.closeImage(uri, session);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void drawImage(Document doc, Rectangle rect) throws IFException {
+        try {
+            addID();
+            FragmentRecorder fragment = new FragmentRecorder();
+            new DOM2SAX(fragment).writeDocument(doc, true);
+            record.reset();
+            record.writeRectangle(rect);
+            record.writeForeignAttributes(getContext().getForeignAttributes());
+            record.writeLiteral(getStructureReference());
+            fragment.writeTo(record);
+            writeRecord(OP_IMAGE_DOCUMENT);
+        } catch (SAXException e) {
+            throw new IFException("SAX error in drawImage()", e);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in drawImage()", ioe);
+        }
+    }
+
+    private static String toString(Paint paint) {
+        if (paint instanceof Color) {
+            return ColorUtil.colorToString((Color)paint);
+        } else {
+            throw new UnsupportedOperationException("Paint not supported: " + paint);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void clipRect(Rectangle rect) throws IFException {
+        try {
+            record.reset();
+            record.writeRectangle(rect);
+            writeRecord(OP_CLIP_RECT);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in clipRect()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void clipBackground(Rectangle rect, BorderProps bpsBefore, BorderProps bpsAfter,
+            BorderProps bpsStart, BorderProps bpsEnd) throws IFException {
+        try {
+            record.reset();
+            record.writeRectangle(rect);
+            record.writeBorders(bpsBefore, bpsAfter, bpsStart, bpsEnd);
+            writeRecord(OP_CLIP_BACKGROUND);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in clipBackground()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void fillRect(Rectangle rect, Paint fill) throws IFException {
+        if (fill == null) {
+            return;
+        }
+        try {
+            record.reset();
+            record.writeRectangle(rect);
+            record.writeSymbol(toString(fill));
+            writeRecord(OP_RECT);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in fillRect()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void drawBorderRect(Rectangle rect, BorderProps top, BorderProps bottom,
+            BorderProps left, BorderProps right, Color innerBackgroundColor) throws IFException {
+        if (top == null && bottom == null && left == null && right == null) {
+            return;
+        }
+        try {
+            record.reset();
+            record.writeRectangle(rect);
+            record.writeBorders(top, bottom, left, right);
+            record.writeSymbol(innerBackgroundColor != null
+                    ? ColorUtil.colorToString(innerBackgroundColor) : null);
+            writeRecord(OP_BORDER_RECT);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in drawBorderRect()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void drawLine(Point start, Point end, int width, Color color, RuleStyle style)
+            throws IFException {
+        try {
+            addID();
+            record.reset();
+            record.writeInt(start.x);
+            record.writeInt(start.y);
+            record.writeInt(end.x);
+            record.writeInt(end.y);
+            record.writeInt(width);
+            record.writeSymbol(ColorUtil.colorToString(color));
+            record.writeSymbol(style.getName());
+            writeRecord(OP_LINE);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in drawLine()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void drawText(int x, int y, int letterSpacing, int wordSpacing,
+                         int[][] dp, String text) throws IFException {
+        drawText(x, y, letterSpacing, wordSpacing, dp, text, false);
+    }
+
+    /** {@inheritDoc} */
+    public void drawText(int x, int y, int letterSpacing, int wordSpacing,
+            int[][] dp, String text, boolean nextIsSpace) throws IFException {
+        try {
+            addID();
+            int flags = 0;
+            if (nextIsSpace) {
+                flags |= TEXT_NEXT_IS_SPACE;
+            }
+            if (getContext().isHyphenated()) {
+                flags |= TEXT_HYPHENATED;
+            }
+            if (letterSpacing != 0) {
+                flags |= TEXT_LETTER_SPACING;
+            }
+            if (wordSpacing != 0) {
+                flags |= TEXT_WORD_SPACING;
+            }
+            record.reset();
+            record.writeInt(x);
+            record.writeInt(y);
+            record.write(flags);
+            if (letterSpacing != 0) {
+                record.writeInt(letterSpacing);
+            }
+            if (wordSpacing != 0) {
+                record.writeInt(wordSpacing);
+            }
+            record.writePositionAdjustments(dp);
+            record.writeLiteral(getStructureReference());
+            record.writeLiteral(text);
+            writeRecord(OP_TEXT);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in drawText()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void setFont(String family, String style, Integer weight, String variant, Integer size,
+            Color color) throws IFException {
+        int flags = 0;
+        if (family != null && !family.equals(state.getFontFamily())) {
+            state.setFontFamily(family);
+            flags |= FONT_FAMILY;
+        }
+        if (style != null && !style.equals(state.getFontStyle())) {
+            state.setFontStyle(style);
+            flags |= FONT_STYLE;
+        }
+        if (weight != null && weight != state.getFontWeight()) {
+            state.setFontWeight(weight);
+            flags |= FONT_WEIGHT;
+        }
+        if (variant != null && !variant.equals(state.getFontVariant())) {
+            state.setFontVariant(variant);
+            flags |= FONT_VARIANT;
+        }
+        if (size != null && size != state.getFontSize()) {
+            state.setFontSize(size);
+            flags |= FONT_SIZE;
+        }
+        if (color != null && !org.apache.xmlgraphics.java2d.color.ColorUtil.isSameColor(
+                color, state.getTextColor())) {
+            state.setTextColor(color);
+            flags |= FONT_COLOR;
+        }
+        if (flags == 0) {
+            return;
+        }
+        try {
+            record.reset();
+            record.write(flags);
+            if ((flags & FONT_FAMILY) != 0) {
+                record.writeSymbol(family);
+            }
+            if ((flags & FONT_STYLE) != 0) {
+                record.writeSymbol(style);
+            }
+            if ((flags & FONT_WEIGHT) != 0) {
+                record.writeInt(weight);
+            }
+            if ((flags & FONT_VARIANT) != 0) {
+                record.writeSymbol(variant);
+            }
+            if ((flags & FONT_SIZE) != 0) {
+                record.writeInt(size);
+            }
+            if ((flags & FONT_COLOR) != 0) {
+                record.writeSymbol(toString(color));
+            }
+            writeRecord(OP_FONT);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in setFont()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void handleExtensionObject(Object extension) throws IFException {
+        if (extension instanceof XMLizable) {
+            writeXMLizable(OP_EXTENSION, (XMLizable) extension);
+        } else {
+            throw new UnsupportedOperationException(
+                    "Extension must implement XMLizable: "
+                            + extension + " (" + extension.getClass().getName() + ")");
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean isBackgroundRequired(BorderProps bpsTop, BorderProps bpsBottom,
+            BorderProps bpsLeft, BorderProps bpsRight) {
+        return true;
+    }
+
+    private String getStructureReference() {
+        IFStructureTreeElement structureTreeElement
+                = (IFStructureTreeElement) getContext().getStructureTreeElement();
+        return (structureTreeElement != null ? structureTreeElement.getId() : null);
+    }
+
+    private void addID() throws IOException {
+        String id = getContext().getID();
+        if (!currentID.equals(id)) {
+            record.reset();
+            record.writeLiteral(id);
+            writeRecord(OP_ID);
+            currentID = id;
+        }
+    }
+
+    //---=== IFDocumentNavigationHandler ===---
+
+    private void noteAction(AbstractAction action) {
+        if (action == null) {
+            throw new NullPointerException("action must not be null");
+        }
+        if (!action.isComplete()) {
+            assert action.hasID();
+            incompleteActions.put(action.getID(), action);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void renderNamedDestination(NamedDestination destination) throws IFException {
+        noteAction(destination.getAction());
+
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "name", "name", XMLConstants.CDATA, destination.getName());
+        FragmentRecorder fragment = new FragmentRecorder();
+        try {
+            fragment.startElement(DocumentNavigationExtensionConstants.NAMED_DESTINATION, atts);
+            destination.getAction().toSAX(fragment);
+            fragment.endElement(DocumentNavigationExtensionConstants.NAMED_DESTINATION);
+        } catch (SAXException e) {
+            throw new IFException("SAX error serializing named destination", e);
+        }
+        writeFragment(OP_NAVIGATION, fragment);
+    }
+
+    /** {@inheritDoc} */
+    public void renderBookmarkTree(BookmarkTree tree) throws IFException {
+        FragmentRecorder fragment = new FragmentRecorder();
+        try {
+            fragment.startElement(DocumentNavigationExtensionConstants.BOOKMARK_TREE, new AttributesImpl());
+            for (Object o : tree.getBookmarks()) {
+                Bookmark b = (Bookmark) o;
+                if (b.getAction() != null) {
+                    serializeBookmark(fragment, b);
+                }
+            }
+            fragment.endElement(DocumentNavigationExtensionConstants.BOOKMARK_TREE);
+        } catch (SAXException e) {
+            throw new IFException("SAX error serializing bookmark tree", e);
+        }
+        writeFragment(OP_NAVIGATION, fragment);
+    }
+
+    private void serializeBookmark(FragmentRecorder fragment, Bookmark bookmark) throws SAXException {
+        noteAction(bookmark.getAction());
+
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "title", "title", XMLUtil.CDATA, bookmark.getTitle());
+        atts.addAttribute("", "starting-state", "starting-state",
+                XMLUtil.CDATA, bookmark.isShown() ? "show" : "hide");
+        fragment.startElement(DocumentNavigationExtensionConstants.BOOKMARK, atts);
+        bookmark.getAction().toSAX(fragment);
+        for (Object o : bookmark.getChildBookmarks()) {
+            Bookmark b = (Bookmark) o;
+            if (b.getAction() != null) {
+                serializeBookmark(fragment, b);
+            }
+        }
+        fragment.endElement(DocumentNavigationExtensionConstants.BOOKMARK);
+    }
+
+    /** {@inheritDoc} */
+    public void renderLink(Link link) throws IFException {
+        noteAction(link.getAction());
+
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "rect", "rect",
+                XMLConstants.CDATA, IFUtil.toString(link.getTargetRect()));
+        if (getUserAgent().isAccessibilityEnabled()) {
+            atts.addAttribute(InternalElementMapping.URI,
+                    InternalElementMapping.STRUCT_REF,
+                    InternalElementMapping.STANDARD_PREFIX + ":" + InternalElementMapping.STRUCT_REF,
+                    XMLConstants.CDATA,
+                    ((IFStructureTreeElement) link.getAction().getStructureTreeElement()).getId());
+        }
+        FragmentRecorder fragment = new FragmentRecorder();
+        try {
+            fragment.startElement(DocumentNavigationExtensionConstants.LINK, atts);
+            link.getAction().toSAX(fragment);
+            fragment.endElement(DocumentNavigationExtensionConstants.LINK);
+        } catch (SAXException e) {
+            throw new IFException("SAX error serializing link", e);
+        }
+        writeFragment(OP_NAVIGATION, fragment);
+    }
+
+    /** {@inheritDoc} */
+    public void addResolvedAction(AbstractAction action) throws IFException {
+        assert action.isComplete();
+        assert action.hasID();
+        AbstractAction noted = incompleteActions.remove(action.getID());
+        if (noted != null) {
+            completeActions.add(action);
+        } else {
+            //ignore as it was already complete when it was first used.
+        }
+    }
+
+    /** {@inheritDoc} */
+    public int getPageIndex() {
+        return -1;
+    }
+
+    private void commitNavigation() throws IFException {
+        Iterator<AbstractAction> iter = this.completeActions.iterator();
+        while (iter.hasNext()) {
+            AbstractAction action = iter.next();
+            iter.remove();
+            writeXMLizable(OP_NAVIGATION, action);
+        }
+        assert this.completeActions.size() == 0;
+    }
+
+    private void finishDocumentNavigation() {
+        assert this.incompleteActions.size() == 0 : "Still holding incomplete actions!";
+    }
+
+    //---=== Record output ===---
+
+    private void writeXMLizable(int opcode, XMLizable object) throws IFException {
+        FragmentRecorder fragment = new FragmentRecorder();
+        try {
+            object.toSAX(fragment);
+        } catch (SAXException e) {
+            throw new IFException("SAX error serializing object", e);
+        }
+        writeFragment(opcode, fragment);
+    }
+
+    private void writeFragment(int opcode, FragmentRecorder fragment) throws IFException {
+        try {
+            record.reset();
+            fragment.writeTo(record);
+            writeRecord(opcode);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error serializing XML fragment", ioe);
+        }
+    }
+
+    private void writeEmptyRecord(int opcode, String method) throws IFException {
+        try {
+            writeEmptyRecord(opcode);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error in " + method, ioe);
+        }
+    }
+
+    private void writeEmptyRecord(int opcode) throws IOException {
+        out.write(opcode);
+        out.write(0);
+    }
+
+    /** Writes the content of the record buffer as a record with the given opcode. */
+    private void writeRecord(int opcode) throws IOException {
+        out.write(opcode);
+        writeUnsigned(out, record.size());
+        record.writeTo(out);
+    }
+
+    private static void writeUnsigned(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static byte[] toUTF8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Buffer for the payload of a record, with the primitive encodings of the binary format.
+     */
+    private class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer() {
+            super(256);
+        }
+
+        void writeUnsigned(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        /** Writes a signed value as a zig-zag encoded variable-length integer. */
+        void writeInt(int value) {
+            writeUnsigned((value << 1) ^ (value >> 31));
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (bits >>> shift));
+            }
+        }
+
+        /** Writes a string that is not expected to repeat (length + 1, 0 meaning null). */
+        void writeLiteral(String s) {
+            if (s == null) {
+                writeUnsigned(0);
+            } else {
+                byte[] bytes = toUTF8(s);
+                writeUnsigned(bytes.length + 1);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        /**
+         * Writes a reference to the string table, defining the string first through a
+         * symbol record if it hasn't been used before.
+         */
+        void writeSymbol(String s) throws IOException {
+            if (s == null) {
+                writeUnsigned(0);
+                return;
+            }
+            Integer index = symbols.get(s);
+            if (index == null) {
+                index = symbols.size() + 1;
+                symbols.put(s, index);
+                byte[] bytes = toUTF8(s);
+                out.write(OP_SYMBOL);
+                IFBinarySerializer.writeUnsigned(out, bytes.length);
+                out.write(bytes);
+            }
+            writeUnsigned(index);
+        }
+
+        void writeRectangle(Rectangle rect) {
+            writeInt(rect.x);
+            writeInt(rect.y);
+            writeInt(rect.width);
+            writeInt(rect.height);
+        }
+
+        void writeTransforms(AffineTransform[] transforms) {
+            if (transforms == null) {
+                writeUnsigned(0);
+                return;
+            }
+            writeUnsigned(transforms.length);
+            double[] matrix = new double[6];
+            for (AffineTransform transform : transforms) {
+                transform.getMatrix(matrix);
+                if (matrix[0] == 1 && matrix[3] == 1 && matrix[1] == 0 && matrix[2] == 0
+                        && matrix[4] == (int) matrix[4] && matrix[5] == (int) matrix[5]) {
+                    write(TRANSFORM_TRANSLATE);
+                    writeInt((int) matrix[4]);
+                    writeInt((int) matrix[5]);
+                } else {
+                    write(TRANSFORM_MATRIX);
+                    for (int i = 0; i < 6; i++) {
+                        writeDouble(matrix[i]);
+                    }
+                }
+            }
+        }
+
+        void writePositionAdjustments(int[][] dp) {
+            if (dp == null || IFUtil.isDPIdentity(dp)) {
+                write(DP_NONE);
+            } else if (IFUtil.isDPOnlyDX(dp)) {
+                int[] dx = IFUtil.convertDPToDX(dp);
+                write(DP_DX);
+                writeUnsigned(dx.length);
+                for (int value : dx) {
+                    writeInt(value);
+                }
+            } else {
+                write(DP_FULL);
+                writeUnsigned(dp.length);
+                for (int[] pa : dp) {
+                    for (int i = 0; i < 4; i++) {
+                        writeInt(pa != null ? pa[i] : 0);
+                    }
+                }
+            }
+        }
+
+        void writeBorders(BorderProps before, BorderProps after, BorderProps start, BorderProps end)
+                throws IOException {
+            writeSymbol(before != null ? before.toString() : null);
+            writeSymbol(after != null ? after.toString() : null);
+            writeSymbol(start != null ? start.toString() : null);
+            writeSymbol(end != null ? end.toString() : null);
+        }
+
+        void writeForeignAttributes(Map foreignAttributes) throws IOException {
+            if (foreignAttributes == null || foreignAttributes.isEmpty()) {
+                writeUnsigned(0);
+                return;
+            }
+            writeUnsigned(foreignAttributes.size());
+            for (Object o : foreignAttributes.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                QName qName = (QName) entry.getKey();
+                writeSymbol(qName.getNamespaceURI());
+                writeSymbol(qName.getQName());
+                writeLiteral(entry.getValue().toString());
+            }
+        }
+    }
+
+    /**
+     * Records SAX events as a binary XML fragment. The fragment is buffered separately so the
+     * namespace of its root element can be written ahead of the events.
+     */
+    private class FragmentRecorder extends DefaultHandler {
+
+        private final RecordBuffer events = new RecordBuffer();
+        private String rootNamespace;
+
+        boolean isEmpty() {
+            return events.size() == 0;
+        }
+
+        void writeTo(RecordBuffer target) throws IOException {
+            target.writeSymbol(rootNamespace);
+            events.writeTo(target);
+            target.writeUnsigned(EV_END);
+        }
+
+        void startElement(QName name, Attributes atts) throws SAXException {
+            startElement(name.getNamespaceURI(), name.getLocalName(), name.getQName(), atts);
+        }
+
+        void endElement(QName name) throws SAXException {
+            endElement(name.getNamespaceURI(), name.getLocalName(), name.getQName());
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            try {
+                events.writeUnsigned(EV_START_PREFIX_MAPPING);
+                events.writeSymbol(prefix);
+                events.writeSymbol(uri);
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            try {
+                events.writeUnsigned(EV_END_PREFIX_MAPPING);
+                events.writeSymbol(prefix);
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+                throws SAXException {
+            if (rootNamespace == null) {
+                rootNamespace = (uri != null ? uri : "");
+            }
+            try {
+                events.writeUnsigned(EV_START_ELEMENT);
+                events.writeSymbol(uri);
+                events.writeSymbol(localName);
+                events.writeSymbol(qName);
+                int count = atts.getLength();
+                events.writeUnsigned(count);
+                for (int i = 0; i < count; i++) {
+                    events.writeSymbol(atts.getURI(i));
+                    events.writeSymbol(atts.getLocalName(i));
+                    events.writeSymbol(atts.getQName(i));
+                    events.writeSymbol(atts.getType(i));
+                    events.writeLiteral(atts.getValue(i));
+                }
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            try {
+                events.writeUnsigned(EV_END_ELEMENT);
+                events.writeSymbol(uri);
+                events.writeSymbol(localName);
+                events.writeSymbol(qName);
+            } catch (IOException ioe) {
+                throw new SAXException(ioe);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.writeUnsigned(EV_CHARACTERS);
+            events.writeLiteral(new String(ch, start, length));
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+    }
+}
@@ -65,6 +65,7 @@ import org.apache.fop.area.OffDocumentExtensionAttachment;
 import org.apache.fop.area.OffDocumentItem;
 import org.apache.fop.area.PageSequence;
 import org.apache.fop.area.PageViewport;
+import org.apache.fop.area.RegionReference;
 import org.apache.fop.area.RegionViewport;
 import org.apache.fop.area.Trait;
 import org.apache.fop.area.inline.AbstractTextArea;
@@ -739,6 +740,25 @@ public class IFRenderer extends AbstractPathOrientedRenderer {
         viewportDimensionStack.pop();
     }
 
+    /** {@inheritDoc} */
+    protected void renderRegion(RegionReference region) {
+        String key = (String) region.getTrait(Trait.REUSABLE_CONTENT);
+        if (key == null || !(painter instanceof IFReusableContentPainter)) {
+            super.renderRegion(region);
+            return;
+        }
+        //the same areas are on other pages, paint them once and let the painter reuse them
+        IFReusableContentPainter reusableContentPainter = (IFReusableContentPainter) painter;
+        try {
+            if (reusableContentPainter.startReusableContent(key)) {
+                super.renderRegion(region);
+                reusableContentPainter.endReusableContent();
+            }
+        } catch (IFException e) {
+            handleIFException(e);
+        }
+    }
+
     /** {@inheritDoc} */
     protected void renderBlockViewport(BlockViewport bv, List children) {
         //Essentially the same code as in the super class but optimized for the IF
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+/**
+ * Optional interface for {@link IFPainter} implementations that can record content once and
+ * show the recording again wherever the same content recurs, for example as a PDF Form
+ * XObject. The {@link IFRenderer} uses it for page-invariant static-content that is repeated
+ * on several pages. Painters that don't implement it simply get the content painted each time.
+ */
+public interface IFReusableContentPainter {
+
+    /**
+     * Starts a piece of reusable content. If content has already been recorded for the given
+     * key, it is shown at the current position and false is returned; the content must then
+     * not be painted again. Otherwise true is returned, and the content painted until
+     * {@link #endReusableContent()} is recorded for the key and shown.
+     * @param key the key identifying the content within the document
+     * @return true if the content must be painted, false if a recording has been shown
+     * @throws IFException if an error occurs while handling this event
+     */
+    boolean startReusableContent(String key) throws IFException;
+
+    /**
+     * Ends the reusable content started with {@link #startReusableContent(String)}. Only
+     * called if that method returned true.
+     * @throws IFException if an error occurs while handling this event
+     */
+    void endReusableContent() throws IFException;
+}
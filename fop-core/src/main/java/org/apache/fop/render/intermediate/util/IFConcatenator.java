@@ -20,12 +20,15 @@
 package org.apache.fop.render.intermediate.util;
 
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
 
 import org.apache.xmlgraphics.xmp.Metadata;
 
+import org.apache.fop.render.intermediate.IFBinaryParser;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFDocumentNavigationHandler;
 import org.apache.fop.render.intermediate.IFException;
@@ -107,6 +110,21 @@ public class IFConcatenator {
                 getTargetHandler().getContext().getUserAgent());
     }
 
+    /**
+     * Appends another document in the binary intermediate format to the current output file.
+     * All document-level content (i.e. the document header and trailer) is ignored. This method
+     * shall not be called after {@link #finish()} has been called.
+     * @param in the input stream to read the binary intermediate format from (not closed)
+     * @throws IOException if an I/O error occurs while reading the document
+     * @throws IFException if an IF-related error occurs
+     * @see org.apache.fop.render.intermediate.IFBinarySerializer
+     */
+    public void appendBinaryDocument(InputStream in) throws IOException, IFException {
+        IFBinaryParser parser = new IFBinaryParser();
+        parser.parse(in, new IFPageSequenceFilter(getTargetHandler()),
+                getTargetHandler().getContext().getUserAgent());
+    }
+
     private class IFPageSequenceFilter extends IFDocumentHandlerProxy {
 
         private boolean inPageSequence;
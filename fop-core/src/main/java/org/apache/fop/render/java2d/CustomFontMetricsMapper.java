@@ -181,6 +181,12 @@ public class CustomFontMetricsMapper extends Typeface implements FontMetricsMapp
         return typeface.getKerningInfo();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public final int getKerning(int ch1, int ch2) {
+        return typeface.getKerning(ch1, ch2);
+    }
+
     /** {@inheritDoc} */
     public final int getWidth(final int i, final int size) {
         return typeface.getWidth(i, size);
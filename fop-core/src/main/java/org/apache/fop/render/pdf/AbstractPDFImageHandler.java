@@ -24,7 +24,9 @@ import java.io.IOException;
 
 import org.apache.xmlgraphics.image.loader.Image;
 
+import org.apache.fop.pdf.PDFDocument;
 import org.apache.fop.pdf.PDFImage;
+import org.apache.fop.pdf.PDFImageXObject;
 import org.apache.fop.pdf.PDFXObject;
 import org.apache.fop.render.ImageHandler;
 import org.apache.fop.render.RenderingContext;
@@ -42,9 +44,7 @@ abstract class AbstractPDFImageHandler implements ImageHandler {
         assert context instanceof PDFRenderingContext;
         PDFRenderingContext pdfContext = (PDFRenderingContext)context;
         PDFContentGenerator generator = pdfContext.getGenerator();
-        PDFImage pdfimage = createPDFImage(image, image.getInfo().getOriginalURI());
-        PDFXObject xobj = generator.getDocument().addImage(
-                generator.getResourceContext(), pdfimage);
+        PDFXObject xobj = getXObject(generator, image);
 
         float x = (float)pos.getX() / 1000f;
         float y = (float)pos.getY() / 1000f;
@@ -58,6 +58,26 @@ abstract class AbstractPDFImageHandler implements ImageHandler {
         }
     }
 
+    private PDFXObject getXObject(PDFContentGenerator generator, Image image) throws IOException {
+        PDFDocument doc = generator.getDocument();
+        String uri = image.getInfo().getOriginalURI();
+        PDFXObject xobj = doc.getXObject(uri);
+        if (xobj instanceof PDFImageXObject) {
+            if (generator.getResourceContext() != null) {
+                generator.getResourceContext().addXObject(xobj);
+            }
+            return xobj;
+        }
+        //images with the same content share one XObject, whatever their URIs
+        String contentKey = ImageContentKey.createKey(image, getClass());
+        PDFImage pdfimage = createPDFImage(image, contentKey != null ? contentKey : uri);
+        xobj = doc.addImage(generator.getResourceContext(), pdfimage);
+        if (contentKey != null && uri != null) {
+            doc.addXObjectKey(uri, xobj);
+        }
+        return xobj;
+    }
+
     /**
      * Creates a PDF image object out of the given image.
      *
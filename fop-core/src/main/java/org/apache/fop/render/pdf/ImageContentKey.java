@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pdf;
+
+import java.awt.Color;
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PackedColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.xmlgraphics.image.loader.Image;
+import org.apache.xmlgraphics.image.loader.ImageSize;
+import org.apache.xmlgraphics.image.loader.impl.ImageBuffered;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawCCITTFax;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawJPEG;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawPNG;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawStream;
+import org.apache.xmlgraphics.image.loader.impl.ImageRendered;
+
+import org.apache.fop.pdf.PDFImageXObject;
+
+/**
+ * Creates XObject keys from a hash of the image content, so that an image found under
+ * different URIs (or generated more than once) is only embedded once per document, and its
+ * encoded data can be shared with other documents through the
+ * {@link org.apache.fop.pdf.EncodedStreamCache}. Everything the PDF image adapters base
+ * their output on is hashed: the handler, the image type and size, the color space and ICC
+ * profile, the type-specific properties and the image data.
+ */
+final class ImageContentKey {
+
+    private final MessageDigest digest;
+
+    private ImageContentKey(MessageDigest digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Creates the content key of an image. If the data of a raw image can only be read once,
+     * it is buffered in memory first, so it can still be embedded afterwards.
+     * @param image the image
+     * @param handler the image handler that creates the PDF image
+     * @return the key, or null if the image type is not supported
+     * @throws IOException if the image data cannot be read
+     */
+    static String createKey(Image image, Class<?> handler) throws IOException {
+        Class<?> imageClass = image.getClass();
+        if (imageClass != ImageRawJPEG.class && imageClass != ImageRawPNG.class
+                && imageClass != ImageRawCCITTFax.class && imageClass != ImageRendered.class
+                && imageClass != ImageBuffered.class) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        ImageContentKey key = new ImageContentKey(digest);
+        key.update(handler.getName());
+        key.update(imageClass.getName());
+        key.update(image.getFlavor().toString());
+        ImageSize size = image.getSize();
+        key.update(size.getWidthPx());
+        key.update(size.getHeightPx());
+        key.update(image.getColorSpace());
+        key.update(image.getICCProfile());
+        if (image instanceof ImageRawStream) {
+            key.updateRawStream((ImageRawStream) image);
+        } else {
+            key.updateRendered((ImageRendered) image);
+        }
+        return PDFImageXObject.CONTENT_KEY_PREFIX + toHex(digest.digest());
+    }
+
+    private void updateRawStream(ImageRawStream image) throws IOException {
+        if (image instanceof ImageRawJPEG) {
+            ImageRawJPEG jpeg = (ImageRawJPEG) image;
+            update(jpeg.getSOFType());
+            update(jpeg.isInverted());
+        } else if (image instanceof ImageRawPNG) {
+            ImageRawPNG png = (ImageRawPNG) image;
+            update(png.getBitDepth());
+            update(png.getColorModel());
+            update(png.getTransparentColor());
+            update(png.getRenderingIntent());
+        } else {
+            update(((ImageRawCCITTFax) image).getCompression());
+        }
+        if (!image.isCacheable()) {
+            //the stream can only be read once
+            InputStream in = image.createInputStream();
+            byte[] data;
+            try {
+                data = IOUtils.toByteArray(in);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            image.setInputStreamFactory(new ImageRawStream.ByteArrayStreamFactory(data));
+        }
+        InputStream in = image.createInputStream();
+        try {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                digest.update(buf, 0, len);
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void updateRendered(ImageRendered image) {
+        update(image.getTransparentColor());
+        RenderedImage ri = image.getRenderedImage();
+        update(ri.getColorModel());
+        Raster raster = ri instanceof BufferedImage
+                ? ((BufferedImage) ri).getRaster() : ri.getData();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int bands = raster.getNumBands();
+        update(width);
+        update(height);
+        update(bands);
+        for (int band = 0; band < bands; band++) {
+            update(raster.getSampleModel().getSampleSize(band));
+        }
+        int[] row = new int[width * bands];
+        ByteBuffer bytes = ByteBuffer.allocate(row.length * 4);
+        for (int y = 0; y < height; y++) {
+            raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, row);
+            bytes.clear();
+            bytes.asIntBuffer().put(row);
+            digest.update(bytes.array());
+        }
+    }
+
+    private void update(ColorModel cm) {
+        if (cm == null) {
+            update(-1);
+            return;
+        }
+        update(cm.getClass().getName());
+        update(cm.getTransparency());
+        update(cm.hasAlpha());
+        update(cm.isAlphaPremultiplied());
+        update(cm.getTransferType());
+        update(cm.getPixelSize());
+        for (int size : cm.getComponentSize()) {
+            update(size);
+        }
+        update(cm.getColorSpace());
+        if (cm instanceof IndexColorModel) {
+            IndexColorModel icm = (IndexColorModel) cm;
+            int[] rgbs = new int[icm.getMapSize()];
+            icm.getRGBs(rgbs);
+            for (int rgb : rgbs) {
+                update(rgb);
+            }
+            update(icm.getTransparentPixel());
+        } else if (cm instanceof PackedColorModel) {
+            for (int mask : ((PackedColorModel) cm).getMasks()) {
+                update(mask);
+            }
+        }
+    }
+
+    private void update(ColorSpace cs) {
+        if (cs == null) {
+            update(-1);
+            return;
+        }
+        update(cs.getType());
+        update(cs.getNumComponents());
+        if (cs instanceof ICC_ColorSpace) {
+            update(((ICC_ColorSpace) cs).getProfile());
+        }
+    }
+
+    private void update(ICC_Profile profile) {
+        if (profile == null) {
+            update(-1);
+        } else {
+            byte[] data = profile.getData();
+            update(data.length);
+            digest.update(data);
+        }
+    }
+
+    private void update(Color color) {
+        update(color != null ? color.getRGB() : 0);
+        update(color != null);
+    }
+
+    private void update(String s) {
+        update(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            digest.update((byte) (ch >>> 8));
+            digest.update((byte) ch);
+        }
+    }
+
+    private void update(boolean b) {
+        digest.update((byte) (b ? 1 : 0));
+    }
+
+    private void update(int n) {
+        digest.update((byte) (n >>> 24));
+        digest.update((byte) (n >>> 16));
+        digest.update((byte) (n >>> 8));
+        digest.update((byte) n);
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -25,6 +25,7 @@ import java.awt.Paint;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.HashSet;
@@ -47,8 +48,11 @@ import org.apache.fop.fonts.SingleByteFont;
 import org.apache.fop.fonts.Typeface;
 import org.apache.fop.pdf.PDFArray;
 import org.apache.fop.pdf.PDFDictionary;
+import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFFormXObject;
 import org.apache.fop.pdf.PDFName;
 import org.apache.fop.pdf.PDFNumber;
+import org.apache.fop.pdf.PDFStream;
 import org.apache.fop.pdf.PDFStructElem;
 import org.apache.fop.pdf.PDFTextUtil;
 import org.apache.fop.pdf.PDFXObject;
@@ -58,6 +62,7 @@ import org.apache.fop.render.intermediate.BorderPainter;
 import org.apache.fop.render.intermediate.GraphicsPainter;
 import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFReusableContentPainter;
 import org.apache.fop.render.intermediate.IFState;
 import org.apache.fop.render.intermediate.IFUtil;
 import org.apache.fop.render.pdf.PDFLogicalStructureHandler.MarkedContentInfo;
@@ -69,14 +74,25 @@ import org.apache.fop.util.CharUtilities;
 /**
  * IFPainter implementation that produces PDF.
  */
-public class PDFPainter extends AbstractIFPainter<PDFDocumentHandler> {
+public class PDFPainter extends AbstractIFPainter<PDFDocumentHandler>
+        implements IFReusableContentPainter {
+
+    /** Prefix of the XObject keys of reusable content */
+    private static final String REUSABLE_CONTENT_KEY_PREFIX = "reusable-content:";
 
     /** The current content generator */
     protected PDFContentGenerator generator;
 
-    private final GraphicsPainter graphicsPainter;
+    private GraphicsPainter graphicsPainter;
+
+    private BorderPainter borderPainter;
+
+    /** The page's content generator while reusable content is recorded, null otherwise */
+    private PDFContentGenerator pageGenerator;
 
-    private final BorderPainter borderPainter;
+    private IFState pageState;
+
+    private String reusableContentKey;
 
     private boolean accessEnabled;
 
@@ -128,9 +144,7 @@ public class PDFPainter extends AbstractIFPainter<PDFDocumentHandler> {
             PDFLogicalStructureHandler logicalStructureHandler) {
         super(documentHandler);
         this.logicalStructureHandler = logicalStructureHandler;
-        this.generator = documentHandler.getGenerator();
-        this.graphicsPainter = new PDFGraphicsPainter(this.generator);
-        this.borderPainter = new BorderPainter(this.graphicsPainter);
+        setGenerator(documentHandler.getGenerator());
         this.state = IFState.create();
         accessEnabled = this.getUserAgent().isAccessibilityEnabled();
         languageAvailabilityChecker = accessEnabled
@@ -138,6 +152,64 @@ public class PDFPainter extends AbstractIFPainter<PDFDocumentHandler> {
                 : null;
     }
 
+    private void setGenerator(PDFContentGenerator generator) {
+        this.generator = generator;
+        this.graphicsPainter = new PDFGraphicsPainter(generator);
+        this.borderPainter = new BorderPainter(graphicsPainter);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The content is recorded as a Form XObject. It is painted with its own content generator
+     * and state, so it doesn't depend on the state of the page it is first painted on.
+     */
+    public boolean startReusableContent(String key) throws IFException {
+        PDFXObject form = getDocumentHandler().getPDFDocument().getXObject(
+                REUSABLE_CONTENT_KEY_PREFIX + key);
+        if (form != null) {
+            generator.getResourceContext().addXObject(form);
+            placeForm(form);
+            return false;
+        }
+        if (pageGenerator != null) {
+            throw new IllegalStateException("Reusable content cannot be nested");
+        }
+        generator.endTextObject();
+        pageGenerator = generator;
+        pageState = state;
+        reusableContentKey = key;
+        setGenerator(new PDFContentGenerator(generator.getDocument(), generator.getOutputStream(),
+                generator.getResourceContext(), getContext()));
+        state = IFState.create();
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public void endReusableContent() throws IFException {
+        generator.endTextObject();
+        PDFStream contents = generator.getStream();
+        setGenerator(pageGenerator);
+        state = pageState;
+        pageGenerator = null;
+        pageState = null;
+
+        PDFDocument pdfDoc = getDocumentHandler().getPDFDocument();
+        PDFFormXObject form = pdfDoc.addFormXObject(generator.getResourceContext(), contents,
+                pdfDoc.getResources().makeReference(), REUSABLE_CONTENT_KEY_PREFIX + reusableContentKey);
+        //the content may extend beyond its region, anywhere on the page
+        Dimension pageSize = getDocumentHandler().getCurrentPageRef().getPageDimension();
+        double extent = (pageSize.width + pageSize.height) / 1000.0;
+        form.setBBox(new Rectangle2D.Double(-extent, -extent, 2 * extent, 2 * extent));
+        placeForm(form);
+    }
+
+    private void placeForm(PDFXObject form) {
+        generator.endTextObject();
+        generator.saveGraphicsState();
+        generator.add(form.getName() + " Do\n");
+        generator.restoreGraphicsState();
+    }
+
     /** {@inheritDoc} */
     public void startViewport(AffineTransform transform, Dimension size, Rectangle clipRect)
             throws IFException {
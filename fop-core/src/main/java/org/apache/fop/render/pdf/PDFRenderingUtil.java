@@ -75,6 +75,7 @@ import org.apache.fop.pdf.PDFReference;
 import org.apache.fop.pdf.PDFSetOCGStateAction;
 import org.apache.fop.pdf.PDFTransitionAction;
 import org.apache.fop.pdf.PDFXMode;
+import org.apache.fop.pdf.StreamCacheFactory;
 import org.apache.fop.pdf.Version;
 import org.apache.fop.pdf.VersionController;
 import org.apache.fop.render.pdf.extensions.PDFActionExtension;
@@ -592,6 +593,13 @@ class PDFRenderingUtil {
                     = VersionController.getFixedVersionController(maxPDFVersion);
             this.pdfDoc = new PDFDocument(producer, controller);
         }
+        pdfDoc.setStreamCacheFactory(StreamCacheFactory.getInstance(
+                userAgent.getMaxStreamCacheMemory(), userAgent.getMaxDocumentStreamCacheMemory(),
+                userAgent.getResourceResolver()));
+        pdfDoc.setCompressionLevel(userAgent.getStreamCompressionLevel());
+        pdfDoc.setStreamEncodingThreads(userAgent.getStreamCompressionThreads());
+        pdfDoc.setEncodedStreamCache(userAgent.getEncodedStreamCache());
+        pdfDoc.setFontSubsetCache(userAgent.getFontManager().getFontSubsetCache());
         updateInfo();
         updatePDFProfiles();
         pdfDoc.setFilterMap(rendererConfig.getFilterMap());
@@ -528,7 +528,8 @@ public class PSFontUtils extends org.apache.xmlgraphics.ps.PSFontUtils {
             MultiByteFont font, InputStream fontStream) throws IOException {
         FontFileReader reader = new FontFileReader(fontStream);
         String psName;
-        CFFDataReader cffReader = new CFFDataReader(reader);
+        byte[] cffData = OTFFile.getCFFData(reader);
+        CFFDataReader cffReader = new CFFDataReader(cffData);
         if (cffReader.getFDSelect() != null) {
             throw new UnsupportedOperationException("CID-Keyed OTF CFF fonts are not supported"
                     + " for PostScript output.");
@@ -557,7 +558,7 @@ public class PSFontUtils extends org.apache.xmlgraphics.ps.PSFontUtils {
                     }
                 }
             }
-            bytes = OTFFile.getCFFData(reader);
+            bytes = cffData;
         } else {
             psName = font.getEmbedFontName();
             OTFSubSetFile otfFile = new OTFSubSetFile();
@@ -50,6 +50,7 @@ import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.FopFactoryBuilder;
 import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.util.TemplatesCache;
 
 /**
  * Example servlet to generate a PDF from a servlet.
@@ -70,7 +71,9 @@ import org.apache.fop.apps.MimeConstants;
  * <br>
  * For this to work with Internet Explorer, you might need to append "ext=.pdf"
  * to the URL.
- * (todo) Ev. add caching mechanism for Templates objects
+ * <br>
+ * Compiled stylesheets are kept in a {@link TemplatesCache} so an XSLT file is only parsed
+ * again when it has been modified.
  */
 public class FopServlet extends HttpServlet {
 
@@ -89,6 +92,8 @@ public class FopServlet extends HttpServlet {
     protected FopFactory fopFactory;
     /** URIResolver for use by this servlet */
     protected transient URIResolver uriResolver;
+    /** The cache of compiled stylesheets */
+    protected transient TemplatesCache templatesCache;
 
     /**
      * {@inheritDoc}
@@ -99,6 +104,7 @@ public class FopServlet extends HttpServlet {
         transFactory.setAttribute("http://javax.xml.XMLConstants/property/accessExternalDTD", "");
         transFactory.setAttribute("http://javax.xml.XMLConstants/property/accessExternalStylesheet", "");
         this.transFactory.setURIResolver(this.uriResolver);
+        this.templatesCache = new TemplatesCache(this.transFactory, getTemplatesCacheSize());
         //Configure FopFactory as desired
         // TODO: Double check this behaves properly!!
         ResourceResolver resolver = new ResourceResolver() {
@@ -116,6 +122,15 @@ public class FopServlet extends HttpServlet {
         fopFactory = builder.build();
     }
 
+    /**
+     * Returns the maximum number of compiled stylesheets kept by the servlet. Subclasses can
+     * override this method to change the default.
+     * @return the maximum number of cached stylesheets
+     */
+    protected int getTemplatesCacheSize() {
+        return TemplatesCache.DEFAULT_MAX_ENTRIES;
+    }
+
     /**
      * This method is called right after the FopFactory is instantiated and can be overridden
      * by subclasses to perform additional configuration.
@@ -196,7 +211,7 @@ public class FopServlet extends HttpServlet {
         Source foSrc = convertString2Source(fo);
 
         //Setup the identity transformation
-        Transformer transformer = this.transFactory.newTransformer();
+        Transformer transformer = this.templatesCache.newTransformer();
         transformer.setURIResolver(this.uriResolver);
 
         //Start transformation and rendering process
@@ -224,7 +239,7 @@ public class FopServlet extends HttpServlet {
         Source xsltSrc = convertString2Source(xslt);
 
         //Setup the XSL transformation
-        Transformer transformer = this.transFactory.newTransformer(xsltSrc);
+        Transformer transformer = this.templatesCache.newTransformer(xsltSrc);
         transformer.setURIResolver(this.uriResolver);
 
         //Start transformation and rendering process
@@ -45,6 +45,7 @@ import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.FopFactoryBuilder;
 import org.apache.fop.apps.MimeConstants;
 import org.apache.fop.cli.InputHandler;
+import org.apache.fop.util.TemplatesCache;
 
 /**
  * Wrapper for FOP which allows it to be accessed from within an Ant task.
@@ -631,6 +632,11 @@ class FOPTaskStarter {
                 + " since last generation; set force=\"true\" to override)."
                 , Project.MSG_INFO);
         }
+        if (xsltFile != null) {
+            TemplatesCache templatesCache = TemplatesCache.getDefaultInstance();
+            task.log("Stylesheet cache: " + templatesCache.getHitCount() + " hit(s), "
+                    + templatesCache.getMissCount() + " miss(es)", Project.MSG_VERBOSE);
+        }
     }
 
     private void renderInputHandler(InputHandler inputHandler, File outFile, String outputFormat)
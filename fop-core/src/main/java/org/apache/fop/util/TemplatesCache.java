@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.util;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A bounded cache of compiled XSLT stylesheets ({@link Templates}). Stylesheets are keyed by
+ * their system ID; for local files the modification time is checked on every lookup so that
+ * an edited stylesheet is recompiled. Sources without a system ID are compiled every time.
+ * <p>
+ * This class is thread-safe. The {@link TransformerFactory} is only used while holding its
+ * monitor since factories are not guaranteed to be thread-safe.
+ */
+public class TemplatesCache {
+
+    /** The default maximum number of cached stylesheets */
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private static Log log = LogFactory.getLog(TemplatesCache.class);
+
+    private final TransformerFactory factory;
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class DefaultInstanceHolder {
+        private static final TemplatesCache INSTANCE
+                = new TemplatesCache(TransformerFactory.newInstance(), DEFAULT_MAX_ENTRIES);
+    }
+
+    private static final class Entry {
+        private final Templates templates;
+        private final long lastModified;
+
+        private Entry(Templates templates, long lastModified) {
+            this.templates = templates;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Creates a new cache.
+     * @param factory the factory used to compile stylesheets
+     * @param maxEntries the maximum number of stylesheets kept, the least recently used
+     *          stylesheet is dropped when the cache is full
+     */
+    public TemplatesCache(TransformerFactory factory, final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        this.factory = factory;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by the command-line and Ant front-ends. It uses a default
+     * {@link TransformerFactory}.
+     * @return the shared cache
+     */
+    public static TemplatesCache getDefaultInstance() {
+        return DefaultInstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the factory used to compile stylesheets.
+     * @return the transformer factory
+     */
+    public TransformerFactory getTransformerFactory() {
+        return factory;
+    }
+
+    /**
+     * Returns the compiled form of the given stylesheet, compiling it if it is not cached or
+     * has been modified since it was compiled.
+     * @param source the stylesheet
+     * @return the compiled stylesheet
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    public Templates getTemplates(Source source) throws TransformerConfigurationException {
+        String key = source.getSystemId();
+        if (key == null) {
+            misses.incrementAndGet();
+            return compile(source);
+        }
+        long lastModified = getLastModified(key);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.lastModified == lastModified) {
+            hits.incrementAndGet();
+            return entry.templates;
+        }
+        misses.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Compiling stylesheet " + key);
+        }
+        Templates templates = compile(source);
+        synchronized (entries) {
+            entries.put(key, new Entry(templates, lastModified));
+        }
+        return templates;
+    }
+
+    /**
+     * Creates a transformer for the given stylesheet using its cached compiled form.
+     * @param source the stylesheet
+     * @return a new transformer
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    public Transformer newTransformer(Source source) throws TransformerConfigurationException {
+        return getTemplates(source).newTransformer();
+    }
+
+    /**
+     * Creates an identity transformer.
+     * @return a new identity transformer
+     * @throws TransformerConfigurationException if the transformer cannot be created
+     */
+    public Transformer newTransformer() throws TransformerConfigurationException {
+        synchronized (factory) {
+            return factory.newTransformer();
+        }
+    }
+
+    /** @return the number of lookups that were served from the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return the number of lookups that required a stylesheet to be compiled */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return the number of cached stylesheets */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Removes all stylesheets from the cache. */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private Templates compile(Source source) throws TransformerConfigurationException {
+        synchronized (factory) {
+            return factory.newTemplates(source);
+        }
+    }
+
+    /**
+     * Returns the modification time of a stylesheet that is a local file.
+     * @param systemId the stylesheet's system ID
+     * @return the modification time or -1 if it is not a local file
+     */
+    private static long getLastModified(String systemId) {
+        File file = null;
+        try {
+            URI uri = new URI(systemId);
+            if ("file".equals(uri.getScheme())) {
+                file = new File(uri);
+            } else if (uri.getScheme() == null) {
+                file = new File(systemId);
+            }
+        } catch (URISyntaxException e) {
+            file = new File(systemId);
+        } catch (IllegalArgumentException e) {
+            //not a hierarchical file URI
+        }
+        return file != null && file.isFile() ? file.lastModified() : -1;
+    }
+}
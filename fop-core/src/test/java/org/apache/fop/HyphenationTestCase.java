@@ -18,25 +18,33 @@
 /* $Id$ */
 package org.apache.fop;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.StringReader;
+
+import org.xml.sax.InputSource;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.commons.io.IOUtils;
 
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.hyphenation.CompactHyphenationTree;
 import org.apache.fop.hyphenation.Hyphenation;
 import org.apache.fop.hyphenation.HyphenationException;
 import org.apache.fop.hyphenation.HyphenationTree;
+import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.hyphenation.Hyphenator;
 
 public class HyphenationTestCase {
@@ -75,6 +83,63 @@ public class HyphenationTestCase {
         f.delete();
     }
 
+    @Test
+    public void testHyphenatorCompact() throws HyphenationException, IOException {
+        File f = File.createTempFile("hyp", "fop");
+        f.delete();
+        f.mkdir();
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                f.toURI());
+
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+        File hyp = new File(f, "fr.hyp");
+        FileOutputStream out = new FileOutputStream(hyp);
+        CompactHyphenationTree.write(hTree, out);
+        out.close();
+
+        HyphenationTree mapped = Hyphenator.getUserHyphenationTree("fr", resourceResolver);
+        assertTrue(mapped instanceof CompactHyphenationTree);
+        Hyphenation hyph = Hyphenator.hyphenate("fr.hyp" + Hyphenator.HYPTYPE, null, resourceResolver, null,
+                "oello", 0, 0, fopFactory.newFOUserAgent());
+        assertEquals(hyph.toString(), "oel-lo");
+
+        hyp.delete();
+        f.delete();
+    }
+
+    @Test
+    public void testCompactHyphenationTreeMatchesHyphenationTree() throws Exception {
+        String patterns = "<hyphenation-info><classes>aA bB cC dD eE hH iI lL mM nN oO rR sS tT xX"
+                + "</classes><exceptions>ta-ble pre-sent</exceptions><patterns>"
+                + ".ab1 1ba 2bl a1m .ex1 1ter 4tio n1t 1na 8ni 9ma a9b .re1 1ca 3tr .st4 "
+                + "s1t e1x x1a ion1 o2n3 o1r 1ri io 1mi 3nat"
+                + "</patterns></hyphenation-info>";
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new InputSource(new StringReader(patterns)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactHyphenationTree.write(hTree, out);
+        HyphenationTree compact = CompactHyphenationTree.read(new ByteArrayInputStream(out.toByteArray()));
+
+        String[] words = {"abnormal", "Extraordinarily", "reciprocation", "station", "table", "Present",
+            "mismatch", "nominations", "x-ray", "(Abstraction)", "bbb", "termination", "it"};
+        int hyphenated = 0;
+        for (String word : words) {
+            for (int min = 1; min < 4; min++) {
+                Hyphenation expected = hTree.hyphenate(word, min, min);
+                Hyphenation actual = compact.hyphenate(word, min, min);
+                assertEquals(word, String.valueOf(expected), String.valueOf(actual));
+                if (expected != null) {
+                    hyphenated++;
+                }
+            }
+        }
+        assertTrue(hyphenated > words.length);
+        assertEquals(hTree.findPattern("ter"), compact.findPattern("ter"));
+        assertEquals(hTree.findPattern("nat"), compact.findPattern("nat"));
+        assertEquals("", compact.findPattern("zzz"));
+    }
+
     @Test
     public void testHyphenatorCache() throws IOException {
         File f = File.createTempFile("hyp", "fop");
@@ -99,4 +164,35 @@ public class HyphenationTestCase {
         frxml.delete();
         f.delete();
     }
+
+    @Test
+    public void testHyphenationsAreCached() {
+        File f = new File("test/resources/fop");
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                f.toURI());
+        HyphenationTreeCache cache = fopFactory.getHyphenationTreeCache();
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        Hyphenation hyph = Hyphenator.hyphenate("fr.xml" + Hyphenator.XMLTYPE, null, resourceResolver, null,
+                "hello", 0, 0, fopFactory.newFOUserAgent());
+        assertEquals("-hel-lo", hyph.toString());
+        assertEquals(misses + 1, cache.getMissCount());
+        hyph = Hyphenator.hyphenate("fr.xml" + Hyphenator.XMLTYPE, null, resourceResolver, null,
+                "hello", 0, 0, fopFactory.newFOUserAgent());
+        assertEquals("-hel-lo", hyph.toString());
+        assertEquals(hits + 1, cache.getHitCount());
+
+        //the minimum character counts are part of the key
+        hyph = Hyphenator.hyphenate("fr.xml" + Hyphenator.XMLTYPE, null, resourceResolver, null,
+                "hello", 2, 2, fopFactory.newFOUserAgent());
+        assertEquals("hel-lo", hyph.toString());
+
+        //words that cannot be hyphenated are cached as well
+        for (int i = 0; i < 2; i++) {
+            assertNull(Hyphenator.hyphenate("fr.xml" + Hyphenator.XMLTYPE, null, resourceResolver, null,
+                    "hello", 3, 3, fopFactory.newFOUserAgent()));
+        }
+        assertEquals(hits + 2, cache.getHitCount());
+        assertEquals(misses + 3, cache.getMissCount());
+    }
 }
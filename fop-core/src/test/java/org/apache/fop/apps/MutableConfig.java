@@ -144,4 +144,12 @@ public final class MutableConfig implements FopFactoryConfig {
     public FallbackResolver getFallbackResolver() {
         return delegate.getFallbackResolver();
     }
+
+    public int getMaxStreamCacheMemory() {
+        return delegate.getMaxStreamCacheMemory();
+    }
+
+    public long getMaxDocumentStreamCacheMemory() {
+        return delegate.getMaxDocumentStreamCacheMemory();
+    }
 }
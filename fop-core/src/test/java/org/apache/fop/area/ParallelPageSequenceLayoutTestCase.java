@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.area;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that laying out page-sequences concurrently produces the same output as
+ * serial layout.
+ */
+public class ParallelPageSequenceLayoutTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testSameOutputAsSerialLayout() throws Exception {
+        String fo = createDocument();
+        String serial = layout(fo, 0);
+        assertEquals(serial, layout(fo, 4));
+        assertEquals(serial, layout(fo, 2));
+    }
+
+    @Test
+    public void testEachPageSequenceKeepsItsOwnStaticContent() throws Exception {
+        //uncompressed content streams
+        String conf = "<fop version=\"1.0\"><renderers><renderer mime=\"application/pdf\">"
+                + "<filterList><value>null</value></filterList></renderer></renderers></fop>";
+        FopFactory pdfFopFactory = new FopConfParser(new ByteArrayInputStream(conf.getBytes("UTF-8")),
+                new File(".").toURI()).getFopFactoryBuilder().build();
+        String[] headers = {"Alpha", "Beta", "Gamma"};
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body margin-top=\"1cm\"/><fo:region-before extent=\"1cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        for (String header : headers) {
+            //an explicit initial-page-number lets the page-sequences be laid out concurrently
+            sb.append("<fo:page-sequence master-reference=\"simple\" initial-page-number=\"1\">");
+            sb.append("<fo:static-content flow-name=\"xsl-region-before\">");
+            sb.append("<fo:block>").append(header).append("</fo:block></fo:static-content>");
+            sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+            for (int i = 0; i < 30; i++) {
+                sb.append("<fo:block>Block ").append(i).append("</fo:block>");
+            }
+            sb.append("</fo:flow></fo:page-sequence>");
+        }
+        sb.append("</fo:root>");
+
+        FOUserAgent userAgent = pdfFopFactory.newFOUserAgent();
+        userAgent.setPageSequenceLayoutThreads(4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = pdfFopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(sb.toString().getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        String pdf = out.toString("ISO-8859-1");
+
+        //every header is painted once as a Form XObject of its own
+        assertEquals(headers.length, countOccurrences(pdf, "/Subtype /Form"));
+        for (String header : headers) {
+            assertEquals(1, countOccurrences(pdf, "(" + header + ")"));
+        }
+        assertTrue(countOccurrences(pdf, "/Type /Page\n") > headers.length);
+    }
+
+    @Test
+    public void testThreadsAreReleasedWhenTheDocumentFails() throws Exception {
+        //an fo:block outside of the flow of the last page-sequence is invalid
+        String fo = createDocument().replace("</fo:flow></fo:page-sequence></fo:root>",
+                "</fo:flow><fo:block/></fo:page-sequence></fo:root>");
+        try {
+            layout(fo, 4);
+            fail("The document is invalid");
+        } catch (TransformerException te) {
+            //expected
+        }
+        long timeout = System.currentTimeMillis() + 5000;
+        while (hasLayoutThreads() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertFalse(hasLayoutThreads());
+    }
+
+    private static boolean hasLayoutThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("FOP page-sequence layout")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countOccurrences(String s, String text) {
+        int count = 0;
+        for (int index = s.indexOf(text); index >= 0; index = s.indexOf(text, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private String layout(String fo, int threads) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setPageSequenceLayoutThreads(threads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private String createDocument() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body margin-top=\"1cm\"/><fo:region-before extent=\"1cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        for (int seq = 0; seq < 8; seq++) {
+            //an automatic initial-page-number forces the preceding page-sequences to be merged
+            String initial = seq == 5 ? "auto" : "1";
+            sb.append("<fo:page-sequence master-reference=\"simple\" id=\"seq").append(seq)
+                    .append("\" initial-page-number=\"").append(initial).append("\">");
+            sb.append("<fo:static-content flow-name=\"xsl-region-before\">");
+            sb.append("<fo:block>Page <fo:page-number/> of ")
+                    .append("<fo:page-number-citation-last ref-id=\"seq").append(seq)
+                    .append("\"/></fo:block></fo:static-content>");
+            sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+            int blocks = 10 + seq * 5;
+            for (int i = 0; i < blocks; i++) {
+                sb.append("<fo:block id=\"b").append(seq).append('-').append(i).append("\">");
+                sb.append("Block ").append(i);
+                //forward references only: backward ones are resolved after layout when
+                //laid out concurrently and may then produce different line breaks
+                if (seq < 7) {
+                    int target = seq + 1;
+                    sb.append(" refers to ");
+                    sb.append("<fo:basic-link internal-destination=\"b").append(target).append("-0\">")
+                            .append("page <fo:page-number-citation ref-id=\"b").append(target)
+                            .append("-0\"/></fo:basic-link>");
+                }
+                sb.append("</fo:block>");
+            }
+            sb.append("</fo:flow></fo:page-sequence>");
+        }
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.complexscripts.fonts;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.complexscripts.scripts.ScriptProcessor;
+import org.apache.fop.complexscripts.util.CharAssociation;
+import org.apache.fop.complexscripts.util.GlyphSequence;
+import org.apache.fop.fonts.GlyphIndexTable;
+import org.apache.fop.fonts.truetype.FontFileReader;
+import org.apache.fop.fonts.truetype.OFFontLoader;
+import org.apache.fop.fonts.truetype.OFTableName;
+import org.apache.fop.fonts.truetype.OTFFile;
+import org.apache.fop.fonts.truetype.OpenFont;
+import org.apache.fop.fonts.truetype.TTFFile;
+
+public class OTFAdvancedTypographicTableReaderTestCase {
+
+    private static final String[] FONTS = {
+        "test/resources/fonts/ttf/DejaVuLGCSerif.ttf",
+        "test/resources/fonts/otf/SourceSansProBold.otf"
+    };
+
+    private static final String TEXT
+        = "Office affluent fjord: AVATAR, Wolf & Type 1/2 \u0410\u0432\u0442\u043E";
+
+    @Test
+    public void testLookupTablesAreLoadedOnDemand() {
+        Map<GlyphTable.LookupSpec, List<String>> lookups
+            = new HashMap<GlyphTable.LookupSpec, List<String>>();
+        lookups.put(new GlyphTable.LookupSpec("latn", "dflt", "liga"), Arrays.asList("lu0"));
+        lookups.put(new GlyphTable.LookupSpec("cyrl", "dflt", "liga"), Arrays.asList("lu1"));
+        RecordingLoader loader = new RecordingLoader();
+        GlyphSubstitutionTable gsub = new GlyphSubstitutionTable(null, lookups,
+                new HashMap<String, ScriptProcessor>(), loader);
+        assertTrue(loader.requests.isEmpty());
+
+        GlyphSequence gs = gsub.substitute(createGlyphSequence(new int[] {10, 11}), "latn", "dflt");
+        assertEquals("[20, 11]", Arrays.toString(getGlyphs(gs)));
+        assertEquals(Arrays.asList("[lu0]"), loader.requests);
+
+        gsub.substitute(createGlyphSequence(new int[] {10}), "latn", "dflt");
+        assertEquals(1, loader.requests.size());
+
+        gs = gsub.substitute(createGlyphSequence(new int[] {10, 11}), "cyrl", "dflt");
+        assertEquals("[10, 21]", Arrays.toString(getGlyphs(gs)));
+        assertEquals(Arrays.asList("[lu0]", "[lu1]"), loader.requests);
+
+        assertEquals(2, gsub.getLookupTables().size());
+        assertEquals(Arrays.asList("[lu0]", "[lu1]", "null"), loader.requests);
+    }
+
+    @Test
+    public void testLazyTablesMatchFullyLoadedTables() throws IOException {
+        for (String font : FONTS) {
+            OpenFont lazy = loadFont(font);
+            OTFAdvancedTypographicTableReader lazyReader = readTables(lazy, font);
+            OTFAdvancedTypographicTableReader fullReader = readTables(loadFont(font), font);
+            assertNotNull(font, lazyReader.getGSUB());
+            assertNotNull(font, lazyReader.getGPOS());
+            assertFalse(fullReader.getGSUB().getLookupTables().isEmpty());
+            assertFalse(fullReader.getGPOS().getLookupTables().isEmpty());
+
+            GlyphIndexTable cmap = GlyphIndexTable.build(lazy.getCMaps());
+            int[] glyphs = new int[TEXT.length()];
+            for (int i = 0; i < glyphs.length; i++) {
+                glyphs[i] = cmap.getGlyphIndex(TEXT.charAt(i));
+            }
+            for (String script : new String[] {"latn", "cyrl"}) {
+                GlyphSequence expected
+                    = fullReader.getGSUB().substitute(createGlyphSequence(glyphs), script, "dflt");
+                GlyphSequence actual
+                    = lazyReader.getGSUB().substitute(createGlyphSequence(glyphs), script, "dflt");
+                assertEquals(font, Arrays.toString(getGlyphs(expected)), Arrays.toString(getGlyphs(actual)));
+
+                int[] widths = lazy.getWidths();
+                int[][] expectedAdjustments = position(fullReader.getGPOS(), expected, script, widths);
+                int[][] actualAdjustments = position(lazyReader.getGPOS(), actual, script, widths);
+                assertTrue(font, Arrays.deepEquals(expectedAdjustments, actualAdjustments));
+            }
+
+            int resolved = 0;
+            for (GlyphTable.LookupSpec ls : lazyReader.getGSUB().getLookups()) {
+                for (GlyphTable.LookupTable lt : lazyReader.getGSUB().findLookupTables(ls)) {
+                    resolved += countResolvedRuleLookups(lt);
+                }
+            }
+            assertTrue(font, resolved > 0);
+
+            List<GlyphTable.LookupTable> expected = fullReader.getGSUB().getLookupTables();
+            List<GlyphTable.LookupTable> actual = lazyReader.getGSUB().getLookupTables();
+            assertEquals(font, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                GlyphSubtable[] expectedSubtables = expected.get(i).getSubtables();
+                GlyphSubtable[] actualSubtables = actual.get(i).getSubtables();
+                assertEquals(expectedSubtables.length, actualSubtables.length);
+                assertEquals(expectedSubtables[0].getLookupId(), actualSubtables[0].getLookupId());
+            }
+        }
+    }
+
+    @Test
+    public void testTablesAreSharedBetweenLoadsOfTheSameFont() throws IOException {
+        OpenFont first = loadFont(FONTS[0]);
+        OpenFont second = loadFont(FONTS[0]);
+        OpenFont other = loadFont(FONTS[1]);
+        assertNotNull(first.getGSUB());
+        assertSame(first.getGSUB(), second.getGSUB());
+        assertSame(first.getGPOS(), second.getGPOS());
+        assertSame(first.getGDEF(), second.getGDEF());
+        assertNotSame(first.getGSUB(), other.getGSUB());
+    }
+
+    @Test
+    public void testCorruptLookupTableIsIgnoredAlone() throws IOException {
+        String font = FONTS[0];
+        OpenFont otf = loadFont(font);
+        List<GlyphTable.LookupTable> expected
+            = readTables(otf, font).getGSUB().getLookupTables();
+
+        byte[] data = createReader(font).getAllBytes();
+        long gsub = otf.getDirectoryEntry(OFTableName.GSUB).getOffset();
+        int lookupList = (int) gsub + readUShort(data, (int) gsub + 8);
+        int lookupCount = readUShort(data, lookupList);
+        int corrupt = -1;
+        for (int li = lookupCount - 1; li > 0 && corrupt < 0; li--) {
+            int lookup = lookupList + readUShort(data, lookupList + 2 + li * 2);
+            if (readUShort(data, lookup) == GlyphSubstitutionTable.GSUB_LOOKUP_TYPE_SINGLE) {
+                //an unsupported subtable format
+                int subtable = lookup + readUShort(data, lookup + 6);
+                data[subtable] = 0x7F;
+                corrupt = li;
+            }
+        }
+        assertTrue(corrupt > 0);
+        OTFAdvancedTypographicTableReader reader
+            = new OTFAdvancedTypographicTableReader(otf, new FontFileReader(new ByteArrayInputStream(data)));
+        reader.readAll();
+
+        List<GlyphTable.LookupTable> actual = reader.getGSUB().getLookupTables();
+        assertEquals(expected.size() - 1, actual.size());
+        List<String> expectedIds = new ArrayList<String>();
+        for (GlyphTable.LookupTable lt : expected) {
+            String lid = lt.getSubtables()[0].getLookupId();
+            if (!lid.equals("lu" + corrupt)) {
+                expectedIds.add(lid);
+            }
+        }
+        List<String> actualIds = new ArrayList<String>();
+        for (GlyphTable.LookupTable lt : actual) {
+            actualIds.add(lt.getSubtables()[0].getLookupId());
+        }
+        assertEquals(expectedIds, actualIds);
+    }
+
+    private static int readUShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static OpenFont loadFont(String font) throws IOException {
+        OpenFont otf = font.endsWith(".otf") ? new OTFFile(true, true) : new TTFFile(true, true);
+        FontFileReader reader = createReader(font);
+        otf.readFont(reader, OFFontLoader.readHeader(reader));
+        return otf;
+    }
+
+    private static OTFAdvancedTypographicTableReader readTables(OpenFont otf, String font)
+            throws IOException {
+        OTFAdvancedTypographicTableReader reader
+            = new OTFAdvancedTypographicTableReader(otf, createReader(font));
+        reader.readAll();
+        return reader;
+    }
+
+    private static FontFileReader createReader(String font) throws IOException {
+        InputStream in = new FileInputStream(new File(font));
+        try {
+            return new FontFileReader(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static GlyphSequence createGlyphSequence(int[] glyphs) {
+        List<CharAssociation> associations = new ArrayList<CharAssociation>();
+        for (int i = 0; i < glyphs.length; i++) {
+            associations.add(new CharAssociation(i, 1));
+        }
+        return new GlyphSequence(IntBuffer.wrap(glyphs.clone()), IntBuffer.wrap(glyphs.clone()),
+                associations);
+    }
+
+    private static int[] getGlyphs(GlyphSequence gs) {
+        IntBuffer glyphs = gs.getGlyphs();
+        int[] ga = new int[glyphs.limit()];
+        for (int i = 0; i < ga.length; i++) {
+            ga[i] = glyphs.get(i);
+        }
+        return ga;
+    }
+
+    private static int countResolvedRuleLookups(GlyphTable.LookupTable lt) {
+        int resolved = 0;
+        for (GlyphSubtable st : lt.getSubtables()) {
+            List entries = st.getEntries();
+            for (Object entry : (entries != null) ? entries : new ArrayList()) {
+                if (entry instanceof GlyphTable.RuleSet[]) {
+                    for (GlyphTable.RuleSet rs : (GlyphTable.RuleSet[]) entry) {
+                        for (GlyphTable.Rule r : (rs != null) ? rs.getRules() : new GlyphTable.Rule[0]) {
+                            for (GlyphTable.RuleLookup rl : r.getLookups()) {
+                                assertNotNull(st.getLookupId() + " refers to unresolved " + rl,
+                                        rl.getLookup());
+                                resolved++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private static int[][] position(GlyphPositioningTable gpos, GlyphSequence gs, String script,
+            int[] widths) {
+        int[][] adjustments = new int[gs.getGlyphCount()][4];
+        gpos.position(gs, script, "dflt", 1000, widths, adjustments);
+        return adjustments;
+    }
+
+    private static final class RecordingLoader implements GlyphTable.LookupTableLoader {
+
+        private final List<String> requests = new ArrayList<String>();
+
+        public List<GlyphSubtable> loadSubtables(Collection<String> lids) {
+            requests.add(String.valueOf(lids));
+            List<GlyphSubtable> subtables = new ArrayList<GlyphSubtable>();
+            if (lids == null || lids.contains("lu0")) {
+                subtables.add(createSingleSubtable("lu0", 10, 20));
+            }
+            if (lids == null || lids.contains("lu1")) {
+                subtables.add(createSingleSubtable("lu1", 11, 21));
+            }
+            return subtables;
+        }
+
+        private static GlyphSubtable createSingleSubtable(String lid, int glyph, int substitute) {
+            return GlyphSubstitutionTable.createSubtable(GlyphSubstitutionTable.GSUB_LOOKUP_TYPE_SINGLE,
+                    lid, 0, 0, 2, GlyphCoverageTable.createCoverageTable(Arrays.asList(glyph)),
+                    Arrays.asList(substitute));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.autodetect.FontFileFinder;
+
+public class FontAdderTestCase {
+
+    @Test
+    public void testParallelDetectionIsDeterministic() throws Exception {
+        List<URL> fontURLs = new FontFileFinder(-1, mock(FontEventListener.class))
+                .find(new File("test/resources/fonts").getAbsolutePath());
+        assertFalse(fontURLs.isEmpty());
+
+        FontCache sequentialCache = new FontCache();
+        List<EmbedFontInfo> sequential = detect(fontURLs, sequentialCache, 1);
+        FontCache parallelCache = new FontCache();
+        List<EmbedFontInfo> parallel = detect(fontURLs, parallelCache, 4);
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).toString(), parallel.get(i).toString());
+            assertEquals(sequential.get(i).getPostScriptName(), parallel.get(i).getPostScriptName());
+        }
+        assertTrue(parallelCache.hasChanged());
+        for (URL url : fontURLs) {
+            String key = url.toURI().toASCIIString();
+            assertEquals(sequentialCache.containsFont(key), parallelCache.containsFont(key));
+        }
+
+        //a second detection is served from the cache
+        List<EmbedFontInfo> cached = detect(fontURLs, parallelCache, 4);
+        assertEquals(parallel.size(), cached.size());
+    }
+
+    private static List<EmbedFontInfo> detect(List<URL> fontURLs, FontCache cache, int parallelism)
+            throws Exception {
+        InternalResourceResolver resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                new File(".").toURI());
+        FontCacheManager cacheManager = mock(FontCacheManager.class);
+        when(cacheManager.load()).thenReturn(cache);
+        FontManager manager = new FontManager(resolver, FontDetectorFactory.createDefault(), cacheManager);
+        FontAdder adder = new FontAdder(manager, resolver, mock(FontEventListener.class));
+        adder.setParallelism(parallelism);
+        List<EmbedFontInfo> fontInfos = new ArrayList<EmbedFontInfo>();
+        adder.add(fontURLs, fontInfos);
+        return fontInfos;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class FontCacheTestCase {
+
+    private File cacheFile;
+    private InternalResourceResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("fop-fonts", ".cache");
+        cacheFile.delete();
+        resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI());
+    }
+
+    @After
+    public void tearDown() {
+        cacheFile.delete();
+    }
+
+    private static EmbedFontInfo createFontInfo(String uri, String psName, String subFont) {
+        FontTriplet regular = new FontTriplet("Test Sans", "normal", 400);
+        FontTriplet bold = new FontTriplet("Test Sans", "normal", 700, 2);
+        EmbedFontInfo info = new EmbedFontInfo(new FontUris(URI.create(uri), null, null,
+                URI.create("file:/fonts/test.pfm")), true, false, Arrays.asList(regular, bold), subFont,
+                EncodingMode.CID, EmbeddingMode.SUBSET, true, false);
+        info.setPostScriptName(psName);
+        return info;
+    }
+
+    @Test
+    public void testSaveAndLoadIndex() throws Exception {
+        FontCache cache = new FontCache();
+        for (int i = 0; i < 50; i++) {
+            cache.addFont(createFontInfo("file:/fonts/font" + i + ".ttf", "Font" + i, null), resolver);
+        }
+        cache.addFont(createFontInfo("file:/fonts/collection.ttc", "First", "First"), resolver);
+        cache.addFont(createFontInfo("file:/fonts/collection.ttc", "Second", "Second"), resolver);
+        cache.registerFailedFont("file:/fonts/broken.ttf", 42);
+        cache.saveTo(cacheFile);
+        assertFalse(cache.hasChanged());
+        assertTrue(FontCacheIndex.isIndex(cacheFile));
+
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        assertFalse(loaded.hasChanged());
+        assertTrue(loaded.containsFont("file:/fonts/font17.ttf"));
+        assertFalse(loaded.containsFont("file:/fonts/unknown.ttf"));
+        assertTrue(loaded.isFailedFont("file:/fonts/broken.ttf", 42));
+
+        EmbedFontInfo[] infos = loaded.getFontInfos("file:/fonts/font17.ttf", 0);
+        assertEquals(1, infos.length);
+        EmbedFontInfo info = infos[0];
+        assertEquals("Font17", info.getPostScriptName());
+        assertEquals(URI.create("file:/fonts/font17.ttf"), info.getEmbedURI());
+        assertNull(info.getMetricsURI());
+        assertEquals(URI.create("file:/fonts/test.pfm"), info.getFontUris().getPfm());
+        assertTrue(info.getKerning());
+        assertFalse(info.getAdvanced());
+        assertTrue(info.getSimulateStyle());
+        assertFalse(info.getEmbedAsType1());
+        assertEquals(EncodingMode.CID, info.getEncodingMode());
+        assertEquals(EmbeddingMode.SUBSET, info.getEmbeddingMode());
+        assertTrue(info.isEmbedded());
+        assertEquals(2, info.getFontTriplets().size());
+        FontTriplet bold = info.getFontTriplets().get(1);
+        assertEquals("Test Sans", bold.getName());
+        assertEquals(700, bold.getWeight());
+        assertEquals(2, bold.getPriority());
+
+        assertEquals(2, loaded.getFontInfos("file:/fonts/collection.ttc", 0).length);
+    }
+
+    @Test
+    public void testModificationsArePersisted() throws Exception {
+        FontCache cache = new FontCache();
+        cache.addFont(createFontInfo("file:/fonts/a.ttf", "A", null), resolver);
+        cache.addFont(createFontInfo("file:/fonts/b.ttf", "B", null), resolver);
+        cache.saveTo(cacheFile);
+
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        loaded.removeFont("file:/fonts/a.ttf");
+        assertFalse(loaded.containsFont("file:/fonts/a.ttf"));
+        loaded.addFont(createFontInfo("file:/fonts/c.ttf", "C", null), resolver);
+        assertTrue(loaded.hasChanged());
+        loaded.saveTo(cacheFile);
+
+        FontCache reloaded = FontCache.loadFrom(cacheFile);
+        assertFalse(reloaded.containsFont("file:/fonts/a.ttf"));
+        assertTrue(reloaded.containsFont("file:/fonts/b.ttf"));
+        assertTrue(reloaded.containsFont("file:/fonts/c.ttf"));
+        assertNull(reloaded.getFontInfos("file:/fonts/b.ttf", 1234));
+        assertFalse(reloaded.containsFont("file:/fonts/b.ttf"));
+    }
+
+    @Test
+    public void testIndexReadIntoMemory() throws Exception {
+        FontCache cache = new FontCache();
+        cache.addFont(createFontInfo("file:/fonts/a.ttf", "A", null), resolver);
+        cache.saveTo(cacheFile);
+
+        FontCacheIndex index = FontCacheIndex.open(cacheFile, false);
+        int i = index.find("file:/fonts/a.ttf");
+        assertTrue(i >= 0);
+        //the index doesn't hold on to the file, so it can be replaced
+        assertTrue(cacheFile.delete());
+        assertEquals("A", index.getFontInfos(i)[0].getPostScriptName());
+    }
+
+    @Test
+    public void testSerializedCacheIsConverted() throws Exception {
+        FontCache cache = new FontCache();
+        cache.addFont(createFontInfo("file:/fonts/a.ttf", "A", null), resolver);
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(cacheFile));
+        try {
+            out.writeObject(cache);
+        } finally {
+            out.close();
+        }
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        assertTrue(loaded.containsFont("file:/fonts/a.ttf"));
+        assertTrue(loaded.hasChanged());
+        loaded.saveTo(cacheFile);
+        assertTrue(FontCacheIndex.isIndex(cacheFile));
+        assertTrue(FontCache.loadFrom(cacheFile).containsFont("file:/fonts/a.ttf"));
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.fop.fonts;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -34,6 +35,8 @@ import static org.mockito.Mockito.verify;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.truetype.FontFileMappings;
+import org.apache.fop.fonts.truetype.MappedFontFileCache;
 
 public class FontManagerTestCase {
 
@@ -72,6 +75,31 @@ public class FontManagerTestCase {
         Assert.assertTrue(fc.containsFont(uri));
     }
 
+    @Test
+    public void testFontFilesStayMappedBetweenDocuments() {
+        InternalResourceResolver rr = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                new File(".").toURI());
+        FontManager fontManager = new FontManager(rr, fontDetector, fontCacheManager);
+        EmbedFontInfo efi = new EmbedFontInfo(new FontUris(
+                new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf").toURI(), null), false, false,
+                Collections.singletonList(new FontTriplet("DejaVu", "normal", 400)), null);
+        MappedFontFileCache cache = MappedFontFileCache.getInstance();
+        int before = cache.size();
+        FontFileMappings mappings = fontManager.getFontFileMappings();
+
+        for (int i = 0; i < 2; i++) {
+            FontInfo fontInfo = new FontInfo();
+            fontManager.setup(fontInfo, new FontCollection[] {
+                    new CustomFontCollection(rr, Collections.singletonList(efi), false)});
+            LazyFont font = (LazyFont) fontInfo.getFonts().get("F1");
+            Assert.assertTrue(font.getRealFont() instanceof MultiByteFont);
+            Assert.assertEquals(1, mappings.size());
+            Assert.assertEquals(before + 1, cache.size());
+        }
+        mappings.release();
+        Assert.assertEquals(before, cache.size());
+    }
+
     @Test
     public void testGetFontCache() {
         sut.getFontCache();
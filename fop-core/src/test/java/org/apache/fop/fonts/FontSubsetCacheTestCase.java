@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that font subsets taken from the {@link FontSubsetCache} give the same PDF output
+ * as subsets built for each document.
+ */
+public class FontSubsetCacheTestCase {
+
+    private static final String[] FAMILIES = {"DejaVu", "SourceSans", "Courier10"};
+
+    @Test
+    public void testSubsetsAreReused() throws Exception {
+        String fo1 = createDocument("The quick brown fox jumps over the lazy dog.");
+        String fo2 = createDocument("Sphinx of black quartz, judge my vow!");
+        FopFactory reference = createFopFactory();
+        String expected1 = render(reference, fo1);
+        String expected2 = render(reference, fo2);
+        assertEquals(0, reference.getFontManager().getFontSubsetCache().getEntryCount());
+
+        FopFactory fopFactory = createFopFactory();
+        FontSubsetCache cache = fopFactory.getFontManager().getFontSubsetCache();
+        cache.setMaxSize(10 * 1024 * 1024);
+        fopFactory.getEncodedStreamCache().setMaxSize(10 * 1024 * 1024);
+        assertEquals(expected1, render(fopFactory, fo1));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(FAMILIES.length, cache.getMissCount());
+        assertEquals(expected1, render(fopFactory, fo1));
+        assertEquals(FAMILIES.length, cache.getHitCount());
+
+        //other glyphs, other subsets
+        assertEquals(expected2, render(fopFactory, fo2));
+        assertEquals(FAMILIES.length, cache.getHitCount());
+        assertEquals(2 * FAMILIES.length, cache.getEntryCount());
+        assertEquals(expected2, render(fopFactory, fo2));
+        assertEquals(expected1, render(fopFactory, fo1));
+        assertEquals(3 * FAMILIES.length, cache.getHitCount());
+
+        //subsets are evicted to stay within the maximum size
+        cache.setMaxSize(cache.getSize() / 2);
+        assertTrue(cache.getEntryCount() < 2 * FAMILIES.length);
+        assertEquals(expected2, render(fopFactory, fo2));
+    }
+
+    private static FopFactory createFopFactory() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fop version=\"1.0\"><renderers><renderer mime=\"application/pdf\"><fonts>");
+        appendFont(sb, "ttf/DejaVuLGCSerif.ttf", null, null, FAMILIES[0]);
+        appendFont(sb, "otf/SourceSansProBold.otf", null, null, FAMILIES[1]);
+        appendFont(sb, "type1/c0419bt_.pfb", "type1/c0419bt_.afm", "subset", FAMILIES[2]);
+        sb.append("</fonts></renderer></renderers></fop>");
+        return new FopConfParser(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")),
+                new File(".").toURI()).getFopFactoryBuilder().build();
+    }
+
+    private static void appendFont(StringBuilder sb, String file, String metrics,
+            String embeddingMode, String family) {
+        sb.append("<font embed-url=\"test/resources/fonts/").append(file).append('"');
+        if (metrics != null) {
+            sb.append(" embed-url-afm=\"test/resources/fonts/").append(metrics).append('"');
+        }
+        if (embeddingMode != null) {
+            sb.append(" embedding-mode=\"").append(embeddingMode).append('"');
+        }
+        sb.append("><font-triplet name=\"").append(family)
+                .append("\" style=\"normal\" weight=\"normal\"/></font>");
+    }
+
+    private static String render(FopFactory fopFactory, String fo) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[<[0-9A-F]*> <[0-9A-F]*>\\]", "")
+                .replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private static String createDocument(String text) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        for (String family : FAMILIES) {
+            sb.append("<fo:block font-family=\"").append(family).append("\">").append(text)
+                    .append("</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
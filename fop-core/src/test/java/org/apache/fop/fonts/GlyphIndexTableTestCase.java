@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class GlyphIndexTableTestCase {
+
+    @Test
+    public void testFirstNonZeroMappingWins() {
+        GlyphIndexTable table = GlyphIndexTable.build(Arrays.asList(
+                new CMapSegment(0x20, 0x7e, 3),
+                new CMapSegment(0x41, 0x41, 500),
+                new CMapSegment(0x1f, 0x1f, 0),
+                new CMapSegment(0x1f, 0x20, 42),
+                new CMapSegment(0x1f600, 0x1f601, 1000)));
+        assertEquals(3, table.getGlyphIndex(0x20));
+        assertEquals(3 + 0x41 - 0x20, table.getGlyphIndex('A'));
+        assertEquals(42, table.getGlyphIndex(0x1f));
+        assertEquals(1001, table.getGlyphIndex(0x1f601));
+        assertEquals(0, table.getGlyphIndex(0x7f));
+        assertEquals(0, table.getGlyphIndex(0x1f602));
+        assertEquals(0, table.getGlyphIndex(0x10ffff));
+        assertEquals(0, table.getGlyphIndex(-1));
+
+        GlyphIndexTable extended = table.withMapping(0xf0000, 77);
+        assertEquals(77, extended.getGlyphIndex(0xf0000));
+        assertEquals(0, table.getGlyphIndex(0xf0000));
+        assertEquals(1000, extended.getGlyphIndex(0x1f600));
+    }
+
+    @Test
+    public void testFontGlyphIndices() throws Exception {
+        File file = new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf");
+        FontUris fontUris = new FontUris(file.toURI(), null);
+        MultiByteFont font = (MultiByteFont) FontLoader.loadFont(fontUris, "", true, EmbeddingMode.AUTO,
+                EncodingMode.CID, false, false, ResourceResolverFactory.createDefaultInternalResourceResolver(
+                        new File(".").toURI()), false, false);
+        CMapSegment[] cmap = font.getCMap();
+        for (int cp = 0; cp < 0x10000; cp++) {
+            int expected = 0;
+            for (CMapSegment segment : cmap) {
+                if (segment.getUnicodeStart() <= cp && cp <= segment.getUnicodeEnd()) {
+                    expected = segment.getGlyphStartIndex() + cp - segment.getUnicodeStart();
+                    if (expected != 0) {
+                        break;
+                    }
+                }
+            }
+            assertEquals(expected, font.findGlyphIndex(cp));
+        }
+    }
+}
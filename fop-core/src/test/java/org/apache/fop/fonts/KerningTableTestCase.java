@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class KerningTableTestCase {
+
+    @Test
+    public void testLookup() {
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        for (int ch1 = 0; ch1 < 300; ch1 += 3) {
+            Map<Integer, Integer> pairs = new HashMap<Integer, Integer>();
+            for (int ch2 = 0x10000; ch2 < 0x10040; ch2 += 7) {
+                pairs.put(ch2, ch1 - ch2);
+            }
+            kerning.put(ch1, pairs);
+        }
+        KerningTable table = KerningTable.build(kerning);
+        assertEquals(100 * 10, table.size());
+        for (int ch1 = 0; ch1 < 300; ch1++) {
+            for (int ch2 = 0x10000; ch2 < 0x10040; ch2++) {
+                int expected = (ch1 % 3 == 0 && ch2 % 7 == 0x10000 % 7) ? ch1 - ch2 : 0;
+                assertEquals(expected, table.getKerning(ch1, ch2));
+            }
+        }
+        assertEquals(0, table.getKerning(0x10000, 0));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(KerningTable.build(null).isEmpty());
+        KerningTable table = KerningTable.build(new HashMap<Integer, Map<Integer, Integer>>());
+        assertEquals(0, table.getKerning('A', 'V'));
+    }
+
+    @Test
+    public void testFontKerning() throws Exception {
+        File file = new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf");
+        FontUris fontUris = new FontUris(file.toURI(), null);
+        CustomFont font = FontLoader.loadFont(fontUris, "", true, EmbeddingMode.AUTO, EncodingMode.AUTO,
+                true, false, ResourceResolverFactory.createDefaultInternalResourceResolver(
+                        new File(".").toURI()), false, false);
+        Map<Integer, Map<Integer, Integer>> kerning = font.getKerningInfo();
+        assertTrue(font.hasKerningInfo());
+        for (Map.Entry<Integer, Map<Integer, Integer>> first : kerning.entrySet()) {
+            for (Map.Entry<Integer, Integer> second : first.getValue().entrySet()) {
+                assertEquals(second.getValue().intValue(), font.getKerning(first.getKey(), second.getKey()));
+            }
+        }
+        assertEquals(0, font.getKerning('\u4e00', 'A'));
+        font.setKerningEnabled(false);
+        assertEquals(0, font.getKerning('A', 'V'));
+    }
+}
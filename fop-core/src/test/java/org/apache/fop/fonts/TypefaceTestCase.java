@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.fop.fonts.base14.Helvetica;
+
+public class TypefaceTestCase {
+
+    @Test
+    public void testMissingGlyphsWarnedOnceFromSeveralThreads() throws Exception {
+        for (int run = 0; run < 50; run++) {
+            Set<Character> warned = warnConcurrently(new Helvetica());
+            assertEquals(8, warned.size());
+        }
+    }
+
+    private static Set<Character> warnConcurrently(final Typeface font) throws Exception {
+        final List<Character> warned = Collections.synchronizedList(new ArrayList<Character>());
+        font.setEventListener(new FontEventListener() {
+            public void fontSubstituted(Object source, FontTriplet requested,
+                    FontTriplet effective) {
+            }
+
+            public void fontLoadingErrorAtAutoDetection(Object source, String fontURL,
+                    Exception e) {
+            }
+
+            public void glyphNotAvailable(Object source, char ch, String fontName) {
+                warned.add(ch);
+            }
+
+            public void fontDirectoryNotFound(Object source, String dir) {
+            }
+
+            public void svgTextStrokedAsShapes(Object source, String fontFamily) {
+            }
+        });
+        //the base 14 fonts map characters without synchronization
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final char first = (char) ('\u4E00' + i * 4);
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (char c = first; c < first + 16; c++) {
+                        font.mapChar(c);
+                        font.mapChar('\u4E00');
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Character> distinct = new HashSet<Character>(warned);
+        assertEquals(warned.size(), distinct.size());
+        return distinct;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.text.CharacterIterator;
+import java.text.StringCharacterIterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.traits.MinOptMax;
+
+public class WordWidthCacheTestCase {
+
+    private static final String TEXT = "AVATAR Wave AVATAR To Wave, AVATAR\u00adTo";
+
+    private CustomFont metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf");
+        FontUris fontUris = new FontUris(file.toURI(), null);
+        metrics = FontLoader.loadFont(fontUris, "", true, EmbeddingMode.AUTO, EncodingMode.AUTO,
+                true, false, ResourceResolverFactory.createDefaultInternalResourceResolver(
+                        new File(".").toURI()), false, false);
+    }
+
+    @Test
+    public void testCachedMeasurementsAreEqual() {
+        Font font = new Font("F1", null, metrics, 12000);
+        assertTrue(font.hasKerning());
+        MinOptMax letterSpace = MinOptMax.getInstance(-100, 0, 300);
+        //the first occurrence of each word is measured, later occurrences are served from the cache
+        MinOptMax[] cachedAdjust = new MinOptMax[TEXT.length() + 1];
+        MinOptMax[] cachedIPDs = mapWords(font, letterSpace, cachedAdjust);
+        WordWidthCache cache = font.getWordWidthCache();
+        assertTrue(cache.getHitCount() > 0);
+        assertEquals(cache.size(), cache.getMissCount());
+
+        MinOptMax[] expectedIPDs = new MinOptMax[cachedIPDs.length];
+        MinOptMax[] expectedAdjust = new MinOptMax[TEXT.length() + 1];
+        String[] words = TEXT.split(" ");
+        int start = 0;
+        for (int i = 0; i < words.length; i++) {
+            //a fresh font instance has an empty cache
+            Font uncached = new Font("F1", null, metrics, 12000);
+            expectedIPDs[i] = map(uncached, start, words[i], letterSpace, expectedAdjust);
+            assertEquals(0, uncached.getWordWidthCache().getHitCount());
+            start += words[i].length() + 1;
+        }
+        assertArrayEquals(expectedIPDs, cachedIPDs);
+        assertArrayEquals(expectedAdjust, cachedAdjust);
+        //"AVATAR" is kerned
+        assertTrue(cachedAdjust[1] != null);
+    }
+
+    @Test
+    public void testFontSizesAreCachedSeparately() {
+        Font small = new Font("F1", null, metrics, 10000);
+        Font large = new Font("F1", null, metrics, 20000);
+        MinOptMax[] smallIPDs = mapWords(small, MinOptMax.ZERO, new MinOptMax[TEXT.length() + 1]);
+        MinOptMax[] largeIPDs = mapWords(large, MinOptMax.ZERO, new MinOptMax[TEXT.length() + 1]);
+        assertTrue(largeIPDs[0].getOpt() > smallIPDs[0].getOpt());
+        assertEquals(smallIPDs[0], smallIPDs[2]);
+        assertEquals(largeIPDs[0], largeIPDs[2]);
+    }
+
+    @Test
+    public void testMappedWords() throws Exception {
+        File file = new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf");
+        CustomFont advanced = FontLoader.loadFont(new FontUris(file.toURI(), null), "", true,
+                EmbeddingMode.AUTO, EncodingMode.CID, true, true,
+                ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI()),
+                false, false);
+        Font font = new Font("F1", null, advanced, 12000);
+        assertTrue(font.performsSubstitution());
+        StringFragment text = new StringFragment("AVATAR AVATAR");
+        GlyphMapping first = GlyphMapping.doGlyphMapping(text, 0, 6, font, MinOptMax.ZERO,
+                new MinOptMax[14], (char) 0, ' ', false, 0, false, false, false);
+        GlyphMapping second = GlyphMapping.doGlyphMapping(text, 7, 13, font, MinOptMax.ZERO,
+                new MinOptMax[14], (char) 0, (char) 0, false, 0, false, false, false);
+        assertEquals(1, font.getWordWidthCache().getHitCount());
+        assertEquals(first.areaIPD, second.areaIPD);
+        assertEquals(first.mapping, second.mapping);
+        assertTrue(first.breakOppAfter);
+        assertFalse(second.breakOppAfter);
+        assertEquals(6, second.endIndex - second.startIndex);
+        assertTrue(second.gposAdjustments != null && second.gposAdjustments != first.gposAdjustments);
+        assertArrayEquals(first.gposAdjustments, second.gposAdjustments);
+    }
+
+    @Test
+    public void testBoundedSize() {
+        WordWidthCache cache = new WordWidthCache(2);
+        cache.put("a", new WordWidthCache.WordWidth(1, null));
+        cache.put("b", new WordWidthCache.WordWidth(2, null));
+        cache.put("c", new WordWidthCache.WordWidth(3, null));
+        assertTrue(cache.size() <= 2);
+        assertEquals(3, cache.get("c").width);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    private MinOptMax[] mapWords(Font font, MinOptMax letterSpace, MinOptMax[] letterSpaceAdjust) {
+        String[] words = TEXT.split(" ");
+        MinOptMax[] ipds = new MinOptMax[words.length];
+        int start = 0;
+        for (int i = 0; i < words.length; i++) {
+            ipds[i] = map(font, start, words[i], letterSpace, letterSpaceAdjust);
+            start += words[i].length() + 1;
+        }
+        return ipds;
+    }
+
+    private MinOptMax map(Font font, int start, String word, MinOptMax letterSpace,
+            MinOptMax[] letterSpaceAdjust) {
+        int end = start + word.length();
+        boolean hyphenated = word.indexOf('\u00ad') >= 0;
+        if (hyphenated) {
+            end = start + word.indexOf('\u00ad');
+        }
+        char breakChar = hyphenated ? '-' : 0;
+        GlyphMapping mapping = GlyphMapping.doGlyphMapping(new StringFragment(TEXT), start, end, font,
+                letterSpace, letterSpaceAdjust, (char) 0, breakChar, hyphenated, 0, false, false, false);
+        return mapping.areaIPD;
+    }
+
+    private static final class StringFragment implements TextFragment {
+
+        private final String text;
+
+        private StringFragment(String text) {
+            this.text = text;
+        }
+
+        public CharacterIterator getIterator() {
+            return new StringCharacterIterator(text);
+        }
+
+        public int getBeginIndex() {
+            return 0;
+        }
+
+        public int getEndIndex() {
+            return text.length();
+        }
+
+        public String getScript() {
+            return "auto";
+        }
+
+        public String getLanguage() {
+            return "none";
+        }
+
+        public int getBidiLevel() {
+            return -1;
+        }
+
+        public char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        public CharSequence subSequence(int startIndex, int endIndex) {
+            return text.subSequence(startIndex, endIndex);
+        }
+    }
+}
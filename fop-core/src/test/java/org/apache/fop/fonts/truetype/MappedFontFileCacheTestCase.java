@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.ResourceResolver;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class MappedFontFileCacheTestCase {
+
+    private File fontFile;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        fontFile = File.createTempFile("font", ".ttf");
+        OutputStream out = new FileOutputStream(fontFile);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        fontFile.delete();
+    }
+
+    @Test
+    public void readersShareOneMapping() throws IOException {
+        MappedFontFileCache cache = MappedFontFileCache.getInstance();
+        int before = cache.size();
+        InternalResourceResolver resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                fontFile.getParentFile().toURI());
+        FontFileReader first = FontFileReader.open(resolver, URI.create(fontFile.getName()));
+        FontFileReader second = FontFileReader.open(resolver, fontFile.toURI());
+        assertTrue(first.isMapped());
+        assertTrue(second.isMapped());
+        assertEquals(before + 1, cache.size());
+
+        assertEquals(content.length, first.getFileSize());
+        first.seekSet(0x10);
+        assertEquals(0x1011, first.readTTFUShort());
+        assertEquals(0x12131415, first.readTTFLong());
+        assertArrayEquals(content, first.getAllBytes());
+
+        first.writeTTFUShort(0, 0xcafe);
+        assertFalse(first.isMapped());
+        assertEquals(0xcafe, first.readTTFUShort(0));
+        assertEquals(0x0001, second.readTTFUShort(0));
+
+        first.close();
+        assertEquals(before + 1, cache.size());
+        second.close();
+        second.close();
+        assertEquals(before, cache.size());
+        assertEquals(0x0203, second.readTTFUShort(2));
+    }
+
+    @Test
+    public void retainedMappingsOutliveTheirReaders() throws IOException {
+        MappedFontFileCache cache = MappedFontFileCache.getInstance();
+        int before = cache.size();
+        InternalResourceResolver resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                fontFile.getParentFile().toURI());
+        FontFileMappings mappings = new FontFileMappings();
+        mappings.retain(resolver, fontFile.toURI());
+        mappings.retain(resolver, URI.create(fontFile.getName()));
+        assertEquals(1, mappings.size());
+        assertEquals(before + 1, cache.size());
+
+        FontFileReader reader = FontFileReader.open(resolver, fontFile.toURI());
+        assertTrue(reader.isMapped());
+        reader.close();
+        assertEquals(before + 1, cache.size());
+
+        mappings.release();
+        assertEquals(0, mappings.size());
+        assertEquals(before, cache.size());
+    }
+
+    @Test
+    public void customResolversAreNotBypassed() throws IOException {
+        final ResourceResolver defaultResolver = ResourceResolverFactory.createDefaultResourceResolver();
+        final boolean[] used = new boolean[1];
+        ResourceResolver custom = new ResourceResolver() {
+            public Resource getResource(URI uri) throws IOException {
+                used[0] = true;
+                return defaultResolver.getResource(uri);
+            }
+
+            public OutputStream getOutputStream(URI uri) throws IOException {
+                return defaultResolver.getOutputStream(uri);
+            }
+        };
+        InternalResourceResolver resolver = ResourceResolverFactory.createInternalResourceResolver(
+                fontFile.getParentFile().toURI(), custom);
+        FontFileReader reader = FontFileReader.open(resolver, fontFile.toURI());
+        assertFalse(reader.isMapped());
+        assertTrue(used[0]);
+        assertArrayEquals(content, reader.getAllBytes());
+        reader.close();
+    }
+}
@@ -26,6 +26,7 @@ import java.io.InputStream;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -88,4 +89,15 @@ public class OTFFileTestCase {
     public void testBoundingBoxes() {
         assertEquals(sourceSansProBold.getBoundingBoxes()[0], new Rectangle(-231, -384, 1454, 1358));
     }
+
+    @Test
+    public void testCFFData() throws Exception {
+        OFDirTabEntry cffTable = sourceSansProBold.getDirectoryEntry(OFTableName.CFF);
+        int position = sourceSansReader.getCurrentPos();
+        byte[] cff = OTFFile.getCFFData(sourceSansReader);
+        assertArrayEquals(sourceSansReader.getBytes((int) cffTable.getOffset(), (int) cffTable.getLength()),
+                cff);
+        assertEquals(position, sourceSansReader.getCurrentPos());
+        assertArrayEquals(cff, sourceSansProBold.cffData);
+    }
 }
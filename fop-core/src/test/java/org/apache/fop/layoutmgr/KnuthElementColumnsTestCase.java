@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KnuthElementColumnsTestCase {
+
+    @Test
+    public void testLoad() {
+        List<ListElement> list = new ArrayList<ListElement>();
+        list.add(new KnuthBox(100, null, false));
+        list.add(new KnuthGlue(20, 5, 3, null, false));
+        list.add(new KnuthPenalty(7, 50, true, null, false));
+        list.add(new KnuthPenalty(0, -KnuthElement.INFINITE, false, null, false));
+        list.add(new KnuthPenalty(0, KnuthElement.INFINITE, false, null, false));
+        KnuthElementColumns columns = new KnuthElementColumns();
+        columns.load(list);
+
+        assertEquals(5, columns.size());
+        assertTrue(columns.isBox(0));
+        assertEquals(100, columns.getWidth(0));
+        assertEquals(0, columns.getStretch(0));
+        assertTrue(columns.isGlue(1));
+        assertEquals(20, columns.getWidth(1));
+        assertEquals(5, columns.getStretch(1));
+        assertEquals(3, columns.getShrink(1));
+        assertTrue(columns.isPenalty(2));
+        assertTrue(columns.isFlaggedPenalty(2));
+        assertTrue(columns.isLegalPenaltyBreak(2));
+        assertEquals(7, columns.getWidth(2));
+        assertEquals(50, columns.getPenalty(2));
+        assertTrue(columns.isForcedBreak(3));
+        assertFalse(columns.isFlaggedPenalty(3));
+        assertFalse(columns.isLegalPenaltyBreak(4));
+        assertFalse(columns.isForcedBreak(1));
+        assertEquals(0, columns.nextBoxIndex(0));
+        assertEquals(5, columns.nextBoxIndex(1));
+    }
+
+    @Test
+    public void testInsertAndReload() {
+        List<ListElement> list = new ArrayList<ListElement>();
+        for (int i = 0; i < 100; i++) {
+            list.add(new KnuthBox(i, null, false));
+        }
+        KnuthElementColumns columns = new KnuthElementColumns();
+        columns.load(list);
+        columns.insert(0, KnuthPenalty.DUMMY_ZERO_PENALTY);
+        assertEquals(101, columns.size());
+        assertTrue(columns.isPenalty(0));
+        assertEquals(1, columns.nextBoxIndex(0));
+        assertEquals(99, columns.getWidth(100));
+
+        columns.load(list.subList(0, 3));
+        assertEquals(3, columns.size());
+        assertTrue(columns.isBox(0));
+        assertEquals(2, columns.getWidth(2));
+    }
+
+    @Test
+    public void testUnchangedSequenceIsNotReloaded() {
+        KnuthSequence sequence = new BlockKnuthSequence();
+        KnuthPenalty penalty = new KnuthPenalty(0, 50, false, null, false);
+        sequence.add(new KnuthBox(100, null, false));
+        sequence.add(penalty);
+        KnuthElementColumns columns = new KnuthElementColumns();
+        columns.loadSequence(sequence);
+        assertEquals(50, columns.getPenalty(1));
+
+        //the values of an unchanged sequence are not read again
+        penalty.setPenalty(10);
+        columns.loadSequence(sequence);
+        assertEquals(50, columns.getPenalty(1));
+
+        sequence.add(new KnuthGlue(20, 5, 3, null, false));
+        columns.loadSequence(sequence);
+        assertEquals(3, columns.size());
+        assertEquals(10, columns.getPenalty(1));
+        assertTrue(columns.isGlue(2));
+
+        sequence.set(0, new KnuthBox(70, null, false));
+        columns.loadSequence(sequence);
+        assertEquals(70, columns.getWidth(0));
+
+        //an insertion mirrored by the columns doesn't cause a reload
+        sequence.add(0, KnuthPenalty.DUMMY_ZERO_PENALTY);
+        columns.insert(0, KnuthPenalty.DUMMY_ZERO_PENALTY);
+        penalty.setPenalty(20);
+        columns.loadSequence(sequence);
+        assertEquals(4, columns.size());
+        assertEquals(10, columns.getPenalty(2));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that breaking lines ahead of layout on a fork-join pool produces the same result
+ * as serial line breaking.
+ */
+public class ParallelLineBreakingTestCase {
+
+    private static final String TEXT = "Lorem ipsum dolor sit amet, con­sec­te­tur"
+            + " adipiscing elit, sed do eiusmod tempor in­ci­di­dunt ut labore et"
+            + " dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation";
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testSingleColumn() throws Exception {
+        String fo = createDocument(1);
+        String expected = layout(fo, 0);
+        assertTrue(expected.contains("Entry 1999"));
+        assertEquals(expected, layout(fo, 4));
+        assertEquals(expected, layout(fo, 2));
+    }
+
+    @Test
+    public void testMultiColumn() throws Exception {
+        //blocks spanning all columns are laid out with another width than their predecessors
+        String fo = createDocument(2);
+        assertEquals(layout(fo, 0), layout(fo, 4));
+    }
+
+    private String layout(String fo, int threads) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setLineBreakingThreads(threads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private String createDocument(int columnCount) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        //pages of different widths change the available width after a page break
+        sb.append("<fo:simple-page-master master-name=\"narrow\" page-height=\"12cm\" page-width=\"9cm\">");
+        sb.append("<fo:region-body column-count=\"").append(columnCount).append("\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("<fo:simple-page-master master-name=\"wide\" page-height=\"12cm\" page-width=\"13cm\">");
+        sb.append("<fo:region-body column-count=\"").append(columnCount).append("\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("<fo:page-sequence-master master-name=\"alternating\">");
+        sb.append("<fo:repeatable-page-master-alternatives>");
+        sb.append("<fo:conditional-page-master-reference master-reference=\"narrow\" odd-or-even=\"odd\"/>");
+        sb.append("<fo:conditional-page-master-reference master-reference=\"wide\" odd-or-even=\"even\"/>");
+        sb.append("</fo:repeatable-page-master-alternatives>");
+        sb.append("</fo:page-sequence-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"alternating\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\" hyphenate=\"true\">");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("<fo:block");
+            if (i % 3 == 0) {
+                sb.append(" text-align=\"justify\" text-indent=\"10%\"");
+            }
+            if (i % 7 == 0) {
+                sb.append(" start-indent=\"5mm\" last-line-end-indent=\"-5mm\" text-align-last=\"justify\"");
+            }
+            if (i % 97 == 0) {
+                sb.append(" break-before=\"page\"");
+            }
+            if (columnCount > 1 && i % 89 == 0) {
+                sb.append(" span=\"all\"");
+            }
+            sb.append(">Entry ").append(i).append(' ').append(TEXT.substring(0, i % TEXT.length()));
+            if (i % 13 == 0) {
+                sb.append("<fo:inline font-weight=\"bold\">bold</fo:inline>");
+            } else if (i % 17 == 0) {
+                sb.append(" Averylongwordwhichdoesnotfitonalineofthenarrowpages");
+                sb.append("Averylongwordwhichdoesnotfitonalineofthenarrowpages");
+            }
+            sb.append("</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
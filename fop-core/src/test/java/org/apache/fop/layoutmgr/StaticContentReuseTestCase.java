@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that the areas of page-invariant static-content reused on the following pages give
+ * the same output as laying out the static-content on every page.
+ */
+public class StaticContentReuseTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testPageInvariantStaticContent() throws Exception {
+        //an empty retrieve-marker forces the static-content to be laid out on every page
+        String expected = layout(createDocument(true));
+        assertTrue(countOccurrences(expected, "<page ") > 20);
+        assertEquals(expected, layout(createDocument(false)));
+    }
+
+    @Test
+    public void testPageInvariantStaticContentIsPaintedOnceInPDF() throws Exception {
+        //uncompressed content streams
+        String conf = "<fop version=\"1.0\"><renderers><renderer mime=\"application/pdf\">"
+                + "<filterList><value>null</value></filterList></renderer></renderers></fop>";
+        FopFactory pdfFopFactory = new FopConfParser(new ByteArrayInputStream(conf.getBytes("UTF-8")),
+                new File(".").toURI()).getFopFactoryBuilder().build();
+
+        String expected = render(pdfFopFactory, MimeConstants.MIME_PDF, createDocument(true));
+        int pageCount = countOccurrences(expected, "/Type /Page\n");
+        assertTrue(pageCount > 20);
+        assertEquals(pageCount, countOccurrences(expected, "(Second)"));
+        assertEquals(0, countOccurrences(expected, "/Subtype /Form"));
+
+        //the headers of both page masters and the footer of the wide one are Form XObjects
+        String pdf = render(pdfFopFactory, MimeConstants.MIME_PDF, createDocument(false));
+        assertEquals(pageCount, countOccurrences(pdf, "/Type /Page\n"));
+        assertEquals(2, countOccurrences(pdf, "(Second)"));
+        assertEquals(3, countOccurrences(pdf, "/Subtype /Form"));
+        assertEquals(pageCount + pageCount / 2, countOccurrences(pdf, " Do\n"));
+    }
+
+    private String layout(String fo) throws Exception {
+        return render(fopFactory, MimeConstants.MIME_FOP_IF, fo);
+    }
+
+    private static String render(FopFactory fopFactory, String outputFormat, String fo)
+            throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(outputFormat, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("ISO-8859-1").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private static int countOccurrences(String intermediateFormat, String text) {
+        int count = 0;
+        for (int index = intermediateFormat.indexOf(text); index >= 0;
+                index = intermediateFormat.indexOf(text, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String createDocument(boolean pageDependent) {
+        String marker = pageDependent ? "<fo:retrieve-marker retrieve-class-name=\"none\"/>" : "";
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"narrow\" page-height=\"10cm\" page-width=\"8cm\">");
+        sb.append("<fo:region-body margin=\"2cm 1cm\"/>");
+        sb.append("<fo:region-before extent=\"2cm\"/>");
+        sb.append("<fo:region-after extent=\"1cm\" overflow=\"hidden\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("<fo:simple-page-master master-name=\"wide\" page-height=\"10cm\" page-width=\"12cm\">");
+        sb.append("<fo:region-body margin=\"2cm 1cm\"/>");
+        sb.append("<fo:region-before extent=\"1.5cm\" display-align=\"after\"/>");
+        sb.append("<fo:region-after extent=\"2cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("<fo:page-sequence-master master-name=\"alternating\">");
+        sb.append("<fo:repeatable-page-master-alternatives>");
+        sb.append("<fo:conditional-page-master-reference master-reference=\"narrow\" odd-or-even=\"odd\"/>");
+        sb.append("<fo:conditional-page-master-reference master-reference=\"wide\" odd-or-even=\"even\"/>");
+        sb.append("</fo:repeatable-page-master-alternatives>");
+        sb.append("</fo:page-sequence-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"alternating\">");
+        sb.append("<fo:static-content flow-name=\"xsl-region-before\">");
+        sb.append("<fo:block border=\"1pt solid black\" text-align=\"justify\">A header that wraps onto");
+        sb.append(" several lines in the narrow region").append(marker).append("</fo:block>");
+        sb.append("<fo:block><fo:inline font-weight=\"bold\">Second</fo:inline> line</fo:block>");
+        sb.append("</fo:static-content>");
+        sb.append("<fo:static-content flow-name=\"xsl-region-after\">");
+        sb.append("<fo:block>A footer that overflows the narrow region, which only has room for");
+        sb.append(" one or two lines of text").append(marker).append("</fo:block>");
+        sb.append("</fo:static-content>");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 0; i < 400; i++) {
+            sb.append("<fo:block>Entry ").append(i).append("</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
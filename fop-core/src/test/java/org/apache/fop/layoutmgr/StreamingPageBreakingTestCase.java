@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that streaming page breaking with a bounded lookahead produces the same pages as
+ * breaking the whole flow at once, for content without stretchable space.
+ */
+public class StreamingPageBreakingTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testSingleColumn() throws Exception {
+        String fo = createDocument(1, false);
+        String expected = layout(fo, 0);
+        //the flow is broken in several chunks
+        assertTrue(countOccurrences(expected, "<page ") > 100);
+        assertEquals(expected, layout(fo, 3));
+        assertEquals(expected, layout(fo, 1));
+    }
+
+    @Test
+    public void testMultiColumn() throws Exception {
+        String fo = createDocument(2, false);
+        assertEquals(layout(fo, 0), layout(fo, 2));
+    }
+
+    @Test
+    public void testFootnotes() throws Exception {
+        //footnotes may be placed differently, as breaks are only optimal within the lookahead
+        String streamed = layout(createDocument(1, true), 3);
+        assertEquals(3000 / 53 + 1, countOccurrences(streamed, ">Note "));
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(1, countOccurrences(streamed, ">Entry " + i + "<")
+                    + countOccurrences(streamed, ">Entry " + i + " "));
+        }
+    }
+
+    private String layout(String fo, int lookahead) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setPageBreakingLookahead(lookahead);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private static int countOccurrences(String intermediateFormat, String text) {
+        int count = 0;
+        for (int index = intermediateFormat.indexOf(text); index >= 0;
+                index = intermediateFormat.indexOf(text, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private String createDocument(int columnCount, boolean footnotes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body column-count=\"").append(columnCount).append("\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 0; i < 3000; i++) {
+            if (i % 997 == 996) {
+                sb.append("<fo:block break-before=\"page\"/>");
+            }
+            sb.append("<fo:block");
+            if (i % 7 == 0) {
+                sb.append(" space-before=\"6pt\" keep-with-next=\"always\"");
+            }
+            if (i % 11 == 0) {
+                sb.append(" border=\"1pt solid black\" padding=\"2pt\" space-after=\"3pt\"");
+            }
+            sb.append(">Entry ").append(i);
+            if (i % 5 == 0) {
+                sb.append(" with a longer text that wraps onto a second line of the column");
+            }
+            if (footnotes && i % 53 == 0) {
+                sb.append("<fo:footnote><fo:inline>*</fo:inline><fo:footnote-body>");
+                sb.append("<fo:block>Note ").append(i).append("</fo:block>");
+                sb.append("</fo:footnote-body></fo:footnote>");
+            }
+            sb.append("</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
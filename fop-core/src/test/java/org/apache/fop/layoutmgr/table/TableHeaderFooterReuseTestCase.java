@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr.table;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that the areas of a table-header and -footer reused where they are repeated give the
+ * same output as creating them on every page.
+ */
+public class TableHeaderFooterReuseTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testSeparateBorders() throws Exception {
+        testReuse("separate");
+    }
+
+    @Test
+    public void testCollapsingBorders() throws Exception {
+        testReuse("collapse");
+    }
+
+    private void testReuse(String borderCollapse) throws Exception {
+        //a marker that is never retrieved forces the areas to be created on every page
+        String expected = layout(createDocument(borderCollapse, true));
+        assertTrue(countOccurrences(expected, "<page ") > 10);
+        assertEquals(expected, layout(createDocument(borderCollapse, false)));
+    }
+
+    private String layout(String fo) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private static int countOccurrences(String intermediateFormat, String text) {
+        int count = 0;
+        for (int index = intermediateFormat.indexOf(text); index >= 0;
+                index = intermediateFormat.indexOf(text, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String createDocument(String borderCollapse, boolean pageDependent) {
+        String marker = pageDependent
+                ? "<fo:marker marker-class-name=\"unused\">Unused</fo:marker>" : "";
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body margin=\"1cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        sb.append("<fo:table width=\"100%\" table-layout=\"fixed\" border-collapse=\"");
+        sb.append(borderCollapse).append("\" border=\"1pt solid black\">");
+        sb.append("<fo:table-column column-width=\"30%\"/>");
+        sb.append("<fo:table-column column-width=\"70%\"/>");
+        sb.append("<fo:table-header background-color=\"silver\" border=\"2pt solid blue\">");
+        for (int i = 0; i < 4; i++) {
+            sb.append("<fo:table-row");
+            if (i % 2 == 1) {
+                sb.append(" background-color=\"yellow\"");
+            }
+            sb.append("><fo:table-cell border=\"0.5pt solid red\" padding=\"1pt\">");
+            sb.append("<fo:block>").append(marker).append("Header ").append(i).append("</fo:block>");
+            sb.append("</fo:table-cell>");
+            sb.append("<fo:table-cell><fo:block>A header cell that wraps onto two lines</fo:block>");
+            sb.append("</fo:table-cell></fo:table-row>");
+        }
+        sb.append("</fo:table-header>");
+        sb.append("<fo:table-footer border=\"1pt solid green\">");
+        sb.append("<fo:table-row><fo:table-cell number-columns-spanned=\"2\" padding=\"2pt\">");
+        sb.append("<fo:block>").append(marker).append("Footer</fo:block>");
+        sb.append("</fo:table-cell></fo:table-row>");
+        sb.append("</fo:table-footer>");
+        sb.append("<fo:table-body>");
+        for (int i = 0; i < 150; i++) {
+            sb.append("<fo:table-row><fo:table-cell border=\"0.5pt solid gray\">");
+            sb.append("<fo:block>").append(i).append("</fo:block></fo:table-cell>");
+            sb.append("<fo:table-cell><fo:block>Transaction ").append(i);
+            if (i % 3 == 0) {
+                sb.append(" with a description that wraps onto a second line");
+            }
+            if (i % 7 == 0) {
+                sb.append(" and a remark that makes it even longer, so that the footer");
+                sb.append(" doesn't end up at the same height on every page");
+            }
+            sb.append("</fo:block></fo:table-cell></fo:table-row>");
+        }
+        sb.append("</fo:table-body>");
+        sb.append("</fo:table>");
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
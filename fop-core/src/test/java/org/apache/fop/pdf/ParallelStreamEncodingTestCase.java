@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that streams encoded in the background are written exactly like serially encoded ones.
+ */
+public class ParallelStreamEncodingTestCase {
+
+    @Test
+    public void testOutputMatchesSerialEncoding() throws IOException {
+        byte[] serial = outputDocument(0, -1);
+        byte[] parallel = outputDocument(4, -1);
+        assertArrayEquals(serial, parallel);
+    }
+
+    @Test
+    public void testCompressionLevel() throws IOException {
+        byte[] stored = outputDocument(0, 0);
+        byte[] compressed = outputDocument(0, 9);
+        assertTrue(compressed.length < stored.length);
+        assertArrayEquals(compressed, outputDocument(3, 9));
+    }
+
+    @Test
+    public void testThreadsAreReleasedWhenOutputFails() throws Exception {
+        //threads of documents that were never finished, they only go away when idle
+        Set<Thread> previousThreads = getEncodingThreads();
+        PDFDocument doc = new PDFDocument("Apache FOP");
+        doc.setStreamEncodingThreads(4);
+        for (int i = 0; i < 10; i++) {
+            PDFStream stream = new PDFStream();
+            doc.registerObject(stream);
+            stream.add("0 0 m\n");
+        }
+        OutputStream out = new OutputStream() {
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        try {
+            doc.output(out);
+            fail("IOException expected");
+        } catch (IOException e) {
+            //expected
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        Set<Thread> threads = getEncodingThreads();
+        threads.removeAll(previousThreads);
+        while (!threads.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            threads.retainAll(getEncodingThreads());
+        }
+        assertTrue(threads.isEmpty());
+    }
+
+    private static Set<Thread> getEncodingThreads() {
+        Set<Thread> threads = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("FOP PDF stream encoder")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private byte[] outputDocument(int threads, int compressionLevel) throws IOException {
+        PDFDocument doc = new PDFDocument("Apache FOP");
+        doc.getInfo().setCreationDate(new Date(0));
+        doc.setStreamEncodingThreads(threads);
+        doc.setCompressionLevel(compressionLevel);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random random = new Random(42);
+        for (int batch = 0; batch < 3; batch++) {
+            for (int i = 0; i < 10; i++) {
+                PDFStream stream = new PDFStream(i % 3 != 0);
+                doc.registerObject(stream);
+                for (int line = 0; line < 200; line++) {
+                    stream.add(random.nextInt(1000) + " " + random.nextInt(1000) + " m\n");
+                }
+            }
+            doc.output(out);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.ResourceResolver;
+
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class SpillingStreamCacheTestCase {
+
+    @Test
+    public void testNoLimitsUsesMemoryInstance() throws IOException {
+        StreamCacheFactory factory = StreamCacheFactory.getInstance(-1, -1);
+        assertSame(StreamCacheFactory.getInstance(), factory);
+        assertTrue(factory.createStreamCache() instanceof InMemoryStreamCache);
+    }
+
+    @Test
+    public void testSmallStreamStaysInMemory() throws IOException {
+        StreamCacheFactory factory = StreamCacheFactory.getInstance(1024, -1);
+        SpillingStreamCache cache = (SpillingStreamCache) factory.createStreamCache();
+        byte[] data = createData(100);
+        cache.write(data);
+        assertFalse(cache.isSpilled());
+        assertEquals(100, cache.getSize());
+        assertArrayEquals(data, contents(cache));
+        cache.clear();
+        assertEquals(0, factory.getMemoryInUse());
+    }
+
+    @Test
+    public void testStreamLimit() throws IOException {
+        StreamCacheFactory factory = StreamCacheFactory.getInstance(1024, -1);
+        SpillingStreamCache cache = (SpillingStreamCache) factory.createStreamCache();
+        byte[] data = createData(5000);
+        OutputStream out = cache.getOutputStream();
+        for (int i = 0; i < data.length; i += 100) {
+            out.write(data, i, 100);
+        }
+        assertTrue(cache.isSpilled());
+        assertEquals(0, factory.getMemoryInUse());
+        assertEquals(5000, cache.getSize());
+        assertArrayEquals(data, contents(cache));
+        //the cache can still be appended to after its contents have been read
+        out.write(42);
+        assertEquals(5001, cache.getSize());
+        assertEquals(42, contents(cache)[5000]);
+        cache.clear();
+        assertFalse(cache.isSpilled());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testDocumentLimit() throws IOException {
+        StreamCacheFactory factory = StreamCacheFactory.getInstance(-1, 2048);
+        SpillingStreamCache first = (SpillingStreamCache) factory.createStreamCache();
+        first.write(createData(1500));
+        SpillingStreamCache second = (SpillingStreamCache) factory.createStreamCache();
+        second.write(createData(1500));
+        assertFalse(first.isSpilled());
+        assertTrue(second.isSpilled());
+        assertTrue(factory.getMemoryInUse() <= 2048);
+        first.clear();
+        assertEquals(0, factory.getMemoryInUse());
+        SpillingStreamCache third = (SpillingStreamCache) factory.createStreamCache();
+        third.write(createData(1500));
+        assertFalse(third.isSpilled());
+        second.clear();
+        third.clear();
+    }
+
+    @Test
+    public void testSpillsThroughCustomResourceResolver() throws IOException {
+        TempResourceResolver resolver = new TempResourceResolver();
+        StreamCacheFactory factory = StreamCacheFactory.getInstance(1024, -1,
+                ResourceResolverFactory.createInternalResourceResolver(URI.create("file:///"),
+                        resolver));
+        SpillingStreamCache cache = (SpillingStreamCache) factory.createStreamCache();
+        byte[] data = createData(5000);
+        cache.write(data);
+        assertTrue(cache.isSpilled());
+        assertEquals(1, resolver.resources.size());
+        assertEquals("tmp", resolver.resources.keySet().iterator().next().getScheme());
+        assertArrayEquals(data, contents(cache));
+        //temporary resources can only be read once, so reading must not lose the data
+        cache.getOutputStream().write(42);
+        byte[] contents = contents(cache);
+        assertEquals(5001, contents.length);
+        assertEquals(42, contents[5000]);
+        assertEquals(1, resolver.resources.size());
+        cache.clear();
+        assertTrue(resolver.resources.isEmpty());
+    }
+
+    @Test
+    public void testStreamMovesToDocumentCache() throws IOException {
+        PDFDocument doc = new PDFDocument("Apache FOP");
+        doc.setStreamCacheFactory(StreamCacheFactory.getInstance(8, -1));
+        PDFStream stream = new PDFStream();
+        stream.add("Hello");
+        stream.setDocument(doc);
+        stream.add(" World!");
+        //flushes the stream's writer
+        stream.getSizeHint();
+        assertTrue(stream.data instanceof SpillingStreamCache);
+        assertTrue(((SpillingStreamCache) stream.data).isSpilled());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stream.outputRawStreamData(out);
+        assertEquals("Hello World!", out.toString("US-ASCII"));
+        stream.discardData();
+    }
+
+    @Test
+    public void testDocumentOutputReleasesStreams() throws IOException {
+        File tempDir = new File(System.getProperty("java.io.tmpdir"));
+        int tempFiles = countTempFiles(tempDir);
+        PDFDocument doc = new PDFDocument("Apache FOP");
+        StreamCacheFactory factory = StreamCacheFactory.getInstance(1024, -1);
+        doc.setStreamCacheFactory(factory);
+        PDFStream small = new PDFStream();
+        doc.registerObject(small);
+        small.add("Hello World!");
+        small.getSizeHint();
+        PDFStream large = new PDFStream();
+        doc.registerObject(large);
+        for (int i = 0; i < 500; i++) {
+            large.add("Hello World!");
+        }
+        large.getSizeHint();
+        assertTrue(((SpillingStreamCache) large.data).isSpilled());
+        //the contents of a form are written by the form
+        PDFStream formContents = new PDFStream();
+        formContents.setDocument(doc);
+        for (int i = 0; i < 500; i++) {
+            formContents.add("Hello World!");
+        }
+        doc.addFormXObject(null, formContents, null, "form");
+        formContents.getSizeHint();
+        assertTrue(((SpillingStreamCache) formContents.data).isSpilled());
+        assertTrue(factory.getMemoryInUse() > 0);
+        assertEquals(tempFiles + 2, countTempFiles(tempDir));
+
+        doc.output(new ByteArrayOutputStream());
+        assertEquals(0, factory.getMemoryInUse());
+        assertEquals(tempFiles, countTempFiles(tempDir));
+    }
+
+    private static int countTempFiles(File dir) {
+        String[] names = dir.list();
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith("org.apache.fop.pdf.StreamCache-")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] contents(StreamCache cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(cache.getSize(), cache.outputContents(out));
+        return out.toByteArray();
+    }
+
+    private static class TempResourceResolver implements ResourceResolver {
+
+        private final Map<URI, ByteArrayOutputStream> resources
+                = new HashMap<URI, ByteArrayOutputStream>();
+
+        public Resource getResource(URI uri) throws IOException {
+            ByteArrayOutputStream data = resources.remove(uri);
+            if (data == null) {
+                throw new IOException(uri + " does not exist");
+            }
+            return new Resource(new ByteArrayInputStream(data.toByteArray()));
+        }
+
+        public OutputStream getOutputStream(URI uri) throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            resources.put(uri, data);
+            return data;
+        }
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+}
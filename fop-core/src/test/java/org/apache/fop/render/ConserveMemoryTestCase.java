@@ -19,6 +19,7 @@ package org.apache.fop.render;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Date;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -35,9 +36,13 @@ import org.junit.Test;
 
 import org.xml.sax.SAXException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
 
 public class ConserveMemoryTestCase {
     @Test
@@ -76,6 +81,91 @@ public class ConserveMemoryTestCase {
         }
     }
 
+    @Test
+    public void testSavedPages() throws Exception {
+        //the citations of the last page keep all pages unresolved until the end
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body margin=\"1cm\"/><fo:region-before extent=\"1cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:static-content flow-name=\"xsl-region-before\"><fo:block color=\"blue\">");
+        sb.append("Page <fo:page-number/> of <fo:page-number-citation ref-id=\"last\"/>");
+        sb.append("</fo:block></fo:static-content>");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 0; i < 200; i++) {
+            sb.append("<fo:block border=\"1pt solid red\" font-weight=\"bold\">Entry ").append(i);
+            sb.append(" <fo:basic-link internal-destination=\"last\">see the end</fo:basic-link>");
+            sb.append("</fo:block>");
+        }
+        sb.append("<fo:block id=\"last\">End</fo:block>");
+        sb.append("</fo:flow></fo:page-sequence></fo:root>");
+        String fo = sb.toString();
+
+        String expected = getPages(foToIntermediateFormat(fo, false, 0));
+        assertEquals(16, expected.split("<page ").length - 1);
+        assertTrue(expected.contains(">16</text>"));
+        assertEquals(expected, getPages(foToIntermediateFormat(fo, true, 0)));
+        assertEquals(expected, getPages(foToIntermediateFormat(fo, true, 1024 * 1024)));
+        assertEquals(expected, getPages(foToIntermediateFormat(fo, true, 20000)));
+    }
+
+    @Test
+    public void testSavedPageContents() throws Exception {
+        //change bars, foreign attributes and justified text on a page that is saved
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\"");
+        sb.append(" xmlns:fox=\"http://xmlgraphics.apache.org/fop/extensions\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body margin=\"1cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        sb.append("<fo:block text-align=\"justify\"");
+        sb.append(" background-color=\"yellow\" change-bar-style=\"solid\" change-bar-color=\"red\">");
+        sb.append("Text with a <fo:leader leader-pattern=\"dots\" leader-length=\"2cm\"/> leader, ");
+        sb.append("<fo:change-bar-begin change-bar-class=\"c1\"/><fo:inline color=\"red\">a change");
+        sb.append("</fo:inline><fo:change-bar-end change-bar-class=\"c1\"/> and enough words to wrap");
+        sb.append(" onto a few lines of the narrow region body of this page.</fo:block>");
+        sb.append("<fo:block><fo:external-graphic src=\"test/resources/images/box1.png\"");
+        sb.append(" fox:conversion-mode=\"bitmap\"/></fo:block>");
+        sb.append("<fo:block>See <fo:basic-link internal-destination=\"last\">page ");
+        sb.append("<fo:page-number-citation ref-id=\"last\"/></fo:basic-link></fo:block>");
+        sb.append("<fo:block id=\"last\" break-before=\"page\">End</fo:block>");
+        sb.append("</fo:flow></fo:page-sequence></fo:root>");
+        String fo = sb.toString();
+
+        String expected = getPages(foToIntermediateFormat(fo, false, 0));
+        assertTrue(expected.contains("fox:conversion-mode=\"bitmap\""));
+        assertEquals(expected, getPages(foToIntermediateFormat(fo, true, 0)));
+        assertEquals(expected, getPages(foToIntermediateFormat(fo, true, 1024 * 1024)));
+    }
+
+    private static String getPages(String intermediateFormat) {
+        return intermediateFormat.substring(intermediateFormat.indexOf("<page "),
+                intermediateFormat.lastIndexOf("</page>"));
+    }
+
+    private String foToIntermediateFormat(String fo, boolean conserveMemory, long cacheSize)
+            throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setConserveMemoryPolicy(conserveMemory);
+        userAgent.setConserveMemoryCacheSize(cacheSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("UTF-8").replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
     private void foToOutput(String fo) throws SAXException, TransformerException {
         FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
         FOUserAgent userAgent = fopFactory.newFOUserAgent();
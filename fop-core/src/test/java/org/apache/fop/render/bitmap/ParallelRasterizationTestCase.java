@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that rasterizing pages concurrently or in bands produces the same bitmaps as
+ * rasterizing them at once on the rendering thread.
+ */
+public class ParallelRasterizationTestCase {
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    @Test
+    public void testTIFF() throws Exception {
+        String fo = createDocument();
+        byte[] expected = render(fo, MimeConstants.MIME_TIFF, 0, 0);
+        assertTrue(expected.length > 0);
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_TIFF, 4, 0)));
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_TIFF, 2, 0)));
+    }
+
+    @Test
+    public void testPNG() throws Exception {
+        String fo = createDocument();
+        byte[] expected = render(fo, MimeConstants.MIME_PNG, 0, 0);
+        assertTrue(expected.length > 0);
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_PNG, 3, 0)));
+    }
+
+    @Test
+    public void testBandedTIFF() throws Exception {
+        String fo = createDocument();
+        byte[] expected = render(fo, MimeConstants.MIME_TIFF, 0, 0);
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_TIFF, 0, 16)));
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_TIFF, 2, 50)));
+    }
+
+    @Test
+    public void testBandedPNG() throws Exception {
+        String fo = createDocument();
+        byte[] expected = render(fo, MimeConstants.MIME_PNG, 0, 0);
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_PNG, 0, 16)));
+        assertTrue(Arrays.equals(expected, render(fo, MimeConstants.MIME_PNG, 3, 33)));
+    }
+
+    @Test
+    public void testThreadsAreReleasedWhenWritingFails() throws Exception {
+        Set<Thread> previousThreads = getRasterizerThreads();
+        OutputStream out = new OutputStream() {
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        try {
+            render(createDocument(), MimeConstants.MIME_TIFF, 4, 0, out);
+            fail("The output can't be written");
+        } catch (TransformerException e) {
+            //expected
+        }
+        Set<Thread> threads = getRasterizerThreads();
+        threads.removeAll(previousThreads);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!threads.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            threads.retainAll(getRasterizerThreads());
+        }
+        assertTrue(threads.isEmpty());
+    }
+
+    private static Set<Thread> getRasterizerThreads() {
+        Set<Thread> threads = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("FOP rasterizer")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private byte[] render(String fo, String mimeType, int threads, int bandHeight) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(fo, mimeType, threads, bandHeight, out);
+        return out.toByteArray();
+    }
+
+    private void render(String fo, String mimeType, int threads, int bandHeight, OutputStream out)
+            throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setRasterizationThreads(threads);
+        userAgent.setRasterizationBandHeight(bandHeight);
+        Fop fop = fopFactory.newFop(mimeType, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+    }
+
+    private String createDocument() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"5cm\" page-width=\"8cm\">");
+        sb.append("<fo:region-body margin=\"0.5cm\"/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 0; i < 60; i++) {
+            sb.append("<fo:block");
+            if (i % 3 == 0) {
+                sb.append(" border=\"1pt solid red\" background-color=\"#eeeeff\" letter-spacing=\"1pt\"");
+            }
+            sb.append(">Line ").append(i).append(" with some text");
+            if (i % 7 == 0) {
+                sb.append(" <fo:external-graphic src=\"test/resources/images/box1.png\""
+                        + " content-width=\"0.5cm\" content-height=\"0.5cm\"/>");
+            }
+            if (i % 5 == 0) {
+                sb.append("<fo:leader leader-pattern=\"rule\" leader-length=\"2cm\"/>");
+            }
+            sb.append("</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.xmlgraphics.image.loader.ImageManager;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+
+public class IFBinarySerializerTestCase {
+
+    private FOUserAgent userAgent;
+
+    @Before
+    public void setUp() {
+        userAgent = mock(FOUserAgent.class);
+        when(userAgent.getImageManager()).thenReturn(mock(ImageManager.class));
+    }
+
+    @Test
+    public void replayProducesSameIntermediateFormat() throws Exception {
+        String expected = toXML(new Replayer() {
+            public void replay(IFDocumentHandler target) throws IFException {
+                paintDocument(target);
+            }
+        });
+        final byte[] binary = toBinary();
+        String actual = toXML(new Replayer() {
+            public void replay(IFDocumentHandler target) throws IFException, IOException {
+                new IFBinaryParser().parse(new ByteArrayInputStream(binary), target, userAgent);
+            }
+        });
+        assertEquals(expected, actual);
+        assertTrue("binary IF should be much smaller than XML IF: " + binary.length,
+                binary.length * 2 < expected.getBytes("UTF-8").length);
+    }
+
+    @Test
+    public void recognizesBinaryStreams() throws Exception {
+        byte[] binary = toBinary();
+        IFBinaryParser parser = new IFBinaryParser();
+        IFDocumentHandler target = mock(IFDocumentHandler.class);
+        try {
+            parser.parse(new ByteArrayInputStream("<?xml version=\"1.0\"?>".getBytes("UTF-8")),
+                    target, userAgent);
+            fail("XML must not be accepted as binary intermediate format");
+        } catch (IOException ioe) {
+            //expected
+        }
+        byte[] truncated = new byte[binary.length / 2];
+        System.arraycopy(binary, 0, truncated, 0, truncated.length);
+        IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+        serializer.setResult(new StreamResult(new StringWriter()));
+        try {
+            parser.parse(new ByteArrayInputStream(truncated), serializer, userAgent);
+            fail("A truncated stream must be reported");
+        } catch (IOException ioe) {
+            //expected
+        }
+    }
+
+    private byte[] toBinary() throws IFException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IFBinarySerializer serializer = new IFBinarySerializer(new IFContext(userAgent));
+        serializer.setResult(new StreamResult(out));
+        paintDocument(serializer);
+        return out.toByteArray();
+    }
+
+    private String toXML(Replayer replayer) throws Exception {
+        StringWriter writer = new StringWriter();
+        IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+        serializer.setResult(new StreamResult(writer));
+        replayer.replay(serializer);
+        return writer.toString();
+    }
+
+    private interface Replayer {
+        void replay(IFDocumentHandler target) throws Exception;
+    }
+
+    private static void paintDocument(IFDocumentHandler handler) throws IFException {
+        handler.startDocument();
+        handler.setDocumentLocale(Locale.GERMANY);
+        handler.startDocumentHeader();
+        handler.endDocumentHeader();
+        handler.startPageSequence("seq1");
+        BorderProps border = BorderProps.makeRectangular(Constants.EN_SOLID, 1000, Color.BLUE,
+                BorderProps.Mode.SEPARATE);
+        for (int page = 0; page < 3; page++) {
+            handler.startPage(page, Integer.toString(page + 1), "A4", new Dimension(595275, 841889));
+            handler.startPageHeader();
+            handler.endPageHeader();
+            IFPainter painter = handler.startPageContent();
+            painter.startViewport(AffineTransform.getTranslateInstance(56692, 56692),
+                    new Dimension(481891, 728504), new Rectangle(0, 0, 481891, 728504));
+            painter.startGroup(new AffineTransform(0.5, 0, 0, 0.5, 1000.25, 0), "layer1");
+            painter.fillRect(new Rectangle(0, 0, 10000, 20000), Color.YELLOW);
+            painter.drawBorderRect(new Rectangle(0, 0, 10000, 20000), border, border, null, border,
+                    Color.WHITE);
+            painter.clipRect(new Rectangle(5, 5, 100, 100));
+            for (int line = 0; line < 40; line++) {
+                handler.getContext().setID(line % 10 == 0 ? "block" + line : handler.getContext().getID());
+                painter.setFont("Helvetica", "normal", 400, "normal", 12000, Color.BLACK);
+                painter.drawText(0, line * 14400, 0, 0, null,
+                        "The quick brown fox jumps over the lazy dog " + line);
+                painter.setFont("Times", "italic", 700, "normal", 12000, new Color(0x336699));
+                painter.drawText(0, line * 14400 + 7200, 25, -300,
+                        new int[][] {{0, 0, -100, 0}, {0, 0, 0, 0}, {0, 50, 0, 0}}, "Kerning", line % 2 == 0);
+            }
+            painter.drawLine(new Point(0, 0), new Point(481891, 0), 500, Color.RED, RuleStyle.DOTTED);
+            painter.drawImage("images/logo.png", new Rectangle(0, 0, 20000, 10000));
+            painter.endGroup();
+            painter.endViewport();
+            handler.endPageContent();
+            handler.startPageTrailer();
+            handler.endPageTrailer();
+            handler.endPage();
+        }
+        handler.endPageSequence();
+        handler.startDocumentTrailer();
+        handler.endDocumentTrailer();
+        handler.endDocument();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.xmlgraphics.util.uri.DataURLUtil;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.pdf.EncodedStreamCache;
+
+/**
+ * Checks that images with the same content share one XObject whatever their URIs, and that
+ * the encoded stream data shared between documents doesn't change the output.
+ */
+public class PDFImageDeduplicationTestCase {
+
+    private static final String IMAGES = "test/resources/images/";
+
+    private static final String[] IMAGE_FILES = {"bgimg72dpi.jpg", "bgimg72dpi.png",
+            "bgimg72dpi.gif", "cmyk.jpg"};
+
+    @Test
+    public void testSameContentUnderDifferentURIs() throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        String pdf = render(fopFactory, createDocument(true));
+        assertEquals(IMAGE_FILES.length, countOccurrences(pdf, "/Subtype /Image"));
+    }
+
+    @Test
+    public void testEncodedStreamCache() throws Exception {
+        String fo = createDocument(false);
+        String expected = render(FopFactory.newInstance(new File(".").toURI()), fo);
+
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        EncodedStreamCache cache = fopFactory.getEncodedStreamCache();
+        cache.setMaxSize(10 * 1024 * 1024);
+        assertEquals(expected, render(fopFactory, fo));
+        assertEquals(0, cache.getHitCount());
+        assertTrue(cache.getEntryCount() > IMAGE_FILES.length);
+        assertEquals(expected, render(fopFactory, fo));
+        assertEquals(cache.getMissCount(), cache.getHitCount());
+
+        //entries are evicted to stay within the maximum size
+        cache.setMaxSize(cache.getSize() / 2);
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+        assertEquals(expected, render(fopFactory, fo));
+    }
+
+    private String render(FopFactory fopFactory, String fo) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[<[0-9A-F]*> <[0-9A-F]*>\\]", "")
+                .replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private static int countOccurrences(String pdf, String text) {
+        int count = 0;
+        for (int index = pdf.indexOf(text); index >= 0; index = pdf.indexOf(text, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String createDocument(boolean differentURIs) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"20cm\" page-width=\"20cm\">");
+        sb.append("<fo:region-body/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        for (String image : IMAGE_FILES) {
+            appendImage(sb, IMAGES + image);
+            if (differentURIs) {
+                appendImage(sb, IMAGES + "../images/" + image);
+                appendImage(sb, new File(IMAGES + image).toURI().toASCIIString());
+                byte[] data = FileUtils.readFileToByteArray(new File(IMAGES + image));
+                appendImage(sb, DataURLUtil.createDataURL(new ByteArrayInputStream(data), null));
+            }
+            appendImage(sb, IMAGES + image);
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+
+    private static void appendImage(StringBuilder sb, String uri) {
+        sb.append("<fo:block><fo:external-graphic content-width=\"2cm\" src=\"").append(uri)
+                .append("\"/></fo:block>");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Checks that fonts subset and embedded concurrently give the same PDF output as fonts
+ * embedded one after the other.
+ */
+public class PDFParallelFontEmbeddingTestCase {
+
+    private static final String[][] FONTS = {
+        {"DejaVu", "ttf/DejaVuLGCSerif.ttf", null, null},
+        {"DroidSans", "ttf/DroidSansMono.ttf", null, null},
+        {"DroidSansFull", "ttf/DroidSansMono.ttf", null, "full"},
+        {"SourceSans", "otf/SourceSansProBold.otf", null, null},
+        {"AlexBrush", "otf/AlexBrushRegular.otf", null, "full"},
+        {"Courier10", "type1/c0419bt_.pfb", "type1/c0419bt_.afm", "subset"},
+    };
+
+    @Test
+    public void testOutputMatchesSerialEmbedding() throws Exception {
+        FopFactory fopFactory = createFopFactory();
+        String fo = createDocument();
+        String serial = render(fopFactory, fo, 0);
+        assertEquals(FONTS.length, countOccurrences(serial, "/FontFile"));
+        //full OTF CFF embedding requires PDF 1.6
+        assertTrue(serial.contains("/Version /1.6"));
+        assertEquals(serial, render(fopFactory, fo, 4));
+        assertEquals(serial, render(fopFactory, fo, 2));
+    }
+
+    private static int countOccurrences(String pdf, String text) {
+        int count = 0;
+        for (int index = pdf.indexOf(text); index >= 0; index = pdf.indexOf(text, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static FopFactory createFopFactory() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fop version=\"1.0\"><renderers><renderer mime=\"application/pdf\"><fonts>");
+        for (String[] font : FONTS) {
+            sb.append("<font embed-url=\"test/resources/fonts/").append(font[1]).append('"');
+            if (font[2] != null) {
+                sb.append(" embed-url-afm=\"test/resources/fonts/").append(font[2]).append('"');
+            }
+            if (font[3] != null) {
+                sb.append(" embedding-mode=\"").append(font[3]).append('"');
+            }
+            sb.append("><font-triplet name=\"").append(font[0])
+                    .append("\" style=\"normal\" weight=\"normal\"/></font>");
+        }
+        sb.append("</fonts></renderer></renderers></fop>");
+        return new FopConfParser(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")),
+                new File(".").toURI()).getFopFactoryBuilder().build();
+    }
+
+    private static String render(FopFactory fopFactory, String fo, int threads) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        userAgent.setStreamCompressionThreads(threads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[<[0-9A-F]*> <[0-9A-F]*>\\]", "")
+                .replaceAll("<xmp:MetadataDate>[^<]*</xmp:MetadataDate>", "");
+    }
+
+    private static String createDocument() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">");
+        sb.append("<fo:layout-master-set>");
+        sb.append("<fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">");
+        sb.append("<fo:region-body/>");
+        sb.append("</fo:simple-page-master>");
+        sb.append("</fo:layout-master-set>");
+        sb.append("<fo:page-sequence master-reference=\"simple\">");
+        sb.append("<fo:flow flow-name=\"xsl-region-body\">");
+        sb.append("<fo:block font-family=\"Helvetica\">Base 14 fonts are not embedded</fo:block>");
+        for (String[] font : FONTS) {
+            sb.append("<fo:block font-family=\"").append(font[0]).append("\">")
+                    .append("The quick brown fox jumps over the lazy dog (").append(font[0])
+                    .append(")</fo:block>");
+        }
+        sb.append("</fo:flow></fo:page-sequence>");
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+}
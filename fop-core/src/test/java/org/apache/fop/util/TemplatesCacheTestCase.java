@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test case for {@link TemplatesCache}.
+ */
+public class TemplatesCacheTestCase {
+
+    private TemplatesCache cache;
+
+    private File stylesheet;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new TemplatesCache(TransformerFactory.newInstance(), 2);
+        stylesheet = File.createTempFile("fop-templates-cache", ".xsl");
+        writeStylesheet(stylesheet, "first");
+    }
+
+    @After
+    public void tearDown() {
+        stylesheet.delete();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws TransformerException {
+        Templates first = cache.getTemplates(new StreamSource(stylesheet));
+        Templates second = cache.getTemplates(new StreamSource(stylesheet));
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals("first", transform(second));
+    }
+
+    @Test
+    public void testModifiedStylesheetIsRecompiled() throws Exception {
+        Templates first = cache.getTemplates(new StreamSource(stylesheet));
+        writeStylesheet(stylesheet, "second");
+        stylesheet.setLastModified(stylesheet.lastModified() + 10000);
+        Templates second = cache.getTemplates(new StreamSource(stylesheet));
+        assertNotSame(first, second);
+        assertEquals(2, cache.getMissCount());
+        assertEquals("second", transform(second));
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        File[] files = new File[3];
+        try {
+            for (int i = 0; i < files.length; i++) {
+                files[i] = File.createTempFile("fop-templates-cache", ".xsl");
+                writeStylesheet(files[i], "s" + i);
+                cache.getTemplates(new StreamSource(files[i]));
+            }
+            assertEquals(2, cache.size());
+            //the least recently used stylesheet was dropped
+            cache.getTemplates(new StreamSource(files[0]));
+            assertEquals(4, cache.getMissCount());
+            cache.getTemplates(new StreamSource(files[2]));
+            assertEquals(1, cache.getHitCount());
+        } finally {
+            for (File file : files) {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSourceWithoutSystemId() throws TransformerException {
+        String xsl = createStylesheet("inline");
+        Templates first = cache.getTemplates(new StreamSource(new StringReader(xsl)));
+        Templates second = cache.getTemplates(new StreamSource(new StringReader(xsl)));
+        assertNotSame(first, second);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    private static String transform(Templates templates) throws TransformerException {
+        StringWriter writer = new StringWriter();
+        templates.newTransformer().transform(new StreamSource(new StringReader("<doc/>")),
+                new StreamResult(writer));
+        return writer.toString();
+    }
+
+    private static String createStylesheet(String text) {
+        return "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:output method=\"text\"/>"
+                + "<xsl:template match=\"/\">" + text + "</xsl:template>"
+                + "</xsl:stylesheet>";
+    }
+
+    private static void writeStylesheet(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(createStylesheet(text).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}